@@ -227,6 +227,27 @@ public class AgentBehaviour {
 		pathsToFollow.clear();
 	}
 
+	/**
+	 * Reset the behaviour to a single path section with the given state,
+	 * reusing the first path section.
+	 * 
+	 * @param state
+	 *            agent state
+	 */
+	public final void reset(final AgentState state) {
+		while (pathsToFollow.size() > 1) {
+			pathsToFollow.removeLast().clear();
+		}
+
+		if (pathsToFollow.isEmpty()) {
+			pathsToFollow.add(new XmlPath());
+		}
+
+		XmlPath pathItem = pathsToFollow.getFirst();
+		pathItem.clear();
+		pathItem.setAgentState(state);
+	}
+
 	/**
 	 * Set current state.
 	 * 
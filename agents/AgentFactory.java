@@ -0,0 +1,357 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents;
+
+import java.awt.Color;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.LinkedList;
+
+import com.sun.javafx.geom.Vec3f;
+
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimCrossing;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimTransitionZone;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.NodePath;
+import uk.org.catapult.ts.cav.model.identifier.StringIdentifier;
+
+/**
+ * Creates the agents of one type. The constructors of the type used by the
+ * departures are looked up once, when the factory is built, and kept as method
+ * handles, so creating an agent does not go through the reflection API. A
+ * constructor the type does not declare is reported when it is used, as
+ * Class.getConstructor would.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public final class AgentFactory {
+	/** The parameters shared by all the constructors. */
+	private static final Class<?>[] COMMON_PARAMETERS = new Class<?>[] { String.class, String.class,
+			StringIdentifier.class, Vec3f.class, float.class };
+
+	/** The agent type. */
+	private final Class<?> agentType;
+
+	/** The type id, the index of the type in the registry. */
+	private final int typeId;
+
+	/** Constructor towards an exit. */
+	private final MethodHandle exitConstructor;
+
+	/** Constructor towards an exit with a pre-defined behaviour. */
+	private final MethodHandle exitBehaviourConstructor;
+
+	/** Constructor towards an exit with a path to follow. */
+	private final MethodHandle exitPathConstructor;
+
+	/** Constructor towards a transition zone. */
+	private final MethodHandle transitionZoneConstructor;
+
+	/** Constructor towards a transition zone with a pre-defined behaviour. */
+	private final MethodHandle transitionZoneBehaviourConstructor;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param newAgentType
+	 *            the agent type, a subclass of CatpedsimAgent
+	 * @param newTypeId
+	 *            the type id
+	 * @throws IllegalAccessException
+	 *             a constructor is not accessible
+	 */
+	private AgentFactory(final Class<?> newAgentType, final int newTypeId) throws IllegalAccessException {
+		agentType = newAgentType;
+		typeId = newTypeId;
+
+		exitConstructor = findConstructor(CatpedsimCrossing.class, Color.class);
+		exitBehaviourConstructor = findConstructor(CatpedsimCrossing.class, Color.class, AgentBehaviour.class);
+		exitPathConstructor = findConstructor(CatpedsimCrossing.class, Color.class, LinkedList.class);
+		transitionZoneConstructor = findConstructor(CatpedsimTransitionZone.class, Color.class);
+		transitionZoneBehaviourConstructor = findConstructor(CatpedsimTransitionZone.class, Color.class,
+				AgentBehaviour.class);
+	}
+
+	/**
+	 * Build the factory of an agent type.
+	 * 
+	 * @param agentType
+	 *            the agent type
+	 * @param typeId
+	 *            the type id, the index of the type in the registry
+	 * @return the factory
+	 * @throws IllegalAccessException
+	 *             a constructor is not accessible
+	 */
+	public static AgentFactory forType(final Class<?> agentType, final int typeId) throws IllegalAccessException {
+		if (!CatpedsimAgent.class.isAssignableFrom(agentType)) {
+			throw new IllegalArgumentException(agentType.getName() + " is not an agent type.");
+		}
+
+		return new AgentFactory(agentType, typeId);
+	}
+
+	/**
+	 * Look up a constructor taking the common parameters followed by extra
+	 * parameters.
+	 * 
+	 * @param extraParameters
+	 *            the extra parameters
+	 * @return the constructor returning a CatpedsimAgent, null if the type
+	 *         does not declare it
+	 * @throws IllegalAccessException
+	 *             the constructor is not accessible
+	 */
+	private MethodHandle findConstructor(final Class<?>... extraParameters) throws IllegalAccessException {
+		MethodType constructorType = MethodType.methodType(void.class, COMMON_PARAMETERS)
+				.appendParameterTypes(extraParameters);
+
+		try {
+			return MethodHandles.publicLookup().findConstructor(agentType, constructorType)
+					.asType(constructorType.changeReturnType(CatpedsimAgent.class));
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the agent type.
+	 * 
+	 * @return the agent type
+	 */
+	public Class<?> getAgentType() {
+		return agentType;
+	}
+
+	/**
+	 * Get the type id.
+	 * 
+	 * @return the index of the type in the registry
+	 */
+	public int getTypeId() {
+		return typeId;
+	}
+
+	/**
+	 * Create an agent heading to an exit.
+	 * 
+	 * @param publisherId
+	 *            publisher id
+	 * @param agentName
+	 *            agent name
+	 * @param uniqueIdentifier
+	 *            agent unique identifier
+	 * @param agentLocation
+	 *            agent location
+	 * @param maximumSpeed
+	 *            maximum speed
+	 * @param exit
+	 *            agent exit
+	 * @param color
+	 *            agent color
+	 * @return the agent
+	 * @throws Exception
+	 *             the type does not declare the constructor, or the
+	 *             constructor failed
+	 */
+	public CatpedsimAgent createForExit(final String publisherId, final String agentName,
+			final StringIdentifier uniqueIdentifier, final Vec3f agentLocation, final float maximumSpeed,
+			final CatpedsimCrossing exit, final Color color) throws Exception {
+		try {
+			return (CatpedsimAgent) checkConstructor(exitConstructor).invokeExact(publisherId, agentName,
+					uniqueIdentifier, agentLocation, maximumSpeed, exit, color);
+		} catch (Exception | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new Exception(ex);
+		}
+	}
+
+	/**
+	 * Create an agent heading to an exit with a pre-defined behaviour.
+	 * 
+	 * @param publisherId
+	 *            publisher id
+	 * @param agentName
+	 *            agent name
+	 * @param uniqueIdentifier
+	 *            agent unique identifier
+	 * @param agentLocation
+	 *            agent location
+	 * @param maximumSpeed
+	 *            maximum speed
+	 * @param exit
+	 *            agent exit
+	 * @param color
+	 *            agent color
+	 * @param behaviour
+	 *            a series of pre-defined behaviours
+	 * @return the agent
+	 * @throws Exception
+	 *             the type does not declare the constructor, or the
+	 *             constructor failed
+	 */
+	public CatpedsimAgent createForExit(final String publisherId, final String agentName,
+			final StringIdentifier uniqueIdentifier, final Vec3f agentLocation, final float maximumSpeed,
+			final CatpedsimCrossing exit, final Color color, final AgentBehaviour behaviour) throws Exception {
+		try {
+			return (CatpedsimAgent) checkConstructor(exitBehaviourConstructor).invokeExact(publisherId, agentName,
+					uniqueIdentifier, agentLocation, maximumSpeed, exit, color, behaviour);
+		} catch (Exception | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new Exception(ex);
+		}
+	}
+
+	/**
+	 * Create an agent heading to an exit along a path.
+	 * 
+	 * @param publisherId
+	 *            publisher id
+	 * @param agentName
+	 *            agent name
+	 * @param uniqueIdentifier
+	 *            agent unique identifier
+	 * @param agentLocation
+	 *            agent location
+	 * @param maximumSpeed
+	 *            maximum speed
+	 * @param exit
+	 *            agent exit
+	 * @param color
+	 *            agent color
+	 * @param path
+	 *            path to follow, may be null
+	 * @return the agent
+	 * @throws Exception
+	 *             the type does not declare the constructor, or the
+	 *             constructor failed
+	 */
+	public CatpedsimAgent createForExit(final String publisherId, final String agentName,
+			final StringIdentifier uniqueIdentifier, final Vec3f agentLocation, final float maximumSpeed,
+			final CatpedsimCrossing exit, final Color color, final LinkedList<NodePath> path) throws Exception {
+		try {
+			return (CatpedsimAgent) checkConstructor(exitPathConstructor).invokeExact(publisherId, agentName,
+					uniqueIdentifier, agentLocation, maximumSpeed, exit, color, path);
+		} catch (Exception | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new Exception(ex);
+		}
+	}
+
+	/**
+	 * Create an agent heading to a transition zone.
+	 * 
+	 * @param publisherId
+	 *            publisher id
+	 * @param agentName
+	 *            agent name
+	 * @param uniqueIdentifier
+	 *            agent unique identifier
+	 * @param agentLocation
+	 *            agent location
+	 * @param maximumSpeed
+	 *            maximum speed
+	 * @param transitionZone
+	 *            the transition zone
+	 * @param color
+	 *            agent color
+	 * @return the agent
+	 * @throws Exception
+	 *             the type does not declare the constructor, or the
+	 *             constructor failed
+	 */
+	public CatpedsimAgent createForTransitionZone(final String publisherId, final String agentName,
+			final StringIdentifier uniqueIdentifier, final Vec3f agentLocation, final float maximumSpeed,
+			final CatpedsimTransitionZone transitionZone, final Color color) throws Exception {
+		try {
+			return (CatpedsimAgent) checkConstructor(transitionZoneConstructor).invokeExact(publisherId, agentName,
+					uniqueIdentifier, agentLocation, maximumSpeed, transitionZone, color);
+		} catch (Exception | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new Exception(ex);
+		}
+	}
+
+	/**
+	 * Create an agent heading to a transition zone with a pre-defined
+	 * behaviour.
+	 * 
+	 * @param publisherId
+	 *            publisher id
+	 * @param agentName
+	 *            agent name
+	 * @param uniqueIdentifier
+	 *            agent unique identifier
+	 * @param agentLocation
+	 *            agent location
+	 * @param maximumSpeed
+	 *            maximum speed
+	 * @param transitionZone
+	 *            the transition zone
+	 * @param color
+	 *            agent color
+	 * @param behaviour
+	 *            a series of pre-defined behaviours
+	 * @return the agent
+	 * @throws Exception
+	 *             the type does not declare the constructor, or the
+	 *             constructor failed
+	 */
+	public CatpedsimAgent createForTransitionZone(final String publisherId, final String agentName,
+			final StringIdentifier uniqueIdentifier, final Vec3f agentLocation, final float maximumSpeed,
+			final CatpedsimTransitionZone transitionZone, final Color color, final AgentBehaviour behaviour)
+			throws Exception {
+		try {
+			return (CatpedsimAgent) checkConstructor(transitionZoneBehaviourConstructor).invokeExact(publisherId,
+					agentName, uniqueIdentifier, agentLocation, maximumSpeed, transitionZone, color, behaviour);
+		} catch (Exception | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new Exception(ex);
+		}
+	}
+
+	/**
+	 * Check the type declares a constructor.
+	 * 
+	 * @param constructor
+	 *            the constructor, null if the type does not declare it
+	 * @return the constructor
+	 * @throws NoSuchMethodException
+	 *             the type does not declare the constructor
+	 */
+	private MethodHandle checkConstructor(final MethodHandle constructor) throws NoSuchMethodException {
+		if (constructor == null) {
+			throw new NoSuchMethodException(agentType.getName() + " does not declare the constructor.");
+		}
+
+		return constructor;
+	}
+}
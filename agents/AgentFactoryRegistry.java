@@ -0,0 +1,171 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.SubClassesFinder;
+
+/**
+ * The agent types of the simulation and their factories. The registry is
+ * resolved once, when the manager starts, from the agent type providers or
+ * from a list of types given by the application. Without any registered
+ * provider the agent types shipped with the simulator are used; the
+ * classpath is only scanned when the application asks for it.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class AgentFactoryRegistry {
+	/** The factory of every agent type, in the order of registration. */
+	private final Map<Class<?>, AgentFactory> factories = new LinkedHashMap<Class<?>, AgentFactory>();
+
+	/**
+	 * Build the registry of the agent types given by the
+	 * {@link AgentTypeProvider} services. Without any provider the agent types
+	 * of the {@link DefaultAgentTypeProvider} are used, the classpath is not
+	 * scanned.
+	 * 
+	 * @return the registry
+	 * @throws IllegalAccessException
+	 *             a constructor is not accessible
+	 */
+	public static AgentFactoryRegistry load() throws IllegalAccessException {
+		List<Class<?>> agentTypes = new ArrayList<Class<?>>();
+
+		for (AgentTypeProvider provider : ServiceLoader.load(AgentTypeProvider.class)) {
+			agentTypes.addAll(provider.getAgentTypes());
+		}
+
+		if (agentTypes.isEmpty()) {
+			agentTypes.addAll(new DefaultAgentTypeProvider().getAgentTypes());
+		}
+
+		return forTypes(agentTypes);
+	}
+
+	/**
+	 * Build the registry of the agent types found on the classpath. The scan
+	 * is slow, it is only meant for the applications which add agent types
+	 * without registering an {@link AgentTypeProvider}.
+	 * 
+	 * @return the registry
+	 * @throws Exception
+	 *             an agent type was not found, or a constructor is not
+	 *             accessible
+	 */
+	public static AgentFactoryRegistry scanClasspath() throws Exception {
+		return forTypes(SubClassesFinder.subclassScan(CatpedsimAgent.class, ""));
+	}
+
+	/**
+	 * Build the registry of some agent types.
+	 * 
+	 * @param agentTypes
+	 *            the agent types, subclasses of CatpedsimAgent
+	 * @return the registry
+	 * @throws IllegalAccessException
+	 *             a constructor is not accessible
+	 */
+	public static AgentFactoryRegistry forTypes(final Collection<Class<?>> agentTypes)
+			throws IllegalAccessException {
+		AgentFactoryRegistry registry = new AgentFactoryRegistry();
+
+		for (Class<?> agentType : agentTypes) {
+			registry.register(agentType);
+		}
+
+		return registry;
+	}
+
+	/**
+	 * Register an agent type. The type gets the next type id, a type
+	 * registered twice keeps its first factory and type id.
+	 * 
+	 * @param agentType
+	 *            the agent type, a subclass of CatpedsimAgent
+	 * @throws IllegalAccessException
+	 *             a constructor is not accessible
+	 */
+	public final void register(final Class<?> agentType) throws IllegalAccessException {
+		if (!factories.containsKey(agentType)) {
+			factories.put(agentType, AgentFactory.forType(agentType, factories.size()));
+		}
+	}
+
+	/**
+	 * Get the factory of an agent type.
+	 * 
+	 * @param agentType
+	 *            the agent type
+	 * @return the factory, null if the type is not registered
+	 */
+	public final AgentFactory getFactory(final Class<?> agentType) {
+		return factories.get(agentType);
+	}
+
+	/**
+	 * Get the type id of an agent type.
+	 * 
+	 * @param agentType
+	 *            the agent type
+	 * @return the type id, -1 if the type is not registered
+	 */
+	public final int getTypeId(final Class<?> agentType) {
+		AgentFactory factory = factories.get(agentType);
+
+		if (factory == null) {
+			return -1;
+		}
+
+		return factory.getTypeId();
+	}
+
+	/**
+	 * Get the number of registered agent types. The type ids go from zero to
+	 * the number of types, excluded.
+	 * 
+	 * @return the number of agent types
+	 */
+	public final int getNumberOfAgentTypes() {
+		return factories.size();
+	}
+
+	/**
+	 * Get the registered agent types.
+	 * 
+	 * @return the agent types, in the order of registration, the index of a
+	 *         type in the list is its type id
+	 */
+	public final List<Class<?>> getAgentTypes() {
+		return Collections.unmodifiableList(new ArrayList<Class<?>>(factories.keySet()));
+	}
+}
@@ -0,0 +1,423 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * List of the agents of one type held in a dense slot array. Every agent
+ * knows its slot, so removing an agent, or checking whether it is in the
+ * list, takes constant time: the last agent is moved into the freed slot. The
+ * free slots are always the tail of the array and are reused by the next
+ * additions, so no separate free list is needed.
+ * 
+ * The moving agents are held first and the dormant agents, stopped or not
+ * active, after them, so the tick only walks the moving agents. An agent
+ * changing state asks the list to check it again, the check is applied at the
+ * beginning of the next tick by {@link #applyDormancyChecks()}. An added
+ * agent always goes at the end of its group.
+ * 
+ * Removal does not keep the order of the agents. An iterator removing the
+ * current agent visits the moved agent next, so a removing loop still visits
+ * every agent exactly once. The tick itself works on the agents collected at
+ * its beginning, so the moves made by the arrivals do not affect it.
+ * 
+ * Like the linked lists it replaces, the list is not thread safe: the callers
+ * synchronise on it. Only the dormancy check requests may come from any
+ * thread.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class AgentList extends AbstractList<CatpedsimAgent> implements RandomAccess {
+	/** Initial capacity of the slot array. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The agents, the used slots are [0, size). */
+	private CatpedsimAgent[] slots = new CatpedsimAgent[INITIAL_CAPACITY];
+
+	/** Number of agents. */
+	private int size = 0;
+
+	/** Number of moving agents, held in the slots before the dormant agents. */
+	private int numberOfMovingAgents = 0;
+
+	/** The agents which changed state since the last dormancy checks. */
+	private final ConcurrentLinkedQueue<CatpedsimAgent> dormancyChecks = new ConcurrentLinkedQueue<CatpedsimAgent>();
+
+	/** Incremented when an agent enters or leaves the dormant agents. */
+	private long dormantMembershipModifications = 0;
+
+	/** Incremented when the dormant agents or their positions change. */
+	private long dormantModifications = 0;
+
+	@Override
+	public final CatpedsimAgent get(final int index) {
+		checkIndex(index, size);
+		return slots[index];
+	}
+
+	@Override
+	public final int size() {
+		return size;
+	}
+
+	/**
+	 * Replace the agent at an index. The new agent is added at the end of its
+	 * group, like {@link #add(int, CatpedsimAgent)}.
+	 * 
+	 * @param index
+	 *            index of the agent to replace
+	 * @param agent
+	 *            the new agent
+	 * @return the replaced agent
+	 */
+	@Override
+	public final CatpedsimAgent set(final int index, final CatpedsimAgent agent) {
+		checkIndex(index, size);
+
+		CatpedsimAgent previousAgent = slots[index];
+		if (previousAgent != agent) {
+			remove(index);
+			add(size, agent);
+		}
+		return previousAgent;
+	}
+
+	/**
+	 * Add an agent at the end of its group, the moving or the dormant agents.
+	 * The index is only checked, the groups decide where the agent goes.
+	 * 
+	 * @param index
+	 *            index of the new agent
+	 * @param agent
+	 *            the agent
+	 */
+	@Override
+	public final void add(final int index, final CatpedsimAgent agent) {
+		checkIndex(index, size + 1);
+
+		if (size == slots.length) {
+			slots = Arrays.copyOf(slots, slots.length * 2);
+		}
+
+		attach(agent, size);
+		size++;
+
+		if (agent.isDormantState()) {
+			dormantMembershipChanged();
+		} else {
+			swap(size - 1, numberOfMovingAgents);
+			numberOfMovingAgents++;
+		}
+		modCount++;
+	}
+
+	/**
+	 * Remove the agent at an index in constant time: the last agent of its
+	 * group is moved into the freed slot, and the last agent of the list into
+	 * the slot freed in the dormant agents.
+	 * 
+	 * @param index
+	 *            index of the agent to remove
+	 * @return the removed agent
+	 */
+	@Override
+	public final CatpedsimAgent remove(final int index) {
+		checkIndex(index, size);
+
+		CatpedsimAgent removedAgent = slots[index];
+		int freedSlot = index;
+
+		if (index < numberOfMovingAgents) {
+			numberOfMovingAgents--;
+			swap(index, numberOfMovingAgents);
+			freedSlot = numberOfMovingAgents;
+		} else {
+			dormantMembershipChanged();
+		}
+
+		int lastSlot = size - 1;
+
+		detach(removedAgent, freedSlot);
+		if (freedSlot != lastSlot) {
+			attach(slots[lastSlot], freedSlot);
+		}
+		slots[lastSlot] = null;
+
+		size--;
+		modCount++;
+		return removedAgent;
+	}
+
+	/**
+	 * Remove an agent in constant time, using the slot the agent knows.
+	 * 
+	 * @param object
+	 *            the agent to remove
+	 * @return true if the agent was in the list
+	 */
+	@Override
+	public final boolean remove(final Object object) {
+		int index = indexOf(object);
+
+		if (index < 0) {
+			return false;
+		}
+
+		remove(index);
+		return true;
+	}
+
+	@Override
+	public final int indexOf(final Object object) {
+		if (!(object instanceof CatpedsimAgent)) {
+			return -1;
+		}
+
+		int slot = ((CatpedsimAgent) object).getListSlot();
+
+		if (slot >= 0 && slot < size && slots[slot] == object) {
+			return slot;
+		}
+		return -1;
+	}
+
+	@Override
+	public final int lastIndexOf(final Object object) {
+		return indexOf(object);
+	}
+
+	@Override
+	public final boolean contains(final Object object) {
+		return indexOf(object) >= 0;
+	}
+
+	@Override
+	public final void clear() {
+		if (numberOfMovingAgents < size) {
+			dormantMembershipChanged();
+		}
+
+		for (int slot = 0; slot < size; slot++) {
+			detach(slots[slot], slot);
+			slots[slot] = null;
+		}
+
+		size = 0;
+		numberOfMovingAgents = 0;
+		modCount++;
+	}
+
+	/**
+	 * Sort the moving agents and the dormant agents, each group on its own.
+	 * 
+	 * @param comparator
+	 *            the comparator
+	 */
+	@Override
+	public final void sort(final Comparator<? super CatpedsimAgent> comparator) {
+		Arrays.sort(slots, 0, numberOfMovingAgents, comparator);
+		Arrays.sort(slots, numberOfMovingAgents, size, comparator);
+
+		for (int slot = 0; slot < size; slot++) {
+			slots[slot].setListSlot(slot);
+		}
+		modCount++;
+	}
+
+	/**
+	 * Ask the list to check at the next tick whether an agent started or
+	 * stopped being dormant. Safe to call from any thread.
+	 * 
+	 * @param agent
+	 *            the agent which changed state
+	 */
+	public final void requestDormancyCheck(final CatpedsimAgent agent) {
+		dormancyChecks.offer(agent);
+	}
+
+	/**
+	 * Move the agents which changed state since the last call to their group.
+	 */
+	public final void applyDormancyChecks() {
+		CatpedsimAgent agent = dormancyChecks.poll();
+
+		while (agent != null) {
+			int slot = indexOf(agent);
+
+			if (slot >= 0) {
+				placeInItsGroup(slot);
+			}
+			agent = dormancyChecks.poll();
+		}
+	}
+
+	/**
+	 * Record that a dormant agent of the list moved. An external simulator can
+	 * move the agents it does not let the simulation move.
+	 */
+	public final void dormantAgentMoved() {
+		dormantModifications++;
+	}
+
+	/**
+	 * Check if an agent of the list is held with the dormant agents.
+	 * 
+	 * @param agent
+	 *            the agent
+	 * @return true if the agent is in the list and dormant
+	 */
+	public final boolean isDormant(final CatpedsimAgent agent) {
+		int slot = indexOf(agent);
+
+		return slot >= numberOfMovingAgents;
+	}
+
+	/**
+	 * Get the number of moving agents. They are held in the slots [0, number
+	 * of moving agents), the dormant agents in the slots after them.
+	 * 
+	 * @return the number of moving agents
+	 */
+	public final int getNumberOfMovingAgents() {
+		return numberOfMovingAgents;
+	}
+
+	/**
+	 * Get the number of changes of the dormant agents: agents entering or
+	 * leaving them, or moving.
+	 * 
+	 * @return the number of changes
+	 */
+	public final long getDormantModifications() {
+		return dormantModifications;
+	}
+
+	/**
+	 * Get the number of agents which entered or left the dormant agents.
+	 * 
+	 * @return the number of changes
+	 */
+	public final long getDormantMembershipModifications() {
+		return dormantMembershipModifications;
+	}
+
+	/**
+	 * Move the agent in a slot to the other group if its state does not match
+	 * the group it is held in.
+	 * 
+	 * @param slot
+	 *            the slot of the agent
+	 */
+	private void placeInItsGroup(final int slot) {
+		boolean dormant = slots[slot].isDormantState();
+
+		if (dormant && slot < numberOfMovingAgents) {
+			numberOfMovingAgents--;
+			swap(slot, numberOfMovingAgents);
+			dormantMembershipChanged();
+			modCount++;
+		} else if (!dormant && slot >= numberOfMovingAgents) {
+			swap(slot, numberOfMovingAgents);
+			numberOfMovingAgents++;
+			dormantMembershipChanged();
+			modCount++;
+		}
+	}
+
+	/**
+	 * Record that an agent entered or left the dormant agents.
+	 */
+	private void dormantMembershipChanged() {
+		dormantMembershipModifications++;
+		dormantModifications++;
+	}
+
+	/**
+	 * Exchange the agents of two slots.
+	 * 
+	 * @param first
+	 *            the first slot
+	 * @param second
+	 *            the second slot
+	 */
+	private void swap(final int first, final int second) {
+		if (first != second) {
+			CatpedsimAgent firstAgent = slots[first];
+
+			attach(slots[second], first);
+			attach(firstAgent, second);
+		}
+	}
+
+	/**
+	 * Put an agent in a slot.
+	 * 
+	 * @param agent
+	 *            the agent
+	 * @param slot
+	 *            the slot
+	 */
+	private void attach(final CatpedsimAgent agent, final int slot) {
+		slots[slot] = agent;
+		agent.setListSlot(slot);
+		agent.setAgentList(this);
+	}
+
+	/**
+	 * Forget the slot of an agent, unless the agent was already moved to
+	 * another slot.
+	 * 
+	 * @param agent
+	 *            the agent
+	 * @param slot
+	 *            the slot the agent leaves
+	 */
+	private static void detach(final CatpedsimAgent agent, final int slot) {
+		if (agent.getListSlot() == slot) {
+			agent.setListSlot(-1);
+			agent.setAgentList(null);
+		}
+	}
+
+	/**
+	 * Check an index is in [0, bound).
+	 * 
+	 * @param index
+	 *            the index
+	 * @param bound
+	 *            the exclusive upper bound
+	 */
+	private static void checkIndex(final int index, final int bound) {
+		if (index < 0 || index >= bound) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+		}
+	}
+}
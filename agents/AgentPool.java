@@ -0,0 +1,131 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of the agents which left the simulation, one bounded stack for every
+ * agent type. The manager releases the agents arriving at their exit and
+ * spawns the new agents from the pool before creating new objects, so a
+ * simulation with a steady flow of departures and arrivals stops allocating
+ * agents once the pool is warm.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class AgentPool {
+	/** Default maximum number of pooled agents of a type. */
+	public static final int DEFAULT_CAPACITY_PER_TYPE = 1024;
+
+	/** Maximum number of pooled agents of a type. */
+	private final int capacityPerType;
+
+	/** The pooled agents of every type. */
+	private final Map<Class<?>, ArrayDeque<CatpedsimAgent>> pooledAgents =
+			new HashMap<Class<?>, ArrayDeque<CatpedsimAgent>>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param newCapacityPerType
+	 *            maximum number of pooled agents of a type, zero disables the
+	 *            pool
+	 */
+	public AgentPool(final int newCapacityPerType) {
+		capacityPerType = Math.max(newCapacityPerType, 0);
+	}
+
+	/**
+	 * Take an agent of a type from the pool. The agent must be spawned again
+	 * with {@link CatpedsimAgent#respawn} before it is used.
+	 * 
+	 * @param agentType
+	 *            agent type
+	 * @return a pooled agent, null if the pool has no agent of the type
+	 */
+	public final synchronized CatpedsimAgent acquire(final Class<?> agentType) {
+		ArrayDeque<CatpedsimAgent> agentsOfType = pooledAgents.get(agentType);
+
+		if (agentsOfType == null) {
+			return null;
+		}
+
+		return agentsOfType.pollLast();
+	}
+
+	/**
+	 * Return an agent which left the simulation to the pool. The agent must
+	 * not be referenced by the simulation any more. The agent is dropped when
+	 * the pool of its type is full.
+	 * 
+	 * @param agent
+	 *            the agent
+	 * @return true if the agent was pooled
+	 */
+	public final synchronized boolean release(final CatpedsimAgent agent) {
+		ArrayDeque<CatpedsimAgent> agentsOfType = pooledAgents.get(agent.getClass());
+
+		if (agentsOfType == null) {
+			agentsOfType = new ArrayDeque<CatpedsimAgent>();
+			pooledAgents.put(agent.getClass(), agentsOfType);
+		}
+
+		if (agentsOfType.size() >= capacityPerType) {
+			return false;
+		}
+
+		agent.recycle();
+		agentsOfType.addLast(agent);
+
+		return true;
+	}
+
+	/**
+	 * Get the number of pooled agents of a type.
+	 * 
+	 * @param agentType
+	 *            agent type
+	 * @return number of pooled agents
+	 */
+	public final synchronized int size(final Class<?> agentType) {
+		ArrayDeque<CatpedsimAgent> agentsOfType = pooledAgents.get(agentType);
+
+		if (agentsOfType == null) {
+			return 0;
+		}
+
+		return agentsOfType.size();
+	}
+
+	/**
+	 * Drop all the pooled agents.
+	 */
+	public final synchronized void clear() {
+		pooledAgents.clear();
+	}
+}
@@ -0,0 +1,145 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents;
+
+import java.util.concurrent.locks.StampedLock;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.model.spatial.Vector2D;
+
+/**
+ * Published kinematic state of an agent. The simulation moves the agent in its
+ * own position and velocity vectors, and copies them into this object at the
+ * end of every tick. During a tick the agents only read the published state
+ * of their neighbours, so the forces do not depend on the order the agents are
+ * moved in; the tick and the publication never run at the same time, so the
+ * simulation reads the published vectors directly.
+ * 
+ * The readers outside the simulation, the bridge and the applet, copy the
+ * state into a holder of their own under a stamped lock: an optimistic read
+ * which is only retried under the read lock if a publication overlapped it.
+ * Publishing and reading allocate nothing.
+ * 
+ * The buffers are only published between the phases of a tick, so the vectors
+ * returned by the getters are stable on the threads computing the tick. They
+ * must not be modified, and should not be kept longer than one tick. The
+ * readers on other threads use the immutable snapshot, published together
+ * with the buffers, which a later publish can not overwrite.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class AgentStateBuffer {
+	/** Lock of the published state. */
+	private final StampedLock lock = new StampedLock();
+
+	/** Published position. */
+	private final PVector position = new PVector(0, 0, 0);
+
+	/** Published velocity. */
+	private final PVector velocity = new PVector(0, 0, 0);
+
+	/** Published speed in meters/second. */
+	private float speed = 0;
+
+	/** X component of the published heading. */
+	private double headingX = 0;
+
+	/** Y component of the published heading. */
+	private double headingY = 0;
+
+	/**
+	 * Copy the state of the agent at the end of the tick.
+	 * 
+	 * @param newPosition
+	 *            the position at the end of the tick
+	 * @param newVelocity
+	 *            the velocity at the end of the tick
+	 * @param newSpeed
+	 *            the speed at the end of the tick
+	 * @param heading
+	 *            the heading at the end of the tick
+	 */
+	public final void publish(final PVector newPosition, final PVector newVelocity, final float newSpeed,
+			final Vector2D heading) {
+		long stamp = lock.writeLock();
+
+		try {
+			position.set(newPosition);
+			velocity.set(newVelocity);
+			speed = newSpeed;
+			headingX = heading.getX();
+			headingY = heading.getY();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Copy the published state into a holder of the reader. All the values
+	 * copied belong to the same tick.
+	 * 
+	 * @param state
+	 *            the holder receiving the state
+	 */
+	public final void read(final AgentStateSnapshot state) {
+		long stamp = lock.tryOptimisticRead();
+
+		if (stamp != 0) {
+			state.set(position.x, position.y, velocity.x, velocity.y, speed, headingX, headingY);
+
+			if (lock.validate(stamp)) {
+				return;
+			}
+		}
+
+		stamp = lock.readLock();
+		try {
+			state.set(position.x, position.y, velocity.x, velocity.y, speed, headingX, headingY);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Get the position published at the end of the last tick, for the
+	 * simulation while it computes a tick.
+	 * 
+	 * @return the published position
+	 */
+	public final PVector getPosition() {
+		return position;
+	}
+
+	/**
+	 * Get the velocity published at the end of the last tick, for the
+	 * simulation while it computes a tick.
+	 * 
+	 * @return the published velocity
+	 */
+	public final PVector getVelocity() {
+		return velocity;
+	}
+}
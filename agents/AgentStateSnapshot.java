@@ -0,0 +1,149 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents;
+
+/**
+ * Kinematic state of an agent copied from its published state. The readers
+ * outside the simulation, the bridge and the applet, own a holder they fill
+ * again for every agent they read, and read all the values from it, so the
+ * position, velocity, speed and heading always belong to the same tick.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public final class AgentStateSnapshot {
+	/** X coordinate of the position. */
+	private float x = 0;
+
+	/** Y coordinate of the position. */
+	private float y = 0;
+
+	/** X component of the velocity. */
+	private float velocityX = 0;
+
+	/** Y component of the velocity. */
+	private float velocityY = 0;
+
+	/** Speed in meters/second. */
+	private float speed = 0;
+
+	/** X component of the heading. */
+	private double headingX = 0;
+
+	/** Y component of the heading. */
+	private double headingY = 0;
+
+	/**
+	 * Set all the values of the state.
+	 * 
+	 * @param newX
+	 *            x coordinate of the position
+	 * @param newY
+	 *            y coordinate of the position
+	 * @param newVelocityX
+	 *            x component of the velocity
+	 * @param newVelocityY
+	 *            y component of the velocity
+	 * @param newSpeed
+	 *            speed in meters/second
+	 * @param newHeadingX
+	 *            x component of the heading
+	 * @param newHeadingY
+	 *            y component of the heading
+	 */
+	void set(final float newX, final float newY, final float newVelocityX, final float newVelocityY,
+			final float newSpeed, final double newHeadingX, final double newHeadingY) {
+		x = newX;
+		y = newY;
+		velocityX = newVelocityX;
+		velocityY = newVelocityY;
+		speed = newSpeed;
+		headingX = newHeadingX;
+		headingY = newHeadingY;
+	}
+
+	/**
+	 * Get the x coordinate of the position.
+	 * 
+	 * @return x coordinate
+	 */
+	public float getX() {
+		return x;
+	}
+
+	/**
+	 * Get the y coordinate of the position.
+	 * 
+	 * @return y coordinate
+	 */
+	public float getY() {
+		return y;
+	}
+
+	/**
+	 * Get the x component of the velocity.
+	 * 
+	 * @return x component of the velocity
+	 */
+	public float getVelocityX() {
+		return velocityX;
+	}
+
+	/**
+	 * Get the y component of the velocity.
+	 * 
+	 * @return y component of the velocity
+	 */
+	public float getVelocityY() {
+		return velocityY;
+	}
+
+	/**
+	 * Get the speed.
+	 * 
+	 * @return speed in meters/second
+	 */
+	public float getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * Get the x component of the heading.
+	 * 
+	 * @return x component of the heading
+	 */
+	public double getHeadingX() {
+		return headingX;
+	}
+
+	/**
+	 * Get the y component of the heading.
+	 * 
+	 * @return y component of the heading
+	 */
+	public double getHeadingY() {
+		return headingY;
+	}
+}
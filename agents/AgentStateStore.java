@@ -0,0 +1,250 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents;
+
+import java.util.Arrays;
+
+import processing.core.PVector;
+
+/**
+ * Structure of arrays gather buffer of the agents state for a single tick. The
+ * published state of the agents is copied into parallel primitive columns
+ * indexed by a dense slot, so the force kernels can run over contiguous memory
+ * instead of following the vectors of every agent object. The agents know
+ * their slot of the current tick and the buffer knows the agent in every slot.
+ * 
+ * The buffer is not where the agents state lives: the agents keep their own
+ * vectors, which the behaviours, the transport, the applet and the bridge
+ * read and write, and the buffer is a copy of them. The slots are not stable
+ * either: the moving agents are gathered again at the beginning of every tick
+ * in the cell order of the spatial grids, so that the agents of neighbouring
+ * cells are ranges of consecutive slots. Only the dormant agents, gathered
+ * first, keep their slots until one of them changes. Only the acceleration
+ * columns are written while the tick is computed, each slot by a single
+ * thread, and the accelerations are applied back to the agents.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class AgentStateStore {
+	/** Initial capacity of the columns. */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Number of used slots. */
+	private int size = 0;
+
+	/** The agent in every slot. */
+	private CatpedsimAgent[] agents = new CatpedsimAgent[INITIAL_CAPACITY];
+
+	/** Position x coordinates. */
+	private float[] x = new float[INITIAL_CAPACITY];
+
+	/** Position y coordinates. */
+	private float[] y = new float[INITIAL_CAPACITY];
+
+	/** Velocity x components. */
+	private float[] vx = new float[INITIAL_CAPACITY];
+
+	/** Velocity y components. */
+	private float[] vy = new float[INITIAL_CAPACITY];
+
+	/** Accumulated acceleration x components. */
+	private float[] ax = new float[INITIAL_CAPACITY];
+
+	/** Accumulated acceleration y components. */
+	private float[] ay = new float[INITIAL_CAPACITY];
+
+	/** Radius of the agents. */
+	private float[] radius = new float[INITIAL_CAPACITY];
+
+	/** Maximum speed of the agents. */
+	private float[] maxSpeed = new float[INITIAL_CAPACITY];
+
+	/**
+	 * Remove all the agents from the store.
+	 */
+	public final void clear() {
+		for (int slot = 0; slot < size; slot++) {
+			agents[slot].setStoreSlot(-1);
+			agents[slot] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Remove the agents of the slots from a given slot on, keeping the agents
+	 * of the slots before it.
+	 * 
+	 * @param newSize
+	 *            number of slots to keep
+	 */
+	public final void truncate(final int newSize) {
+		for (int slot = newSize; slot < size; slot++) {
+			agents[slot].setStoreSlot(-1);
+			agents[slot] = null;
+		}
+		size = Math.min(size, newSize);
+	}
+
+	/**
+	 * Copy the published state of an agent into the next free slot.
+	 * 
+	 * @param agent
+	 *            the agent
+	 * @return the slot of the agent
+	 */
+	public final int add(final CatpedsimAgent agent) {
+		if (size == agents.length) {
+			grow();
+		}
+
+		int slot = size++;
+		PVector position = agent.getSnapshotPositionVector();
+		PVector velocity = agent.getSnapshotVelocity();
+
+		agents[slot] = agent;
+		x[slot] = position.x;
+		y[slot] = position.y;
+		vx[slot] = velocity.x;
+		vy[slot] = velocity.y;
+		ax[slot] = 0;
+		ay[slot] = 0;
+		radius[slot] = agent.getRadius();
+		maxSpeed[slot] = agent.getMaximumSpeed();
+
+		agent.setStoreSlot(slot);
+
+		return slot;
+	}
+
+	/**
+	 * Double the capacity of all the columns.
+	 */
+	private void grow() {
+		int capacity = agents.length * 2;
+
+		agents = Arrays.copyOf(agents, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		ax = Arrays.copyOf(ax, capacity);
+		ay = Arrays.copyOf(ay, capacity);
+		radius = Arrays.copyOf(radius, capacity);
+		maxSpeed = Arrays.copyOf(maxSpeed, capacity);
+	}
+
+	/**
+	 * Get the number of used slots.
+	 * 
+	 * @return number of agents in the store
+	 */
+	public final int size() {
+		return size;
+	}
+
+	/**
+	 * Get the agent in a slot.
+	 * 
+	 * @param slot
+	 *            the slot
+	 * @return the agent
+	 */
+	public final CatpedsimAgent getAgent(final int slot) {
+		return agents[slot];
+	}
+
+	/**
+	 * Get the position x column.
+	 * 
+	 * @return x coordinates
+	 */
+	public final float[] getX() {
+		return x;
+	}
+
+	/**
+	 * Get the position y column.
+	 * 
+	 * @return y coordinates
+	 */
+	public final float[] getY() {
+		return y;
+	}
+
+	/**
+	 * Get the velocity x column.
+	 * 
+	 * @return velocity x components
+	 */
+	public final float[] getVx() {
+		return vx;
+	}
+
+	/**
+	 * Get the velocity y column.
+	 * 
+	 * @return velocity y components
+	 */
+	public final float[] getVy() {
+		return vy;
+	}
+
+	/**
+	 * Get the acceleration x column.
+	 * 
+	 * @return acceleration x components
+	 */
+	public final float[] getAx() {
+		return ax;
+	}
+
+	/**
+	 * Get the acceleration y column.
+	 * 
+	 * @return acceleration y components
+	 */
+	public final float[] getAy() {
+		return ay;
+	}
+
+	/**
+	 * Get the radius column.
+	 * 
+	 * @return agents radius
+	 */
+	public final float[] getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Get the maximum speed column.
+	 * 
+	 * @return agents maximum speed
+	 */
+	public final float[] getMaxSpeed() {
+		return maxSpeed;
+	}
+}
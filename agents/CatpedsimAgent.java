@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 
@@ -21,6 +22,7 @@ import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.path.XmlVertex;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.logiclayer.CatpedsimManager;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.AStarPathFinder;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.FlowField;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.NodePath;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.socialforcemodel.Forces;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.socialforcemodel.SocialForceParameters;
@@ -83,11 +85,20 @@ public class CatpedsimAgent implements Cloneable {
 	/** Color for agent representation. */
 	private Color colorToRepresent = Color.BLACK;
 
+	/** Default reached the destination distance. [m] */
+	private static final float DEFAULT_REACHED_THE_TARGET_DISTANCE = 2;
+
+	/** Default close to the destination distance. [m] */
+	private static final float DEFAULT_CLOSE_TO_TARGET_DISTANCE = 1;
+
+	/** Default relaxation time. [s] */
+	private static final float DEFAULT_RELAXATION_TIME = 1.0f;
+
 	/** Reached the destination distance. [m] */
-	private float reachedTheTargetDistance = 2;
+	private float reachedTheTargetDistance = DEFAULT_REACHED_THE_TARGET_DISTANCE;
 
 	/** Close to the destination distance. [m] */
-	private float closeToTargetDistance = 1;
+	private float closeToTargetDistance = DEFAULT_CLOSE_TO_TARGET_DISTANCE;
 
 	/**
 	 * Position vector.
@@ -106,6 +117,42 @@ public class CatpedsimAgent implements Cloneable {
 	/** Acceleration vector. */
 	private final PVector acceleration = new PVector(0, 0, 0);
 
+	/** Reusable vector receiving the repulsion of the walls and obstacles. */
+	private final PVector wallsAndObstaclesForce = new PVector(0, 0, 0);
+
+	/** Reusable repulsive force from the other agents. */
+	private final PVector agentsForce = new PVector(0, 0, 0);
+
+	/**
+	 * Repulsive force from the agents of the same type, accumulated by the
+	 * symmetric pass over the pairs of agents.
+	 */
+	private final PVector symmetricPairsForce = new PVector(0, 0, 0);
+
+	/**
+	 * Verlet neighbour lists, one for every type of agent, built by the
+	 * manager.
+	 */
+	private final List<List<CatpedsimAgent>> neighbourLists = new ArrayList<List<CatpedsimAgent>>();
+
+	/** Position of the agent at the last build of its neighbour lists. */
+	private final PVector neighbourListsPosition = new PVector(0, 0, 0);
+
+	/** State published at the end of the last tick. */
+	private final AgentStateBuffer stateBuffer = new AgentStateBuffer();
+
+	/** Slot of the agent in the gather buffer of the tick, -1 if absent. */
+	private int storeSlot = -1;
+
+	/** Slot of the agent in the list of its type, -1 if absent. */
+	private int listSlot = -1;
+
+	/** The list of the agent type holding the agent, null if absent. */
+	private volatile AgentList agentList = null;
+
+	/** Type id of the agent in the agent factory registry. */
+	private int typeId = -1;
+
 	/**
 	 * The vehicle desires to move towards the target at maximum speed. The
 	 * magnitude of the desired velocity vector is always the maximum speed.
@@ -141,11 +188,21 @@ public class CatpedsimAgent implements Cloneable {
 	/** Real time generated path. */
 	private LinkedList<NodePath> astarPath = null;
 
+	/** Flow field towards the exit, used instead of a path when set. */
+	private FlowField flowField = null;
+
 	/** The list of agents the current agent is transporting. */
 	private final LinkedList<StringIdentifier> transportsAgents = new LinkedList<StringIdentifier>();
 
+	/**
+	 * The behaviour the agent starts with. It is owned by the agent and reset
+	 * when the agent is spawned again, unlike the behaviours set from the
+	 * routes, which may be shared.
+	 */
+	private final AgentBehaviour initialBehaviour = new AgentBehaviour(AgentState.STOP_AND_WAIT);
+
 	/** List of agent behaviours in chronological order. */
-	private AgentBehaviour sequenceOfBehaviours = new AgentBehaviour(AgentState.STOP_AND_WAIT);
+	private AgentBehaviour sequenceOfBehaviours = initialBehaviour;
 
 	/** Agent moves towards an exit. */
 	private CatpedsimCrossing agentExit = null;
@@ -157,7 +214,7 @@ public class CatpedsimAgent implements Cloneable {
 	private float currentSpeed = 0;
 
 	/** Agent heading reflects body position. */
-	private Vector2D headingTo = new Vector2D(0, 0);
+	private final Vector2D headingTo = new Vector2D(0, 0);
 
 	/**
 	 * The relaxation time scales the force, determining how fast an agent
@@ -165,7 +222,7 @@ public class CatpedsimAgent implements Cloneable {
 	 * walking slower because of obstacles etc. The relaxation time is a model
 	 * parameter that in principle can vary for each agent.
 	 */
-	private float relaxationTime = 1.0f;
+	private float relaxationTime = DEFAULT_RELAXATION_TIME;
 
 	/** Default wall repulsion parameter. */
 	private final float defaultWallRepulsionRadius = 0.7f;
@@ -215,8 +272,10 @@ public class CatpedsimAgent implements Cloneable {
 		setPublisherId(newPublisherId);
 		setName(newName);
 		setUniqueIdentifier(unewUniqueIdentifier);
+		wanderValue.setSeed(Objects.hashCode(newName));
 		getPositionVector().set(agentPosition3D.x, agentPosition3D.y, agentPosition3D.z);
 		setMaximumSpeed(newMaximumSpeed);
+		publishState();
 	}
 
 	/**
@@ -338,6 +397,26 @@ public class CatpedsimAgent implements Cloneable {
 		this.astarPath = newPathToFollow;
 	}
 
+	/**
+	 * Set the flow field to follow towards the exit. The agent then walks in
+	 * the direction of the flow field instead of following its path.
+	 * 
+	 * @param newFlowField
+	 *            flow field, null to follow the path again
+	 */
+	public final void setFlowField(final FlowField newFlowField) {
+		this.flowField = newFlowField;
+	}
+
+	/**
+	 * Get the flow field the agent follows towards the exit.
+	 * 
+	 * @return flow field, null if the agent follows its path
+	 */
+	public final FlowField getFlowField() {
+		return flowField;
+	}
+
 	/**
 	 * Set a sequence of pre-defined behaviours.
 	 * 
@@ -354,6 +433,19 @@ public class CatpedsimAgent implements Cloneable {
 				setVectorToAgentsTarget(exitVector);
 			}
 		}
+		stateChanged();
+	}
+
+	/**
+	 * Ask the list holding the agent to check at the next tick whether the
+	 * agent started or stopped being dormant.
+	 */
+	private void stateChanged() {
+		AgentList list = agentList;
+
+		if (list != null) {
+			list.requestDormancyCheck(this);
+		}
 	}
 
 	/**
@@ -458,6 +550,19 @@ public class CatpedsimAgent implements Cloneable {
 		acceleration.add(force);
 	}
 
+	/**
+	 * Applying Newton's second law, without allocating a force vector.
+	 *
+	 * @param forceX
+	 *            the x component of the social force
+	 * @param forceY
+	 *            the y component of the social force
+	 */
+	public final void applyForce(final float forceX, final float forceY) {
+		acceleration.x += forceX;
+		acceleration.y += forceY;
+	}
+
 	/**
 	 * Check wall avoidance. If the pressure of the repuslive force generated by
 	 * other agents is pushing the current agent to go though a wall, stop the
@@ -545,24 +650,15 @@ public class CatpedsimAgent implements Cloneable {
 	 *         agent is in the danger of collision
 	 */
 	private boolean avoidWalls(final CatpedsimGeometry geometry, final PVector nextStepVectorToPosition) {
-		boolean avoided = true;
-
-		for (CatpedsimObstacle wall : geometry.getWalls()) {
-			for (int indexSection = 0; indexSection < wall.getObstacleSections().length; indexSection++) {
-				ShapeSection wallSection = wall.getObstacleSections()[indexSection];
-
-				try {
-					if (Trigonometry.checkIfLinesIntersect(positionVector, nextStepVectorToPosition,
-							wallSection.getVectorToStartPoint(), wallSection.getVectorToEndPoint())) {
-						return false;
-					}
-				} catch (Exception ex) {
-					LOGGER.warn("Error occured while checking an agent does not cross a wall.", ex);
-				}
+		try {
+			if (geometry.checkIfSegmentCrossesWalls(positionVector, nextStepVectorToPosition)) {
+				return false;
 			}
+		} catch (Exception ex) {
+			LOGGER.warn("Error occured while checking an agent does not cross a wall.", ex);
 		}
 
-		return avoided;
+		return true;
 	}
 
 	/**
@@ -576,24 +672,15 @@ public class CatpedsimAgent implements Cloneable {
 	 *         agent is in the danger of collision
 	 */
 	private boolean avoidObstacles(final CatpedsimGeometry geometry, final PVector nextStepVectorToPosition) {
-		boolean avoided = true;
-
-		for (CatpedsimObstacle obstacle : geometry.getObstacles()) {
-			for (int indexSection = 0; indexSection < obstacle.getObstacleSections().length; indexSection++) {
-				ShapeSection obstacleSection = obstacle.getObstacleSections()[indexSection];
-
-				try {
-					if (Trigonometry.checkIfLinesIntersect(positionVector, nextStepVectorToPosition,
-							obstacleSection.getVectorToStartPoint(), obstacleSection.getVectorToEndPoint())) {
-						return false;
-					}
-				} catch (Exception ex) {
-					LOGGER.warn("Error occured while checking the agent does not cross an obstacle.", ex);
-				}
+		try {
+			if (geometry.checkIfSegmentCrossesObstacles(positionVector, nextStepVectorToPosition)) {
+				return false;
 			}
+		} catch (Exception ex) {
+			LOGGER.warn("Error occured while checking the agent does not cross an obstacle.", ex);
 		}
 
-		return avoided;
+		return true;
 	}
 
 	/**
@@ -780,6 +867,12 @@ public class CatpedsimAgent implements Cloneable {
 			} else {
 				return true;
 			}
+		} else if (!Objects.isNull(flowField)) {
+			PVector flowDirection = flowField.getDirection(positionVector);
+
+			if (flowDirection != null) {
+				intermediateTargetVector = PVector.add(positionVector, flowDirection);
+			}
 		} else if (!Objects.isNull(astarPath) && !astarPath.isEmpty()) {
 			if (PVector.dist(positionVector,
 					new PVector(astarPath.getLast().getX(), astarPath.getLast().getY())) <= 1) {
@@ -861,11 +954,79 @@ public class CatpedsimAgent implements Cloneable {
 	 */
 	public final void computeRepulsiveForcesBetweenAgents(final List<CatpedsimAgent> agents,
 			final SocialForceParameters socialForceParameters) throws Exception {
+		computeRepulsiveForcesBetweenAgents(agents, socialForceParameters, false);
+	}
+
+	/**
+	 * Compute the repulsive social force acting between agents, either with
+	 * the reference kernel or with the allocation free one.
+	 * 
+	 * @param agents
+	 *            the list of agents
+	 * @param socialForceParameters
+	 *            the particular social force model acting on agent-agents
+	 * @param allocationFree
+	 *            true to accumulate the force on raw coordinates, without
+	 *            allocating
+	 * @throws Exception
+	 *             on error
+	 */
+	public final void computeRepulsiveForcesBetweenAgents(final List<CatpedsimAgent> agents,
+			final SocialForceParameters socialForceParameters, final boolean allocationFree) throws Exception {
+		if (allocationFree) {
+			agentsForce.set(0, 0, 0);
+			Forces.accumulateAgentToAgentsRepulsion(this, agents, socialForceParameters, agentsForce);
+			applyForce(agentsForce);
+			return;
+		}
+
 		PVector finalForce = new PVector(0, 0, 0);
 		finalForce.add(Forces.computeAgentToAgentsRepulsion(this, agents, socialForceParameters));
 		applyForce(finalForce);
 	}
 
+	/**
+	 * Get the repulsive force accumulated by the symmetric pass over the pairs
+	 * of agents.
+	 * 
+	 * @return the accumulated force, owned by the agent
+	 */
+	public final PVector getSymmetricPairsForce() {
+		return symmetricPairsForce;
+	}
+
+	/**
+	 * Apply the repulsive force accumulated by the symmetric pass over the
+	 * pairs of agents.
+	 */
+	public final void applySymmetricPairsForce() {
+		applyForce(symmetricPairsForce);
+	}
+
+	/**
+	 * Get the Verlet neighbour list of the agent for a type of agent.
+	 * 
+	 * @param typeId
+	 *            the type id of the neighbours
+	 * @return the neighbour list, owned by the agent
+	 */
+	public final List<CatpedsimAgent> getNeighbourList(final int typeId) {
+		while (neighbourLists.size() <= typeId) {
+			neighbourLists.add(new ArrayList<CatpedsimAgent>());
+		}
+
+		return neighbourLists.get(typeId);
+	}
+
+	/**
+	 * Get the position of the agent at the last build of its neighbour lists.
+	 * 
+	 * @return the position, owned by the agent
+	 */
+	public final PVector getNeighbourListsPosition() {
+		return neighbourListsPosition;
+	}
+
 	/**
 	 * Compute the repulsive forces between the current agent and
 	 * walls/obstacles.
@@ -874,9 +1035,9 @@ public class CatpedsimAgent implements Cloneable {
 	 *            the world geometry
 	 */
 	public final void computeRepulsiveForcesBetweenAgentAndWallsObstacles(final CatpedsimGeometry geometry) {
-		PVector finalForce = new PVector(0, 0, 0);
-		finalForce.add(Forces.computeWallsAndObstaclesRepulsion(this, geometry.getWalls(), geometry.getObstacles()));
-		applyForce(finalForce);
+		wallsAndObstaclesForce.set(0, 0, 0);
+		Forces.accumulateWallsAndObstaclesRepulsion(this, geometry, wallsAndObstaclesForce);
+		applyForce(wallsAndObstaclesForce);
 	}
 
 	/**
@@ -964,6 +1125,194 @@ public class CatpedsimAgent implements Cloneable {
 		positionVector.set(newPositionVector);
 	}
 
+	/**
+	 * Publish the current position, velocity, speed and heading. The other
+	 * agents and the readers outside the simulation thread see them from now
+	 * on.
+	 */
+	public final void publishState() {
+		AgentList list = agentList;
+
+		if (list != null && list.isDormant(this)) {
+			PVector publishedPosition = stateBuffer.getPosition();
+
+			if (publishedPosition.x != positionVector.x || publishedPosition.y != positionVector.y) {
+				list.dormantAgentMoved();
+			}
+		}
+
+		stateBuffer.publish(positionVector, velocity, currentSpeed, headingTo);
+	}
+
+	/**
+	 * Copies the state published at the end of the last tick into a holder of
+	 * the reader. The readers outside the simulation copy it once per agent,
+	 * so all the values they read belong to the same tick.
+	 * 
+	 * @param state
+	 *            the holder receiving the published state
+	 */
+	public final void readPublishedState(final AgentStateSnapshot state) {
+		stateBuffer.read(state);
+	}
+
+	/**
+	 * Gets the position published at the end of the last tick. The vector must
+	 * not be modified.
+	 * 
+	 * @return published position vector
+	 */
+	public final PVector getSnapshotPositionVector() {
+		return stateBuffer.getPosition();
+	}
+
+	/**
+	 * Gets the velocity published at the end of the last tick. The vector must
+	 * not be modified.
+	 * 
+	 * @return published velocity
+	 */
+	public final PVector getSnapshotVelocity() {
+		return stateBuffer.getVelocity();
+	}
+
+	/**
+	 * Gets the slot of the agent in the structure of arrays gather buffer of
+	 * the current tick.
+	 * 
+	 * @return the slot, -1 if the agent is not in the buffer
+	 */
+	public final int getStoreSlot() {
+		return storeSlot;
+	}
+
+	/**
+	 * Sets the slot of the agent in the structure of arrays gather buffer of
+	 * the current tick.
+	 * 
+	 * @param newStoreSlot
+	 *            the slot, -1 if the agent is not in the buffer
+	 */
+	public final void setStoreSlot(final int newStoreSlot) {
+		storeSlot = newStoreSlot;
+	}
+
+	/**
+	 * Gets the slot of the agent in the list of its type.
+	 * 
+	 * @return the slot, -1 if the agent is not in a list
+	 */
+	public final int getListSlot() {
+		return listSlot;
+	}
+
+	/**
+	 * Sets the slot of the agent in the list of its type.
+	 * 
+	 * @param newListSlot
+	 *            the slot, -1 if the agent is not in a list
+	 */
+	final void setListSlot(final int newListSlot) {
+		listSlot = newListSlot;
+	}
+
+	/**
+	 * Sets the list of the agent type holding the agent.
+	 * 
+	 * @param newAgentList
+	 *            the list, null if the agent is not in a list
+	 */
+	final void setAgentList(final AgentList newAgentList) {
+		agentList = newAgentList;
+	}
+
+	/**
+	 * Gets the type id of the agent, which indexes the tables built per agent
+	 * type.
+	 * 
+	 * @return the type id, -1 if the agent was not added to a simulation
+	 */
+	public final int getTypeId() {
+		return typeId;
+	}
+
+	/**
+	 * Sets the type id of the agent.
+	 * 
+	 * @param newTypeId
+	 *            the type id in the agent factory registry
+	 */
+	public final void setTypeId(final int newTypeId) {
+		typeId = newTypeId;
+	}
+
+	/**
+	 * Release the references of an agent which left the simulation, so a
+	 * pooled agent does not keep its path, flow field or destination alive
+	 * until it is spawned again.
+	 */
+	final void recycle() {
+		astarPath = null;
+		flowField = null;
+		targetVector = null;
+		intermediateTargetVector = null;
+		agentExit = null;
+		transitionZone = null;
+		transportsAgents.clear();
+
+		for (List<CatpedsimAgent> neighbourList : neighbourLists) {
+			neighbourList.clear();
+		}
+	}
+
+	/**
+	 * Spawn a recycled agent again. The agent gets the state of a new agent
+	 * built with the same arguments, the subclasses apply the constraints of
+	 * their type again.
+	 * 
+	 * @param newPublisherId
+	 *            publisher id
+	 * @param newName
+	 *            name of the agent
+	 * @param newUniqueIdentifier
+	 *            unique agent identifier
+	 * @param agentPosition3D
+	 *            agent x coordinate, agent y coordinate, agent z coordinate in
+	 *            floating point precision
+	 * @param newMaximumSpeed
+	 *            maximum speed
+	 */
+	public void respawn(final String newPublisherId, final String newName,
+			final StringIdentifier newUniqueIdentifier, final Vec3f agentPosition3D, final float newMaximumSpeed) {
+		recycle();
+
+		colorToRepresent = Color.BLACK;
+		reachedTheTargetDistance = DEFAULT_REACHED_THE_TARGET_DISTANCE;
+		closeToTargetDistance = DEFAULT_CLOSE_TO_TARGET_DISTANCE;
+		velocity.set(0, 0, 0);
+		acceleration.set(0, 0, 0);
+		maxForce = 0;
+		radius = 0;
+		initialBehaviour.reset(AgentState.STOP_AND_WAIT);
+		sequenceOfBehaviours = initialBehaviour;
+		stateChanged();
+		currentSpeed = 0;
+		headingTo.set(0, 0);
+		relaxationTime = DEFAULT_RELAXATION_TIME;
+		wallRepulsionRadius = defaultWallRepulsionRadius;
+		wallRepulsionMagnitude = defaultWallRepulsionMagnitude;
+		maximumSteeringAngle = 0;
+
+		setPublisherId(newPublisherId);
+		setName(newName);
+		setUniqueIdentifier(newUniqueIdentifier);
+		wanderValue.reset();
+		wanderValue.setSeed(Objects.hashCode(newName));
+		getPositionVector().set(agentPosition3D.x, agentPosition3D.y, agentPosition3D.z);
+		setMaximumSpeed(newMaximumSpeed);
+		publishState();
+	}
+
 	/**
 	 * Gets the agent's velocity.
 	 * 
@@ -1036,7 +1385,8 @@ public class CatpedsimAgent implements Cloneable {
 	 * @return vector to random target
 	 */
 	public final PVector createRandomTarget() {
-		float wandertheta = Utils.random(-wanderValue.getChangeDirection(), wanderValue.getChangeDirection());
+		float wandertheta = Utils.random(wanderValue.getRandom(), -wanderValue.getChangeDirection(),
+				wanderValue.getChangeDirection());
 
 		PVector circleloc = getVelocity().copy();
 		circleloc.normalize();
@@ -1084,7 +1434,7 @@ public class CatpedsimAgent implements Cloneable {
 	 *            current heading
 	 */
 	public final void setCurrentHeading(final Vector2D currentHeading) {
-		headingTo = currentHeading;
+		headingTo.set(currentHeading.getX(), currentHeading.getY());
 		velocity.set((float) currentHeading.getX(), (float) currentHeading.getY(), 0);
 	}
 
@@ -1096,7 +1446,7 @@ public class CatpedsimAgent implements Cloneable {
 			try {
 				PVector unitVelocity = velocity.copy();
 				unitVelocity.normalize();
-				headingTo = new Vector2D(unitVelocity.x, unitVelocity.y);
+				headingTo.set(unitVelocity.x, unitVelocity.y);
 			} catch (Exception ex) {
 				LOGGER.warn("Error occured while calculating the agent's heading.", ex);
 			}
@@ -1275,6 +1625,41 @@ public class CatpedsimAgent implements Cloneable {
 		/** Change heading direction. */
 		private float changeDirection = VisualConstants.CHANGE_DIRECTION_ANGLE_RADIANS;
 
+		/**
+		 * Random stream of the agent, seeded from its name. The agent only
+		 * draws from it while its own forces are computed, so the draws do not
+		 * depend on the number of threads or on their scheduling.
+		 */
+		private final Random random = new Random(0);
+
+		/**
+		 * Restore the wander parameters of a new agent.
+		 */
+		public void reset() {
+			wanderRadius = 2.0f;
+			wanderDistanceFromCurrentLocation = 2.0f;
+			changeDirection = VisualConstants.CHANGE_DIRECTION_ANGLE_RADIANS;
+		}
+
+		/**
+		 * Seed the random stream of the agent.
+		 * 
+		 * @param seed
+		 *            the seed
+		 */
+		public void setSeed(final long seed) {
+			random.setSeed(seed);
+		}
+
+		/**
+		 * Get the random stream of the agent.
+		 * 
+		 * @return the random stream
+		 */
+		public Random getRandom() {
+			return random;
+		}
+
 		/**
 		 * Get wander radius.
 		 * 
@@ -1291,7 +1676,7 @@ public class CatpedsimAgent implements Cloneable {
 		 */
 		@SuppressWarnings("unused")
 		public final PVector wander() {
-			float wandertheta = Utils.random(-1f, 1f);
+			float wandertheta = Utils.random(random, -1f, 1f);
 
 			PVector circleloc = getVelocity().copy();
 			circleloc.normalize();
@@ -1356,6 +1741,18 @@ public class CatpedsimAgent implements Cloneable {
 
 	}
 
+	/**
+	 * Checks if the agent is dormant: stopped or not active. A dormant agent
+	 * does not move by itself, the lists keep the dormant agents apart from
+	 * the moving ones. The state of an agent must be changed through its
+	 * setters for the list to notice it.
+	 * 
+	 * @return true if the agent is stopped or not active
+	 */
+	public final boolean isDormantState() {
+		return isStopped() || isNotActive();
+	}
+
 	/**
 	 * Checks if the agent is stopped.
 	 * 
@@ -1382,6 +1779,7 @@ public class CatpedsimAgent implements Cloneable {
 		if (sequenceOfBehaviours != null) {
 			sequenceOfBehaviours.clear();
 		}
+		stateChanged();
 	}
 
 	/**
@@ -1589,6 +1987,7 @@ public class CatpedsimAgent implements Cloneable {
 		if (sequenceOfBehaviours != null) {
 			sequenceOfBehaviours.setCurrentState(newState);
 		}
+		stateChanged();
 	}
 
 	/**
@@ -1611,11 +2010,16 @@ public class CatpedsimAgent implements Cloneable {
 		newAgent.setMaximumSteeringAngle(maximumSteeringAngle);
 		newAgent.setName(name);
 		newAgent.setPathToFollow(astarPath);
+		newAgent.setFlowField(flowField);
 		newAgent.setPositionVector(positionVector);
 		newAgent.setPublisherId(publisherId);
 		newAgent.setRadius(radius);
 		newAgent.setRelaxationTime(relaxationTime);
-		newAgent.setSequenceOfBehaviours(sequenceOfBehaviours);
+		if (sequenceOfBehaviours == initialBehaviour) {
+			newAgent.setSequenceOfBehaviours(initialBehaviour.getCopy());
+		} else {
+			newAgent.setSequenceOfBehaviours(sequenceOfBehaviours);
+		}
 		newAgent.setTransitionZone(transitionZone);
 		newAgent.setVectorToAgentsTarget(targetVector);
 		newAgent.setVelocity(velocity);
@@ -1623,6 +2027,7 @@ public class CatpedsimAgent implements Cloneable {
 
 		newAgent.setUniqueIdentifier(new StringIdentifier(CatpedsimManager.generateUniqueName(
 				CatpedsimAgent.class.getSimpleName(), getPublisherId(), System.currentTimeMillis())));
+		newAgent.publishState();
 		return newAgent;
 	}
 }
\ No newline at end of file
@@ -62,6 +62,21 @@ public class CatpedsimBicycle extends CatpedsimAgent {
 			final StringIdentifier unewUniqueIdentifier, final Vec3f agentPosition3D, final float newMaximumSpeed) {
 		super(newPublisherId, newName, unewUniqueIdentifier, agentPosition3D, newMaximumSpeed);
 
+		setTypeConstraints();
+	}
+
+	@Override
+	public final void respawn(final String newPublisherId, final String newName,
+			final StringIdentifier unewUniqueIdentifier, final Vec3f agentPosition3D, final float newMaximumSpeed) {
+		super.respawn(newPublisherId, newName, unewUniqueIdentifier, agentPosition3D, newMaximumSpeed);
+		setTypeConstraints();
+	}
+
+	/**
+	 * Set the radius, the relaxation time, the wall repulsion, the maximum
+	 * force and the maximum steering angle of the type.
+	 */
+	private void setTypeConstraints() {
 		setRadius(BicycleConstraints.RADIUS);
 		setRelaxationTime(BicycleConstraints.RELAXATION_TIME);
 		setWallRepulsionRadius(BicycleConstraints.WALL_REPULSION_RADIUS);
@@ -63,6 +63,21 @@ public class CatpedsimPedestrian extends CatpedsimAgent {
 			final StringIdentifier unewUniqueIdentifier, final Vec3f agentPosition3D, final float newMaximumSpeed) {
 		super(newPublisherId, newName, unewUniqueIdentifier, agentPosition3D, newMaximumSpeed);
 
+		setTypeConstraints();
+	}
+
+	@Override
+	public final void respawn(final String newPublisherId, final String newName,
+			final StringIdentifier unewUniqueIdentifier, final Vec3f agentPosition3D, final float newMaximumSpeed) {
+		super.respawn(newPublisherId, newName, unewUniqueIdentifier, agentPosition3D, newMaximumSpeed);
+		setTypeConstraints();
+	}
+
+	/**
+	 * Set the radius, the relaxation time, the wall repulsion and the maximum
+	 * force of the type.
+	 */
+	private void setTypeConstraints() {
 		setRadius(PedestrianConstraints.RADIUS);
 		setRelaxationTime(PedestrianConstraints.RELAXATION_TIME);
 		setWallRepulsionRadius(PedestrianConstraints.WALL_REPULSION_RADIUS);
@@ -54,6 +54,21 @@ public class CatpedsimVehicle extends CatpedsimAgent {
 			final Vec3f vec3f, final float maximumSpeed) {
 		super(publisherId, vehicleName, uniqueIdentifier, vec3f, maximumSpeed);
 
+		setTypeConstraints();
+	}
+
+	@Override
+	public final void respawn(final String publisherId, final String vehicleName,
+			final StringIdentifier uniqueIdentifier, final Vec3f vec3f, final float maximumSpeed) {
+		super.respawn(publisherId, vehicleName, uniqueIdentifier, vec3f, maximumSpeed);
+		setTypeConstraints();
+	}
+
+	/**
+	 * Set the radius, the relaxation time, the wall repulsion, the maximum
+	 * force and the maximum steering angle of the type.
+	 */
+	private void setTypeConstraints() {
 		setRadius(AutonomousVehicleConstraints.RADIUS);
 		setRelaxationTime(AutonomousVehicleConstraints.RELAXATION_TIME);
 		setWallRepulsionRadius(AutonomousVehicleConstraints.WALL_REPULSION_RADIUS);
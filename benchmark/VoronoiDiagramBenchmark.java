@@ -0,0 +1,268 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi.GraphEdge;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi.Vertex;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi.Voronoi;
+import uk.org.catapult.ts.cav.utils.UtilityLogger;
+
+/**
+ * Check of the pooled Voronoi diagrams. On seeded random sites, a single
+ * {@link Voronoi} reused for diagrams of growing and shrinking sizes, as the
+ * density service uses it, must give through
+ * {@link Voronoi#computeVoronoiDiagram(double[], double[], int)} and
+ * {@link Voronoi#computeVoronoiDiagram(Vertex[], int)} the same edges, in the same
+ * order and to the last bit, as
+ * {@link Voronoi#generateVoronoiDiagram(Vertex[])} on a new instance, and after a
+ * warm-up a diagram must not allocate on the calling thread. Run it with the
+ * classpath of the simulator; it throws an IllegalStateException if a check
+ * fails.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public final class VoronoiDiagramBenchmark {
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = UtilityLogger.getLogger(VoronoiDiagramBenchmark.class);
+
+	/** Seed of the random sites. */
+	private static final long SEED = 7;
+
+	/** Sites closer than this distance are considered a single site. */
+	private static final double MINIMUM_SITE_DISTANCE = 1e-3;
+
+	/** Number of diagrams compared. */
+	private static final int NUMBER_OF_DIAGRAMS = 300;
+
+	/** Maximum number of sites of a diagram. */
+	private static final int MAXIMUM_NUMBER_OF_SITES = 2000;
+
+	/** Size of the area of the sites, in meters. */
+	private static final double AREA_SIZE = 60;
+
+	/** Number of diagrams computed before measuring. */
+	private static final int WARM_UP_DIAGRAMS = 200;
+
+	/** Number of measured diagrams. */
+	private static final int MEASURED_DIAGRAMS = 200;
+
+	/**
+	 * Private constructor for utility classes.
+	 */
+	private VoronoiDiagramBenchmark() {
+
+	}
+
+	/**
+	 * Compare the diagrams and measure their allocation.
+	 * 
+	 * @param args
+	 *            not used
+	 */
+	public static void main(final String[] args) {
+		Random random = new Random(SEED);
+
+		compareDiagrams(random);
+		measureAllocation(random);
+	}
+
+	/**
+	 * Compare the edges of the pooled diagrams with the edges of the diagrams
+	 * of new instances. Every third diagram has its sites on a metre grid, so
+	 * that some sites are cocircular, aligned or the same.
+	 * 
+	 * @param random
+	 *            the random generator
+	 */
+	private static void compareDiagrams(final Random random) {
+		Voronoi pooledVoronoi = new Voronoi(MINIMUM_SITE_DISTANCE);
+		double[] xCoordinates = new double[MAXIMUM_NUMBER_OF_SITES];
+		double[] yCoordinates = new double[MAXIMUM_NUMBER_OF_SITES];
+		Vertex[] sites = new Vertex[MAXIMUM_NUMBER_OF_SITES];
+		long numberOfEdges = 0;
+
+		for (int indexDiagram = 0; indexDiagram < NUMBER_OF_DIAGRAMS; indexDiagram++) {
+			int numberOfSites = random.nextInt(MAXIMUM_NUMBER_OF_SITES + 1);
+			fillSites(random, indexDiagram % 3 == 0, xCoordinates, yCoordinates, numberOfSites);
+
+			Vertex[] exactSites = new Vertex[numberOfSites];
+			for (int indexSite = 0; indexSite < numberOfSites; indexSite++) {
+				exactSites[indexSite] = new Vertex(xCoordinates[indexSite], yCoordinates[indexSite]);
+				sites[indexSite] = exactSites[indexSite];
+			}
+
+			List<GraphEdge> expectedEdges = new Voronoi(MINIMUM_SITE_DISTANCE).generateVoronoiDiagram(exactSites);
+
+			pooledVoronoi.computeVoronoiDiagram(xCoordinates, yCoordinates, numberOfSites);
+			compareEdges(expectedEdges, pooledVoronoi, "coordinates", indexDiagram);
+
+			pooledVoronoi.computeVoronoiDiagram(sites, numberOfSites);
+			compareEdges(expectedEdges, pooledVoronoi, "vertices", indexDiagram);
+
+			numberOfEdges += expectedEdges.size();
+		}
+
+		LOGGER.info("Same edges in " + NUMBER_OF_DIAGRAMS + " diagrams, " + numberOfEdges + " edges.");
+	}
+
+	/**
+	 * Compare the edges left by the last diagram of a Voronoi instance with
+	 * the expected edges.
+	 * 
+	 * @param expectedEdges
+	 *            the expected edges
+	 * @param voronoi
+	 *            the Voronoi instance
+	 * @param overload
+	 *            the overload which computed the diagram, for the message
+	 * @param indexDiagram
+	 *            the index of the diagram, for the message
+	 */
+	private static void compareEdges(final List<GraphEdge> expectedEdges, final Voronoi voronoi,
+			final String overload, final int indexDiagram) {
+		if (voronoi.getNumberOfGraphEdges() != expectedEdges.size()) {
+			throw new IllegalStateException("Diagram " + indexDiagram + " from " + overload + " has "
+					+ voronoi.getNumberOfGraphEdges() + " edges instead of " + expectedEdges.size());
+		}
+
+		for (int indexEdge = 0; indexEdge < expectedEdges.size(); indexEdge++) {
+			GraphEdge edge = expectedEdges.get(indexEdge);
+
+			if (!sameValue(edge.getxCoordinate1(), voronoi.getGraphEdgesX1()[indexEdge])
+					|| !sameValue(edge.getyCoordinate1(), voronoi.getGraphEdgesY1()[indexEdge])
+					|| !sameValue(edge.getxCoordinate2(), voronoi.getGraphEdgesX2()[indexEdge])
+					|| !sameValue(edge.getyCoordinate2(), voronoi.getGraphEdgesY2()[indexEdge])
+					|| edge.getSiteIndexLeftOfEdge() != voronoi.getGraphEdgesLeftSites()[indexEdge]
+					|| edge.getSiteIndexRightOfEdge() != voronoi.getGraphEdgesRightSites()[indexEdge]) {
+				throw new IllegalStateException(
+						"Diagram " + indexDiagram + " from " + overload + " has a different edge " + indexEdge);
+			}
+		}
+	}
+
+	/**
+	 * Measure the bytes allocated per diagram by the pooled and the list
+	 * returning computations, on the calling thread, after a warm-up.
+	 * 
+	 * @param random
+	 *            the random generator
+	 */
+	private static void measureAllocation(final Random random) {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			LOGGER.warn("The allocated memory of the threads cannot be measured.");
+			return;
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		double[] xCoordinates = new double[MAXIMUM_NUMBER_OF_SITES];
+		double[] yCoordinates = new double[MAXIMUM_NUMBER_OF_SITES];
+		fillSites(random, false, xCoordinates, yCoordinates, MAXIMUM_NUMBER_OF_SITES);
+
+		Vertex[] sites = new Vertex[MAXIMUM_NUMBER_OF_SITES];
+		for (int indexSite = 0; indexSite < sites.length; indexSite++) {
+			sites[indexSite] = new Vertex(xCoordinates[indexSite], yCoordinates[indexSite]);
+		}
+
+		Voronoi voronoi = new Voronoi(MINIMUM_SITE_DISTANCE);
+		for (int indexDiagram = 0; indexDiagram < WARM_UP_DIAGRAMS; indexDiagram++) {
+			voronoi.computeVoronoiDiagram(xCoordinates, yCoordinates, MAXIMUM_NUMBER_OF_SITES);
+			voronoi.generateVoronoiDiagram(sites);
+		}
+
+		long threadId = Thread.currentThread().getId();
+
+		long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+		for (int indexDiagram = 0; indexDiagram < MEASURED_DIAGRAMS; indexDiagram++) {
+			voronoi.generateVoronoiDiagram(sites);
+		}
+		long listBytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+		for (int indexDiagram = 0; indexDiagram < MEASURED_DIAGRAMS; indexDiagram++) {
+			voronoi.computeVoronoiDiagram(xCoordinates, yCoordinates, MAXIMUM_NUMBER_OF_SITES);
+		}
+		long pooledBytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		LOGGER.info("Bytes allocated per diagram of " + MAXIMUM_NUMBER_OF_SITES + " sites: "
+				+ (double) listBytes / MEASURED_DIAGRAMS + " as a list, " + (double) pooledBytes / MEASURED_DIAGRAMS
+				+ " pooled.");
+
+		if (pooledBytes >= MEASURED_DIAGRAMS) {
+			throw new IllegalStateException(
+					"The pooled diagrams allocated " + pooledBytes + " bytes in " + MEASURED_DIAGRAMS + " diagrams.");
+		}
+	}
+
+	/**
+	 * Fill the coordinates of random sites.
+	 * 
+	 * @param random
+	 *            the random generator
+	 * @param onGrid
+	 *            true to put the sites on a metre grid
+	 * @param xCoordinates
+	 *            receives the X coordinates
+	 * @param yCoordinates
+	 *            receives the Y coordinates
+	 * @param numberOfSites
+	 *            the number of sites
+	 */
+	private static void fillSites(final Random random, final boolean onGrid, final double[] xCoordinates,
+			final double[] yCoordinates, final int numberOfSites) {
+		for (int indexSite = 0; indexSite < numberOfSites; indexSite++) {
+			xCoordinates[indexSite] = random.nextDouble() * AREA_SIZE;
+			yCoordinates[indexSite] = random.nextDouble() * AREA_SIZE;
+
+			if (onGrid) {
+				xCoordinates[indexSite] = Math.round(xCoordinates[indexSite]);
+				yCoordinates[indexSite] = Math.round(yCoordinates[indexSite]);
+			}
+		}
+	}
+
+	/**
+	 * Check if two values are the same to the last bit.
+	 * 
+	 * @param first
+	 *            the first value
+	 * @param second
+	 *            the second value
+	 * @return true if the values are the same
+	 */
+	private static boolean sameValue(final double first, final double second) {
+		return Double.doubleToLongBits(first) == Double.doubleToLongBits(second);
+	}
+}
@@ -0,0 +1,305 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+import com.sun.javafx.geom.Vec3f;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimPedestrian;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimGeometry;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimObstacle;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.socialforcemodel.Forces;
+import uk.org.catapult.ts.cav.model.identifier.StringIdentifier;
+import uk.org.catapult.ts.cav.utils.UtilityLogger;
+
+/**
+ * Check of the allocation free walls and obstacles repulsion against the
+ * allocating one. On seeded random geometries, the force accumulated by
+ * {@link Forces#accumulateWallsAndObstaclesRepulsion} must be the same, to the
+ * last bit, as the force computed by
+ * {@link Forces#computeWallsAndObstaclesRepulsion(CatpedsimAgent, CatpedsimGeometry)},
+ * and after a warm-up the accumulation must not allocate on the calling thread.
+ * Run it with the classpath of the simulator; it throws an
+ * IllegalStateException if a check fails.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public final class WallsRepulsionBenchmark {
+	/**
+	 * Logger.
+	 */
+	private static final Logger LOGGER = UtilityLogger.getLogger(WallsRepulsionBenchmark.class);
+
+	/** Seed of the random geometries and positions. */
+	private static final long SEED = 42;
+
+	/** Number of geometries compared. */
+	private static final int NUMBER_OF_GEOMETRIES = 100;
+
+	/** Number of positions compared in every geometry. */
+	private static final int POSITIONS_PER_GEOMETRY = 500;
+
+	/** Maximum number of walls or obstacles of a geometry. */
+	private static final int MAXIMUM_NUMBER_OF_SHAPES = 15;
+
+	/** Maximum number of sections of a wall or an obstacle. */
+	private static final int MAXIMUM_NUMBER_OF_SECTIONS = 6;
+
+	/** Size of the area of the shapes, in meters. */
+	private static final float AREA_SIZE = 50;
+
+	/** Maximum length of a section along each axis, in meters. */
+	private static final float SECTION_SIZE = 6;
+
+	/** Number of rounds over the positions before measuring. */
+	private static final int WARM_UP_ROUNDS = 50;
+
+	/** Number of measured rounds over the positions. */
+	private static final int MEASURED_ROUNDS = 100;
+
+	/**
+	 * Private constructor for utility classes.
+	 */
+	private WallsRepulsionBenchmark() {
+
+	}
+
+	/**
+	 * Compare the two computations and measure their allocation.
+	 * 
+	 * @param args
+	 *            not used
+	 */
+	public static void main(final String[] args) {
+		Random random = new Random(SEED);
+		CatpedsimAgent agent = new CatpedsimPedestrian("benchmark", "benchmark", new StringIdentifier("benchmark"),
+				new Vec3f(0, 0, 0), 1);
+
+		compareForces(random, agent);
+		measureAllocation(random, agent);
+	}
+
+	/**
+	 * Compare the forces of the two computations on random geometries, with
+	 * the shapes on a metre grid every other geometry so that end points are
+	 * shared and positions fall on the sections.
+	 * 
+	 * @param random
+	 *            the random generator
+	 * @param agent
+	 *            the agent moved to the compared positions
+	 */
+	private static void compareForces(final Random random, final CatpedsimAgent agent) {
+		PVector position = new PVector(0, 0, 0);
+		PVector accumulatedForce = new PVector(0, 0, 0);
+		int numberOfNonZeroForces = 0;
+
+		for (int indexGeometry = 0; indexGeometry < NUMBER_OF_GEOMETRIES; indexGeometry++) {
+			boolean onGrid = indexGeometry % 2 == 0;
+			CatpedsimGeometry geometry = buildGeometry(random, onGrid);
+
+			for (int indexPosition = 0; indexPosition < POSITIONS_PER_GEOMETRY; indexPosition++) {
+				position.set(randomCoordinate(random, onGrid), randomCoordinate(random, onGrid), 0);
+				agent.setPositionVector(position);
+
+				PVector computedForce = Forces.computeWallsAndObstaclesRepulsion(agent, geometry);
+				accumulatedForce.set(0, 0, 0);
+				Forces.accumulateWallsAndObstaclesRepulsion(agent, geometry, accumulatedForce);
+
+				if (Float.floatToIntBits(computedForce.x) != Float.floatToIntBits(accumulatedForce.x)
+						|| Float.floatToIntBits(computedForce.y) != Float.floatToIntBits(accumulatedForce.y)
+						|| Float.floatToIntBits(computedForce.z) != Float.floatToIntBits(accumulatedForce.z)) {
+					throw new IllegalStateException("Different forces at " + position + " in geometry "
+							+ indexGeometry + ": " + computedForce + " and " + accumulatedForce);
+				}
+
+				if (computedForce.x != 0 || computedForce.y != 0) {
+					numberOfNonZeroForces++;
+				}
+			}
+		}
+
+		LOGGER.info("Same forces at " + NUMBER_OF_GEOMETRIES * POSITIONS_PER_GEOMETRY + " positions, "
+				+ numberOfNonZeroForces + " of them not zero.");
+	}
+
+	/**
+	 * Measure the bytes allocated by the two computations per call, on the
+	 * calling thread, after a warm-up.
+	 * 
+	 * @param random
+	 *            the random generator
+	 * @param agent
+	 *            the agent moved to the measured positions
+	 */
+	private static void measureAllocation(final Random random, final CatpedsimAgent agent) {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			LOGGER.warn("The allocated memory of the threads cannot be measured.");
+			return;
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		CatpedsimGeometry geometry = buildGeometry(random, true);
+		PVector[] positions = new PVector[POSITIONS_PER_GEOMETRY];
+		for (int indexPosition = 0; indexPosition < positions.length; indexPosition++) {
+			positions[indexPosition] = new PVector(randomCoordinate(random, false), randomCoordinate(random, false), 0);
+		}
+
+		PVector force = new PVector(0, 0, 0);
+		for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+			for (PVector position : positions) {
+				agent.setPositionVector(position);
+				Forces.computeWallsAndObstaclesRepulsion(agent, geometry);
+				Forces.accumulateWallsAndObstaclesRepulsion(agent, geometry, force);
+			}
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long numberOfCalls = (long) MEASURED_ROUNDS * positions.length;
+
+		long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+		for (int round = 0; round < MEASURED_ROUNDS; round++) {
+			for (PVector position : positions) {
+				agent.setPositionVector(position);
+				Forces.computeWallsAndObstaclesRepulsion(agent, geometry);
+			}
+		}
+		long computeBytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+		for (int round = 0; round < MEASURED_ROUNDS; round++) {
+			for (PVector position : positions) {
+				agent.setPositionVector(position);
+				force.set(0, 0, 0);
+				Forces.accumulateWallsAndObstaclesRepulsion(agent, geometry, force);
+			}
+		}
+		long accumulateBytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		LOGGER.info("Bytes allocated per call: " + (double) computeBytes / numberOfCalls + " computing, "
+				+ (double) accumulateBytes / numberOfCalls + " accumulating.");
+
+		if (accumulateBytes >= numberOfCalls) {
+			throw new IllegalStateException("The accumulation allocated " + accumulateBytes + " bytes in "
+					+ numberOfCalls + " calls.");
+		}
+	}
+
+	/**
+	 * Build a random geometry of open walls and closed obstacles.
+	 * 
+	 * @param random
+	 *            the random generator
+	 * @param onGrid
+	 *            true to put the vertices on a metre grid
+	 * @return the geometry, with its hierarchies built
+	 */
+	private static CatpedsimGeometry buildGeometry(final Random random, final boolean onGrid) {
+		CatpedsimGeometry geometry = new CatpedsimGeometry();
+
+		int numberOfWalls = 1 + random.nextInt(MAXIMUM_NUMBER_OF_SHAPES);
+		for (int indexWall = 0; indexWall < numberOfWalls; indexWall++) {
+			geometry.addWall(buildShape(random, "wall" + indexWall, false, onGrid));
+		}
+
+		int numberOfObstacles = random.nextInt(MAXIMUM_NUMBER_OF_SHAPES);
+		for (int indexObstacle = 0; indexObstacle < numberOfObstacles; indexObstacle++) {
+			geometry.addObstacle(buildShape(random, "obstacle" + indexObstacle, true, onGrid));
+		}
+
+		geometry.computeCentroidsSegmentLengthsAndBoundaries();
+
+		return geometry;
+	}
+
+	/**
+	 * Build a random chain of sections, every section given by its two end
+	 * points.
+	 * 
+	 * @param random
+	 *            the random generator
+	 * @param name
+	 *            name of the shape
+	 * @param closed
+	 *            true for an obstacle, false for a wall
+	 * @param onGrid
+	 *            true to put the vertices on a metre grid
+	 * @return the shape, its sections not built yet
+	 */
+	private static CatpedsimObstacle buildShape(final Random random, final String name, final boolean closed,
+			final boolean onGrid) {
+		CatpedsimObstacle shape = new CatpedsimObstacle(name, closed);
+
+		float originX = random.nextFloat() * AREA_SIZE;
+		float originY = random.nextFloat() * AREA_SIZE;
+		float previousX = originX;
+		float previousY = originY;
+
+		int numberOfSections = 1 + random.nextInt(MAXIMUM_NUMBER_OF_SECTIONS);
+		for (int indexSection = 0; indexSection < numberOfSections; indexSection++) {
+			float nextX = originX + random.nextFloat() * SECTION_SIZE;
+			float nextY = originY + random.nextFloat() * SECTION_SIZE;
+
+			if (onGrid) {
+				nextX = Math.round(nextX);
+				nextY = Math.round(nextY);
+			}
+
+			shape.addVertex(previousX, previousY);
+			shape.addVertex(nextX, nextY);
+			previousX = nextX;
+			previousY = nextY;
+		}
+
+		return shape;
+	}
+
+	/**
+	 * Get a random coordinate around the area of the shapes.
+	 * 
+	 * @param random
+	 *            the random generator
+	 * @param onGrid
+	 *            true to return a whole number of meters one time in five
+	 * @return the coordinate
+	 */
+	private static float randomCoordinate(final Random random, final boolean onGrid) {
+		float coordinate = random.nextFloat() * (AREA_SIZE + SECTION_SIZE);
+
+		if (onGrid && random.nextInt(5) == 0) {
+			return Math.round(coordinate);
+		}
+		return coordinate;
+	}
+}
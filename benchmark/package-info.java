@@ -0,0 +1,8 @@
+/**
+ * XML Configuration file specification package.
+ */
+@XmlSchema(namespace = "http://ts.catapult.org.uk/cav-development", elementFormDefault = XmlNsForm.QUALIFIED)
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.benchmark;
+
+import javax.xml.bind.annotation.XmlNsForm;
+import javax.xml.bind.annotation.XmlSchema;
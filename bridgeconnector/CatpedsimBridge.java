@@ -17,6 +17,7 @@ import uk.org.catapult.ts.cav.configuration.microsimulator.MicroSimulatorConfigu
 import uk.org.catapult.ts.cav.configuration.microsimulator.pedestrian.CatpedsimConfiguration;
 import uk.org.catapult.ts.cav.microsimulator.MicroSimulatorBridge;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentState;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentStateSnapshot;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAutonomousVehicle;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimPedestrian;
@@ -32,6 +33,7 @@ import uk.org.catapult.ts.cav.model.identifier.UniqueIdentifier;
 import uk.org.catapult.ts.cav.model.identifier.UniqueIdentifierProvider;
 import uk.org.catapult.ts.cav.model.simulation.SimulationObject;
 import uk.org.catapult.ts.cav.model.simulation.SimulationTimeUnit;
+import uk.org.catapult.ts.cav.model.spatial.Coordinate2D;
 import uk.org.catapult.ts.cav.model.spatial.Vector2D;
 import uk.org.catapult.ts.cav.pubsub.PublisherIdProvider;
 import uk.org.catapult.ts.cav.utils.TimeUtilities;
@@ -343,17 +345,23 @@ public class CatpedsimBridge implements MicroSimulatorBridge, Observer {
 	 *
 	 */
 	public class ConvertAgentFromInternalModelToExternalModel implements Function<CatpedsimAgent, Object> {
+		/**
+		 * Holder of the published state of the converted agent, filled again
+		 * for every agent.
+		 */
+		private final AgentStateSnapshot publishedState = new AgentStateSnapshot();
+
 		/**
 		 * Applies the conversion to the catpedsimPedestrian object.
 		 */
 		@Override
 		public final Object apply(final CatpedsimAgent catpedsimAgent) {
 			if (catpedsimAgent instanceof CatpedsimPedestrian) {
-				return convertInternalPedestrianToModelPedestrian(catpedsimAgent);
+				return convertInternalPedestrianToModelPedestrian(catpedsimAgent, publishedState);
 			} else if (catpedsimAgent instanceof CatpedsimAutonomousVehicle) {
-				return convertInternalVehicleToModelVehicle(catpedsimAgent);
+				return convertInternalVehicleToModelVehicle(catpedsimAgent, publishedState);
 			} else if (catpedsimAgent instanceof CatpedsimVehicle) {
-				return convertInternalVehicleToModelVehicle(catpedsimAgent);
+				return convertInternalVehicleToModelVehicle(catpedsimAgent, publishedState);
 			}
 
 			return null;
@@ -366,15 +374,20 @@ public class CatpedsimBridge implements MicroSimulatorBridge, Observer {
 	 * 
 	 * @param catpedsimAgent
 	 *            catpedsim agent object
+	 * @param state
+	 *            holder receiving the published state of the agent
 	 * @return external vehicle object
 	 */
-	private Vehicle convertInternalVehicleToModelVehicle(final CatpedsimAgent catpedsimAgent) {
+	private Vehicle convertInternalVehicleToModelVehicle(final CatpedsimAgent catpedsimAgent,
+			final AgentStateSnapshot state) {
 		if (catpedsimAgent instanceof CatpedsimAutonomousVehicle || catpedsimAgent instanceof CatpedsimVehicle) {
-			Vehicle vehicle = new Vehicle(catpedsimAgent.getName(), (double) catpedsimAgent.getCurrentSpeed(),
-					new Vector2D(catpedsimAgent.getVelocity().x, catpedsimAgent.getVelocity().y),
+			catpedsimAgent.readPublishedState(state);
+
+			Vehicle vehicle = new Vehicle(catpedsimAgent.getName(), (double) state.getSpeed(),
+					new Vector2D(state.getVelocityX(), state.getVelocityY()),
 					catpedsimAgent.getClass().getSimpleName(), publisherId, "", 0, 0, "",
 					Integer.toString(catpedsimAgent.getColorToRepresent().getRGB()),
-					catpedsimAgent.getCurrentPosition());
+					new Coordinate2D(state.getX(), state.getY()));
 
 			return vehicle;
 		}
@@ -387,13 +400,18 @@ public class CatpedsimBridge implements MicroSimulatorBridge, Observer {
 	 * 
 	 * @param catpedsimAgent
 	 *            Pedestrian object in the CatpedsimPedestrian format
+	 * @param state
+	 *            holder receiving the published state of the agent
 	 * @return Pedestrian object in the Object Model format
 	 */
-	private Pedestrian convertInternalPedestrianToModelPedestrian(final CatpedsimAgent catpedsimAgent) {
+	private Pedestrian convertInternalPedestrianToModelPedestrian(final CatpedsimAgent catpedsimAgent,
+			final AgentStateSnapshot state) {
 		if (catpedsimAgent instanceof CatpedsimPedestrian) {
+			catpedsimAgent.readPublishedState(state);
+
 			Pedestrian pedestrian = new Pedestrian(publisherId, catpedsimAgent.getName(),
-					catpedsimAgent.getCurrentPosition(), catpedsimAgent.getCurrentHeading(),
-					catpedsimAgent.getCurrentSpeed());
+					new Coordinate2D(state.getX(), state.getY()),
+					new Vector2D(state.getHeadingX(), state.getHeadingY()), state.getSpeed());
 
 			return pedestrian;
 		}
@@ -459,7 +477,7 @@ public class CatpedsimBridge implements MicroSimulatorBridge, Observer {
 		if (agent != null) {
 			agent.setAgentState(AgentState.NOT_ACTIVE);
 
-			return convertInternalPedestrianToModelPedestrian(agent);
+			return convertInternalPedestrianToModelPedestrian(agent, new AgentStateSnapshot());
 		}
 		return null;
 	}
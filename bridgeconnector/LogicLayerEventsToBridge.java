@@ -35,5 +35,11 @@ public enum LogicLayerEventsToBridge {
 	 * The thread running the simulation will acknowledge the bridge that the
 	 * advance time step request is completed.
 	 */
-	ADVANCE_TIME_STEP_COMPLETED;
+	ADVANCE_TIME_STEP_COMPLETED,
+
+	/**
+	 * The Voronoi density of the pedestrians and the fundamental diagram were
+	 * measured again.
+	 */
+	DENSITY_UPDATED;
 }
\ No newline at end of file
@@ -0,0 +1,322 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry;
+
+/**
+ * Static bounding volume hierarchy over a set of axis aligned boxes. The
+ * items are identified by their index in the arrays the hierarchy is built
+ * from. The tree is built once with median splits along the longest axis and
+ * is stored in flat primitive arrays, so it is cheap to query and safe to
+ * share between threads.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class BoundingVolumeHierarchy {
+	/**
+	 * Maximum number of items in a leaf.
+	 */
+	private static final int MAXIMUM_ITEMS_PER_LEAF = 4;
+
+	/**
+	 * Receives the items found by a query.
+	 */
+	public interface ItemVisitor {
+		/**
+		 * Visit an item whose box overlaps the query box.
+		 * 
+		 * @param item
+		 *            item index
+		 * @return true to stop the query
+		 */
+		boolean visit(int item);
+	}
+
+	/** Items in the order of the leaves. */
+	private final int[] items;
+
+	/** Boxes of the items: min x. */
+	private final float[] itemMinX;
+
+	/** Boxes of the items: min y. */
+	private final float[] itemMinY;
+
+	/** Boxes of the items: max x. */
+	private final float[] itemMaxX;
+
+	/** Boxes of the items: max y. */
+	private final float[] itemMaxY;
+
+	/** Boxes of the nodes: min x. */
+	private final float[] nodeMinX;
+
+	/** Boxes of the nodes: min y. */
+	private final float[] nodeMinY;
+
+	/** Boxes of the nodes: max x. */
+	private final float[] nodeMaxX;
+
+	/** Boxes of the nodes: max y. */
+	private final float[] nodeMaxY;
+
+	/**
+	 * For inner nodes the index of the left child (the right child follows the
+	 * whole left subtree), for leaves the index of the first item.
+	 */
+	private final int[] nodeFirst;
+
+	/** Index of the right child of inner nodes. */
+	private final int[] nodeRight;
+
+	/** Number of items of a leaf, zero for inner nodes. */
+	private final int[] nodeCount;
+
+	/** Number of nodes in use. */
+	private int numberOfNodes = 0;
+
+	/**
+	 * Build the hierarchy. The arrays are copied.
+	 * 
+	 * @param minX
+	 *            min x of every item box
+	 * @param minY
+	 *            min y of every item box
+	 * @param maxX
+	 *            max x of every item box
+	 * @param maxY
+	 *            max y of every item box
+	 */
+	public BoundingVolumeHierarchy(final float[] minX, final float[] minY, final float[] maxX, final float[] maxY) {
+		int numberOfItems = minX.length;
+
+		itemMinX = minX.clone();
+		itemMinY = minY.clone();
+		itemMaxX = maxX.clone();
+		itemMaxY = maxY.clone();
+
+		items = new int[numberOfItems];
+		for (int indexItem = 0; indexItem < numberOfItems; indexItem++) {
+			items[indexItem] = indexItem;
+		}
+
+		int maximumNumberOfNodes = Math.max(1, 2 * numberOfItems);
+		nodeMinX = new float[maximumNumberOfNodes];
+		nodeMinY = new float[maximumNumberOfNodes];
+		nodeMaxX = new float[maximumNumberOfNodes];
+		nodeMaxY = new float[maximumNumberOfNodes];
+		nodeFirst = new int[maximumNumberOfNodes];
+		nodeRight = new int[maximumNumberOfNodes];
+		nodeCount = new int[maximumNumberOfNodes];
+
+		if (numberOfItems > 0) {
+			buildNode(0, numberOfItems);
+		}
+	}
+
+	/**
+	 * Get the number of items.
+	 * 
+	 * @return number of items
+	 */
+	public final int getNumberOfItems() {
+		return items.length;
+	}
+
+	/**
+	 * Visit all the items whose box overlaps the query box.
+	 * 
+	 * @param minX
+	 *            query box min x
+	 * @param minY
+	 *            query box min y
+	 * @param maxX
+	 *            query box max x
+	 * @param maxY
+	 *            query box max y
+	 * @param visitor
+	 *            receives the items
+	 * @return true if the visitor stopped the query
+	 */
+	public final boolean visitOverlapping(final float minX, final float minY, final float maxX, final float maxY,
+			final ItemVisitor visitor) {
+		if (numberOfNodes == 0) {
+			return false;
+		}
+		return visitNode(0, minX, minY, maxX, maxY, visitor);
+	}
+
+	/**
+	 * Recursive query.
+	 * 
+	 * @param node
+	 *            current node
+	 * @param minX
+	 *            query box min x
+	 * @param minY
+	 *            query box min y
+	 * @param maxX
+	 *            query box max x
+	 * @param maxY
+	 *            query box max y
+	 * @param visitor
+	 *            receives the items
+	 * @return true if the visitor stopped the query
+	 */
+	private boolean visitNode(final int node, final float minX, final float minY, final float maxX, final float maxY,
+			final ItemVisitor visitor) {
+
+		if (nodeMinX[node] > maxX || nodeMaxX[node] < minX || nodeMinY[node] > maxY || nodeMaxY[node] < minY) {
+			return false;
+		}
+
+		if (nodeCount[node] > 0) {
+			int lastItem = nodeFirst[node] + nodeCount[node];
+
+			for (int indexItem = nodeFirst[node]; indexItem < lastItem; indexItem++) {
+				int item = items[indexItem];
+
+				if (itemMinX[item] <= maxX && itemMaxX[item] >= minX && itemMinY[item] <= maxY
+						&& itemMaxY[item] >= minY && visitor.visit(item)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		return visitNode(nodeFirst[node], minX, minY, maxX, maxY, visitor)
+				|| visitNode(nodeRight[node], minX, minY, maxX, maxY, visitor);
+	}
+
+	/**
+	 * Build the subtree holding the items in [from, to).
+	 * 
+	 * @param from
+	 *            first item, inclusive
+	 * @param to
+	 *            last item, exclusive
+	 * @return the index of the subtree root
+	 */
+	private int buildNode(final int from, final int to) {
+		int node = numberOfNodes++;
+
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+
+		for (int indexItem = from; indexItem < to; indexItem++) {
+			int item = items[indexItem];
+			minX = Math.min(minX, itemMinX[item]);
+			minY = Math.min(minY, itemMinY[item]);
+			maxX = Math.max(maxX, itemMaxX[item]);
+			maxY = Math.max(maxY, itemMaxY[item]);
+		}
+
+		nodeMinX[node] = minX;
+		nodeMinY[node] = minY;
+		nodeMaxX[node] = maxX;
+		nodeMaxY[node] = maxY;
+
+		if (to - from <= MAXIMUM_ITEMS_PER_LEAF) {
+			nodeFirst[node] = from;
+			nodeCount[node] = to - from;
+			return node;
+		}
+
+		boolean splitOnX = maxX - minX >= maxY - minY;
+		int middle = (from + to) >>> 1;
+		selectMedian(from, to - 1, middle, splitOnX);
+
+		nodeCount[node] = 0;
+		nodeFirst[node] = buildNode(from, middle);
+		nodeRight[node] = buildNode(middle, to);
+
+		return node;
+	}
+
+	/**
+	 * Partially sort the items in [fromIndex, toIndex] so the item at index k has
+	 * the k-th smallest box centre along the split axis (quickselect).
+	 * 
+	 * @param fromIndex
+	 *            first index, inclusive
+	 * @param toIndex
+	 *            last index, inclusive
+	 * @param k
+	 *            the index to select
+	 * @param splitOnX
+	 *            true to compare the x coordinates of the box centres
+	 */
+	private void selectMedian(final int fromIndex, final int toIndex, final int k, final boolean splitOnX) {
+		int left = fromIndex;
+		int right = toIndex;
+
+		while (left < right) {
+			float pivot = centre(items[(left + right) >>> 1], splitOnX);
+			int i = left;
+			int j = right;
+
+			while (i <= j) {
+				while (centre(items[i], splitOnX) < pivot) {
+					i++;
+				}
+				while (centre(items[j], splitOnX) > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int swap = items[i];
+					items[i] = items[j];
+					items[j] = swap;
+					i++;
+					j--;
+				}
+			}
+
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Twice the box centre of an item along an axis.
+	 * 
+	 * @param item
+	 *            item index
+	 * @param onX
+	 *            true for the x axis
+	 * @return twice the centre coordinate
+	 */
+	private float centre(final int item, final boolean onX) {
+		if (onX) {
+			return itemMinX[item] + itemMaxX[item];
+		}
+		return itemMinY[item] + itemMaxY[item];
+	}
+}
@@ -1,5 +1,6 @@
 package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -11,6 +12,7 @@ import org.apache.log4j.Logger;
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
 import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.Trigonometry;
 import uk.org.catapult.ts.cav.utils.UtilityLogger;
 
 /**
@@ -74,6 +76,18 @@ public class CatpedsimGeometry {
 	/** Mark the area were all the walls/obstacles can be found. */
 	private Bounds geometryBounds;
 
+	/** Bounding volume hierarchy over the sections of the walls. */
+	private ShapeSectionsHierarchy wallsHierarchy = null;
+
+	/** Bounding volume hierarchy over the sections of the obstacles. */
+	private ShapeSectionsHierarchy obstaclesHierarchy = null;
+
+	/** The obstacles, indexed as in the obstacles polygons hierarchy. */
+	private CatpedsimObstacle[] obstaclePolygons = new CatpedsimObstacle[0];
+
+	/** Bounding volume hierarchy over the bounding boxes of the obstacles. */
+	private BoundingVolumeHierarchy obstaclesPolygonsHierarchy = null;
+
 	/**
 	 * The total number of walls (represented as open polygons).
 	 * 
@@ -240,6 +254,187 @@ public class CatpedsimGeometry {
 
 		geometryBounds = new BoundingBox(geometryXMin, geometryYMin, geometryXMax - geometryXMin,
 				geometryYMax - geometryYMin);
+
+		buildHierarchies();
+	}
+
+	/**
+	 * Build the bounding volume hierarchies over the walls and obstacles. The
+	 * sections must be built beforehand.
+	 */
+	private void buildHierarchies() {
+		synchronized (walls) {
+			wallsHierarchy = new ShapeSectionsHierarchy(walls);
+		}
+
+		synchronized (obstacles) {
+			obstaclesHierarchy = new ShapeSectionsHierarchy(obstacles);
+
+			List<CatpedsimObstacle> polygons = new ArrayList<CatpedsimObstacle>();
+			for (CatpedsimObstacle obstacle : obstacles) {
+				if (obstacle.getObstacleSections() != null) {
+					polygons.add(obstacle);
+				}
+			}
+			obstaclePolygons = polygons.toArray(new CatpedsimObstacle[polygons.size()]);
+		}
+
+		float[] minX = new float[obstaclePolygons.length];
+		float[] minY = new float[obstaclePolygons.length];
+		float[] maxX = new float[obstaclePolygons.length];
+		float[] maxY = new float[obstaclePolygons.length];
+
+		for (int indexObstacle = 0; indexObstacle < obstaclePolygons.length; indexObstacle++) {
+			minX[indexObstacle] = Float.MAX_VALUE;
+			minY[indexObstacle] = Float.MAX_VALUE;
+			maxX[indexObstacle] = -Float.MAX_VALUE;
+			maxY[indexObstacle] = -Float.MAX_VALUE;
+
+			for (ShapeSection section : obstaclePolygons[indexObstacle].getObstacleSections()) {
+				PVector start = section.getVectorToStartPoint();
+				minX[indexObstacle] = Math.min(minX[indexObstacle], start.x);
+				minY[indexObstacle] = Math.min(minY[indexObstacle], start.y);
+				maxX[indexObstacle] = Math.max(maxX[indexObstacle], start.x);
+				maxY[indexObstacle] = Math.max(maxY[indexObstacle], start.y);
+			}
+		}
+
+		obstaclesPolygonsHierarchy = new BoundingVolumeHierarchy(minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Get the hierarchy over the walls sections.
+	 * 
+	 * @return walls hierarchy, null before the geometry is computed
+	 */
+	public final ShapeSectionsHierarchy getWallsHierarchy() {
+		return wallsHierarchy;
+	}
+
+	/**
+	 * Get the hierarchy over the obstacles sections.
+	 * 
+	 * @return obstacles hierarchy, null before the geometry is computed
+	 */
+	public final ShapeSectionsHierarchy getObstaclesHierarchy() {
+		return obstaclesHierarchy;
+	}
+
+	/**
+	 * Check if a segment crosses any of the walls.
+	 * 
+	 * @param start
+	 *            segment start point
+	 * @param end
+	 *            segment end point
+	 * @return true if the segment intersects a wall
+	 */
+	public final boolean checkIfSegmentCrossesWalls(final PVector start, final PVector end) {
+		if (wallsHierarchy == null) {
+			return checkIfSegmentCrossesShapes(walls, start, end);
+		}
+		return wallsHierarchy.intersectsSegment(start, end);
+	}
+
+	/**
+	 * Check if a segment crosses any of the obstacles.
+	 * 
+	 * @param start
+	 *            segment start point
+	 * @param end
+	 *            segment end point
+	 * @return true if the segment intersects an obstacle
+	 */
+	public final boolean checkIfSegmentCrossesObstacles(final PVector start, final PVector end) {
+		if (obstaclesHierarchy == null) {
+			return checkIfSegmentCrossesShapes(obstacles, start, end);
+		}
+		return obstaclesHierarchy.intersectsSegment(start, end);
+	}
+
+	/**
+	 * Check if a segment crosses any of the shapes, scanning all their
+	 * sections. Used before the hierarchies are built.
+	 * 
+	 * @param shapes
+	 *            walls or obstacles
+	 * @param start
+	 *            segment start point
+	 * @param end
+	 *            segment end point
+	 * @return true if the segment intersects a shape
+	 */
+	private boolean checkIfSegmentCrossesShapes(final List<CatpedsimObstacle> shapes, final PVector start,
+			final PVector end) {
+		for (CatpedsimObstacle shape : shapes) {
+			for (ShapeSection section : shape.getObstacleSections()) {
+				if (Trigonometry.checkIfLinesIntersect(start, end, section.getVectorToStartPoint(),
+						section.getVectorToEndPoint())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if a point lies on a wall or on the outline of an obstacle.
+	 * 
+	 * @param vectorToPoint
+	 *            vector to the point of interest
+	 * @return true if the point belongs to a wall or obstacle section
+	 */
+	public final boolean checkIfPointBelongsToWallOrObstacle(final PVector vectorToPoint) {
+		if (wallsHierarchy == null || obstaclesHierarchy == null) {
+			return checkIfPointBelongsToShapes(walls, vectorToPoint)
+					|| checkIfPointBelongsToShapes(obstacles, vectorToPoint);
+		}
+		return wallsHierarchy.containsPointOnSection(vectorToPoint)
+				|| obstaclesHierarchy.containsPointOnSection(vectorToPoint);
+	}
+
+	/**
+	 * Check if a point lies on any of the shapes, scanning all their sections.
+	 * Used before the hierarchies are built.
+	 * 
+	 * @param shapes
+	 *            walls or obstacles
+	 * @param vectorToPoint
+	 *            vector to the point of interest
+	 * @return true if the point belongs to a section
+	 */
+	private boolean checkIfPointBelongsToShapes(final List<CatpedsimObstacle> shapes, final PVector vectorToPoint) {
+		for (CatpedsimObstacle shape : shapes) {
+			for (ShapeSection section : shape.getObstacleSections()) {
+				if (Trigonometry.checkIfPointBelongsToSegment(vectorToPoint, section.getVectorToStartPoint(),
+						section.getVectorToEndPoint())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if a point is inside one of the obstacles.
+	 * 
+	 * @param vectorToPoint
+	 *            vector to the point of interest
+	 * @return true if the point is inside an obstacle
+	 */
+	public final boolean checkIfPointIsInsideObstacle(final PVector vectorToPoint) {
+		if (obstaclesPolygonsHierarchy == null) {
+			for (CatpedsimObstacle obstacle : obstacles) {
+				if (Trigonometry.pointInsideClosedPolygon(obstacle.getObstacleSections(), vectorToPoint)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		return obstaclesPolygonsHierarchy.visitOverlapping(vectorToPoint.x, vectorToPoint.y, vectorToPoint.x,
+				vectorToPoint.y, indexObstacle -> Trigonometry.pointInsideClosedPolygon(
+						obstaclePolygons[indexObstacle].getObstacleSections(), vectorToPoint));
 	}
 
 	/**
@@ -323,6 +518,11 @@ public class CatpedsimGeometry {
 				obstacles.clear();
 			}
 		}
+
+		wallsHierarchy = null;
+		obstaclesHierarchy = null;
+		obstaclesPolygonsHierarchy = null;
+		obstaclePolygons = new CatpedsimObstacle[0];
 	}
 
 	/**
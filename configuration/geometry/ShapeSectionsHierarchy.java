@@ -0,0 +1,192 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.Trigonometry;
+
+/**
+ * Static bounding volume hierarchy over the sections of a set of walls or
+ * obstacles. It answers the geometric queries the agents run every tick (the
+ * sections close to a point, the sections crossed by a segment) by visiting
+ * only the sections whose bounding boxes overlap the query, instead of
+ * scanning all of them. The geometry is built once, so is the hierarchy.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class ShapeSectionsHierarchy {
+	/** All the sections, in the order of the shapes they belong to. */
+	private final ShapeSection[] sections;
+
+	/** The bounding volume hierarchy over the sections bounding boxes. */
+	private final BoundingVolumeHierarchy hierarchy;
+
+	/**
+	 * Build the hierarchy over the sections of a list of shapes. The sections
+	 * must be built beforehand.
+	 * 
+	 * @param shapes
+	 *            walls or obstacles
+	 */
+	public ShapeSectionsHierarchy(final List<CatpedsimObstacle> shapes) {
+		List<ShapeSection> allSections = new ArrayList<ShapeSection>();
+
+		for (CatpedsimObstacle shape : shapes) {
+			ShapeSection[] shapeSections = shape.getObstacleSections();
+
+			if (shapeSections != null) {
+				allSections.addAll(Arrays.asList(shapeSections));
+			}
+		}
+
+		sections = allSections.toArray(new ShapeSection[allSections.size()]);
+
+		float[] minX = new float[sections.length];
+		float[] minY = new float[sections.length];
+		float[] maxX = new float[sections.length];
+		float[] maxY = new float[sections.length];
+
+		for (int indexSection = 0; indexSection < sections.length; indexSection++) {
+			PVector start = sections[indexSection].getVectorToStartPoint();
+			PVector end = sections[indexSection].getVectorToEndPoint();
+
+			minX[indexSection] = Math.min(start.x, end.x);
+			minY[indexSection] = Math.min(start.y, end.y);
+			maxX[indexSection] = Math.max(start.x, end.x);
+			maxY[indexSection] = Math.max(start.y, end.y);
+		}
+
+		hierarchy = new BoundingVolumeHierarchy(minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Get the number of sections.
+	 * 
+	 * @return number of sections
+	 */
+	public final int getNumberOfSections() {
+		return sections.length;
+	}
+
+	/**
+	 * Get a section.
+	 * 
+	 * @param indexSection
+	 *            index of the section, in the order of the shapes
+	 * @return the section
+	 */
+	public final ShapeSection getSection(final int indexSection) {
+		return sections[indexSection];
+	}
+
+	/**
+	 * Visit the indexes of the sections whose bounding box overlaps a box,
+	 * without allocating. The visitor checks the exact distance itself.
+	 * 
+	 * @param minX
+	 *            box min x
+	 * @param minY
+	 *            box min y
+	 * @param maxX
+	 *            box max x
+	 * @param maxY
+	 *            box max y
+	 * @param visitor
+	 *            receives the indexes of the sections
+	 */
+	public final void visitSectionsOverlapping(final float minX, final float minY, final float maxX,
+			final float maxY, final BoundingVolumeHierarchy.ItemVisitor visitor) {
+		hierarchy.visitOverlapping(minX, minY, maxX, maxY, visitor);
+	}
+
+	/**
+	 * Collect the sections closer to a point than the specified distance. The
+	 * sections are added in the order of the shapes they belong to, so the
+	 * result is the same as filtering the lists of shapes.
+	 * 
+	 * @param vectorToPoint
+	 *            vector to the point of interest
+	 * @param distance
+	 *            maximum distance from the point
+	 * @param result
+	 *            receives the sections
+	 */
+	public final void collectSectionsWithinDistance(final PVector vectorToPoint, final float distance,
+			final List<ShapeSection> result) {
+		List<Integer> foundSections = new ArrayList<Integer>();
+
+		hierarchy.visitOverlapping(vectorToPoint.x - distance, vectorToPoint.y - distance, vectorToPoint.x + distance,
+				vectorToPoint.y + distance, indexSection -> {
+					ShapeSection section = sections[indexSection];
+
+					if (Trigonometry.distanceFromPointToSegment(vectorToPoint, section.getVectorToStartPoint(),
+							section.getVectorToEndPoint()) <= distance) {
+						foundSections.add(indexSection);
+					}
+					return false;
+				});
+
+		Collections.sort(foundSections);
+
+		for (Integer indexSection : foundSections) {
+			result.add(sections[indexSection]);
+		}
+	}
+
+	/**
+	 * Check if a segment crosses any of the sections.
+	 * 
+	 * @param start
+	 *            segment start point
+	 * @param end
+	 *            segment end point
+	 * @return true if the segment intersects at least one section
+	 */
+	public final boolean intersectsSegment(final PVector start, final PVector end) {
+		return hierarchy.visitOverlapping(Math.min(start.x, end.x), Math.min(start.y, end.y),
+				Math.max(start.x, end.x), Math.max(start.y, end.y),
+				indexSection -> Trigonometry.checkIfLinesIntersect(start, end,
+						sections[indexSection].getVectorToStartPoint(), sections[indexSection].getVectorToEndPoint()));
+	}
+
+	/**
+	 * Check if a point lies on any of the sections.
+	 * 
+	 * @param vectorToPoint
+	 *            vector to the point of interest
+	 * @return true if the point belongs to at least one section
+	 */
+	public final boolean containsPointOnSection(final PVector vectorToPoint) {
+		return hierarchy.visitOverlapping(vectorToPoint.x, vectorToPoint.y, vectorToPoint.x, vectorToPoint.y,
+				indexSection -> Trigonometry.checkIfPointBelongsToSegment(vectorToPoint,
+						sections[indexSection].getVectorToStartPoint(), sections[indexSection].getVectorToEndPoint()));
+	}
+}
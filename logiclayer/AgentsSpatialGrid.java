@@ -0,0 +1,369 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.logiclayer;
+
+import java.util.List;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentStateStore;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
+
+/**
+ * Uniform grid (cell list) over the agents of one type. The world tile is
+ * split in square cells at least as large as the social force cut-off, so
+ * every agent within the cut-off of a given point lies in the 3x3 block of
+ * cells around it. The grid is rebuilt once per tick with a counting sort from
+ * the positions published at the end of the last tick, and reuses its arrays
+ * between ticks. Agents outside the world tile are clamped to the border
+ * cells, which keeps the queries correct.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class AgentsSpatialGrid {
+	/**
+	 * Receives the pairs of agents found by a pass over the grid.
+	 */
+	public interface PairVisitor {
+		/**
+		 * Visit a pair of agents in the same or in adjacent cells.
+		 * 
+		 * @param first
+		 *            first agent of the pair
+		 * @param second
+		 *            second agent of the pair
+		 */
+		void visit(CatpedsimAgent first, CatpedsimAgent second);
+	}
+
+	/**
+	 * Cell size in meters.
+	 */
+	private final float cellSize;
+
+	/**
+	 * Number of columns of the grid.
+	 */
+	private final int columns;
+
+	/**
+	 * Number of rows of the grid.
+	 */
+	private final int rows;
+
+	/**
+	 * Index of the first agent of every cell in the sorted agents array. The
+	 * last element holds the number of agents.
+	 */
+	private final int[] cellStart;
+
+	/**
+	 * Cell index of every agent, in the order of the indexed list.
+	 */
+	private int[] agentCell = new int[0];
+
+	/**
+	 * Agents sorted by cell.
+	 */
+	private CatpedsimAgent[] sortedAgents = new CatpedsimAgent[0];
+
+	/**
+	 * Number of agents in the grid.
+	 */
+	private int numberOfAgents = 0;
+
+	/**
+	 * Slot of the first agent of the grid in the structure of arrays store.
+	 */
+	private int firstStoreSlot = 0;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param newWorldWidth
+	 *            world width in meters
+	 * @param newWorldDepth
+	 *            world depth in meters
+	 * @param cutOffDistance
+	 *            the maximum distance of interaction between agents
+	 */
+	public AgentsSpatialGrid(final float newWorldWidth, final float newWorldDepth, final float cutOffDistance) {
+		cellSize = Math.max(cutOffDistance, 1);
+		columns = (int) Math.ceil(Math.max(newWorldWidth, 1) / cellSize);
+		rows = (int) Math.ceil(Math.max(newWorldDepth, 1) / cellSize);
+		cellStart = new int[columns * rows + 1];
+	}
+
+	/**
+	 * Rebuild the grid from the positions published at the end of the last
+	 * tick.
+	 * 
+	 * @param agents
+	 *            the agents of one type
+	 */
+	public final void rebuild(final List<CatpedsimAgent> agents) {
+		numberOfAgents = agents.size();
+
+		if (sortedAgents.length < numberOfAgents) {
+			sortedAgents = new CatpedsimAgent[numberOfAgents];
+			agentCell = new int[numberOfAgents];
+		}
+
+		int numberOfCells = columns * rows;
+		for (int indexCell = 0; indexCell <= numberOfCells; indexCell++) {
+			cellStart[indexCell] = 0;
+		}
+
+		int indexAgent = 0;
+		for (CatpedsimAgent agent : agents) {
+			PVector position = agent.getSnapshotPositionVector();
+			int cell = columnOf(position.x) + rowOf(position.y) * columns;
+			agentCell[indexAgent++] = cell;
+			cellStart[cell + 1]++;
+		}
+
+		for (int indexCell = 0; indexCell < numberOfCells; indexCell++) {
+			cellStart[indexCell + 1] += cellStart[indexCell];
+		}
+
+		indexAgent = 0;
+		for (CatpedsimAgent agent : agents) {
+			int cell = agentCell[indexAgent++];
+			sortedAgents[cellStart[cell]++] = agent;
+		}
+
+		for (int indexCell = numberOfCells; indexCell > 0; indexCell--) {
+			cellStart[indexCell] = cellStart[indexCell - 1];
+		}
+		cellStart[0] = 0;
+
+		for (int indexStale = numberOfAgents; indexStale < sortedAgents.length; indexStale++) {
+			sortedAgents[indexStale] = null;
+		}
+	}
+
+	/**
+	 * Collect the agents found in the cell of the given position and in the
+	 * eight cells around it. The candidates still have to be filtered by
+	 * distance.
+	 * 
+	 * @param position
+	 *            the position of the querying agent
+	 * @param neighbours
+	 *            the list receiving the candidates, it is not cleared
+	 */
+	public final void collectNeighbours(final PVector position, final List<CatpedsimAgent> neighbours) {
+		if (numberOfAgents == 0) {
+			return;
+		}
+
+		int column = columnOf(position.x);
+		int row = rowOf(position.y);
+
+		int lastRow = Math.min(row + 1, rows - 1);
+		int lastColumn = Math.min(column + 1, columns - 1);
+
+		for (int indexRow = Math.max(row - 1, 0); indexRow <= lastRow; indexRow++) {
+			int firstCell = indexRow * columns + Math.max(column - 1, 0);
+			int lastCell = indexRow * columns + lastColumn;
+
+			for (int indexAgent = cellStart[firstCell]; indexAgent < cellStart[lastCell + 1]; indexAgent++) {
+				neighbours.add(sortedAgents[indexAgent]);
+			}
+		}
+	}
+
+	/**
+	 * Visit once every unordered pair of agents found in the same cell or in
+	 * adjacent cells. Every cell is paired with itself, with the next cell of
+	 * its row and with the three cells below it, so a pair is never visited
+	 * from both sides. The candidates still have to be filtered by distance.
+	 * 
+	 * @param visitor
+	 *            receives the pairs
+	 */
+	public final void forEachNeighbourPair(final PairVisitor visitor) {
+		if (numberOfAgents < 2) {
+			return;
+		}
+
+		for (int cell = 0; cell < columns * rows; cell++) {
+			forEachNeighbourPairOfCell(cell, visitor);
+		}
+	}
+
+	/**
+	 * Visit the pairs of agents whose first agent lies in the given cell: the
+	 * pairs within the cell, with the next cell of its row and with the three
+	 * cells below it. The pairs of a cell only involve the agents of two rows
+	 * and three columns of cells, so the cells two rows or three columns apart
+	 * can be visited at the same time.
+	 * 
+	 * @param cell
+	 *            the cell index, row * number of columns + column
+	 * @param visitor
+	 *            receives the pairs
+	 */
+	public final void forEachNeighbourPairOfCell(final int cell, final PairVisitor visitor) {
+		int row = cell / columns;
+		int column = cell - row * columns;
+		int lastInRow = cellStart[Math.min(column + 1, columns - 1) + row * columns + 1];
+
+		int firstBelow = 0;
+		int lastBelow = 0;
+		if (row + 1 < rows) {
+			firstBelow = cellStart[(row + 1) * columns + Math.max(column - 1, 0)];
+			lastBelow = cellStart[(row + 1) * columns + Math.min(column + 1, columns - 1) + 1];
+		}
+
+		for (int indexFirst = cellStart[cell]; indexFirst < cellStart[cell + 1]; indexFirst++) {
+			CatpedsimAgent first = sortedAgents[indexFirst];
+
+			for (int indexSecond = indexFirst + 1; indexSecond < lastInRow; indexSecond++) {
+				visitor.visit(first, sortedAgents[indexSecond]);
+			}
+
+			for (int indexSecond = firstBelow; indexSecond < lastBelow; indexSecond++) {
+				visitor.visit(first, sortedAgents[indexSecond]);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of rows of cells.
+	 * 
+	 * @return number of rows
+	 */
+	public final int getNumberOfRows() {
+		return rows;
+	}
+
+	/**
+	 * Get the number of columns of cells.
+	 * 
+	 * @return number of columns
+	 */
+	public final int getNumberOfColumns() {
+		return columns;
+	}
+
+	/**
+	 * Get an agent in the order of the cells.
+	 * 
+	 * @param index
+	 *            index of the agent, lower than the number of agents
+	 * @return the agent
+	 */
+	public final CatpedsimAgent getAgent(final int index) {
+		return sortedAgents[index];
+	}
+
+	/**
+	 * Copy the agents into the structure of arrays store, in the order of the
+	 * cells. The agents of a row of cells then occupy a range of consecutive
+	 * slots.
+	 * 
+	 * @param store
+	 *            the structure of arrays store
+	 */
+	public final void appendToStore(final AgentStateStore store) {
+		firstStoreSlot = store.size();
+
+		for (int indexAgent = 0; indexAgent < numberOfAgents; indexAgent++) {
+			store.add(sortedAgents[indexAgent]);
+		}
+	}
+
+	/**
+	 * Collect the store slot ranges of the agents found in the cell of the
+	 * given position and in the eight cells around it, one range for every row
+	 * of cells. The grid must have been appended to the store.
+	 * 
+	 * @param x
+	 *            x coordinate of the querying agent
+	 * @param y
+	 *            y coordinate of the querying agent
+	 * @param slotRanges
+	 *            receives the first slot (inclusive) and the last slot
+	 *            (exclusive) of every range, at least six elements
+	 * @return the number of ranges
+	 */
+	public final int collectNeighbourSlotRanges(final float x, final float y, final int[] slotRanges) {
+		if (numberOfAgents == 0) {
+			return 0;
+		}
+
+		int column = columnOf(x);
+		int row = rowOf(y);
+
+		int lastRow = Math.min(row + 1, rows - 1);
+		int lastColumn = Math.min(column + 1, columns - 1);
+		int numberOfRanges = 0;
+
+		for (int indexRow = Math.max(row - 1, 0); indexRow <= lastRow; indexRow++) {
+			int firstCell = indexRow * columns + Math.max(column - 1, 0);
+			int lastCell = indexRow * columns + lastColumn;
+
+			if (cellStart[firstCell] < cellStart[lastCell + 1]) {
+				slotRanges[2 * numberOfRanges] = firstStoreSlot + cellStart[firstCell];
+				slotRanges[2 * numberOfRanges + 1] = firstStoreSlot + cellStart[lastCell + 1];
+				numberOfRanges++;
+			}
+		}
+
+		return numberOfRanges;
+	}
+
+	/**
+	 * Get the number of indexed agents.
+	 * 
+	 * @return number of agents
+	 */
+	public final int getNumberOfAgents() {
+		return numberOfAgents;
+	}
+
+	/**
+	 * Get the grid column of a coordinate, clamped to the grid.
+	 * 
+	 * @param x
+	 *            the x coordinate in meters
+	 * @return the column index
+	 */
+	private int columnOf(final float x) {
+		return Math.min(Math.max((int) (x / cellSize), 0), columns - 1);
+	}
+
+	/**
+	 * Get the grid row of a coordinate, clamped to the grid.
+	 * 
+	 * @param y
+	 *            the y coordinate in meters
+	 * @return the row index
+	 */
+	private int rowOf(final float y) {
+		return Math.min(Math.max((int) (y / cellSize), 0), rows - 1);
+	}
+}
@@ -2,7 +2,7 @@ package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.logiclayer;
 
 import java.awt.Color;
 import java.awt.geom.Point2D;
-import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -13,6 +13,9 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Observable;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
@@ -23,7 +26,12 @@ import processing.core.PConstants;
 import processing.core.PVector;
 import uk.org.catapult.ts.cav.configuration.microsimulator.pedestrian.CatpedsimConfiguration;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentBehaviour;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentFactory;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentFactoryRegistry;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentList;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentPool;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentState;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentStateStore;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AutonomousVehicleConstraints;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.BicycleConstraints;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
@@ -46,14 +54,20 @@ import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.odmatrices.ReaderOfTransitionMatrices;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.odmatrices.TransitionZoneMatrix;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.path.XmlPath;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.path.XmlVertex;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.AStarPathFinder;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.FlowField;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.HierarchicalPathFinder;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.NavigationMesh;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.NodePath;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.PathFinder;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.RouteCache;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath.VisibilityGraphPathFinder;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.socialforcemodel.Forces;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.socialforcemodel.SocialForceAgentsPair;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.socialforcemodel.SocialForceParameters;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.LengthUnits;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.RegexPatterns;
-import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.SubClassesFinder;
-import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.Trigonometry;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.Utils;
 import uk.org.catapult.ts.cav.model.Pedestrian;
 import uk.org.catapult.ts.cav.model.Vehicle;
@@ -110,6 +124,51 @@ public class CatpedsimManager extends Observable {
 	 */
 	private AStarPathFinder aStarPathFinder = null;
 
+	/** Cache of the A* routes of the departing agents. */
+	private final RouteCache routeCache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+
+	/**
+	 * The routes of the departing agents are computed by the hierarchical path
+	 * finder instead of a search over the whole grid.
+	 */
+	private boolean hierarchicalPathFinding = false;
+
+	/** Hierarchical path finder over the A* grid, built the first time. */
+	private HierarchicalPathFinder hierarchicalPathFinder = null;
+
+	/**
+	 * The routes of the departing agents are computed over the visibility
+	 * graph of the walls and obstacles instead of the A* grid.
+	 */
+	private boolean visibilityGraphNavigation = false;
+
+	/** Visibility graph of the geometry, built the first time. */
+	private VisibilityGraphPathFinder visibilityGraphPathFinder = null;
+
+	/**
+	 * The routes of the departing agents are computed over the navigation
+	 * mesh of the geometry instead of the A* grid.
+	 */
+	private boolean navigationMeshNavigation = false;
+
+	/** Navigation mesh of the geometry, built the first time. */
+	private NavigationMesh navigationMesh = null;
+
+	/**
+	 * Voronoi density of the pedestrians, measured at the end of the ticks;
+	 * null when the density is not measured.
+	 */
+	private VoronoiDensityService densityService = null;
+
+	/**
+	 * The agents heading for an exit follow the flow field of the exit instead
+	 * of an A* path.
+	 */
+	private boolean flowFieldNavigation = false;
+
+	/** Flow fields of the exits, built the first time they are needed. */
+	private final Map<CatpedsimCrossing, FlowField> flowFields = new ConcurrentHashMap<CatpedsimCrossing, FlowField>();
+
 	/**
 	 * Geometry information.
 	 */
@@ -156,6 +215,22 @@ public class CatpedsimManager extends Observable {
 	 */
 	private final Map<Class<?>, List<CatpedsimAgent>> mapOfAgentsLists = new HashMap<Class<?>, List<CatpedsimAgent>>();
 
+	/** The lists of the map of agents lists, indexed by type id. */
+	private AgentList[] agentListsByTypeId = new AgentList[0];
+
+	/**
+	 * The agents of all the lists indexed by their unique identifier, kept up
+	 * to date by addAgent and removeAgent.
+	 */
+	private final Map<UniqueIdentifier, CatpedsimAgent> mapOfAgentsByIdentifier =
+			new ConcurrentHashMap<UniqueIdentifier, CatpedsimAgent>();
+
+	/** The agent types and their factories, resolved once at startup. */
+	private AgentFactoryRegistry agentFactoryRegistry = null;
+
+	/** Agents which arrived at their exit, spawned again by the next departures. */
+	private final AgentPool agentPool = new AgentPool(AgentPool.DEFAULT_CAPACITY_PER_TYPE);
+
 	/**
 	 * A map holding absolute counters for each type of agent. It helps
 	 * generating unique agent indexes. generating unique
@@ -175,10 +250,191 @@ public class CatpedsimManager extends Observable {
 	private final Map<Class<?>, TransitionZoneMatrix> transferZonesDistributionMatrix = new HashMap<Class<?>, TransitionZoneMatrix>();
 
 	/**
-	 * A map of social force models based on the agents engaged in the
-	 * interaction.
+	 * The social force models based on the agents engaged in the interaction,
+	 * indexed by the type id of the agent and the type id of the other agent.
+	 */
+	private SocialForceParameters[][] socialForceParametersTable = new SocialForceParameters[0][0];
+
+	/**
+	 * The neighbour grids over the moving agents, the active agents and the
+	 * agents carried by another agent, indexed by type id and rebuilt at the
+	 * beginning of every tick.
+	 */
+	private AgentsSpatialGrid[] spatialGridsByTypeId = new AgentsSpatialGrid[0];
+
+	/**
+	 * The neighbour indexes over the dormant agents, stopped or not active,
+	 * indexed by type id. They are only rebuilt when the dormant agents
+	 * change.
+	 */
+	private DormantAgentsIndex[] dormantAgentsIndexesByTypeId = new DormantAgentsIndex[0];
+
+	/**
+	 * Reusable lists of the moving agents of the current tick, indexed by type
+	 * id.
+	 */
+	private final List<List<CatpedsimAgent>> movingAgentsByTypeId = new ArrayList<List<CatpedsimAgent>>();
+
+	/**
+	 * True if an agent entered or left a dormant agents index in the current
+	 * tick.
+	 */
+	private boolean dormantAgentsMembershipChanged = false;
+
+	/**
+	 * Reusable lists of the neighbour candidates of the current agent, one for
+	 * every thread computing forces.
+	 */
+	private final ThreadLocal<List<CatpedsimAgent>> threadNeighbourCandidates = ThreadLocal
+			.withInitial(ArrayList::new);
+
+	/**
+	 * Reusable arrays receiving the store slot ranges of the neighbour
+	 * candidates, one for every thread computing forces.
+	 */
+	private final ThreadLocal<int[]> threadNeighbourSlotRanges = ThreadLocal.withInitial(() -> new int[6]);
+
+	/**
+	 * Structure of arrays gather buffer of the agents state, a copy in cell
+	 * order filled at the beginning of every tick when the structure of arrays
+	 * forces are enabled; the agents keep their own state.
+	 */
+	private final AgentStateStore agentStateStore = new AgentStateStore();
+
+	/**
+	 * Number of slots of the dormant agents at the beginning of the store,
+	 * kept from a tick to the next while the dormant agents do not change; -1
+	 * if they are not in the store.
+	 */
+	private int numberOfDormantStoreSlots = -1;
+
+	/**
+	 * Compute the repulsion between agents on the structure of arrays store
+	 * instead of the agent objects.
+	 */
+	private boolean structureOfArraysForces = false;
+
+	/**
+	 * Compute the repulsion between agent objects with the allocation free
+	 * kernel instead of the reference one.
+	 */
+	private boolean allocationFreeAgentForces = false;
+
+	/**
+	 * Compute the repulsion between agents of the same type once per pair,
+	 * before the forces of every agent.
 	 */
-	private final Map<SocialForceAgentsPair<?, ?>, SocialForceParameters> socialForceInteractionMap = new HashMap<>();
+	private boolean symmetricAgentForces = false;
+
+	/**
+	 * True if the symmetric pass over the pairs of agents ran in the current
+	 * tick.
+	 */
+	private boolean symmetricPairsComputed = false;
+
+	/**
+	 * Number of row colours of the parallel pass over the pairs of agents.
+	 */
+	private static final int PAIRS_PASS_ROW_COLOURS = 2;
+
+	/**
+	 * Number of column colours of the parallel pass over the pairs of agents.
+	 */
+	private static final int PAIRS_PASS_COLUMN_COLOURS = 3;
+
+	/**
+	 * Default skin distance of the Verlet neighbour lists in meters.
+	 */
+	public static final float DEFAULT_NEIGHBOUR_LISTS_SKIN = 1.0f;
+
+	/**
+	 * Take the neighbour candidates of the agents from Verlet neighbour lists
+	 * instead of the spatial grids.
+	 */
+	private boolean neighbourLists = false;
+
+	/**
+	 * Distance added to the social force cut-off distance when the neighbour
+	 * lists are built. The lists stay valid until an agent moved more than
+	 * half of it.
+	 */
+	private float neighbourListsSkin = DEFAULT_NEIGHBOUR_LISTS_SKIN;
+
+	/**
+	 * True if the neighbour lists are used in the current tick.
+	 */
+	private boolean neighbourListsUsed = false;
+
+	/**
+	 * True if the neighbour lists of all the agents are up to date.
+	 */
+	private boolean neighbourListsValid = false;
+
+	/**
+	 * Number of changes of the agents lists, used to rebuild the neighbour
+	 * lists when agents are added or removed.
+	 */
+	private final AtomicLong agentsListsModifications = new AtomicLong(0);
+
+	/**
+	 * Number of changes of the agents lists at the last build of the neighbour
+	 * lists.
+	 */
+	private long neighbourListsModifications = -1;
+
+	/**
+	 * Number of builds of the neighbour lists.
+	 */
+	private long neighbourListsBuilds = 0;
+
+	/**
+	 * Parallel tick engine. By default the ticks are computed on the
+	 * simulation thread.
+	 */
+	private ParallelTickEngine parallelTickEngine = new ParallelTickEngine(1);
+
+	/**
+	 * The agents departing in the current call of generateDepartures, whose
+	 * paths are computed on the worker threads. They are added to the agents
+	 * lists in the order they were generated.
+	 */
+	private final List<Callable<Boolean>> pendingDepartures = new ArrayList<Callable<Boolean>>();
+
+	/**
+	 * The agent did not move in the current two phase tick.
+	 */
+	private static final byte TICK_ACTION_NONE = 0;
+
+	/**
+	 * The agent moves in the current two phase tick.
+	 */
+	private static final byte TICK_ACTION_MOVE = 1;
+
+	/**
+	 * The agent arrived at its destination in the current two phase tick.
+	 */
+	private static final byte TICK_ACTION_ARRIVED = 2;
+
+	/**
+	 * The agents taking part in the current two phase tick.
+	 */
+	private CatpedsimAgent[] tickAgents = new CatpedsimAgent[0];
+
+	/**
+	 * The types of the agents taking part in the current two phase tick.
+	 */
+	private Class<?>[] tickAgentsTypes = new Class<?>[0];
+
+	/**
+	 * The action decided in the first phase for every agent of the current
+	 * tick.
+	 */
+	private byte[] tickAgentsActions = new byte[0];
+
+	/**
+	 * Number of agents taking part in the current two phase tick.
+	 */
+	private int numberOfTickAgents = 0;
 
 	/**
 	 * Desired target.
@@ -232,6 +488,44 @@ public class CatpedsimManager extends Observable {
 	 */
 	public CatpedsimManager(final int newWindowWidth, final int newWindowDepth,
 			final CatpedsimConfiguration configuration, final CatpedsimBridge catpedsimBridge) throws Exception {
+		this(newWindowWidth, newWindowDepth, configuration, catpedsimBridge, null);
+	}
+
+	/**
+	 * Load initialisation file, with the agent types given by the application.
+	 * The agent types are not searched on the classpath.
+	 * 
+	 * @param newWindowWidth
+	 *            world width
+	 * @param newWindowDepth
+	 *            world depth
+	 * @param configuration
+	 *            configuration model
+	 * @param catpedsimBridge
+	 *            bridge to the simulation, it observes events coming from this
+	 *            manager
+	 * @param registry
+	 *            the agent types and their factories, null to load them from
+	 *            the agent type providers; pass
+	 *            {@link AgentFactoryRegistry#scanClasspath()} to search the
+	 *            classpath for the agent types
+	 * @throws Exception
+	 *             on error
+	 */
+	public CatpedsimManager(final int newWindowWidth, final int newWindowDepth,
+			final CatpedsimConfiguration configuration, final CatpedsimBridge catpedsimBridge,
+			final AgentFactoryRegistry registry) throws Exception {
+
+		long startupStartNanoseconds = System.nanoTime();
+		long phaseStartNanoseconds = startupStartNanoseconds;
+		StringBuilder startupTimes = new StringBuilder("Manager startup times in milliseconds:");
+
+		if (registry != null) {
+			agentFactoryRegistry = registry;
+		} else {
+			agentFactoryRegistry = AgentFactoryRegistry.load();
+		}
+		phaseStartNanoseconds = appendStartupPhaseTime(startupTimes, "agent types", phaseStartNanoseconds);
 
 		windowWidth = newWindowWidth;
 		windowDepth = newWindowDepth;
@@ -239,7 +533,10 @@ public class CatpedsimManager extends Observable {
 		initialisation = configuration;
 
 		buildGeometry(configuration);
+		phaseStartNanoseconds = appendStartupPhaseTime(startupTimes, "geometry", phaseStartNanoseconds);
+
 		loadTransitionZonesDistribution(configuration);
+		phaseStartNanoseconds = appendStartupPhaseTime(startupTimes, "transition zones", phaseStartNanoseconds);
 
 		tickLengthSeconds = (float) TimeUtilities.convertTime(initialisation.getTickLength(),
 				initialisation.getTickUnit(), SimulationTimeUnit.SECONDS);
@@ -254,9 +551,37 @@ public class CatpedsimManager extends Observable {
 		worldDepth = (int) LengthUnits.convertToMeters(lengthUnit, initialisation.getWorldTileDepth());
 
 		scanAllAgentSubClassesBuildAgentsListsAndSocialForces();
+		phaseStartNanoseconds = appendStartupPhaseTime(startupTimes, "agent lists and social forces",
+				phaseStartNanoseconds);
+
 		buildDepartureProfilesForAllAgents(configuration);
+		appendStartupPhaseTime(startupTimes, "departure profiles", phaseStartNanoseconds);
 
 		addObserver(catpedsimBridge);
+
+		appendStartupPhaseTime(startupTimes, "total", startupStartNanoseconds);
+		LOGGER.info(startupTimes.toString());
+	}
+
+	/**
+	 * Append the duration of a startup phase to the startup log line.
+	 * 
+	 * @param startupTimes
+	 *            the startup log line
+	 * @param phase
+	 *            name of the phase
+	 * @param phaseStartNanoseconds
+	 *            start of the phase, System.nanoTime()
+	 * @return the end of the phase, System.nanoTime()
+	 */
+	private static long appendStartupPhaseTime(final StringBuilder startupTimes, final String phase,
+			final long phaseStartNanoseconds) {
+		long phaseEndNanoseconds = System.nanoTime();
+
+		startupTimes.append(' ').append(phase).append(' ')
+				.append(String.format("%.1f", (phaseEndNanoseconds - phaseStartNanoseconds) / 1e6)).append(';');
+
+		return phaseEndNanoseconds;
 	}
 
 	/**
@@ -267,9 +592,7 @@ public class CatpedsimManager extends Observable {
 	 */
 	private void loadTransitionZonesDistribution(final CatpedsimConfiguration configuration) {
 		try {
-			List<Class<?>> agentSubclassList = SubClassesFinder.subclassScan(CatpedsimAgent.class, "");
-
-			for (Class<?> currentAgentSubclass : agentSubclassList) {
+			for (Class<?> currentAgentSubclass : agentFactoryRegistry.getAgentTypes()) {
 				String transitionZoneMatrixFile = configuration.getTransitionZoneMatrixFilePath(currentAgentSubclass);
 
 				TransitionZoneMatrix transitionZoneMatrix = ReaderOfTransitionMatrices
@@ -284,30 +607,166 @@ public class CatpedsimManager extends Observable {
 	}
 
 	/**
-	 * Collect all the subclasses of CatpedsimAgent. Create a list for each
+	 * Collect all the agent types of the registry. Create a list for each
 	 * group.
 	 * 
 	 * @throws Exception
-	 *             class not found
+	 *             on error
 	 */
 	private void scanAllAgentSubClassesBuildAgentsListsAndSocialForces() throws Exception {
 		mapOfAgentsLists.clear();
+		mapOfAgentsByIdentifier.clear();
+		agentsListsModifications.incrementAndGet();
+
+		List<Class<?>> agentSubclassList = agentFactoryRegistry.getAgentTypes();
+		int numberOfAgentTypes = agentSubclassList.size();
+
+		socialForceParametersTable = new SocialForceParameters[numberOfAgentTypes][numberOfAgentTypes];
+		agentListsByTypeId = new AgentList[numberOfAgentTypes];
 
-		List<Class<?>> agentSubclassList = SubClassesFinder.subclassScan(CatpedsimAgent.class, "");
+		for (int currentTypeId = 0; currentTypeId < numberOfAgentTypes; currentTypeId++) {
+			Class<?> currentAgentSubclass = agentSubclassList.get(currentTypeId);
 
-		for (Class<?> currentAgentSubclass : agentSubclassList) {
-			mapOfAgentsLists.put(currentAgentSubclass, new LinkedList<CatpedsimAgent>());
+			agentListsByTypeId[currentTypeId] = new AgentList();
+			mapOfAgentsLists.put(currentAgentSubclass, agentListsByTypeId[currentTypeId]);
 			mapOfAgentsCounters.put(currentAgentSubclass, new AtomicLong(0));
 
 			agentsOriginDestinationMatricesWithTimeKey.put(currentAgentSubclass,
 					new HashMap<Integer, OriginDestinationMatrix<?>>());
 
-			for (Class<?> otherAgentSubclass : agentSubclassList) {
+			for (int otherTypeId = 0; otherTypeId < numberOfAgentTypes; otherTypeId++) {
 				SocialForceAgentsPair<?, ?> socialForceAgentsPair = new SocialForceAgentsPair<>(currentAgentSubclass,
-						otherAgentSubclass);
+						agentSubclassList.get(otherTypeId));
+
+				socialForceParametersTable[currentTypeId][otherTypeId] = new SocialForceParameters(
+						socialForceAgentsPair);
+			}
+		}
+
+		buildSpatialGrids();
+	}
+
+	/**
+	 * Build a neighbour grid and a dormant agents index for every type of
+	 * agent. The cell size is the largest social force cut-off distance of all
+	 * pairs of agent types, plus the skin distance if the neighbour lists are
+	 * enabled.
+	 */
+	private void buildSpatialGrids() {
+		float cutOffDistance = 0;
+		for (SocialForceParameters[] socialForceParametersRow : socialForceParametersTable) {
+			for (SocialForceParameters socialForceParameters : socialForceParametersRow) {
+				cutOffDistance = Math.max(cutOffDistance,
+						socialForceParameters.getMaxDistanceForSocialForcesInfluence());
+			}
+		}
+
+		if (neighbourLists) {
+			cutOffDistance += neighbourListsSkin;
+		}
+
+		List<Class<?>> agentTypes = agentFactoryRegistry.getAgentTypes();
+		spatialGridsByTypeId = new AgentsSpatialGrid[agentTypes.size()];
+		dormantAgentsIndexesByTypeId = new DormantAgentsIndex[agentTypes.size()];
+		movingAgentsByTypeId.clear();
+
+		for (int typeId = 0; typeId < agentTypes.size(); typeId++) {
+			spatialGridsByTypeId[typeId] = new AgentsSpatialGrid(worldWidth, worldDepth, cutOffDistance);
+			dormantAgentsIndexesByTypeId[typeId] = new DormantAgentsIndex(worldWidth, worldDepth, cutOffDistance);
+			movingAgentsByTypeId.add(new ArrayList<CatpedsimAgent>());
+		}
+		numberOfDormantStoreSlots = -1;
+	}
+
+	/**
+	 * Collect the moving agents of the tick and rebuild the spatial grids. The
+	 * agents lists first move the agents which changed state to the moving or
+	 * the dormant agents, and the tick only walks the moving agents. The
+	 * active agents take part in the current tick. The agents carried by
+	 * another agent do not, but they move with their carrier, so both are
+	 * indexed by the neighbour grids, rebuilt from their current positions.
+	 * The dormant agents indexes, and the dormant agents slots at the
+	 * beginning of the store, are only rebuilt when the dormant agents
+	 * changed.
+	 */
+	private void partitionAgentsAndRebuildSpatialGrids() {
+		int numberOfAgents = 0;
+		for (List<CatpedsimAgent> listOfAgents : mapOfAgentsLists.values()) {
+			numberOfAgents += listOfAgents.size();
+		}
+
+		if (tickAgents.length < numberOfAgents) {
+			tickAgents = new CatpedsimAgent[numberOfAgents];
+			tickAgentsTypes = new Class<?>[numberOfAgents];
+			tickAgentsActions = new byte[numberOfAgents];
+		}
+
+		numberOfTickAgents = 0;
+		dormantAgentsMembershipChanged = false;
+		boolean dormantAgentsChanged = false;
+
+		for (Entry<Class<?>, List<CatpedsimAgent>> mapOfAgentsIterator : mapOfAgentsLists.entrySet()) {
+			Class<?> agentType = mapOfAgentsIterator.getKey();
+			int typeId = agentFactoryRegistry.getTypeId(agentType);
+			AgentList listOfAgents = agentListsByTypeId[typeId];
+
+			List<CatpedsimAgent> movingAgents = movingAgentsByTypeId.get(typeId);
+			DormantAgentsIndex dormantAgentsIndex = dormantAgentsIndexesByTypeId[typeId];
 
-				socialForceInteractionMap.put(socialForceAgentsPair, new SocialForceParameters(socialForceAgentsPair));
+			movingAgents.clear();
+
+			synchronized (listOfAgents) {
+				listOfAgents.applyDormancyChecks();
+
+				int numberOfMovingAgents = listOfAgents.getNumberOfMovingAgents();
+				for (int slot = 0; slot < numberOfMovingAgents; slot++) {
+					CatpedsimAgent currentAgent = listOfAgents.get(slot);
+
+					movingAgents.add(currentAgent);
+
+					if (currentAgent.isTransported()) {
+						continue;
+					}
+
+					if (numberOfTickAgents < tickAgents.length) {
+						tickAgents[numberOfTickAgents] = currentAgent;
+						tickAgentsTypes[numberOfTickAgents] = agentType;
+						tickAgentsActions[numberOfTickAgents] = TICK_ACTION_NONE;
+						numberOfTickAgents++;
+					}
+				}
+
+				if (dormantAgentsIndex.update(listOfAgents)) {
+					dormantAgentsChanged = true;
+				}
+			}
+
+			spatialGridsByTypeId[typeId].rebuild(movingAgents);
+			movingAgents.clear();
+
+			if (dormantAgentsIndex.hasMembershipChanged()) {
+				dormantAgentsMembershipChanged = true;
+			}
+		}
+
+		if (!structureOfArraysForces) {
+			agentStateStore.clear();
+			numberOfDormantStoreSlots = -1;
+			return;
+		}
+
+		if (dormantAgentsChanged || numberOfDormantStoreSlots < 0) {
+			agentStateStore.clear();
+			for (DormantAgentsIndex dormantAgentsIndex : dormantAgentsIndexesByTypeId) {
+				dormantAgentsIndex.appendToStore(agentStateStore);
 			}
+			numberOfDormantStoreSlots = agentStateStore.size();
+		} else {
+			agentStateStore.truncate(numberOfDormantStoreSlots);
+		}
+
+		for (AgentsSpatialGrid spatialGrid : spatialGridsByTypeId) {
+			spatialGrid.appendToStore(agentStateStore);
 		}
 	}
 
@@ -367,6 +826,11 @@ public class CatpedsimManager extends Observable {
 	private void buildGeometry(final CatpedsimConfiguration configuration) {
 		geometry = LoadGeometryFromXmlModel.readXMLGeometry(configuration.getConfigurationFilename());
 		geometry.computeCentroidsSegmentLengthsAndBoundaries();
+
+		synchronized (this) {
+			visibilityGraphPathFinder = null;
+			navigationMesh = null;
+		}
 	}
 
 	/**
@@ -434,7 +898,7 @@ public class CatpedsimManager extends Observable {
 											TransitionZoneTypes.AUTONOMOUS_VEHICLE_RACK.getColor(),
 											new AgentBehaviour(AgentState.STOP_AND_WAIT), heading);
 
-									mapOfAgentsLists.get(CatpedsimAutonomousVehicle.class).add(agent);
+									addAgent(CatpedsimAutonomousVehicle.class, agent);
 
 									transitionZone.addEnclosedAgent(agent.getUniqueIdentifier());
 
@@ -455,7 +919,7 @@ public class CatpedsimManager extends Observable {
 											TransitionZoneTypes.BICYCLE_RACK.getColor(),
 											new AgentBehaviour(AgentState.STOP_AND_WAIT), heading);
 
-									mapOfAgentsLists.get(CatpedsimBicycle.class).add(agent);
+									addAgent(CatpedsimBicycle.class, agent);
 
 									transitionZone.addEnclosedAgent(agent.getUniqueIdentifier());
 								}
@@ -478,17 +942,10 @@ public class CatpedsimManager extends Observable {
 	 *            type of agent
 	 */
 	private void deleteAgentWithStringIdentifier(final StringIdentifier idToRemove, final Class<?> agentClass) {
+		CatpedsimAgent agent = lookupAgentWithStringIdentifier(idToRemove, agentClass);
 
-		if (mapOfAgentsLists.containsKey(agentClass)) {
-			List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentClass);
-
-			for (Iterator<CatpedsimAgent> iterator = listOfAgents.iterator(); iterator.hasNext();) {
-				CatpedsimAgent agent = iterator.next();
-				if (agent.getUniqueIdentifier().equals(idToRemove)) {
-					iterator.remove();
-					return;
-				}
-			}
+		if (agent != null) {
+			removeAgent(agentClass, agent);
 		}
 	}
 
@@ -501,19 +958,87 @@ public class CatpedsimManager extends Observable {
 	 * 
 	 */
 	private void deleteAgentWithStringIdentifier(final StringIdentifier idToRemove) {
-		for (Map.Entry<Class<?>, List<CatpedsimAgent>> entry : mapOfAgentsLists.entrySet()) {
-			Class<?> agentClass = entry.getKey();
-			List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentClass);
+		CatpedsimAgent agent = getAgentByName(idToRemove);
 
-			for (Iterator<CatpedsimAgent> iterator = listOfAgents.iterator(); iterator.hasNext();) {
-				CatpedsimAgent agent = iterator.next();
-				if (agent.getUniqueIdentifier().equals(idToRemove)) {
-					iterator.remove();
-					return;
-				}
+		if (agent != null) {
+			removeAgent(agent.getClass(), agent);
+		}
+	}
+
+	/**
+	 * Add an agent to the list of its type and to the index of the agents by
+	 * unique identifier. An agent with the same unique identifier replaces the
+	 * previous one in the index.
+	 * 
+	 * @param agentType
+	 *            agent type
+	 * @param agent
+	 *            the agent to add
+	 * @return true, as List.add
+	 */
+	private boolean addAgent(final Class<?> agentType, final CatpedsimAgent agent) {
+		List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentType);
+
+		agent.setTypeId(agentFactoryRegistry.getTypeId(agentType));
+
+		synchronized (listOfAgents) {
+			listOfAgents.add(agent);
+		}
+		agentsListsModifications.incrementAndGet();
+
+		if (agent.getUniqueIdentifier() != null) {
+			mapOfAgentsByIdentifier.put(agent.getUniqueIdentifier(), agent);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Remove an agent from the list of its type and from the index of the
+	 * agents by unique identifier.
+	 * 
+	 * @param agentType
+	 *            agent type
+	 * @param agent
+	 *            the agent to remove
+	 */
+	private void removeAgent(final Class<?> agentType, final CatpedsimAgent agent) {
+		List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentType);
+
+		if (listOfAgents != null) {
+			synchronized (listOfAgents) {
+				listOfAgents.remove(agent);
 			}
+		}
+		agentsListsModifications.incrementAndGet();
 
+		if (agent.getUniqueIdentifier() != null) {
+			mapOfAgentsByIdentifier.remove(agent.getUniqueIdentifier(), agent);
+		}
+	}
+
+	/**
+	 * Remove all the agents of a type.
+	 * 
+	 * @param agentType
+	 *            agent type
+	 */
+	private void removeAllAgents(final Class<?> agentType) {
+		List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentType);
+
+		if (listOfAgents == null) {
+			return;
+		}
+
+		synchronized (listOfAgents) {
+			for (CatpedsimAgent agent : listOfAgents) {
+				if (agent.getUniqueIdentifier() != null) {
+					mapOfAgentsByIdentifier.remove(agent.getUniqueIdentifier(), agent);
+				}
+			}
+			listOfAgents.clear();
 		}
+		agentsListsModifications.incrementAndGet();
 	}
 
 	/**
@@ -603,9 +1128,15 @@ public class CatpedsimManager extends Observable {
 
 	/**
 	 * In case of an emergency, the pedestrians are choosing the closest exit in
-	 * order to leave the premises as fast as possible.
+	 * order to leave the premises as fast as possible. With the flow field
+	 * navigation the closest exit is the one with the shortest walk, and the
+	 * pedestrians follow its flow field. The exits which cannot be reached
+	 * along the grid are skipped; the straight line distance is only used
+	 * for the pedestrians outside the grid, so the two distances are never
+	 * compared.
 	 */
 	public final void evacuatePedestriansToClosestExit() {
+		boolean followFlowFields = flowFieldNavigation && aStarPathFinder != null;
 		List<CatpedsimCrossing> listOfCrossings = geometry.getCrossings();
 
 		for (Map.Entry<Class<?>, List<CatpedsimAgent>> entry : mapOfAgentsLists.entrySet()) {
@@ -614,11 +1145,24 @@ public class CatpedsimManager extends Observable {
 
 			for (Iterator<CatpedsimAgent> iterator = listOfAgents.iterator(); iterator.hasNext();) {
 				CatpedsimAgent agent = iterator.next();
+				PVector position = agent.getPositionVector();
+				boolean onTheGrid = followFlowFields
+						&& aStarPathFinder.getNodeIndex((int) position.x, (int) position.y) != -1;
 				float minimumDistance = Float.MAX_VALUE;
 				CatpedsimCrossing closestExit = null;
 
 				for (CatpedsimCrossing exit : listOfCrossings) {
-					float distance = PVector.dist(exit.getCentroid(), agent.getPositionVector());
+					float distance;
+
+					if (onTheGrid) {
+						distance = getFlowField(exit).getDistanceToExit(position);
+
+						if (distance == Float.MAX_VALUE) {
+							continue;
+						}
+					} else {
+						distance = PVector.dist(exit.getCentroid(), position);
+					}
 
 					if (distance < minimumDistance) {
 						closestExit = exit;
@@ -629,6 +1173,11 @@ public class CatpedsimManager extends Observable {
 				if (closestExit != null) {
 					agent.setAgentExit(closestExit);
 					agent.setSequenceOfBehaviours(null);
+
+					if (followFlowFields) {
+						agent.setFlowField(getFlowField(closestExit));
+						agent.setPathToFollow(null);
+					}
 				}
 			}
 		}
@@ -674,109 +1223,553 @@ public class CatpedsimManager extends Observable {
 	 * @return true of the agent is added in an accesible area
 	 */
 	public final boolean checkIfAgentLocationIsPlacedInAccessibleArea(final PVector vectorToLocation) {
-		boolean accesible = true;
+		if (geometry.checkIfPointBelongsToWallOrObstacle(vectorToLocation)
+				|| geometry.checkIfPointIsInsideObstacle(vectorToLocation)) {
+			return false;
+		}
 
-		for (CatpedsimObstacle wall : geometry.getWalls()) {
-			for (int indexSection = 0; indexSection < wall.getObstacleSections().length; indexSection++) {
-				ShapeSection wallSection = wall.getObstacleSections()[indexSection];
+		return true;
+	}
 
-				if (Trigonometry.checkIfPointBelongsToSegment(vectorToLocation, wallSection.getVectorToStartPoint(),
-						wallSection.getVectorToEndPoint())) {
-					return false;
-				}
+	/**
+	 * Iterator through the lists of agents and calculate next mode.
+	 * 
+	 * The tick has two phases. First the forces acting on every active agent
+	 * are computed from the state the agents published at the end of the last
+	 * tick, the dormant agents only repelling them, then all the active agents
+	 * are moved. Both phases run on the parallel tick
+	 * engine. The agents which arrived at their destination are removed or
+	 * change their state at the end, on the simulation thread, in the order of
+	 * the agents lists. Finally every agent publishes its new state.
+	 * 
+	 * @exception Exception
+	 *                on error
+	 */
+	public final void calculateAllAgentsNextAction() throws Exception {
+
+		long modifications = agentsListsModifications.get();
+
+		partitionAgentsAndRebuildSpatialGrids();
+		updateNeighbourLists(modifications);
+		computeSymmetricPairsForces();
+
+		parallelTickEngine.forEachAgent(numberOfTickAgents, this::computeTickAgentForces);
+		parallelTickEngine.forEachAgent(numberOfTickAgents, this::integrateTickAgent);
+
+		for (int indexAgent = 0; indexAgent < numberOfTickAgents; indexAgent++) {
+			if (tickAgentsActions[indexAgent] == TICK_ACTION_ARRIVED) {
+				handleArrivalOfTickAgent(tickAgents[indexAgent], tickAgentsTypes[indexAgent]);
+			}
+			tickAgents[indexAgent] = null;
+		}
+
+		publishAllAgentsStates();
+
+		if (densityService != null
+				&& densityService.advance(mapOfAgentsLists.get(CatpedsimPedestrian.class), tickLengthSeconds)) {
+			setChanged();
+			notifyObservers(LogicLayerEventsToBridge.DENSITY_UPDATED);
+		}
+	}
+
+	/**
+	 * Rebuild the Verlet neighbour lists of the moving agents if an agent was
+	 * added or removed, if an agent entered or left the dormant agents, or if
+	 * a moving agent moved more than half of the skin distance since the last
+	 * build. The lists only hold moving agents, the dormant agents are always
+	 * taken from their indexes, so a dormant agent moved by an external
+	 * simulator does not invalidate them. The lists are not used when the
+	 * structure of arrays store is used.
+	 * 
+	 * @param modifications
+	 *            number of changes of the agents lists before the spatial grids
+	 *            were rebuilt
+	 */
+	private void updateNeighbourLists(final long modifications) {
+		neighbourListsUsed = neighbourLists && !structureOfArraysForces;
+
+		if (!neighbourListsUsed) {
+			neighbourListsValid = false;
+			return;
+		}
+
+		if (neighbourListsValid && neighbourListsModifications == modifications && !dormantAgentsMembershipChanged
+				&& !checkIfAnAgentMovedHalfTheSkin()) {
+			return;
+		}
+
+		for (AgentsSpatialGrid spatialGrid : spatialGridsByTypeId) {
+			for (int indexAgent = 0; indexAgent < spatialGrid.getNumberOfAgents(); indexAgent++) {
+				buildNeighbourLists(spatialGrid.getAgent(indexAgent));
 			}
 		}
 
-		for (CatpedsimObstacle obstacle : geometry.getObstacles()) {
-			if (Trigonometry.pointInsideClosedPolygon(obstacle.getObstacleSections(), vectorToLocation)) {
-				return false;
+		neighbourListsModifications = modifications;
+		neighbourListsValid = true;
+		neighbourListsBuilds++;
+	}
+
+	/**
+	 * Check if an agent moved more than half of the skin distance since the
+	 * last build of the neighbour lists.
+	 * 
+	 * @return true if the neighbour lists must be rebuilt
+	 */
+	private boolean checkIfAnAgentMovedHalfTheSkin() {
+		float halfSkin = neighbourListsSkin / 2;
+		float halfSkinSquared = halfSkin * halfSkin;
+
+		for (AgentsSpatialGrid spatialGrid : spatialGridsByTypeId) {
+			for (int indexAgent = 0; indexAgent < spatialGrid.getNumberOfAgents(); indexAgent++) {
+				CatpedsimAgent agent = spatialGrid.getAgent(indexAgent);
+				PVector position = agent.getSnapshotPositionVector();
+				PVector lastPosition = agent.getNeighbourListsPosition();
+
+				float dx = position.x - lastPosition.x;
+				float dy = position.y - lastPosition.y;
+
+				if (dx * dx + dy * dy > halfSkinSquared) {
+					return true;
+				}
 			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Build the neighbour lists of an agent from the spatial grids of the
+	 * moving agents. A list keeps the agents closer than the cut-off distance
+	 * of the pair of types plus the skin distance.
+	 * 
+	 * @param agent
+	 *            the agent
+	 */
+	private void buildNeighbourLists(final CatpedsimAgent agent) {
+		PVector position = agent.getSnapshotPositionVector();
+		SocialForceParameters[] socialForceParametersRow = socialForceParametersTable[agent.getTypeId()];
+
+		for (int otherTypeId = 0; otherTypeId < spatialGridsByTypeId.length; otherTypeId++) {
+			List<CatpedsimAgent> neighbourList = agent.getNeighbourList(otherTypeId);
+			neighbourList.clear();
+			spatialGridsByTypeId[otherTypeId].collectNeighbours(position, neighbourList);
+
+			float listDistance = socialForceParametersRow[otherTypeId].getMaxDistanceForSocialForcesInfluence()
+					+ neighbourListsSkin;
+			float listDistanceSquared = listDistance * listDistance;
+			int numberOfNeighbours = 0;
+
+			for (int indexNeighbour = 0; indexNeighbour < neighbourList.size(); indexNeighbour++) {
+				CatpedsimAgent neighbour = neighbourList.get(indexNeighbour);
+				PVector neighbourPosition = neighbour.getSnapshotPositionVector();
 
-			for (int indexSection = 0; indexSection < obstacle.getObstacleSections().length; indexSection++) {
-				ShapeSection wallSection = obstacle.getObstacleSections()[indexSection];
+				float dx = position.x - neighbourPosition.x;
+				float dy = position.y - neighbourPosition.y;
 
-				if (Trigonometry.checkIfPointBelongsToSegment(vectorToLocation, wallSection.getVectorToStartPoint(),
-						wallSection.getVectorToEndPoint())) {
-					return false;
+				if (neighbour != agent && dx * dx + dy * dy <= listDistanceSquared) {
+					neighbourList.set(numberOfNeighbours++, neighbour);
 				}
 			}
+
+			neighbourList.subList(numberOfNeighbours, neighbourList.size()).clear();
 		}
 
-		return accesible;
+		agent.getNeighbourListsPosition().set(position);
 	}
 
 	/**
-	 * Iterator through the lists of agents and calculate next mode.
+	 * Compute once per pair the repulsion between the agents of the same type.
+	 * The forces are kept by the agents until their own forces are computed.
+	 * The pass is skipped when the structure of arrays store is used.
 	 * 
-	 * @exception Exception
-	 *                on error
+	 * The cells of a grid are visited on the parallel tick engine in six
+	 * colours, by row modulo two and column modulo three. The pairs of a cell
+	 * only touch the agents of two rows and three columns of cells, so no
+	 * agent is written by two cells of the same colour. The order the forces
+	 * of an agent are summed in does not depend on the number of threads.
 	 */
-	public final void calculateAllAgentsNextAction() throws Exception {
+	private void computeSymmetricPairsForces() {
+		symmetricPairsComputed = symmetricAgentForces && !structureOfArraysForces;
 
-		for (Entry<Class<?>, List<CatpedsimAgent>> mapOfAgentsIterator : mapOfAgentsLists.entrySet()) {
+		if (!symmetricPairsComputed) {
+			return;
+		}
 
-			Class<?> currentAgentType = mapOfAgentsIterator.getKey();
-			List<CatpedsimAgent> listOfAgents = mapOfAgentsIterator.getValue();
+		for (int typeId = 0; typeId < spatialGridsByTypeId.length; typeId++) {
+			AgentsSpatialGrid spatialGrid = spatialGridsByTypeId[typeId];
+
+			for (int indexAgent = 0; indexAgent < spatialGrid.getNumberOfAgents(); indexAgent++) {
+				spatialGrid.getAgent(indexAgent).getSymmetricPairsForce().set(0, 0, 0);
+			}
 
+			if (spatialGrid.getNumberOfAgents() < 2) {
+				continue;
+			}
+
+			SocialForceParameters socialForceParameters = socialForceParametersTable[typeId][typeId];
+			AgentsSpatialGrid.PairVisitor visitor = (first, second) -> Forces
+					.accumulateSymmetricAgentsRepulsion(first, second, socialForceParameters);
+
+			int rows = spatialGrid.getNumberOfRows();
+			int columns = spatialGrid.getNumberOfColumns();
+
+			for (int rowColour = 0; rowColour < PAIRS_PASS_ROW_COLOURS; rowColour++) {
+				for (int columnColour = 0; columnColour < PAIRS_PASS_COLUMN_COLOURS; columnColour++) {
+					int firstRow = rowColour;
+					int firstColumn = columnColour;
+					int rowsOfColour = (rows - rowColour + PAIRS_PASS_ROW_COLOURS - 1) / PAIRS_PASS_ROW_COLOURS;
+					int columnsOfColour = (columns - columnColour + PAIRS_PASS_COLUMN_COLOURS - 1)
+							/ PAIRS_PASS_COLUMN_COLOURS;
+
+					parallelTickEngine.forEachTask(rowsOfColour * columnsOfColour, indexTask -> {
+						int row = firstRow + PAIRS_PASS_ROW_COLOURS * (indexTask / columnsOfColour);
+						int column = firstColumn + PAIRS_PASS_COLUMN_COLOURS * (indexTask % columnsOfColour);
+						spatialGrid.forEachNeighbourPairOfCell(row * columns + column, visitor);
+					});
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publish the position and velocity of every agent, swapping its state
+	 * buffers.
+	 */
+	private void publishAllAgentsStates() {
+		for (List<CatpedsimAgent> listOfAgents : mapOfAgentsLists.values()) {
 			synchronized (listOfAgents) {
-				for (Iterator<CatpedsimAgent> iterator = listOfAgents.iterator(); iterator.hasNext();) {
-					CatpedsimAgent currentAgent = iterator.next();
+				for (CatpedsimAgent currentAgent : listOfAgents) {
+					currentAgent.publishState();
+				}
+			}
+		}
+	}
 
-					if (currentAgent.isStopped() || currentAgent.isTransported() || currentAgent.isNotActive()) {
-						continue;
-					}
+	/**
+	 * Compute the repulsive forces from the other agents, the walls and the
+	 * obstacles acting on an agent, if its current behaviour allows it to
+	 * move.
+	 * 
+	 * @param currentAgent
+	 *            current agent
+	 * @param neighbourCandidates
+	 *            reusable list for the neighbour candidates
+	 * @return true if the agent can move in this tick
+	 * @throws Exception
+	 *             on error
+	 */
+	private boolean computeRepulsiveForcesActingOnAgent(final CatpedsimAgent currentAgent,
+			final List<CatpedsimAgent> neighbourCandidates) throws Exception {
 
-					try {
-						boolean arrivedAtDestination = currentAgent.computeAttractiveForceToTarget(aStarPathFinder,
-								geometry);
+		AgentBehaviour behaviour = currentAgent.getSequenceOfBehaviours();
+		XmlPath currentPath = null;
+		if (behaviour != null) {
+			currentPath = behaviour.getCurrentBehaviour();
+		}
 
-						if (arrivedAtDestination) {
-							CatpedsimTransitionZone currentAgentTransitionZone = currentAgent.getTransitionZone();
+		if (currentPath != null && !currentPath.canMove()) {
+			return false;
+		}
 
-							if (currentAgentTransitionZone == null) {
-								if (currentAgentType.equals(CatpedsimAutonomousVehicle.class)) {
-									removeAllTransportedAgentsFromTheSimulation(currentAgent, currentAgentType);
-								}
-								iterator.remove();
-								continue;
-							} else {
-								changeAgentState(currentAgentType, currentAgent, currentAgentTransitionZone);
-								continue;
-							}
-						}
+		if (structureOfArraysForces && currentAgent.getStoreSlot() >= 0) {
+			computeRepulsiveForcesBetweenAgentsOnStore(currentAgent);
+			currentAgent.computeRepulsiveForcesBetweenAgentAndWallsObstacles(geometry);
+			return true;
+		}
 
-						AgentBehaviour behaviour = currentAgent.getSequenceOfBehaviours();
-						XmlPath currentPath = null;
-						if (behaviour != null) {
-							currentPath = behaviour.getCurrentBehaviour();
-						}
+		int typeId = currentAgent.getTypeId();
+		SocialForceParameters[] socialForceParametersRow = socialForceParametersTable[typeId];
+
+		if (symmetricPairsComputed) {
+			currentAgent.applySymmetricPairsForce();
+		}
+
+		PVector position = currentAgent.getSnapshotPositionVector();
+
+		for (int otherTypeId = 0; otherTypeId < spatialGridsByTypeId.length; otherTypeId++) {
+			SocialForceParameters socialForceParameters = socialForceParametersRow[otherTypeId];
+
+			if (!symmetricPairsComputed || otherTypeId != typeId) {
+				List<CatpedsimAgent> candidates = neighbourCandidates;
+
+				if (neighbourListsUsed) {
+					candidates = currentAgent.getNeighbourList(otherTypeId);
+				} else {
+					neighbourCandidates.clear();
+					spatialGridsByTypeId[otherTypeId].collectNeighbours(position, neighbourCandidates);
+				}
+
+				if (candidates.size() > 0) {
+					currentAgent.computeRepulsiveForcesBetweenAgents(candidates, socialForceParameters,
+							allocationFreeAgentForces);
+				}
+			}
+
+			neighbourCandidates.clear();
+			dormantAgentsIndexesByTypeId[otherTypeId].collectNeighbours(position, neighbourCandidates);
+
+			if (neighbourCandidates.size() > 0) {
+				currentAgent.computeRepulsiveForcesBetweenAgents(neighbourCandidates, socialForceParameters,
+						allocationFreeAgentForces);
+			}
+		}
+		currentAgent.computeRepulsiveForcesBetweenAgentAndWallsObstacles(geometry);
+
+		return true;
+	}
+
+	/**
+	 * Compute the repulsive forces between an agent and its neighbours on the
+	 * structure of arrays store.
+	 * 
+	 * @param currentAgent
+	 *            current agent, present in the store
+	 */
+	private void computeRepulsiveForcesBetweenAgentsOnStore(final CatpedsimAgent currentAgent) {
+
+		int agentSlot = currentAgent.getStoreSlot();
+		int[] slotRanges = threadNeighbourSlotRanges.get();
+		float x = agentStateStore.getX()[agentSlot];
+		float y = agentStateStore.getY()[agentSlot];
+
+		SocialForceParameters[] socialForceParametersRow = socialForceParametersTable[currentAgent.getTypeId()];
+
+		for (int otherTypeId = 0; otherTypeId < spatialGridsByTypeId.length; otherTypeId++) {
+			int numberOfRanges = spatialGridsByTypeId[otherTypeId].collectNeighbourSlotRanges(x, y, slotRanges);
+
+			for (int indexRange = 0; indexRange < numberOfRanges; indexRange++) {
+				Forces.accumulateAgentToAgentsRepulsion(agentStateStore, agentSlot, slotRanges[2 * indexRange],
+						slotRanges[2 * indexRange + 1], socialForceParametersRow[otherTypeId]);
+			}
+
+			numberOfRanges = dormantAgentsIndexesByTypeId[otherTypeId].collectNeighbourSlotRanges(x, y, slotRanges);
+
+			for (int indexRange = 0; indexRange < numberOfRanges; indexRange++) {
+				Forces.accumulateAgentToAgentsRepulsion(agentStateStore, agentSlot, slotRanges[2 * indexRange],
+						slotRanges[2 * indexRange + 1], socialForceParametersRow[otherTypeId]);
+			}
+		}
+
+		currentAgent.applyForce(agentStateStore.getAx()[agentSlot], agentStateStore.getAy()[agentSlot]);
+	}
+
+	/**
+	 * Enable or disable the structure of arrays computation of the repulsion
+	 * between agents. The agents state is then gathered once per tick into
+	 * primitive columns in the cell order of the spatial grids, and the forces
+	 * are computed over ranges of consecutive slots before being applied back
+	 * to the agents.
+	 * 
+	 * @param enabled
+	 *            true to use the structure of arrays store
+	 */
+	public final void setStructureOfArraysForces(final boolean enabled) {
+		structureOfArraysForces = enabled;
+	}
+
+	/**
+	 * Check if the repulsion between agents is computed on the structure of
+	 * arrays store.
+	 * 
+	 * @return true if the structure of arrays store is used
+	 */
+	public final boolean isStructureOfArraysForces() {
+		return structureOfArraysForces;
+	}
+
+	/**
+	 * Enable or disable the allocation free computation of the repulsion
+	 * between agent objects. It is used when the structure of arrays store is
+	 * disabled.
+	 * 
+	 * @param enabled
+	 *            true to use the allocation free kernel
+	 */
+	public final void setAllocationFreeAgentForces(final boolean enabled) {
+		allocationFreeAgentForces = enabled;
+	}
+
+	/**
+	 * Check if the repulsion between agent objects is computed with the
+	 * allocation free kernel.
+	 * 
+	 * @return true if the allocation free kernel is used
+	 */
+	public final boolean isAllocationFreeAgentForces() {
+		return allocationFreeAgentForces;
+	}
+
+	/**
+	 * Enable or disable the symmetric computation of the repulsion between
+	 * agents of the same type. Every pair of neighbours is then evaluated once
+	 * and the shared part of the force is applied to both agents. It is used
+	 * when the structure of arrays store is disabled.
+	 * 
+	 * @param enabled
+	 *            true to evaluate the pairs of agents of the same type once
+	 */
+	public final void setSymmetricAgentForces(final boolean enabled) {
+		symmetricAgentForces = enabled;
+	}
+
+	/**
+	 * Check if the repulsion between agents of the same type is evaluated
+	 * once per pair.
+	 * 
+	 * @return true if the symmetric pass is used
+	 */
+	public final boolean isSymmetricAgentForces() {
+		return symmetricAgentForces;
+	}
+
+	/**
+	 * Enable or disable the Verlet neighbour lists. The neighbour candidates
+	 * of every agent are then kept in lists, rebuilt from the spatial grids
+	 * only when an agent was added or removed or moved more than half of the
+	 * skin distance. They are used when the structure of arrays store is
+	 * disabled.
+	 * 
+	 * @param enabled
+	 *            true to use the neighbour lists
+	 */
+	public final void setNeighbourLists(final boolean enabled) {
+		neighbourLists = enabled;
+		neighbourListsValid = false;
+		buildSpatialGrids();
+	}
+
+	/**
+	 * Check if the Verlet neighbour lists are enabled.
+	 * 
+	 * @return true if the neighbour lists are used
+	 */
+	public final boolean isNeighbourLists() {
+		return neighbourLists;
+	}
+
+	/**
+	 * Set the skin distance of the Verlet neighbour lists. A larger skin makes
+	 * longer lists which are rebuilt less often.
+	 * 
+	 * @param skin
+	 *            the skin distance in meters, negative values are taken as 0
+	 */
+	public final void setNeighbourListsSkin(final float skin) {
+		neighbourListsSkin = Math.max(skin, 0);
+		neighbourListsValid = false;
+		buildSpatialGrids();
+	}
 
-						if ((currentPath != null && currentPath.canMove()) || currentPath == null) {
+	/**
+	 * Get the skin distance of the Verlet neighbour lists.
+	 * 
+	 * @return the skin distance in meters
+	 */
+	public final float getNeighbourListsSkin() {
+		return neighbourListsSkin;
+	}
 
-							for (Entry<Class<?>, List<CatpedsimAgent>> mapOfOtherAgentsIterator : mapOfAgentsLists
-									.entrySet()) {
+	/**
+	 * Get the number of builds of the neighbour lists since the start of the
+	 * simulation.
+	 * 
+	 * @return the number of builds
+	 */
+	public final long getNeighbourListsBuilds() {
+		return neighbourListsBuilds;
+	}
 
-								Class<?> agentToInteractType = mapOfOtherAgentsIterator.getKey();
-								List<CatpedsimAgent> listOfAgentsToInteract = mapOfOtherAgentsIterator.getValue();
+	/**
+	 * First phase of the two phase tick. Compute all the forces acting on an
+	 * agent, without moving any agent.
+	 * 
+	 * @param indexAgent
+	 *            index of the agent in the current tick
+	 */
+	private void computeTickAgentForces(final int indexAgent) {
+		CatpedsimAgent currentAgent = tickAgents[indexAgent];
+
+		try {
+			if (currentAgent.computeAttractiveForceToTarget(aStarPathFinder, geometry)) {
+				tickAgentsActions[indexAgent] = TICK_ACTION_ARRIVED;
+			} else if (computeRepulsiveForcesActingOnAgent(currentAgent, threadNeighbourCandidates.get())) {
+				tickAgentsActions[indexAgent] = TICK_ACTION_MOVE;
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Error while computing the action for the next tick.", e);
+		}
+	}
+
+	/**
+	 * Second phase of the two phase tick. Move the agent according to the
+	 * forces computed in the first phase.
+	 * 
+	 * @param indexAgent
+	 *            index of the agent in the current tick
+	 */
+	private void integrateTickAgent(final int indexAgent) {
+		if (tickAgentsActions[indexAgent] != TICK_ACTION_MOVE) {
+			return;
+		}
+
+		try {
+			tickAgents[indexAgent].moveAgent(geometry, new Point2D.Double(worldWidth, worldDepth), 1);
+		} catch (Exception e) {
+			LOGGER.warn("Error while moving the agent.", e);
+		}
+	}
 
-								if (listOfAgentsToInteract.size() > 0) {
-									currentAgent.computeRepulsiveForcesBetweenAgents(listOfAgentsToInteract,
-											socialForceInteractionMap.get(new SocialForceAgentsPair<>(currentAgentType,
-													agentToInteractType)));
-								}
-							}
-							currentAgent.computeRepulsiveForcesBetweenAgentAndWallsObstacles(geometry);
-							currentAgent.moveAgent(geometry, new Point2D.Double(worldWidth, worldDepth), 1);
-						}
+	/**
+	 * Remove an agent arrived at its destination from the simulation, or
+	 * change its state if it reached a transition zone.
+	 * 
+	 * @param currentAgent
+	 *            current agent
+	 * @param currentAgentType
+	 *            current agent type
+	 */
+	private void handleArrivalOfTickAgent(final CatpedsimAgent currentAgent, final Class<?> currentAgentType) {
+		try {
+			CatpedsimTransitionZone currentAgentTransitionZone = currentAgent.getTransitionZone();
 
-					} catch (Exception e) {
-						LOGGER.warn("Error while computing the action for the next tick.", e);
-					}
+			if (currentAgentTransitionZone == null) {
+				if (currentAgentType.equals(CatpedsimAutonomousVehicle.class)) {
+					removeAllTransportedAgentsFromTheSimulation(currentAgent, currentAgentType);
 				}
+
+				removeAgent(currentAgentType, currentAgent);
+				agentPool.release(currentAgent);
+			} else {
+				changeAgentState(currentAgentType, currentAgent, currentAgentTransitionZone);
 			}
+		} catch (Exception e) {
+			LOGGER.warn("Error while computing the action for the next tick.", e);
 		}
 	}
 
+	/**
+	 * Set the number of threads computing the ticks and the paths of the
+	 * departing agents. The trajectories are the same for any number of
+	 * threads. With one thread the ticks are computed on the simulation
+	 * thread.
+	 * 
+	 * @param parallelism
+	 *            number of threads
+	 */
+	public final void setTickParallelism(final int parallelism) {
+		parallelTickEngine.shutdown();
+		parallelTickEngine = new ParallelTickEngine(parallelism);
+	}
+
+	/**
+	 * Get the number of threads computing the ticks.
+	 * 
+	 * @return number of threads
+	 */
+	public final int getTickParallelism() {
+		return parallelTickEngine.getParallelism();
+	}
+
 	/**
 	 * Remove from the simulation all transported agents.
 	 * 
@@ -1051,14 +2044,10 @@ public class CatpedsimManager extends Observable {
 	 */
 	private CatpedsimAgent lookupAgentWithStringIdentifier(final StringIdentifier identifier,
 			final Class<?> agentType) {
-		if (mapOfAgentsLists.containsKey(agentType)) {
-			List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentType);
+		CatpedsimAgent agent = getAgentByName(identifier);
 
-			for (CatpedsimAgent agentInList : listOfAgents) {
-				if (agentInList.getUniqueIdentifier().equals(identifier)) {
-					return agentInList;
-				}
-			}
+		if (agent != null && agent.getClass().equals(agentType)) {
+			return agent;
 		}
 
 		return null;
@@ -1137,6 +2126,26 @@ public class CatpedsimManager extends Observable {
 		} catch (Exception ex) {
 			LOGGER.warn("Error while generating agents departure profiles.", ex);
 		}
+
+		completePendingDepartures();
+	}
+
+	/**
+	 * Wait for the paths of the departing agents and add the agents to the
+	 * simulation, in the order they were generated.
+	 */
+	private void completePendingDepartures() {
+		try {
+			for (Callable<Boolean> pendingDeparture : pendingDepartures) {
+				try {
+					pendingDeparture.call();
+				} catch (Exception ex) {
+					LOGGER.warn("Error while adding a departing agent.", ex);
+				}
+			}
+		} finally {
+			pendingDepartures.clear();
+		}
 	}
 
 	/**
@@ -1304,20 +2313,10 @@ public class CatpedsimManager extends Observable {
 			final AgentBehaviour precomputedPath) throws Exception {
 
 		Class<?> agentClass = (Class<?>) agentClassType;
-		Constructor<?> constructorForAgentClass = null;
+		AgentFactory agentFactory = agentFactoryRegistry.getFactory(agentClass);
 
 		float maximumSpeed = calculateMaximumSpeedAccordingToAgentType(agentClass);
 
-		if (precomputedPath != null) {
-			constructorForAgentClass = agentClass
-					.getConstructor(new Class[] { String.class, String.class, StringIdentifier.class, Vec3f.class,
-							float.class, CatpedsimTransitionZone.class, Color.class, AgentBehaviour.class });
-
-		} else {
-			constructorForAgentClass = agentClass.getConstructor(new Class[] { String.class, String.class,
-					StringIdentifier.class, Vec3f.class, float.class, CatpedsimTransitionZone.class, Color.class });
-		}
-
 		PVector direction = PVector.sub(entrance.getVertexAtIndex(1), entrance.getVertexAtIndex(0));
 		direction.normalize();
 
@@ -1335,12 +2334,12 @@ public class CatpedsimManager extends Observable {
 			if (precomputedPath != null) {
 				AgentBehaviour newBehaviour = precomputedPath.getCopy();
 
-				CatpedsimAgent newAgent = (CatpedsimAgent) constructorForAgentClass.newInstance(
-						initialisation.getPublisherId(), newAgentName, uniqueIdentifier, agentLocation, maximumSpeed,
-						exitThroughTransitionZone, agentColor, newBehaviour);
+				CatpedsimAgent newAgent = spawnAgentForTransitionZone(agentFactory, agentClass, newAgentName,
+						uniqueIdentifier, agentLocation, maximumSpeed, exitThroughTransitionZone, agentColor,
+						newBehaviour);
 
 				if (agentClass.equals(CatpedsimBicycle.class)) {
-					newBehaviour.getCurrentBehaviour().setAgentState(AgentState.TRANSPORT_OTHER_AGENTS);
+					newAgent.setAgentState(AgentState.TRANSPORT_OTHER_AGENTS);
 
 					StringIdentifier pedestrianRidingBikeId = generateTransportedPedestrian(
 							initialisation.getPublisherId(), agentLocation, exitThroughTransitionZone);
@@ -1348,12 +2347,10 @@ public class CatpedsimManager extends Observable {
 					newAgent.addAgentInTransportedList(pedestrianRidingBikeId);
 				}
 
-				mapOfAgentsLists.get(agentClassType).add(newAgent);
+				addAgent(agentClass, newAgent);
 			} else {
-				mapOfAgentsLists.get(agentClassType)
-						.add((CatpedsimAgent) constructorForAgentClass.newInstance(initialisation.getPublisherId(),
-								newAgentName, uniqueIdentifier, agentLocation, maximumSpeed, exitThroughTransitionZone,
-								agentColor));
+				addAgent(agentClass, spawnAgentForTransitionZone(agentFactory, agentClass, newAgentName,
+						uniqueIdentifier, agentLocation, maximumSpeed, exitThroughTransitionZone, agentColor, null));
 			}
 		}
 	}
@@ -1388,7 +2385,7 @@ public class CatpedsimManager extends Observable {
 					uniqueIdentifier, newAgentLocation, maximumSpeed, exitThroughTransitionZone, Color.BLACK,
 					newBehaviour);
 
-			mapOfAgentsLists.get(CatpedsimPedestrian.class).add(transportedPedestrian);
+			addAgent(CatpedsimPedestrian.class, transportedPedestrian);
 
 			return transportedPedestrian.getUniqueIdentifier();
 		} catch (Exception ex) {
@@ -1420,21 +2417,9 @@ public class CatpedsimManager extends Observable {
 			final AgentBehaviour precomputedPath) throws Exception {
 
 		Class<?> agentClass = (Class<?>) agentClassType;
-		Constructor<?> constructorForAgentClass = null;
+		AgentFactory agentFactory = agentFactoryRegistry.getFactory(agentClass);
 		float maximumSpeed = calculateMaximumSpeedAccordingToAgentType(agentClass);
-
-		if (precomputedPath != null) {
-			constructorForAgentClass = agentClass
-					.getConstructor(new Class[] { String.class, String.class, StringIdentifier.class, Vec3f.class,
-							float.class, CatpedsimCrossing.class, Color.class, AgentBehaviour.class });
-		} else if (aStarPathFinder != null) {
-			constructorForAgentClass = agentClass
-					.getConstructor(new Class[] { String.class, String.class, StringIdentifier.class, Vec3f.class,
-							float.class, CatpedsimCrossing.class, Color.class, LinkedList.class });
-		} else {
-			constructorForAgentClass = agentClass.getConstructor(new Class[] { String.class, String.class,
-					StringIdentifier.class, Vec3f.class, float.class, CatpedsimCrossing.class, Color.class });
-		}
+		PathFinder geometryPathFinder = getGeometryPathFinder();
 
 		PVector direction = PVector.sub(entrance.getVertexAtIndex(1), entrance.getVertexAtIndex(0));
 		direction.normalize();
@@ -1455,25 +2440,159 @@ public class CatpedsimManager extends Observable {
 			exitVector.div(2);
 
 			if (precomputedPath != null) {
-				mapOfAgentsLists.get(agentClassType)
-						.add((CatpedsimAgent) constructorForAgentClass.newInstance(initialisation.getPublisherId(),
-								newAgentName, uniqueIdentifier, agentLocation, maximumSpeed, exit, agentColor,
-								precomputedPath.getCopy()));
+				addAgent(agentClass, spawnAgentForExit(agentFactory, agentClass, newAgentName,
+						uniqueIdentifier, agentLocation, maximumSpeed, exit, agentColor, precomputedPath.getCopy()));
+			} else if (aStarPathFinder != null && flowFieldNavigation) {
+				final FlowField exitFlowField = getFlowField(exit);
+
+				pendingDepartures.add(() -> {
+					CatpedsimAgent agent = spawnAgentForExit(agentFactory, agentClass, newAgentName, uniqueIdentifier,
+							agentLocation, maximumSpeed, exit, agentColor, null);
+					agent.setFlowField(exitFlowField);
+					return addAgent(agentClass, agent);
+				});
+			} else if (geometryPathFinder != null) {
+				final PathFinder pathFinder = geometryPathFinder;
+				Future<LinkedList<NodePath>> generatedPath = parallelTickEngine
+						.submit(() -> pathFinder.calculatePath(offsetFromVertex0, exitVector));
+
+				pendingDepartures.add(() -> addAgent(agentClass, spawnAgentForExit(agentFactory, agentClass,
+						newAgentName, uniqueIdentifier, agentLocation, maximumSpeed, exit, agentColor,
+						generatedPath.get())));
 			} else if (aStarPathFinder != null) {
-				LinkedList<NodePath> generatedPath = AStarPathFinder.calculateShortestPath(aStarPathFinder,
-						offsetFromVertex0, exitVector);
-
-				mapOfAgentsLists.get(agentClassType)
-						.add((CatpedsimAgent) constructorForAgentClass.newInstance(initialisation.getPublisherId(),
-								newAgentName, uniqueIdentifier, agentLocation, maximumSpeed, exit, agentColor,
-								generatedPath));
+				final AStarPathFinder grid = aStarPathFinder;
+				final PathFinder pathFinder = getPathFinder();
+				Future<LinkedList<NodePath>> generatedPath = parallelTickEngine
+						.submit(() -> routeCache.getPath(grid, pathFinder, offsetFromVertex0, exitVector));
+
+				pendingDepartures.add(() -> addAgent(agentClass, spawnAgentForExit(agentFactory, agentClass,
+						newAgentName, uniqueIdentifier, agentLocation, maximumSpeed, exit, agentColor,
+						generatedPath.get())));
 			} else {
-				mapOfAgentsLists.get(agentClassType)
-						.add((CatpedsimAgent) constructorForAgentClass.newInstance(initialisation.getPublisherId(),
-								newAgentName, uniqueIdentifier, agentLocation, maximumSpeed, exit, agentColor));
+				addAgent(agentClass, spawnAgentForExit(agentFactory, agentClass, newAgentName,
+						uniqueIdentifier, agentLocation, maximumSpeed, exit, agentColor, null));
+			}
+		}
+	}
+
+	/**
+	 * Spawn an agent heading to an exit. An agent of the type waiting in the
+	 * pool is spawned again, otherwise a new agent is created by the factory
+	 * of the type.
+	 * 
+	 * @param agentFactory
+	 *            factory of the agent type
+	 * @param agentClass
+	 *            agent type
+	 * @param agentName
+	 *            agent name
+	 * @param uniqueIdentifier
+	 *            agent unique identifier
+	 * @param agentLocation
+	 *            agent location
+	 * @param maximumSpeed
+	 *            maximum speed
+	 * @param exit
+	 *            agent exit
+	 * @param agentColor
+	 *            agent color
+	 * @param route
+	 *            a pre-defined behaviour, a path to follow or null
+	 * @return the agent
+	 * @throws Exception
+	 *             on error
+	 */
+	@SuppressWarnings("unchecked")
+	private CatpedsimAgent spawnAgentForExit(final AgentFactory agentFactory, final Class<?> agentClass,
+			final String agentName, final StringIdentifier uniqueIdentifier, final Vec3f agentLocation,
+			final float maximumSpeed, final CatpedsimCrossing exit, final Color agentColor, final Object route)
+			throws Exception {
+		CatpedsimAgent agent = agentPool.acquire(agentClass);
+
+		if (agent == null) {
+			if (route instanceof AgentBehaviour) {
+				return agentFactory.createForExit(initialisation.getPublisherId(), agentName, uniqueIdentifier,
+						agentLocation, maximumSpeed, exit, agentColor, (AgentBehaviour) route);
+			} else if (route instanceof LinkedList) {
+				return agentFactory.createForExit(initialisation.getPublisherId(), agentName, uniqueIdentifier,
+						agentLocation, maximumSpeed, exit, agentColor, (LinkedList<NodePath>) route);
+			}
+			return agentFactory.createForExit(initialisation.getPublisherId(), agentName, uniqueIdentifier,
+					agentLocation, maximumSpeed, exit, agentColor);
+		}
+
+		agent.respawn(initialisation.getPublisherId(), agentName, uniqueIdentifier, agentLocation, maximumSpeed);
+		agent.setAgentExit(exit);
+		agent.setColorToRepresent(agentColor);
+
+		if (route instanceof AgentBehaviour) {
+			agent.setSequenceOfBehaviours((AgentBehaviour) route);
+		} else if (route instanceof LinkedList) {
+			agent.setPathToFollow((LinkedList<NodePath>) route);
+		}
+
+		return agent;
+	}
+
+	/**
+	 * Spawn an agent heading to a transition zone. An agent of the type
+	 * waiting in the pool is spawned again, otherwise a new agent is created
+	 * by the factory of the type.
+	 * 
+	 * @param agentFactory
+	 *            factory of the agent type
+	 * @param agentClass
+	 *            agent type
+	 * @param agentName
+	 *            agent name
+	 * @param uniqueIdentifier
+	 *            agent unique identifier
+	 * @param agentLocation
+	 *            agent location
+	 * @param maximumSpeed
+	 *            maximum speed
+	 * @param transitionZone
+	 *            the transition zone
+	 * @param agentColor
+	 *            agent color
+	 * @param behaviour
+	 *            a pre-defined behaviour or null
+	 * @return the agent
+	 * @throws Exception
+	 *             on error
+	 */
+	private CatpedsimAgent spawnAgentForTransitionZone(final AgentFactory agentFactory, final Class<?> agentClass,
+			final String agentName, final StringIdentifier uniqueIdentifier, final Vec3f agentLocation,
+			final float maximumSpeed, final CatpedsimTransitionZone transitionZone, final Color agentColor,
+			final AgentBehaviour behaviour) throws Exception {
+		CatpedsimAgent agent = agentPool.acquire(agentClass);
 
+		if (agent == null) {
+			if (behaviour == null) {
+				return agentFactory.createForTransitionZone(initialisation.getPublisherId(), agentName,
+						uniqueIdentifier, agentLocation, maximumSpeed, transitionZone, agentColor);
 			}
+			return agentFactory.createForTransitionZone(initialisation.getPublisherId(), agentName,
+					uniqueIdentifier, agentLocation, maximumSpeed, transitionZone, agentColor, behaviour);
 		}
+
+		agent.respawn(initialisation.getPublisherId(), agentName, uniqueIdentifier, agentLocation, maximumSpeed);
+		agent.setColorToRepresent(agentColor);
+
+		if (behaviour != null) {
+			agent.setSequenceOfBehaviours(behaviour);
+		}
+		agent.setTransitionZone(transitionZone);
+
+		if (behaviour != null) {
+			XmlVertex target = behaviour.getCurrentBehaviour().getLast();
+
+			if (target != null) {
+				agent.setVectorToAgentsTarget(new PVector(target.getX(), target.getY()));
+			}
+		}
+
+		return agent;
 	}
 
 	/**
@@ -1517,25 +2636,14 @@ public class CatpedsimManager extends Observable {
 	 * @return true if the nodes intersect a wall
 	 */
 	private boolean checkIfNodesIntersectWall(final NodePath lastAddedNode, final NodePath node) {
-		boolean state = false;
-
-		for (CatpedsimObstacle wall : geometry.getWalls()) {
-			for (int indexSection = 0; indexSection < wall.getObstacleSections().length; indexSection++) {
-				ShapeSection wallSection = wall.getObstacleSections()[indexSection];
-
-				try {
-					if (Trigonometry.checkIfLinesIntersect(new PVector(node.getX(), node.getY()),
-							new PVector(lastAddedNode.getX(), lastAddedNode.getY()),
-							wallSection.getVectorToStartPoint(), wallSection.getVectorToEndPoint())) {
-						return true;
-					}
-				} catch (Exception ex) {
-					LOGGER.warn("Error while checking the path nodes intersect the walls.", ex);
-				}
-			}
+		try {
+			return geometry.checkIfSegmentCrossesWalls(new PVector(node.getX(), node.getY()),
+					new PVector(lastAddedNode.getX(), lastAddedNode.getY()));
+		} catch (Exception ex) {
+			LOGGER.warn("Error while checking the path nodes intersect the walls.", ex);
 		}
 
-		return state;
+		return false;
 	}
 
 	/**
@@ -1548,24 +2656,14 @@ public class CatpedsimManager extends Observable {
 	 * @return true if the segment composed of two nodes intersect obstacles
 	 */
 	private boolean checkIfNodesIntersectObstacle(final NodePath lastAddedNode, final NodePath node) {
-		boolean state = false;
-
-		for (CatpedsimObstacle obstacle : geometry.getObstacles()) {
-			for (int indexSection = 0; indexSection < obstacle.getObstacleSections().length; indexSection++) {
-				ShapeSection wallSection = obstacle.getObstacleSections()[indexSection];
-				try {
-					if (Trigonometry.checkIfLinesIntersect(new PVector(node.getX(), node.getY()),
-							new PVector(lastAddedNode.getX(), lastAddedNode.getY()),
-							wallSection.getVectorToStartPoint(), wallSection.getVectorToEndPoint())) {
-						return true;
-					}
-				} catch (Exception ex) {
-					LOGGER.warn("Error while checking the path nodes intersect obstacles.", ex);
-				}
-			}
+		try {
+			return geometry.checkIfSegmentCrossesObstacles(new PVector(node.getX(), node.getY()),
+					new PVector(lastAddedNode.getX(), lastAddedNode.getY()));
+		} catch (Exception ex) {
+			LOGGER.warn("Error while checking the path nodes intersect obstacles.", ex);
 		}
 
-		return state;
+		return false;
 	}
 
 	/**
@@ -1705,8 +2803,8 @@ public class CatpedsimManager extends Observable {
 								mapOfAgentsCounters.get(CatpedsimPedestrian.class).incrementAndGet());
 						StringIdentifier uniqueIdentifier = new StringIdentifier(newAgentName);
 
-						mapOfAgentsLists.get(CatpedsimPedestrian.class)
-								.add(new CatpedsimPedestrian(initialisation.getPublisherId(), newAgentName,
+						addAgent(CatpedsimPedestrian.class,
+								new CatpedsimPedestrian(initialisation.getPublisherId(), newAgentName,
 										uniqueIdentifier, new Vec3f(location.x, location.y, location.z),
 										maximumPedestrianSpeed));
 					}
@@ -1751,9 +2849,8 @@ public class CatpedsimManager extends Observable {
 							mapOfAgentsCounters.get(CatpedsimPedestrian.class).incrementAndGet());
 					StringIdentifier uniqueIdentifier = new StringIdentifier(newAgentName);
 
-					mapOfAgentsLists.get(CatpedsimPedestrian.class)
-							.add(new CatpedsimPedestrian(publisherId, newAgentName, uniqueIdentifier,
-									new Vec3f(location.x, location.y, location.z), maximumPedestrianSpeed));
+					addAgent(CatpedsimPedestrian.class, new CatpedsimPedestrian(publisherId, newAgentName,
+							uniqueIdentifier, new Vec3f(location.x, location.y, location.z), maximumPedestrianSpeed));
 				}
 			}
 		} catch (Exception ex) {
@@ -1780,8 +2877,7 @@ public class CatpedsimManager extends Observable {
 
 		try {
 			synchronized (mapOfAgentsLists.get(agentType)) {
-				List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentType);
-				listOfAgents.clear();
+				removeAllAgents(agentType);
 
 				for (int i = 0; i < numberOfExpectedAutonomousVehicles; i++) {
 					location = generateRandomLocation();
@@ -1789,7 +2885,7 @@ public class CatpedsimManager extends Observable {
 							mapOfAgentsCounters.get(agentType).incrementAndGet());
 					StringIdentifier uniqueIdentifier = new StringIdentifier(newAgentName);
 
-					listOfAgents.add(new CatpedsimAutonomousVehicle(publisherId, newAgentName, uniqueIdentifier,
+					addAgent(agentType, new CatpedsimAutonomousVehicle(publisherId, newAgentName, uniqueIdentifier,
 							new Vec3f(location.x, location.y, location.z), maximumPedestrianSpeed));
 				}
 			}
@@ -1820,7 +2916,7 @@ public class CatpedsimManager extends Observable {
 							mapOfAgentsCounters.get(CatpedsimBicycle.class).incrementAndGet());
 					StringIdentifier uniqueIdentifier = new StringIdentifier(newAgentName);
 
-					mapOfAgentsLists.get(CatpedsimBicycle.class).add(new CatpedsimBicycle(publisherId, newAgentName,
+					addAgent(CatpedsimBicycle.class, new CatpedsimBicycle(publisherId, newAgentName,
 							uniqueIdentifier, new Vec3f(location.x, location.y, location.z), maximumPedestrianSpeed));
 				}
 			}
@@ -1847,8 +2943,8 @@ public class CatpedsimManager extends Observable {
 			StringIdentifier uniqueIdentifier = new StringIdentifier(name);
 			float maximumPedestrianSpeed = Utils.random(pedestrianJoggingVelocity, pedestrianHighestVelocity);
 
-			mapOfAgentsLists.get(CatpedsimPedestrian.class).add(new CatpedsimPedestrian(publisherId, name,
-					uniqueIdentifier, new Vec3f(location.x, location.y, location.z), maximumPedestrianSpeed));
+			addAgent(CatpedsimPedestrian.class, new CatpedsimPedestrian(publisherId, name, uniqueIdentifier,
+					new Vec3f(location.x, location.y, location.z), maximumPedestrianSpeed));
 		}
 	}
 
@@ -1871,26 +2967,20 @@ public class CatpedsimManager extends Observable {
 			throws Exception {
 		synchronized (mapOfAgentsLists.get(CatpedsimPedestrian.class)) {
 			CatpedsimPedestrian existingPedestrian = null;
+			CatpedsimAgent internalAgent = getAgentByName(pedestrian.getUniqueIdentifier());
 
-			for (int i = 0; i < mapOfAgentsLists.get(CatpedsimPedestrian.class).size(); i++) {
-				CatpedsimPedestrian internalPedestrian = (CatpedsimPedestrian) mapOfAgentsLists
-						.get(CatpedsimPedestrian.class).get(i);
-
-				if (internalPedestrian.getUniqueIdentifier().equals(pedestrian.getUniqueIdentifier())) {
-					existingPedestrian = internalPedestrian;
-					break;
-				}
+			if (internalAgent instanceof CatpedsimPedestrian) {
+				existingPedestrian = (CatpedsimPedestrian) internalAgent;
 			}
 			float maximumPedestrianSpeed = Utils.random(pedestrianJoggingVelocity, pedestrianHighestVelocity);
 
 			if (existingPedestrian == null) {
-				mapOfAgentsLists
-						.get(CatpedsimPedestrian.class).add(
-								new CatpedsimPedestrian(publisherId, pedestrian.getName(),
-										(StringIdentifier) pedestrian.getUniqueIdentifier(),
-										new Vec3f((float) pedestrian.getCurrentPosition().getX(),
-												(float) pedestrian.getCurrentPosition().getY(), 0),
-										maximumPedestrianSpeed));
+				addAgent(CatpedsimPedestrian.class,
+						new CatpedsimPedestrian(publisherId, pedestrian.getName(),
+								(StringIdentifier) pedestrian.getUniqueIdentifier(),
+								new Vec3f((float) pedestrian.getCurrentPosition().getX(),
+										(float) pedestrian.getCurrentPosition().getY(), 0),
+								maximumPedestrianSpeed));
 			} else {
 				existingPedestrian.setPositionVector(new PVector((float) pedestrian.getCurrentPosition().getX(),
 						(float) pedestrian.getCurrentPosition().getY()));
@@ -1914,26 +3004,20 @@ public class CatpedsimManager extends Observable {
 	public final void addOrUpdatePedestrian(final String publisherId, final Pedestrian pedestrian) throws Exception {
 		synchronized (mapOfAgentsLists.get(CatpedsimPedestrian.class)) {
 			CatpedsimPedestrian existingPedestrian = null;
+			CatpedsimAgent internalAgent = getAgentByName(pedestrian.getUniqueIdentifier());
 
-			for (int i = 0; i < mapOfAgentsLists.get(CatpedsimPedestrian.class).size(); i++) {
-				CatpedsimPedestrian internalPedestrian = (CatpedsimPedestrian) mapOfAgentsLists
-						.get(CatpedsimPedestrian.class).get(i);
-
-				if (internalPedestrian.getUniqueIdentifier().equals(pedestrian.getUniqueIdentifier())) {
-					existingPedestrian = internalPedestrian;
-					break;
-				}
+			if (internalAgent instanceof CatpedsimPedestrian) {
+				existingPedestrian = (CatpedsimPedestrian) internalAgent;
 			}
 			float maximumPedestrianSpeed = Utils.random(pedestrianJoggingVelocity, pedestrianHighestVelocity);
 
 			if (existingPedestrian == null) {
-				mapOfAgentsLists
-						.get(CatpedsimPedestrian.class).add(
-								new CatpedsimPedestrian(publisherId, pedestrian.getName(),
-										(StringIdentifier) pedestrian.getUniqueIdentifier(),
-										new Vec3f((float) pedestrian.getCurrentPosition().getX(),
-												(float) pedestrian.getCurrentPosition().getY(), 0),
-										maximumPedestrianSpeed));
+				addAgent(CatpedsimPedestrian.class,
+						new CatpedsimPedestrian(publisherId, pedestrian.getName(),
+								(StringIdentifier) pedestrian.getUniqueIdentifier(),
+								new Vec3f((float) pedestrian.getCurrentPosition().getX(),
+										(float) pedestrian.getCurrentPosition().getY(), 0),
+								maximumPedestrianSpeed));
 			} else {
 				existingPedestrian.setPositionVector(new PVector((float) pedestrian.getCurrentPosition().getX(),
 						(float) pedestrian.getCurrentPosition().getY()));
@@ -1958,9 +3042,8 @@ public class CatpedsimManager extends Observable {
 			StringIdentifier uniqueIdentifier = new StringIdentifier(name);
 			float maximumPedestrianSpeed = Utils.random(pedestrianJoggingVelocity, pedestrianHighestVelocity);
 
-			mapOfAgentsLists.get(CatpedsimPedestrian.class)
-					.add(new CatpedsimPedestrian(publisherId, name, uniqueIdentifier,
-							new Vec3f((float) position.getX(), (float) position.getY(), 0), maximumPedestrianSpeed));
+			addAgent(CatpedsimPedestrian.class, new CatpedsimPedestrian(publisherId, name, uniqueIdentifier,
+					new Vec3f((float) position.getX(), (float) position.getY(), 0), maximumPedestrianSpeed));
 		}
 	}
 
@@ -2005,9 +3088,7 @@ public class CatpedsimManager extends Observable {
 	 */
 	public final void clean() {
 		desiredTarget = null;
-		if (mapOfAgentsLists.get(CatpedsimPedestrian.class) != null) {
-			mapOfAgentsLists.get(CatpedsimPedestrian.class).clear();
-		}
+		removeAllAgents(CatpedsimPedestrian.class);
 		geometry.clearGeometryConfiguration();
 	}
 
@@ -2245,6 +3326,222 @@ public class CatpedsimManager extends Observable {
 	 */
 	public final void setGridFortTheShortestPath(final AStarPathFinder newAStarPathFinder) {
 		aStarPathFinder = newAStarPathFinder;
+		hierarchicalPathFinder = null;
+		routeCache.clear();
+		flowFields.clear();
+	}
+
+	/**
+	 * Get the path finder computing the routes of the departing agents: the
+	 * hierarchical path finder when it is enabled, the A* grid otherwise.
+	 * 
+	 * @return path finder, null without an A* grid
+	 */
+	public final synchronized PathFinder getPathFinder() {
+		if (aStarPathFinder == null || !hierarchicalPathFinding) {
+			return aStarPathFinder;
+		}
+
+		if (hierarchicalPathFinder == null) {
+			hierarchicalPathFinder = new HierarchicalPathFinder(aStarPathFinder,
+					HierarchicalPathFinder.DEFAULT_SECTOR_SIZE);
+		}
+		return hierarchicalPathFinder;
+	}
+
+	/**
+	 * Set the hierarchical path finding. When enabled, the routes of the
+	 * departing agents are searched over the sectors of the A* grid and only
+	 * refined within the sectors they cross, which is much faster on large
+	 * sites for paths slightly longer than the shortest ones.
+	 * 
+	 * @param newHierarchicalPathFinding
+	 *            true to use the hierarchical path finder
+	 */
+	public final void setHierarchicalPathFinding(final boolean newHierarchicalPathFinding) {
+		if (hierarchicalPathFinding != newHierarchicalPathFinding) {
+			hierarchicalPathFinding = newHierarchicalPathFinding;
+			routeCache.clear();
+		}
+	}
+
+	/**
+	 * Check if the hierarchical path finding is enabled.
+	 * 
+	 * @return true if the routes are computed by the hierarchical path finder
+	 */
+	public final boolean isHierarchicalPathFinding() {
+		return hierarchicalPathFinding;
+	}
+
+	/**
+	 * Get the visibility graph of the walls and obstacles, building it the
+	 * first time.
+	 * 
+	 * @return visibility graph path finder, null without a geometry
+	 */
+	public final synchronized VisibilityGraphPathFinder getVisibilityGraphPathFinder() {
+		if (geometry == null) {
+			return null;
+		}
+
+		if (visibilityGraphPathFinder == null) {
+			visibilityGraphPathFinder = new VisibilityGraphPathFinder(geometry,
+					VisibilityGraphPathFinder.DEFAULT_CLEARANCE);
+		}
+		return visibilityGraphPathFinder;
+	}
+
+	/**
+	 * Set the visibility graph navigation. When enabled, the agents departing
+	 * towards an exit follow a polyline through the corners of the walls and
+	 * obstacles instead of a path over the A* grid. It does not need the A*
+	 * grid.
+	 * 
+	 * @param newVisibilityGraphNavigation
+	 *            true to route the agents over the visibility graph
+	 */
+	public final void setVisibilityGraphNavigation(final boolean newVisibilityGraphNavigation) {
+		visibilityGraphNavigation = newVisibilityGraphNavigation;
+	}
+
+	/**
+	 * Check if the visibility graph navigation is enabled.
+	 * 
+	 * @return true if the routes are computed over the visibility graph
+	 */
+	public final boolean isVisibilityGraphNavigation() {
+		return visibilityGraphNavigation;
+	}
+
+	/**
+	 * Get the navigation mesh of the geometry, building it the first time.
+	 * 
+	 * @return navigation mesh, null without a geometry
+	 */
+	public final synchronized NavigationMesh getNavigationMesh() {
+		if (geometry == null) {
+			return null;
+		}
+
+		if (navigationMesh == null) {
+			navigationMesh = new NavigationMesh(geometry, NavigationMesh.DEFAULT_CLEARANCE);
+		}
+		return navigationMesh;
+	}
+
+	/**
+	 * Set the navigation mesh navigation. When enabled, the agents departing
+	 * towards an exit follow a path computed over the navigation mesh of the
+	 * geometry instead of the A* grid. It takes precedence over the visibility
+	 * graph navigation.
+	 * 
+	 * @param newNavigationMeshNavigation
+	 *            true to route the agents over the navigation mesh
+	 */
+	public final void setNavigationMeshNavigation(final boolean newNavigationMeshNavigation) {
+		navigationMeshNavigation = newNavigationMeshNavigation;
+	}
+
+	/**
+	 * Check if the navigation mesh navigation is enabled.
+	 * 
+	 * @return true if the routes are computed over the navigation mesh
+	 */
+	public final boolean isNavigationMeshNavigation() {
+		return navigationMeshNavigation;
+	}
+
+	/**
+	 * Set the interval of the Voronoi density measurements of the pedestrians.
+	 * The observers are notified with LogicLayerEventsToBridge.DENSITY_UPDATED
+	 * after every measurement.
+	 * 
+	 * @param updateIntervalSeconds
+	 *            time between two measurements in seconds, zero to measure at
+	 *            every tick, a negative value to stop measuring
+	 */
+	public final void setDensityUpdateInterval(final float updateIntervalSeconds) {
+		if (updateIntervalSeconds < 0) {
+			densityService = null;
+		} else {
+			densityService = new VoronoiDensityService(updateIntervalSeconds);
+		}
+	}
+
+	/**
+	 * Get the Voronoi density service holding the personal area of the
+	 * pedestrians and the fundamental diagram of the last measurement.
+	 * 
+	 * @return the density service, null if the density is not measured
+	 */
+	public final VoronoiDensityService getDensityService() {
+		return densityService;
+	}
+
+	/**
+	 * Get the path finder working on the geometry itself, rather than on the
+	 * A* grid, selected for the departing agents.
+	 * 
+	 * @return the navigation mesh or the visibility graph, null if none is
+	 *         enabled
+	 */
+	private PathFinder getGeometryPathFinder() {
+		if (navigationMeshNavigation) {
+			return getNavigationMesh();
+		} else if (visibilityGraphNavigation) {
+			return getVisibilityGraphPathFinder();
+		}
+		return null;
+	}
+
+	/**
+	 * Get the flow field of an exit, building it the first time.
+	 * 
+	 * @param exit
+	 *            the exit
+	 * @return flow field towards the exit, null without an A* grid
+	 */
+	public final FlowField getFlowField(final CatpedsimCrossing exit) {
+		AStarPathFinder pathFinder = aStarPathFinder;
+
+		if (pathFinder == null) {
+			return null;
+		}
+
+		return flowFields.computeIfAbsent(exit,
+				crossing -> new FlowField(pathFinder, crossing.getVertexAtIndex(0), crossing.getVertexAtIndex(1)));
+	}
+
+	/**
+	 * Set the flow field navigation. When enabled, the agents departing
+	 * towards an exit and the evacuating pedestrians follow the flow field of
+	 * their exit instead of an A* path. It needs the A* grid.
+	 * 
+	 * @param newFlowFieldNavigation
+	 *            true to follow the flow fields
+	 */
+	public final void setFlowFieldNavigation(final boolean newFlowFieldNavigation) {
+		flowFieldNavigation = newFlowFieldNavigation;
+	}
+
+	/**
+	 * Check if the flow field navigation is enabled.
+	 * 
+	 * @return true if the agents follow the flow fields
+	 */
+	public final boolean isFlowFieldNavigation() {
+		return flowFieldNavigation;
+	}
+
+	/**
+	 * Get the cache of the A* routes of the departing agents, holding the hit
+	 * and miss counters.
+	 * 
+	 * @return route cache
+	 */
+	public final RouteCache getRouteCache() {
+		return routeCache;
 	}
 
 	/**
@@ -2302,18 +3599,10 @@ public class CatpedsimManager extends Observable {
 	 *            agent position vector
 	 */
 	private void updateTransportedAgentPosition(final StringIdentifier agentId, final PVector positionVector) {
-		for (Entry<Class<?>, List<CatpedsimAgent>> mapOfAgentsIterator : mapOfAgentsLists.entrySet()) {
-			List<CatpedsimAgent> listOfAgents = mapOfAgentsIterator.getValue();
-
-			for (Iterator<CatpedsimAgent> iterator = listOfAgents.iterator(); iterator.hasNext();) {
-				CatpedsimAgent currentAgent = iterator.next();
-				StringIdentifier currentAgentId = currentAgent.getUniqueIdentifier();
+		CatpedsimAgent transportedAgent = getAgentByName(agentId);
 
-				if (currentAgentId.equals(agentId) && currentAgent.isTransported()) {
-					currentAgent.copyPositionVector(positionVector);
-					return;
-				}
-			}
+		if (transportedAgent != null && transportedAgent.isTransported()) {
+			transportedAgent.copyPositionVector(positionVector);
 		}
 	}
 
@@ -2340,16 +3629,12 @@ public class CatpedsimManager extends Observable {
 				(float) vehicle.getCurrentPosition().getY());
 
 		synchronized (listOfAgents) {
-			Iterator<CatpedsimAgent> iterator = mapOfAgentsLists.get(agentClass).iterator();
+			CatpedsimAgent internalVehicle = getAgentByName(vehicle.getUniqueIdentifier());
 
-			while (iterator.hasNext()) {
-				CatpedsimVehicle internalVehicle = (CatpedsimVehicle) iterator.next();
-
-				if (internalVehicle.getUniqueIdentifier().equals(vehicle.getUniqueIdentifier())) {
-					internalVehicle.setPositionVector(externalVehicleLocation);
-					internalVehicle.setCurrentSpeed((float) vehicle.getCurrentSpeed());
-					return;
-				}
+			if (internalVehicle instanceof CatpedsimVehicle) {
+				internalVehicle.setPositionVector(externalVehicleLocation);
+				internalVehicle.setCurrentSpeed((float) vehicle.getCurrentSpeed());
+				return;
 			}
 
 			final float metersPerSecondsMaxManufacturerSpeed = 27.77f;
@@ -2360,7 +3645,7 @@ public class CatpedsimManager extends Observable {
 					uniqueIdentifier,
 					new Vec3f(externalVehicleLocation.x, externalVehicleLocation.y, externalVehicleLocation.z),
 					maximumSpeed);
-			listOfAgents.add(newInternalVechicle);
+			addAgent(agentClass, newInternalVechicle);
 		}
 	}
 
@@ -2384,8 +3669,8 @@ public class CatpedsimManager extends Observable {
 			StringIdentifier uniqueIdentifier = new StringIdentifier(vehicle.getVehicleName());
 			float maximumSpeed = convertMetersPerSpeedToTickVelocity(metersPerSecondsMaxManufaturerSpeed);
 
-			mapOfAgentsLists.get(agentClass).add(new CatpedsimVehicle(publisherId, vehicle.getVehicleName(),
-					uniqueIdentifier, new Vec3f(location.x, location.y, location.z), maximumSpeed));
+			addAgent(agentClass, new CatpedsimVehicle(publisherId, vehicle.getVehicleName(), uniqueIdentifier,
+					new Vec3f(location.x, location.y, location.z), maximumSpeed));
 		}
 	}
 
@@ -2401,28 +3686,19 @@ public class CatpedsimManager extends Observable {
 	}
 
 	/**
-	 * Get agent by name.
+	 * Get agent by name, in constant time from the index of the agents by
+	 * unique identifier.
 	 * 
 	 * @param identifier
 	 *            agent unique identifier
-	 * @return agent object
+	 * @return agent object, null if there is no agent with this identifier
 	 */
 	public final CatpedsimAgent getAgentByName(final UniqueIdentifier identifier) {
-		for (Map.Entry<Class<?>, List<CatpedsimAgent>> entry : mapOfAgentsLists.entrySet()) {
-
-			Class<?> agentClass = entry.getKey();
-			List<CatpedsimAgent> listOfAgents = mapOfAgentsLists.get(agentClass);
-
-			for (Iterator<CatpedsimAgent> iterator = listOfAgents.iterator(); iterator.hasNext();) {
-				CatpedsimAgent agent = iterator.next();
-
-				if (agent.getUniqueIdentifier().equals(identifier)) {
-					return agent;
-				}
-			}
+		if (identifier == null) {
+			return null;
 		}
 
-		return null;
+		return mapOfAgentsByIdentifier.get(identifier);
 	}
 
 	/**
@@ -2438,18 +3714,10 @@ public class CatpedsimManager extends Observable {
 			return;
 		}
 
-		for (Entry<Class<?>, List<CatpedsimAgent>> mapOfAgentsIterator : mapOfAgentsLists.entrySet()) {
-			List<CatpedsimAgent> listOfAgents = mapOfAgentsIterator.getValue();
-
-			synchronized (listOfAgents) {
-				for (Iterator<CatpedsimAgent> iterator = listOfAgents.iterator(); iterator.hasNext();) {
-					CatpedsimAgent currentAgent = iterator.next();
+		CatpedsimAgent agent = getAgentByName(uniqueIdentifier);
 
-					if (currentAgent.getUniqueIdentifier().equals(uniqueIdentifier)) {
-						iterator.remove();
-					}
-				}
-			}
+		if (agent != null) {
+			removeAgent(agent.getClass(), agent);
 		}
 	}
 
@@ -0,0 +1,200 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.logiclayer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentList;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentStateStore;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
+
+/**
+ * Neighbour index over the dormant agents of one type: the agents which are
+ * stopped or moved by an external simulator. They do not compute forces but
+ * still repel the moving agents, like static obstacles. The agents list keeps
+ * the dormant agents apart and counts their changes; the index compares the
+ * counters every tick and only reads the dormant agents, to rebuild its
+ * spatial grid, when they changed. Racked vehicles and parked pods cost
+ * nothing per tick.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class DormantAgentsIndex {
+	/**
+	 * Grid over the indexed agents.
+	 */
+	private final AgentsSpatialGrid spatialGrid;
+
+	/**
+	 * Reusable list of the dormant agents, filled when the grid is rebuilt.
+	 */
+	private final List<CatpedsimAgent> agents = new ArrayList<CatpedsimAgent>();
+
+	/**
+	 * Dormant modifications of the agents list when the grid was built.
+	 */
+	private long indexedModifications = -1;
+
+	/**
+	 * Dormant membership modifications of the agents list when the grid was
+	 * built.
+	 */
+	private long indexedMembershipModifications = -1;
+
+	/**
+	 * Number of indexed agents.
+	 */
+	private int numberOfIndexedAgents = 0;
+
+	/**
+	 * True if an agent entered or left the index in the last update.
+	 */
+	private boolean membershipChanged = false;
+
+	/**
+	 * Number of builds of the grid.
+	 */
+	private long rebuilds = 0;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param newWorldWidth
+	 *            world width in meters
+	 * @param newWorldDepth
+	 *            world depth in meters
+	 * @param cutOffDistance
+	 *            the maximum distance of interaction between agents
+	 */
+	public DormantAgentsIndex(final float newWorldWidth, final float newWorldDepth, final float cutOffDistance) {
+		spatialGrid = new AgentsSpatialGrid(newWorldWidth, newWorldDepth, cutOffDistance);
+	}
+
+	/**
+	 * Rebuild the grid if the dormant agents of the list changed since the
+	 * last update: an agent entered or left them, or one of them moved. The
+	 * caller synchronises on the list.
+	 * 
+	 * @param listOfAgents
+	 *            the agents list of the indexed type
+	 * @return true if the grid was rebuilt
+	 */
+	public final boolean update(final AgentList listOfAgents) {
+		long membershipModifications = listOfAgents.getDormantMembershipModifications();
+		long modifications = listOfAgents.getDormantModifications();
+
+		membershipChanged = membershipModifications != indexedMembershipModifications;
+
+		if (modifications == indexedModifications && !membershipChanged) {
+			return false;
+		}
+
+		for (int slot = listOfAgents.getNumberOfMovingAgents(); slot < listOfAgents.size(); slot++) {
+			agents.add(listOfAgents.get(slot));
+		}
+
+		numberOfIndexedAgents = agents.size();
+		spatialGrid.rebuild(agents);
+		agents.clear();
+
+		indexedModifications = modifications;
+		indexedMembershipModifications = membershipModifications;
+		rebuilds++;
+
+		return true;
+	}
+
+	/**
+	 * Collect the dormant agents found in the cell of the given position and in
+	 * the eight cells around it.
+	 * 
+	 * @param position
+	 *            the position of the querying agent
+	 * @param neighbours
+	 *            the list receiving the candidates, it is not cleared
+	 */
+	public final void collectNeighbours(final PVector position, final List<CatpedsimAgent> neighbours) {
+		spatialGrid.collectNeighbours(position, neighbours);
+	}
+
+	/**
+	 * Copy the dormant agents into the structure of arrays store.
+	 * 
+	 * @param store
+	 *            the structure of arrays store
+	 */
+	public final void appendToStore(final AgentStateStore store) {
+		spatialGrid.appendToStore(store);
+	}
+
+	/**
+	 * Collect the store slot ranges of the dormant agents around a position.
+	 * The index must have been appended to the store.
+	 * 
+	 * @param x
+	 *            x coordinate of the querying agent
+	 * @param y
+	 *            y coordinate of the querying agent
+	 * @param slotRanges
+	 *            receives the first slot (inclusive) and the last slot
+	 *            (exclusive) of every range, at least six elements
+	 * @return the number of ranges
+	 */
+	public final int collectNeighbourSlotRanges(final float x, final float y, final int[] slotRanges) {
+		return spatialGrid.collectNeighbourSlotRanges(x, y, slotRanges);
+	}
+
+	/**
+	 * Check if an agent entered or left the index in the last update. The
+	 * grid is also rebuilt when the indexed agents only moved, but then the
+	 * set of agents is the same.
+	 * 
+	 * @return true if the set of indexed agents changed
+	 */
+	public final boolean hasMembershipChanged() {
+		return membershipChanged;
+	}
+
+	/**
+	 * Get the number of indexed agents.
+	 * 
+	 * @return number of agents
+	 */
+	public final int getNumberOfAgents() {
+		return numberOfIndexedAgents;
+	}
+
+	/**
+	 * Get the number of builds of the grid.
+	 * 
+	 * @return the number of builds
+	 */
+	public final long getRebuilds() {
+		return rebuilds;
+	}
+}
@@ -0,0 +1,231 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.logiclayer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs the phases of a two phase tick (compute the forces, then integrate)
+ * over the agents of the simulation on a fork/join pool. Every phase only
+ * writes the state of the agent it is given, and reads the state the previous
+ * phase left unchanged, so the outcome does not depend on the number of
+ * threads or on the order the agents are processed.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class ParallelTickEngine {
+	/**
+	 * Below this number of agents a task is not split any further.
+	 */
+	private static final int MINIMUM_AGENTS_PER_TASK = 64;
+
+	/**
+	 * Number of tasks created for every worker thread, helps balancing the
+	 * load when the agents have different numbers of neighbours.
+	 */
+	private static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * Parallelism level.
+	 */
+	private final int parallelism;
+
+	/**
+	 * The pool running the tasks, null when the parallelism level is one.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param newParallelism
+	 *            the number of worker threads, values lower than one are
+	 *            replaced by one
+	 */
+	public ParallelTickEngine(final int newParallelism) {
+		parallelism = Math.max(newParallelism, 1);
+
+		if (parallelism > 1) {
+			pool = new ForkJoinPool(parallelism);
+		} else {
+			pool = null;
+		}
+	}
+
+	/**
+	 * Run an action for every task index in [0, numberOfTasks), each index
+	 * being a task of its own, and wait for all of them to finish. Used for
+	 * coarse work items such as the cells of a grid.
+	 * 
+	 * @param numberOfTasks
+	 *            number of tasks
+	 * @param action
+	 *            the action run for every task index
+	 */
+	public final void forEachTask(final int numberOfTasks, final IntConsumer action) {
+		if (pool == null || numberOfTasks <= 1) {
+			for (int indexTask = 0; indexTask < numberOfTasks; indexTask++) {
+				action.accept(indexTask);
+			}
+			return;
+		}
+
+		pool.invoke(new AgentsRangeTask(0, numberOfTasks, 1, action));
+	}
+
+	/**
+	 * Run an action for every agent index in [0, numberOfAgents) and wait for
+	 * all of them to finish.
+	 * 
+	 * @param numberOfAgents
+	 *            number of agents
+	 * @param action
+	 *            the action run for every agent index
+	 */
+	public final void forEachAgent(final int numberOfAgents, final IntConsumer action) {
+		if (pool == null || numberOfAgents <= MINIMUM_AGENTS_PER_TASK) {
+			for (int indexAgent = 0; indexAgent < numberOfAgents; indexAgent++) {
+				action.accept(indexAgent);
+			}
+			return;
+		}
+
+		int agentsPerTask = Math.max(MINIMUM_AGENTS_PER_TASK, numberOfAgents / (parallelism * TASKS_PER_THREAD));
+		pool.invoke(new AgentsRangeTask(0, numberOfAgents, agentsPerTask, action));
+	}
+
+	/**
+	 * Run a task on the worker threads, or on the calling thread when the
+	 * parallelism level is one.
+	 * 
+	 * @param <T>
+	 *            type of the result
+	 * @param task
+	 *            the task
+	 * @return the result of the task
+	 */
+	public final <T> Future<T> submit(final Callable<T> task) {
+		if (pool == null) {
+			CompletableFuture<T> result = new CompletableFuture<T>();
+
+			try {
+				result.complete(task.call());
+			} catch (Exception ex) {
+				result.completeExceptionally(ex);
+			}
+			return result;
+		}
+
+		return pool.submit(task);
+	}
+
+	/**
+	 * Get the parallelism level.
+	 * 
+	 * @return the number of worker threads
+	 */
+	public final int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Stop the worker threads.
+	 */
+	public final void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * A range of agent indexes split in halves until it is small enough.
+	 */
+	private static final class AgentsRangeTask extends RecursiveAction {
+		/**
+		 * Serial version.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * First index, inclusive.
+		 */
+		private final int fromIndex;
+
+		/**
+		 * Last index, exclusive.
+		 */
+		private final int toIndex;
+
+		/**
+		 * Range size processed without splitting.
+		 */
+		private final int agentsPerTask;
+
+		/**
+		 * The action run for every index.
+		 */
+		private final IntConsumer action;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param newFromIndex
+		 *            first index, inclusive
+		 * @param newToIndex
+		 *            last index, exclusive
+		 * @param newAgentsPerTask
+		 *            range size processed without splitting
+		 * @param newAction
+		 *            the action run for every index
+		 */
+		AgentsRangeTask(final int newFromIndex, final int newToIndex, final int newAgentsPerTask,
+				final IntConsumer newAction) {
+			fromIndex = newFromIndex;
+			toIndex = newToIndex;
+			agentsPerTask = newAgentsPerTask;
+			action = newAction;
+		}
+
+		@Override
+		protected void compute() {
+			if (toIndex - fromIndex <= agentsPerTask) {
+				for (int indexAgent = fromIndex; indexAgent < toIndex; indexAgent++) {
+					action.accept(indexAgent);
+				}
+				return;
+			}
+
+			int middleIndex = (fromIndex + toIndex) >>> 1;
+			invokeAll(new AgentsRangeTask(fromIndex, middleIndex, agentsPerTask, action),
+					new AgentsRangeTask(middleIndex, toIndex, agentsPerTask, action));
+		}
+	}
+}
@@ -0,0 +1,392 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.logiclayer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi.Voronoi;
+
+/**
+ * Local density of the agents from the Voronoi tessellation of their
+ * positions. Every update the personal area of every agent is the area of its
+ * Voronoi cell, and the agents are binned by density with their speed to give
+ * the fundamental diagram (mean speed against density) of the crowd. A frame
+ * of sites around the crowd closes the cells on its border, and the Voronoi
+ * sweep and the buffers are reused between the updates.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class VoronoiDensityService {
+	/** Default time between two density updates, in seconds. */
+	public static final float DEFAULT_UPDATE_INTERVAL_SECONDS = 1f;
+
+	/** Personal areas are not counted above this value, in square metres. */
+	public static final float MAXIMUM_PERSONAL_AREA = 10f;
+
+	/** Personal areas are not counted below this value, in square metres. */
+	public static final float MINIMUM_PERSONAL_AREA = 0.1f;
+
+	/** Width of the density bins of the fundamental diagram, in 1/m2. */
+	public static final float DENSITY_BIN_WIDTH = 0.25f;
+
+	/** Number of density bins of the fundamental diagram. */
+	public static final int NUMBER_OF_DENSITY_BINS = (int) Math
+			.ceil(1 / MINIMUM_PERSONAL_AREA / DENSITY_BIN_WIDTH) + 1;
+
+	/**
+	 * Distance between the agents bounding box and the frame of sites closing
+	 * the cells of the agents on the border of the crowd, and between the
+	 * sites of the frame.
+	 */
+	private static final float FRAME_SPACING = (float) Math.sqrt(MAXIMUM_PERSONAL_AREA) * 2;
+
+	/** Sites closer than this distance are considered a single site. */
+	private static final double MINIMUM_SITE_DISTANCE = 1e-3;
+
+	/** Initial capacity of the buffers. */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Time between two density updates, in seconds. */
+	private final float updateIntervalSeconds;
+
+	/** The Fortune's sweep, reused by every update. */
+	private final Voronoi voronoi = new Voronoi(MINIMUM_SITE_DISTANCE);
+
+	/** Time since the last update, in seconds. */
+	private float elapsedSeconds = 0;
+
+	/** Number of agents measured by the last update. */
+	private int numberOfAgents = 0;
+
+	/** Agents measured by the last update. */
+	private CatpedsimAgent[] agents = new CatpedsimAgent[INITIAL_CAPACITY];
+
+	/** X coordinates of the sites of the tessellation: the agents, then the frame. */
+	private double[] sitesX = new double[INITIAL_CAPACITY];
+
+	/** Y coordinates of the sites of the tessellation. */
+	private double[] sitesY = new double[INITIAL_CAPACITY];
+
+	/** Personal area of the agents, in square metres. */
+	private float[] personalAreas = new float[INITIAL_CAPACITY];
+
+	/** Speed of the agents, in metres per second. */
+	private float[] speeds = new float[INITIAL_CAPACITY];
+
+	/** Sum of the speeds of the agents in every density bin. */
+	private final double[] binsSpeedSums = new double[NUMBER_OF_DENSITY_BINS];
+
+	/** Number of agents in every density bin. */
+	private final int[] binsCounts = new int[NUMBER_OF_DENSITY_BINS];
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param newUpdateIntervalSeconds
+	 *            time between two density updates, in seconds; zero to update
+	 *            at every tick
+	 */
+	public VoronoiDensityService(final float newUpdateIntervalSeconds) {
+		updateIntervalSeconds = Math.max(newUpdateIntervalSeconds, 0);
+	}
+
+	/**
+	 * Advance the time of the service and update the densities when the
+	 * update interval has elapsed.
+	 * 
+	 * @param listOfAgents
+	 *            the agents to measure
+	 * @param tickLengthSeconds
+	 *            length of the tick, in seconds
+	 * @return true if the densities were updated
+	 */
+	public final boolean advance(final List<CatpedsimAgent> listOfAgents, final float tickLengthSeconds) {
+		elapsedSeconds += tickLengthSeconds;
+
+		if (elapsedSeconds < updateIntervalSeconds) {
+			return false;
+		}
+
+		elapsedSeconds = 0;
+		update(listOfAgents);
+		return true;
+	}
+
+	/**
+	 * Tessellate the positions of the agents and compute their personal area
+	 * and the fundamental diagram.
+	 * 
+	 * @param listOfAgents
+	 *            the agents to measure
+	 */
+	public final void update(final List<CatpedsimAgent> listOfAgents) {
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+
+		synchronized (listOfAgents) {
+			numberOfAgents = listOfAgents.size();
+			ensureCapacity(numberOfAgents);
+
+			int indexAgent = 0;
+			for (CatpedsimAgent agent : listOfAgents) {
+				PVector position = agent.getSnapshotPositionVector();
+
+				agents[indexAgent] = agent;
+				sitesX[indexAgent] = position.x;
+				sitesY[indexAgent] = position.y;
+				speeds[indexAgent] = agent.getSnapshotVelocity().mag();
+				personalAreas[indexAgent] = 0;
+
+				minX = Math.min(minX, position.x);
+				minY = Math.min(minY, position.y);
+				maxX = Math.max(maxX, position.x);
+				maxY = Math.max(maxY, position.y);
+				indexAgent++;
+			}
+		}
+
+		Arrays.fill(binsSpeedSums, 0);
+		Arrays.fill(binsCounts, 0);
+
+		if (numberOfAgents == 0) {
+			return;
+		}
+
+		int numberOfSites = addFrame(minX - FRAME_SPACING, minY - FRAME_SPACING, maxX + FRAME_SPACING,
+				maxY + FRAME_SPACING);
+
+		int numberOfEdges = voronoi.computeVoronoiDiagram(sitesX, sitesY, numberOfSites);
+
+		for (int indexEdge = 0; indexEdge < numberOfEdges; indexEdge++) {
+			addTriangleArea(voronoi.getGraphEdgesLeftSites()[indexEdge], indexEdge);
+			addTriangleArea(voronoi.getGraphEdgesRightSites()[indexEdge], indexEdge);
+		}
+
+		for (int indexAgent = 0; indexAgent < numberOfAgents; indexAgent++) {
+			float personalArea = personalAreas[indexAgent];
+
+			if (personalArea <= 0 || personalArea > MAXIMUM_PERSONAL_AREA) {
+				personalArea = MAXIMUM_PERSONAL_AREA;
+			}
+			personalAreas[indexAgent] = Math.max(personalArea, MINIMUM_PERSONAL_AREA);
+
+			int bin = Math.min((int) (1 / personalAreas[indexAgent] / DENSITY_BIN_WIDTH), NUMBER_OF_DENSITY_BINS - 1);
+			binsSpeedSums[bin] += speeds[indexAgent];
+			binsCounts[bin]++;
+		}
+	}
+
+	/**
+	 * Add the sites of a rectangular frame after the agents sites, so the
+	 * cells of the agents are closed.
+	 * 
+	 * @param minX
+	 *            frame min x
+	 * @param minY
+	 *            frame min y
+	 * @param maxX
+	 *            frame max x
+	 * @param maxY
+	 *            frame max y
+	 * @return the number of sites, agents and frame
+	 */
+	private int addFrame(final float minX, final float minY, final float maxX, final float maxY) {
+		int stepsX = (int) Math.ceil((maxX - minX) / FRAME_SPACING);
+		int stepsY = (int) Math.ceil((maxY - minY) / FRAME_SPACING);
+		int numberOfSites = numberOfAgents + 2 * (stepsX + stepsY);
+
+		if (sitesX.length < numberOfSites) {
+			sitesX = Arrays.copyOf(sitesX, numberOfSites);
+			sitesY = Arrays.copyOf(sitesY, numberOfSites);
+		}
+
+		int indexSite = numberOfAgents;
+		for (int step = 0; step < stepsX; step++) {
+			float x = minX + (maxX - minX) * step / stepsX;
+			setSite(indexSite++, x, minY);
+			setSite(indexSite++, maxX - (x - minX), maxY);
+		}
+		for (int step = 0; step < stepsY; step++) {
+			float y = minY + (maxY - minY) * step / stepsY;
+			setSite(indexSite++, maxX, y);
+			setSite(indexSite++, minX, maxY - (y - minY));
+		}
+
+		return numberOfSites;
+	}
+
+	/**
+	 * Set the position of a site.
+	 * 
+	 * @param indexSite
+	 *            the site
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 */
+	private void setSite(final int indexSite, final float x, final float y) {
+		sitesX[indexSite] = x;
+		sitesY[indexSite] = y;
+	}
+
+	/**
+	 * Add the area of the triangle between a site and a Voronoi edge to the
+	 * personal area of the site, if the site is an agent.
+	 * 
+	 * @param indexSite
+	 *            the site
+	 * @param indexEdge
+	 *            an edge of the cell of the site, in the output of the sweep
+	 */
+	private void addTriangleArea(final int indexSite, final int indexEdge) {
+		if (indexSite < 0 || indexSite >= numberOfAgents) {
+			return;
+		}
+
+		double area = Voronoi.triArea(sitesX[indexSite], sitesY[indexSite], voronoi.getGraphEdgesX1()[indexEdge],
+				voronoi.getGraphEdgesY1()[indexEdge], voronoi.getGraphEdgesX2()[indexEdge],
+				voronoi.getGraphEdgesY2()[indexEdge]);
+
+		personalAreas[indexSite] += (float) Math.abs(area) / 2;
+	}
+
+	/**
+	 * Grow the buffers of the agents.
+	 * 
+	 * @param capacity
+	 *            the number of agents to hold
+	 */
+	private void ensureCapacity(final int capacity) {
+		if (agents.length >= capacity) {
+			return;
+		}
+
+		int newCapacity = Math.max(capacity, agents.length * 2);
+		agents = Arrays.copyOf(agents, newCapacity);
+		sitesX = Arrays.copyOf(sitesX, newCapacity);
+		sitesY = Arrays.copyOf(sitesY, newCapacity);
+		personalAreas = Arrays.copyOf(personalAreas, newCapacity);
+		speeds = Arrays.copyOf(speeds, newCapacity);
+	}
+
+	/**
+	 * Get the number of agents measured by the last update.
+	 * 
+	 * @return number of agents
+	 */
+	public final int getNumberOfAgents() {
+		return numberOfAgents;
+	}
+
+	/**
+	 * Get an agent measured by the last update.
+	 * 
+	 * @param indexAgent
+	 *            index of the agent, in [0, getNumberOfAgents())
+	 * @return the agent
+	 */
+	public final CatpedsimAgent getAgent(final int indexAgent) {
+		return agents[indexAgent];
+	}
+
+	/**
+	 * Get the personal area (the area of the Voronoi cell) of an agent
+	 * measured by the last update, bounded by MINIMUM_PERSONAL_AREA and
+	 * MAXIMUM_PERSONAL_AREA.
+	 * 
+	 * @param indexAgent
+	 *            index of the agent, in [0, getNumberOfAgents())
+	 * @return personal area, in square metres
+	 */
+	public final float getPersonalArea(final int indexAgent) {
+		return personalAreas[indexAgent];
+	}
+
+	/**
+	 * Get the local density of an agent measured by the last update, the
+	 * inverse of its personal area.
+	 * 
+	 * @param indexAgent
+	 *            index of the agent, in [0, getNumberOfAgents())
+	 * @return density, in agents per square metre
+	 */
+	public final float getDensity(final int indexAgent) {
+		return 1 / personalAreas[indexAgent];
+	}
+
+	/**
+	 * Get the number of agents in a density bin of the fundamental diagram.
+	 * Bin i holds the densities in [i * DENSITY_BIN_WIDTH, (i + 1) *
+	 * DENSITY_BIN_WIDTH).
+	 * 
+	 * @param bin
+	 *            density bin, in [0, NUMBER_OF_DENSITY_BINS)
+	 * @return number of agents
+	 */
+	public final int getNumberOfAgentsInDensityBin(final int bin) {
+		return binsCounts[bin];
+	}
+
+	/**
+	 * Get the mean speed of the agents in a density bin of the fundamental
+	 * diagram.
+	 * 
+	 * @param bin
+	 *            density bin, in [0, NUMBER_OF_DENSITY_BINS)
+	 * @return mean speed in metres per second, zero for an empty bin
+	 */
+	public final float getMeanSpeedInDensityBin(final int bin) {
+		if (binsCounts[bin] == 0) {
+			return 0;
+		}
+		return (float) (binsSpeedSums[bin] / binsCounts[bin]);
+	}
+
+	/**
+	 * Get the fundamental diagram of the last update as text, one line per
+	 * non empty density bin: density, mean speed, number of agents.
+	 * 
+	 * @return fundamental diagram
+	 */
+	public final String getFundamentalDiagramToString() {
+		StringBuilder information = new StringBuilder();
+
+		for (int bin = 0; bin < NUMBER_OF_DENSITY_BINS; bin++) {
+			if (binsCounts[bin] > 0) {
+				information.append((bin + 0.5f) * DENSITY_BIN_WIDTH + "\t" + getMeanSpeedInDensityBin(bin) + "\t"
+						+ binsCounts[bin] + "\n");
+			}
+		}
+
+		return information.toString();
+	}
+}
@@ -1,6 +1,10 @@
 package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
@@ -39,7 +43,7 @@ import uk.org.catapult.ts.cav.utils.UtilityLogger;
  *
  */
 
-public class AStarPathFinder {
+public class AStarPathFinder implements PathFinder {
 
 	/**
 	 * Logger.
@@ -60,22 +64,45 @@ public class AStarPathFinder {
 	private int scale = 1;
 
 	/**
-	 * The set of currently discovered nodes still to be evaluated. Initially,
-	 * only the start node is known.
+	 * A list of precomputed nodes, indexed as in the node map.
 	 */
-	private LinkedList<NodePath> openSet = new LinkedList<NodePath>();
+	private ArrayList<NodePath> nodes = new ArrayList<NodePath>();
 
-	/** The set of nodes already evaluated. */
-	private LinkedList<NodePath> closedSet = new LinkedList<NodePath>();
+	/** Coordinates of the nodes on the X axis. */
+	private float[] nodesX;
+
+	/** Coordinates of the nodes on the Y axis. */
+	private float[] nodesY;
+
+	/** Grid column of the nodes. */
+	private int[] nodesColumn;
+
+	/** Grid row of the nodes. */
+	private int[] nodesRow;
+
+	/**
+	 * For every node, the index of its first neighbour in the neighbours
+	 * arrays. The neighbours of node i are in [neighboursStart[i],
+	 * neighboursStart[i + 1]).
+	 */
+	private int[] neighboursStart;
+
+	/** Neighbour node indexes of all the nodes. */
+	private int[] neighbours;
+
+	/** Cost of the edge to every neighbour: distance times cost multiplier. */
+	private float[] neighboursCost;
 
 	/**
-	 * A list of precomputed nodes. For each node, it indicates which node it
-	 * can most efficiently be reached from.
+	 * The search states, borrowed by every search. The graph above is never
+	 * modified once built, so any number of threads can search it at the same
+	 * time.
 	 */
-	private LinkedList<NodePath> nodes = new LinkedList<NodePath>();
+	private final SearchStatePool<SearchState> searchStates = new SearchStatePool<SearchState>(
+			() -> new SearchState(nodesX.length));
 
-	/** The path of nodes from start node to end node. */
-	private LinkedList<NodePath> path = new LinkedList<NodePath>();
+	/** The path found by the last call of astar. */
+	private volatile LinkedList<NodePath> lastPath = new LinkedList<NodePath>();
 
 	/**
 	 * Constructor. Init the grid of obstacles and accessible space.
@@ -102,18 +129,18 @@ public class AStarPathFinder {
 					try {
 						if (ix > 0) {
 							if (nodeMap[iy][ix - 1] != -1) {
-								newNode = (NodePath) nodes.getLast();
+								newNode = nodes.get(nodes.size() - 1);
 								float cost = 1;
-								newNode.addNeighbour((NodePath) nodes.get(nodeMap[iy][ix - 1]), cost);
-								((NodePath) nodes.get(nodeMap[iy][ix - 1])).addNeighbour(newNode, cost);
+								newNode.addNeighbour(nodes.get(nodeMap[iy][ix - 1]), cost);
+								nodes.get(nodeMap[iy][ix - 1]).addNeighbour(newNode, cost);
 							}
 						}
 						if (iy > 0) {
 							if (nodeMap[iy - 1][ix] != -1) {
-								newNode = (NodePath) nodes.getLast();
+								newNode = nodes.get(nodes.size() - 1);
 								float cost = 1;
-								newNode.addNeighbour((NodePath) nodes.get(nodeMap[iy - 1][ix]), cost);
-								((NodePath) nodes.get(nodeMap[iy - 1][ix])).addNeighbour(newNode, cost);
+								newNode.addNeighbour(nodes.get(nodeMap[iy - 1][ix]), cost);
+								nodes.get(nodeMap[iy - 1][ix]).addNeighbour(newNode, cost);
 							}
 						}
 					} catch (Exception ex) {
@@ -122,6 +149,50 @@ public class AStarPathFinder {
 				}
 			}
 		}
+
+		buildAdjacencyArrays();
+	}
+
+	/**
+	 * Copy the nodes and their neighbours into flat arrays indexed by node.
+	 */
+	private void buildAdjacencyArrays() {
+		int numberOfNodes = nodes.size();
+		Map<NodePath, Integer> nodesIndexes = new IdentityHashMap<NodePath, Integer>(numberOfNodes);
+
+		nodesX = new float[numberOfNodes];
+		nodesY = new float[numberOfNodes];
+		nodesColumn = new int[numberOfNodes];
+		nodesRow = new int[numberOfNodes];
+		neighboursStart = new int[numberOfNodes + 1];
+
+		int numberOfEdges = 0;
+		for (int indexNode = 0; indexNode < numberOfNodes; indexNode++) {
+			NodePath node = nodes.get(indexNode);
+			nodesIndexes.put(node, indexNode);
+			nodesX[indexNode] = node.getX();
+			nodesY[indexNode] = node.getY();
+			nodesColumn[indexNode] = (int) (node.getX() / scale);
+			nodesRow[indexNode] = (int) (node.getY() / scale);
+			neighboursStart[indexNode] = numberOfEdges;
+			numberOfEdges += node.getNeighbours().size();
+		}
+		neighboursStart[numberOfNodes] = numberOfEdges;
+
+		neighbours = new int[numberOfEdges];
+		neighboursCost = new float[numberOfEdges];
+
+		for (int indexNode = 0; indexNode < numberOfNodes; indexNode++) {
+			NodePath node = nodes.get(indexNode);
+			int edge = neighboursStart[indexNode];
+
+			for (int n = 0; n < node.getNeighbours().size(); n++, edge++) {
+				NodePath neighbour = node.getNeighbours().get(n);
+				neighbours[edge] = nodesIndexes.get(neighbour);
+				neighboursCost[edge] = Trigonometry.distanceBetweenPoints(node.getX(), node.getY(), neighbour.getX(),
+						neighbour.getY()) * node.getnCost().get(n);
+			}
+		}
 	}
 
 	/**
@@ -133,9 +204,152 @@ public class AStarPathFinder {
 		return scale;
 	}
 
+	/**
+	 * Get the number of accessible grid nodes.
+	 * 
+	 * @return number of nodes
+	 */
+	public final int getNumberOfNodes() {
+		return nodesX.length;
+	}
+
+	/**
+	 * Get the coordinates of the nodes on the X axis. Shared with the other
+	 * path finders of the package, must not be modified.
+	 * 
+	 * @return x coordinates indexed by node
+	 */
+	final float[] getNodesX() {
+		return nodesX;
+	}
+
+	/**
+	 * Get the coordinates of the nodes on the Y axis. Shared with the other
+	 * path finders of the package, must not be modified.
+	 * 
+	 * @return y coordinates indexed by node
+	 */
+	final float[] getNodesY() {
+		return nodesY;
+	}
+
+	/**
+	 * Get the grid column of the nodes. Shared with the other path finders of
+	 * the package, must not be modified.
+	 * 
+	 * @return columns indexed by node
+	 */
+	final int[] getNodesColumn() {
+		return nodesColumn;
+	}
+
+	/**
+	 * Get the grid row of the nodes. Shared with the other path finders of the
+	 * package, must not be modified.
+	 * 
+	 * @return rows indexed by node
+	 */
+	final int[] getNodesRow() {
+		return nodesRow;
+	}
+
+	/**
+	 * Get the number of columns of the grid.
+	 * 
+	 * @return number of columns
+	 */
+	public final int getGridColumns() {
+		return nodeMap[0].length;
+	}
+
+	/**
+	 * Get the number of rows of the grid.
+	 * 
+	 * @return number of rows
+	 */
+	public final int getGridRows() {
+		return nodeMap.length;
+	}
+
+	/**
+	 * Get the node in a grid cell.
+	 * 
+	 * @param column
+	 *            grid column
+	 * @param row
+	 *            grid row
+	 * @return node index, -1 if the cell is outside the grid or an obstacle
+	 */
+	public final int getNodeAtCell(final int column, final int row) {
+		if (row < 0 || row >= nodeMap.length || column < 0 || column >= nodeMap[row].length) {
+			return -1;
+		}
+		return nodeMap[row][column];
+	}
+
+	/**
+	 * Get the node with a given index.
+	 * 
+	 * @param node
+	 *            node index
+	 * @return the node
+	 */
+	public final NodePath getNode(final int node) {
+		return nodes.get(node);
+	}
+
+	/**
+	 * Get the index of the first neighbour of every node in the neighbours
+	 * arrays. Shared with the other path finders of the package, must not be
+	 * modified.
+	 * 
+	 * @return neighbours start indexes, one more than the number of nodes
+	 */
+	final int[] getNeighboursStart() {
+		return neighboursStart;
+	}
+
+	/**
+	 * Get the neighbours of all the nodes. Shared with the other path finders
+	 * of the package, must not be modified.
+	 * 
+	 * @return neighbour node indexes
+	 */
+	final int[] getNeighbours() {
+		return neighbours;
+	}
+
+	/**
+	 * Get the cost of the edge to every neighbour. Shared with the other path
+	 * finders of the package, must not be modified.
+	 * 
+	 * @return edge costs
+	 */
+	final float[] getNeighboursCost() {
+		return neighboursCost;
+	}
+
+	/**
+	 * Get the index of the grid node holding a point.
+	 * 
+	 * @param x
+	 *            coordinate on the x axis
+	 * @param y
+	 *            coordinate on the y axis
+	 * @return the node index, -1 if the point is outside the grid or on an
+	 *         obstacle
+	 */
+	public final int getNodeIndex(final int x, final int y) {
+		return getNodeAtCell((int) (x / scale), (int) (y / scale));
+	}
+
 	/**
 	 * A* Pathfinding Algorithm Finds short path from node[iStart] to
-	 * node[iEnd].
+	 * node[iEnd]. The path is kept in the search state of the calling thread.
+	 * 
+	 * The open set is an indexed binary heap ordered by f(n), and the per node
+	 * search state lives in arrays indexed by node and stamped with the search
+	 * number, so nothing is cleared or allocated between searches.
 	 * 
 	 * @param x1
 	 *            point 1 coordinate on the x axis
@@ -148,11 +362,35 @@ public class AStarPathFinder {
 	 * @return true if a path was found
 	 */
 	public final boolean astar(final int x1, final int y1, final int x2, final int y2) {
-		try {
-			openSet.clear();
-			closedSet.clear();
-			path.clear();
+		LinkedList<NodePath> path = findPath(x1, y1, x2, y2);
 
+		if (path == null) {
+			lastPath = new LinkedList<NodePath>();
+			return false;
+		}
+
+		lastPath = path;
+		return true;
+	}
+
+	/**
+	 * Find the shortest path between two points with a borrowed search state.
+	 * 
+	 * @param x1
+	 *            point 1 coordinate on the x axis
+	 * @param y1
+	 *            point 1 coordinate on the y axis
+	 * @param x2
+	 *            point 2 coordinate on the x axis
+	 * @param y2
+	 *            point 2 coordinate on the y axis
+	 * @return the path from the end node back to the start node, null if there
+	 *         is no path
+	 */
+	private LinkedList<NodePath> findPath(final int x1, final int y1, final int x2, final int y2) {
+		SearchState state = searchStates.borrow();
+
+		try {
 			int scaleXCoordinate1 = (int) (x1 / scale);
 			int scaledYCoordinate1 = (int) (y1 / scale);
 			int scaledXCoordinate2 = (int) (x2 / scale);
@@ -161,94 +399,148 @@ public class AStarPathFinder {
 			int iStart = nodeMap[scaledYCoordinate1][scaleXCoordinate1];
 			int iEnd = nodeMap[scaledYCoordinate2][scaledXCoordinate2];
 
-			if (iStart == -1 || iEnd == -1) {
-				return false;
+			if (iStart != -1 && iEnd != -1
+					&& search(state, iStart, iEnd, 0, 0, getGridColumns() - 1, getGridRows() - 1)) {
+				return new LinkedList<NodePath>(state.path);
 			}
+		} catch (Exception ex) {
+			LOGGER.warn("Error while creating the AStar path.", ex);
+		} finally {
+			state.clear();
+			searchStates.giveBack(state);
+		}
 
-			NodePath endNode = nodes.get(iEnd);
-			float endX = ((NodePath) endNode).getX();
-			float endY = ((NodePath) endNode).getY();
-
-			openSet.add(((NodePath) nodes.get(iStart)));
-			NodePath initialNode = openSet.get(0);
-			((NodePath) initialNode).setP(-1);
-			((NodePath) initialNode).setG(0);
-			((NodePath) initialNode).setH(Trigonometry.distanceBetweenPoints(((NodePath) openSet.get(0)).getX(),
-					((NodePath) openSet.get(0)).getY(), endX, endY));
-
-			NodePath currentNode;
-			float tentativeGScore;
-			boolean tentativeIsBetter;
-			float lowest = Float.MAX_VALUE;
-			int lowId = -1;
-
-			while (openSet.size() > 0) {
-				lowest = Float.MAX_VALUE;
-				for (int a = 0; a < openSet.size(); a++) {
-					NodePath openSetCandidate = (NodePath) openSet.get(a);
-
-					if ((openSetCandidate.getG() + (openSet.get(a)).getH()) <= lowest) {
-						lowest = (openSetCandidate.getG() + openSetCandidate.getH());
-						lowId = a;
-					}
+		return null;
+	}
+
+	/**
+	 * Find the shortest path between two nodes without leaving a rectangle of
+	 * grid cells. Used by the hierarchical path finder to refine a path
+	 * within a sector.
+	 * 
+	 * @param iStart
+	 *            start node
+	 * @param iEnd
+	 *            end node
+	 * @param minColumn
+	 *            first column of the rectangle
+	 * @param minRow
+	 *            first row of the rectangle
+	 * @param maxColumn
+	 *            last column of the rectangle
+	 * @param maxRow
+	 *            last row of the rectangle
+	 * @param path
+	 *            the path from the end node back to the start node, excluding
+	 *            the start node, is added at the head of this list
+	 * @return true if a path was found
+	 */
+	final boolean searchWithinCells(final int iStart, final int iEnd, final int minColumn, final int minRow,
+			final int maxColumn, final int maxRow, final LinkedList<NodePath> path) {
+		SearchState state = searchStates.borrow();
+
+		try {
+			if (search(state, iStart, iEnd, minColumn, minRow, maxColumn, maxRow)) {
+				path.addAll(0, state.path);
+				return true;
+			}
+			return false;
+		} finally {
+			state.clear();
+			searchStates.giveBack(state);
+		}
+	}
+
+	/**
+	 * A* search between two nodes within a rectangle of grid cells. The path
+	 * is added to the path of the search state.
+	 * 
+	 * @param state
+	 *            search state borrowed by the calling thread
+	 * @param iStart
+	 *            start node
+	 * @param iEnd
+	 *            end node
+	 * @param minColumn
+	 *            first column of the rectangle
+	 * @param minRow
+	 *            first row of the rectangle
+	 * @param maxColumn
+	 *            last column of the rectangle
+	 * @param maxRow
+	 *            last row of the rectangle
+	 * @return true if a path was found
+	 */
+	private boolean search(final SearchState state, final int iStart, final int iEnd, final int minColumn,
+			final int minRow, final int maxColumn, final int maxRow) {
+		state.startSearch();
+
+		IndexedBinaryHeap openSet = state.openSet;
+		float[] gScores = state.gScores;
+		int[] parents = state.parents;
+		int[] closedStamps = state.closedStamps;
+		int[] visitedStamps = state.visitedStamps;
+		int searchStamp = state.searchStamp;
+
+		float endX = nodesX[iEnd];
+		float endY = nodesY[iEnd];
+
+		visitedStamps[iStart] = searchStamp;
+		parents[iStart] = -1;
+		gScores[iStart] = 0;
+		openSet.insertOrUpdate(iStart, Trigonometry.distanceBetweenPoints(nodesX[iStart], nodesY[iStart], endX, endY));
+
+		while (!openSet.isEmpty()) {
+			int currentNode = openSet.poll();
+
+			if (currentNode == iEnd) {
+				int d = currentNode;
+				while (parents[d] != -1) {
+					state.path.add(nodes.get(d));
+					d = parents[d];
 				}
-				currentNode = (NodePath) openSet.get(lowId);
+				return true;
+			}
+			closedStamps[currentNode] = searchStamp;
 
-				if ((currentNode.getX() == endX) && (currentNode.getY() == endY)) {
-					NodePath d = (NodePath) openSet.get(lowId);
-					while (d.getP() != -1) {
-						path.add(d);
-						d = (NodePath) nodes.get(d.getP());
-					}
-					return true;
+			for (int edge = neighboursStart[currentNode]; edge < neighboursStart[currentNode + 1]; edge++) {
+				int neighbour = neighbours[edge];
+
+				if (closedStamps[neighbour] == searchStamp || nodesColumn[neighbour] < minColumn
+						|| nodesColumn[neighbour] > maxColumn || nodesRow[neighbour] < minRow
+						|| nodesRow[neighbour] > maxRow) {
+					continue;
 				}
-				closedSet.add((NodePath) openSet.get(lowId));
-				openSet.remove(lowId);
-				for (int n = 0; n < currentNode.getNeighbours().size(); n++) {
-					if (closedSet.contains((NodePath) currentNode.getNeighbours().get(n))) {
-						continue;
-					}
-					tentativeGScore = currentNode.getG() + Trigonometry.distanceBetweenPoints(currentNode.getX(),
-							currentNode.getY(), ((NodePath) currentNode.getNeighbours().get(n)).getX(),
-							((NodePath) currentNode.getNeighbours().get(n)).getY())
-							* ((Float) currentNode.getnCost().get(n));
-					if (!openSet.contains((NodePath) currentNode.getNeighbours().get(n))) {
-						openSet.add((NodePath) currentNode.getNeighbours().get(n));
-						tentativeIsBetter = true;
-					} else if (tentativeGScore < ((NodePath) currentNode.getNeighbours().get(n)).getG()) {
-						tentativeIsBetter = true;
-					} else {
-						tentativeIsBetter = false;
-					}
 
-					if (tentativeIsBetter) {
-						((NodePath) currentNode.getNeighbours().get(n))
-								.setP(nodes.indexOf((NodePath) closedSet.get(closedSet.size() - 1)));
-						((NodePath) currentNode.getNeighbours().get(n)).setG(tentativeGScore);
-						((NodePath) currentNode.getNeighbours().get(n)).setH(Trigonometry.distanceBetweenPoints(
-								((NodePath) currentNode.getNeighbours().get(n)).getX(),
-								((NodePath) currentNode.getNeighbours().get(n)).getY(), endX, endY));
-					}
+				float tentativeGScore = gScores[currentNode] + neighboursCost[edge];
+
+				if (visitedStamps[neighbour] != searchStamp || tentativeGScore < gScores[neighbour]) {
+					visitedStamps[neighbour] = searchStamp;
+					parents[neighbour] = currentNode;
+					gScores[neighbour] = tentativeGScore;
+					openSet.insertOrUpdate(neighbour, tentativeGScore
+							+ Trigonometry.distanceBetweenPoints(nodesX[neighbour], nodesY[neighbour], endX, endY));
 				}
 			}
-		} catch (Exception ex) {
-			LOGGER.warn("Error while creating the AStar path.", ex);
 		}
 
 		return false;
 	}
 
 	/**
-	 * Get the list of pre-coputed path.
+	 * Get the list of pre-coputed path, computed by the last call of astar.
+	 * The threads searching at the same time should use
+	 * {@link #calculateShortestPath(AStarPathFinder, PVector, PVector)}.
 	 * 
 	 * @return path to follow
 	 */
 	public final LinkedList<NodePath> getPath() {
-		return path;
+		return lastPath;
 	}
 
 	/**
-	 * Calculated the shortest path using the A* algorithm.
+	 * Calculated the shortest path using the A* algorithm. Safe to call from
+	 * several threads at the same time.
 	 * 
 	 * @param currentPathFinder
 	 *            current path finder object holding the grid
@@ -260,27 +552,80 @@ public class AStarPathFinder {
 	 */
 	public static LinkedList<NodePath> calculateShortestPath(final AStarPathFinder currentPathFinder,
 			final PVector start, final PVector end) {
-		LinkedList<NodePath> computedPath = null;
-
-		if (currentPathFinder != null) {
-			synchronized (currentPathFinder) {
-				if (currentPathFinder.astar((int) start.x, (int) start.y, (int) end.x, (int) end.y)) {
-					computedPath = new LinkedList<NodePath>();
-					computedPath.addAll(currentPathFinder.getPath());
-					currentPathFinder.clear();
-				}
-			}
+		if (currentPathFinder == null) {
+			return null;
 		}
 
-		return computedPath;
+		return currentPathFinder.findPath((int) start.x, (int) start.y, (int) end.x, (int) end.y);
+	}
+
+	@Override
+	public final LinkedList<NodePath> calculatePath(final PVector start, final PVector end) {
+		return calculateShortestPath(this, start, end);
 	}
 
 	/**
-	 * Clear path details.
+	 * The state of a search, borrowed by a single thread at a time.
 	 */
-	private void clear() {
-		openSet.clear();
-		closedSet.clear();
-		path.clear();
+	private static final class SearchState {
+		/**
+		 * The set of currently discovered nodes still to be evaluated, ordered
+		 * by f(n) = g(n) + h(n).
+		 */
+		private final IndexedBinaryHeap openSet;
+
+		/** g(n), the cost of the path from the start node to n. */
+		private final float[] gScores;
+
+		/** For each node, the node it can most efficiently be reached from. */
+		private final int[] parents;
+
+		/** Search stamp of every node, the node is evaluated when equal to the current stamp. */
+		private final int[] closedStamps;
+
+		/** Search stamp of every node, g(n) and the parent are valid when equal to the current stamp. */
+		private final int[] visitedStamps;
+
+		/** Current search stamp, incremented by every search. */
+		private int searchStamp = 0;
+
+		/** The path of nodes from end node to start node. */
+		private final LinkedList<NodePath> path = new LinkedList<NodePath>();
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param numberOfNodes
+		 *            number of nodes of the graph
+		 */
+		SearchState(final int numberOfNodes) {
+			openSet = new IndexedBinaryHeap(numberOfNodes);
+			gScores = new float[numberOfNodes];
+			parents = new int[numberOfNodes];
+			closedStamps = new int[numberOfNodes];
+			visitedStamps = new int[numberOfNodes];
+		}
+
+		/**
+		 * Start a new search: empty the open set and move to the next stamp.
+		 */
+		private void startSearch() {
+			openSet.clear();
+			searchStamp++;
+
+			if (searchStamp == Integer.MAX_VALUE) {
+				Arrays.fill(closedStamps, 0);
+				Arrays.fill(visitedStamps, 0);
+				searchStamp = 1;
+			}
+		}
+
+		/**
+		 * Clear the path details before the state is given back.
+		 */
+		private void clear() {
+			openSet.clear();
+			path.clear();
+		}
 	}
 }
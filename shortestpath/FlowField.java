@@ -0,0 +1,275 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import processing.core.PVector;
+
+/**
+ * Flow field towards an exit over the accessible grid of the A* path finder.
+ * The distance from every grid node to the exit is computed once with
+ * Dijkstra, starting from all the nodes the exit covers, and turned into a
+ * direction per node. Any number of agents heading for the exit then read
+ * their desired direction in constant time, without searching or storing a
+ * path.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class FlowField {
+	/**
+	 * When the exit lies on cells which are not accessible, the accessible
+	 * cells closest to its middle, up to this number of cells away, are used
+	 * instead.
+	 */
+	private static final int MAXIMUM_EXIT_SEARCH_RADIUS = 10;
+
+	/** The path finder holding the grid. */
+	private final AStarPathFinder pathFinder;
+
+	/** Distance from every node to the exit, Float.MAX_VALUE if unreachable. */
+	private final float[] distances;
+
+	/** Unit direction to follow from every node, x component. */
+	private final float[] directionsX;
+
+	/** Unit direction to follow from every node, y component. */
+	private final float[] directionsY;
+
+	/**
+	 * Build the flow field of an exit.
+	 * 
+	 * @param newPathFinder
+	 *            path finder holding the grid
+	 * @param exitStart
+	 *            first vertex of the exit
+	 * @param exitEnd
+	 *            second vertex of the exit
+	 */
+	public FlowField(final AStarPathFinder newPathFinder, final PVector exitStart, final PVector exitEnd) {
+		pathFinder = newPathFinder;
+
+		int numberOfNodes = pathFinder.getNumberOfNodes();
+		distances = new float[numberOfNodes];
+		directionsX = new float[numberOfNodes];
+		directionsY = new float[numberOfNodes];
+
+		computeDistances(findExitNodes(exitStart, exitEnd));
+		computeDirections();
+	}
+
+	/**
+	 * Find the grid nodes covered by the exit.
+	 * 
+	 * @param exitStart
+	 *            first vertex of the exit
+	 * @param exitEnd
+	 *            second vertex of the exit
+	 * @return the exit nodes
+	 */
+	private List<Integer> findExitNodes(final PVector exitStart, final PVector exitEnd) {
+		List<Integer> exitNodes = new ArrayList<Integer>();
+		float step = pathFinder.getScale() / 2f;
+		int numberOfSamples = (int) Math.ceil(PVector.dist(exitStart, exitEnd) / step) + 1;
+
+		for (int indexSample = 0; indexSample <= numberOfSamples; indexSample++) {
+			PVector sample = PVector.lerp(exitStart, exitEnd, (float) indexSample / numberOfSamples);
+			int node = pathFinder.getNodeIndex((int) sample.x, (int) sample.y);
+
+			if (node != -1 && !exitNodes.contains(node)) {
+				exitNodes.add(node);
+			}
+		}
+
+		PVector middle = PVector.lerp(exitStart, exitEnd, 0.5f);
+		int scale = pathFinder.getScale();
+
+		for (int radius = 1; exitNodes.isEmpty() && radius <= MAXIMUM_EXIT_SEARCH_RADIUS; radius++) {
+			for (int dx = -radius; dx <= radius; dx++) {
+				for (int dy = -radius; dy <= radius; dy++) {
+					if (Math.max(Math.abs(dx), Math.abs(dy)) != radius) {
+						continue;
+					}
+
+					int node = pathFinder.getNodeIndex((int) middle.x + dx * scale, (int) middle.y + dy * scale);
+
+					if (node != -1 && !exitNodes.contains(node)) {
+						exitNodes.add(node);
+					}
+				}
+			}
+		}
+
+		return exitNodes;
+	}
+
+	/**
+	 * Dijkstra from all the exit nodes at once over the grid graph.
+	 * 
+	 * @param exitNodes
+	 *            the exit nodes
+	 */
+	private void computeDistances(final List<Integer> exitNodes) {
+		int[] neighboursStart = pathFinder.getNeighboursStart();
+		int[] neighbours = pathFinder.getNeighbours();
+		float[] neighboursCost = pathFinder.getNeighboursCost();
+
+		Arrays.fill(distances, Float.MAX_VALUE);
+		IndexedBinaryHeap openSet = new IndexedBinaryHeap(distances.length);
+
+		for (Integer exitNode : exitNodes) {
+			distances[exitNode] = 0;
+			openSet.insertOrUpdate(exitNode, 0);
+		}
+
+		while (!openSet.isEmpty()) {
+			int currentNode = openSet.poll();
+
+			for (int edge = neighboursStart[currentNode]; edge < neighboursStart[currentNode + 1]; edge++) {
+				int neighbour = neighbours[edge];
+				float tentativeDistance = distances[currentNode] + neighboursCost[edge];
+
+				if (tentativeDistance < distances[neighbour]) {
+					distances[neighbour] = tentativeDistance;
+					openSet.insertOrUpdate(neighbour, tentativeDistance);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute the direction of every node from the distances of its
+	 * neighbours: every neighbour pulls the direction towards it in
+	 * proportion to how much closer to the exit it is (a discrete gradient),
+	 * which gives smoother directions than following the next node. Next to
+	 * obstacles the gradient could cut the corners, so the direction points
+	 * to the neighbour closest to the exit instead.
+	 */
+	private void computeDirections() {
+		float[] nodesX = pathFinder.getNodesX();
+		float[] nodesY = pathFinder.getNodesY();
+		int[] neighboursStart = pathFinder.getNeighboursStart();
+		int[] neighbours = pathFinder.getNeighbours();
+
+		for (int node = 0; node < distances.length; node++) {
+			if (distances[node] == Float.MAX_VALUE || distances[node] == 0) {
+				continue;
+			}
+
+			float directionX = 0;
+			float directionY = 0;
+			int closestNeighbour = -1;
+
+			for (int edge = neighboursStart[node]; edge < neighboursStart[node + 1]; edge++) {
+				int neighbour = neighbours[edge];
+				float difference = distances[node] - distances[neighbour];
+				float length = (float) Math.hypot(nodesX[neighbour] - nodesX[node], nodesY[neighbour] - nodesY[node]);
+
+				if (length > 0) {
+					directionX += difference * (nodesX[neighbour] - nodesX[node]) / length;
+					directionY += difference * (nodesY[neighbour] - nodesY[node]) / length;
+				}
+
+				if (closestNeighbour == -1 || distances[neighbour] < distances[closestNeighbour]) {
+					closestNeighbour = neighbour;
+				}
+			}
+
+			if ((directionX == 0 && directionY == 0 || !isSurroundedByAccessibleNodes(node))
+					&& closestNeighbour != -1) {
+				directionX = nodesX[closestNeighbour] - nodesX[node];
+				directionY = nodesY[closestNeighbour] - nodesY[node];
+			}
+
+			float magnitude = (float) Math.hypot(directionX, directionY);
+
+			if (magnitude > 0) {
+				directionsX[node] = directionX / magnitude;
+				directionsY[node] = directionY / magnitude;
+			}
+		}
+	}
+
+	/**
+	 * Check if the eight cells around a node are accessible.
+	 * 
+	 * @param node
+	 *            node index
+	 * @return true if none of the surrounding cells is an obstacle
+	 */
+	private boolean isSurroundedByAccessibleNodes(final int node) {
+		int scale = pathFinder.getScale();
+		int x = (int) pathFinder.getNodesX()[node];
+		int y = (int) pathFinder.getNodesY()[node];
+
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				if (pathFinder.getNodeIndex(x + dx * scale, y + dy * scale) == -1) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get the direction to follow from a point.
+	 * 
+	 * @param vectorToPosition
+	 *            vector to the current position
+	 * @return unit direction, null if the point is outside the accessible
+	 *         grid, cannot reach the exit or is already on the exit
+	 */
+	public final PVector getDirection(final PVector vectorToPosition) {
+		int node = pathFinder.getNodeIndex((int) vectorToPosition.x, (int) vectorToPosition.y);
+
+		if (node == -1 || (directionsX[node] == 0 && directionsY[node] == 0)) {
+			return null;
+		}
+
+		return new PVector(directionsX[node], directionsY[node]);
+	}
+
+	/**
+	 * Get the distance along the grid from a point to the exit.
+	 * 
+	 * @param vectorToPosition
+	 *            vector to the current position
+	 * @return distance to the exit, Float.MAX_VALUE if unreachable
+	 */
+	public final float getDistanceToExit(final PVector vectorToPosition) {
+		int node = pathFinder.getNodeIndex((int) vectorToPosition.x, (int) vectorToPosition.y);
+
+		if (node == -1) {
+			return Float.MAX_VALUE;
+		}
+
+		return distances[node];
+	}
+}
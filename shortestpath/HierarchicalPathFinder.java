@@ -0,0 +1,713 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import processing.core.PVector;
+
+/**
+ * Hierarchical path finder (HPA*) over the grid of the A* path finder. The
+ * grid is clustered into square sectors, and the cells on both sides of the
+ * sector borders (the entrances) form a small abstract graph, whose edges are
+ * the distances between the entrances of every sector, computed once. A query
+ * searches the abstract graph and refines only the legs of the abstract path
+ * with A* searches bounded to a sector, so its cost depends on the length of
+ * the route rather than on the area of the world.
+ * 
+ * The paths are close to the shortest ones but not always the shortest, as
+ * they go through the entrances of the sectors.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class HierarchicalPathFinder implements PathFinder {
+	/** Default side of a sector, in grid cells. */
+	public static final int DEFAULT_SECTOR_SIZE = 16;
+
+	/**
+	 * Entrances up to this number of cells wide get a single transition in
+	 * their middle, wider entrances get one at each end.
+	 */
+	private static final int MAXIMUM_SINGLE_TRANSITION_ENTRANCE_WIDTH = 6;
+
+	/** The grid path finder, used to refine the paths within the sectors. */
+	private final AStarPathFinder grid;
+
+	/** Side of a sector, in grid cells. */
+	private final int sectorSize;
+
+	/** Number of sectors along the columns of the grid. */
+	private final int sectorColumns;
+
+	/** Grid node of every abstract node. */
+	private final int[] abstractNodes;
+
+	/** Abstract node of every grid node, -1 if the grid node is not one. */
+	private final int[] abstractNodeOfGridNode;
+
+	/**
+	 * For every sector, the index of its first abstract node in
+	 * sectorsAbstractNodes; the abstract nodes of sector i are in
+	 * [sectorsStart[i], sectorsStart[i + 1]).
+	 */
+	private final int[] sectorsStart;
+
+	/** The abstract nodes of all the sectors. */
+	private final int[] sectorsAbstractNodes;
+
+	/**
+	 * For every abstract node, the index of its first edge; the edges of node
+	 * i are in [edgesStart[i], edgesStart[i + 1]).
+	 */
+	private final int[] edgesStart;
+
+	/** Target abstract node of every edge. */
+	private final int[] edgesTarget;
+
+	/** Cost of every edge. */
+	private final float[] edgesCost;
+
+	/** Lowest cost of a grid edge, scales the heuristic. */
+	private final float minimumEdgeCost;
+
+	/** Dijkstra states over the whole grid, borrowed by every search. */
+	private final SearchStatePool<SectorSearch> sectorSearches;
+
+	/**
+	 * Build the abstract graph of the sectors entrances.
+	 * 
+	 * @param newGrid
+	 *            the grid path finder
+	 * @param newSectorSize
+	 *            side of a sector, in grid cells
+	 */
+	public HierarchicalPathFinder(final AStarPathFinder newGrid, final int newSectorSize) {
+		grid = newGrid;
+		sectorSize = Math.max(newSectorSize, 2);
+		sectorColumns = (grid.getGridColumns() + sectorSize - 1) / sectorSize;
+		int sectorRows = (grid.getGridRows() + sectorSize - 1) / sectorSize;
+
+		int numberOfGridNodes = grid.getNumberOfNodes();
+		sectorSearches = new SearchStatePool<SectorSearch>(() -> new SectorSearch(numberOfGridNodes));
+
+		float lowestCost = Float.MAX_VALUE;
+		for (float cost : grid.getNeighboursCost()) {
+			lowestCost = Math.min(lowestCost, cost);
+		}
+		minimumEdgeCost = lowestCost == Float.MAX_VALUE ? 0 : lowestCost;
+
+		List<int[]> transitions = new ArrayList<int[]>();
+		findTransitions(transitions);
+
+		abstractNodeOfGridNode = new int[numberOfGridNodes];
+		Arrays.fill(abstractNodeOfGridNode, -1);
+		List<Integer> abstractNodesList = new ArrayList<Integer>();
+
+		for (int[] transition : transitions) {
+			for (int gridNode : transition) {
+				if (abstractNodeOfGridNode[gridNode] == -1) {
+					abstractNodeOfGridNode[gridNode] = abstractNodesList.size();
+					abstractNodesList.add(gridNode);
+				}
+			}
+		}
+
+		abstractNodes = new int[abstractNodesList.size()];
+		for (int indexNode = 0; indexNode < abstractNodes.length; indexNode++) {
+			abstractNodes[indexNode] = abstractNodesList.get(indexNode);
+		}
+
+		int numberOfSectors = sectorColumns * sectorRows;
+		sectorsStart = new int[numberOfSectors + 1];
+		sectorsAbstractNodes = new int[abstractNodes.length];
+
+		for (int gridNode : abstractNodes) {
+			sectorsStart[sectorOf(gridNode) + 1]++;
+		}
+		for (int indexSector = 0; indexSector < numberOfSectors; indexSector++) {
+			sectorsStart[indexSector + 1] += sectorsStart[indexSector];
+		}
+		int[] sectorsFill = Arrays.copyOf(sectorsStart, numberOfSectors);
+		for (int indexNode = 0; indexNode < abstractNodes.length; indexNode++) {
+			sectorsAbstractNodes[sectorsFill[sectorOf(abstractNodes[indexNode])]++] = indexNode;
+		}
+
+		List<List<Integer>> targets = new ArrayList<List<Integer>>();
+		List<List<Float>> costs = new ArrayList<List<Float>>();
+		for (int indexNode = 0; indexNode < abstractNodes.length; indexNode++) {
+			targets.add(new ArrayList<Integer>());
+			costs.add(new ArrayList<Float>());
+		}
+
+		for (int[] transition : transitions) {
+			int from = abstractNodeOfGridNode[transition[0]];
+			int to = abstractNodeOfGridNode[transition[1]];
+			float cost = gridEdgeCost(transition[0], transition[1]);
+
+			targets.get(from).add(to);
+			costs.get(from).add(cost);
+			targets.get(to).add(from);
+			costs.get(to).add(cost);
+		}
+
+		SectorSearch search = sectorSearches.borrow();
+		for (int indexNode = 0; indexNode < abstractNodes.length; indexNode++) {
+			int sector = sectorOf(abstractNodes[indexNode]);
+			search.run(abstractNodes[indexNode], sector);
+
+			for (int indexOther = sectorsStart[sector]; indexOther < sectorsStart[sector + 1]; indexOther++) {
+				int other = sectorsAbstractNodes[indexOther];
+				float distance = search.getDistance(abstractNodes[other]);
+
+				if (other != indexNode && distance != Float.MAX_VALUE) {
+					targets.get(indexNode).add(other);
+					costs.get(indexNode).add(distance);
+				}
+			}
+		}
+		sectorSearches.giveBack(search);
+
+		edgesStart = new int[abstractNodes.length + 1];
+		for (int indexNode = 0; indexNode < abstractNodes.length; indexNode++) {
+			edgesStart[indexNode + 1] = edgesStart[indexNode] + targets.get(indexNode).size();
+		}
+		edgesTarget = new int[edgesStart[abstractNodes.length]];
+		edgesCost = new float[edgesTarget.length];
+
+		for (int indexNode = 0; indexNode < abstractNodes.length; indexNode++) {
+			for (int indexEdge = 0; indexEdge < targets.get(indexNode).size(); indexEdge++) {
+				edgesTarget[edgesStart[indexNode] + indexEdge] = targets.get(indexNode).get(indexEdge);
+				edgesCost[edgesStart[indexNode] + indexEdge] = costs.get(indexNode).get(indexEdge);
+			}
+		}
+	}
+
+	/**
+	 * Find the transitions between neighbouring sectors: pairs of accessible
+	 * grid nodes on both sides of a sector border.
+	 * 
+	 * @param transitions
+	 *            receives the pairs of grid nodes
+	 */
+	private void findTransitions(final List<int[]> transitions) {
+		int columns = grid.getGridColumns();
+		int rows = grid.getGridRows();
+
+		for (int column = sectorSize; column < columns; column += sectorSize) {
+			for (int rowFrom = 0; rowFrom < rows; rowFrom += sectorSize) {
+				int rowTo = Math.min(rowFrom + sectorSize, rows);
+				addEntrances(transitions, column - 1, rowFrom, 0, 1, 1, 0, rowTo - rowFrom);
+			}
+		}
+
+		for (int row = sectorSize; row < rows; row += sectorSize) {
+			for (int columnFrom = 0; columnFrom < columns; columnFrom += sectorSize) {
+				int columnTo = Math.min(columnFrom + sectorSize, columns);
+				addEntrances(transitions, columnFrom, row - 1, 1, 0, 0, 1, columnTo - columnFrom);
+			}
+		}
+	}
+
+	/**
+	 * Scan a sector border and add the transitions of its entrances: runs of
+	 * cells accessible on both sides.
+	 * 
+	 * @param transitions
+	 *            receives the pairs of grid nodes
+	 * @param column
+	 *            column of the first cell on the first side
+	 * @param row
+	 *            row of the first cell on the first side
+	 * @param stepColumn
+	 *            column step along the border
+	 * @param stepRow
+	 *            row step along the border
+	 * @param acrossColumn
+	 *            column offset to the other side
+	 * @param acrossRow
+	 *            row offset to the other side
+	 * @param length
+	 *            number of cells along the border
+	 */
+	private void addEntrances(final List<int[]> transitions, final int column, final int row, final int stepColumn,
+			final int stepRow, final int acrossColumn, final int acrossRow, final int length) {
+		int runStart = -1;
+
+		for (int indexCell = 0; indexCell <= length; indexCell++) {
+			boolean open = false;
+
+			if (indexCell < length) {
+				int cellColumn = column + indexCell * stepColumn;
+				int cellRow = row + indexCell * stepRow;
+				open = grid.getNodeAtCell(cellColumn, cellRow) != -1
+						&& grid.getNodeAtCell(cellColumn + acrossColumn, cellRow + acrossRow) != -1;
+			}
+
+			if (open && runStart == -1) {
+				runStart = indexCell;
+			} else if (!open && runStart != -1) {
+				int runEnd = indexCell - 1;
+
+				if (runEnd - runStart + 1 <= MAXIMUM_SINGLE_TRANSITION_ENTRANCE_WIDTH) {
+					addTransition(transitions, column, row, stepColumn, stepRow, acrossColumn, acrossRow,
+							(runStart + runEnd) / 2);
+				} else {
+					addTransition(transitions, column, row, stepColumn, stepRow, acrossColumn, acrossRow, runStart);
+					addTransition(transitions, column, row, stepColumn, stepRow, acrossColumn, acrossRow, runEnd);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	/**
+	 * Add the transition at a cell of a sector border.
+	 * 
+	 * @param transitions
+	 *            receives the pair of grid nodes
+	 * @param column
+	 *            column of the first cell on the first side
+	 * @param row
+	 *            row of the first cell on the first side
+	 * @param stepColumn
+	 *            column step along the border
+	 * @param stepRow
+	 *            row step along the border
+	 * @param acrossColumn
+	 *            column offset to the other side
+	 * @param acrossRow
+	 *            row offset to the other side
+	 * @param indexCell
+	 *            the cell along the border
+	 */
+	private void addTransition(final List<int[]> transitions, final int column, final int row, final int stepColumn,
+			final int stepRow, final int acrossColumn, final int acrossRow, final int indexCell) {
+		int cellColumn = column + indexCell * stepColumn;
+		int cellRow = row + indexCell * stepRow;
+
+		transitions.add(new int[] { grid.getNodeAtCell(cellColumn, cellRow),
+				grid.getNodeAtCell(cellColumn + acrossColumn, cellRow + acrossRow) });
+	}
+
+	/**
+	 * Get the cost of the grid edge between two neighbouring nodes.
+	 * 
+	 * @param from
+	 *            first node
+	 * @param to
+	 *            second node
+	 * @return edge cost
+	 */
+	private float gridEdgeCost(final int from, final int to) {
+		int[] neighboursStart = grid.getNeighboursStart();
+		int[] neighbours = grid.getNeighbours();
+
+		for (int edge = neighboursStart[from]; edge < neighboursStart[from + 1]; edge++) {
+			if (neighbours[edge] == to) {
+				return grid.getNeighboursCost()[edge];
+			}
+		}
+		return Float.MAX_VALUE;
+	}
+
+	/**
+	 * Get the sector of a grid node.
+	 * 
+	 * @param gridNode
+	 *            grid node
+	 * @return sector index
+	 */
+	private int sectorOf(final int gridNode) {
+		return (grid.getNodesRow()[gridNode] / sectorSize) * sectorColumns
+				+ grid.getNodesColumn()[gridNode] / sectorSize;
+	}
+
+	/**
+	 * Get the number of abstract nodes (sector entrances).
+	 * 
+	 * @return number of abstract nodes
+	 */
+	public final int getNumberOfAbstractNodes() {
+		return abstractNodes.length;
+	}
+
+	/**
+	 * Calculate the shortest path between two points: search the abstract
+	 * graph of the sector entrances, then refine every leg with an A* search
+	 * bounded to its sector.
+	 * 
+	 * @param start
+	 *            vector to start position
+	 * @param end
+	 *            vector to end position
+	 * @return the path as a list of nodes from the end back to the start, null
+	 *         if there is no path
+	 */
+	@Override
+	public final LinkedList<NodePath> calculatePath(final PVector start, final PVector end) {
+		int startNode = grid.getNodeIndex((int) start.x, (int) start.y);
+		int endNode = grid.getNodeIndex((int) end.x, (int) end.y);
+
+		if (startNode == -1 || endNode == -1) {
+			return null;
+		}
+
+		if (startNode == endNode) {
+			return new LinkedList<NodePath>();
+		}
+
+		if (sectorOf(startNode) == sectorOf(endNode)) {
+			LinkedList<NodePath> localPath = new LinkedList<NodePath>();
+
+			if (searchWithinSector(startNode, endNode, localPath)) {
+				return localPath;
+			}
+		}
+
+		int[] abstractPath = searchAbstractGraph(startNode, endNode);
+
+		if (abstractPath == null) {
+			return null;
+		}
+
+		return refine(abstractPath);
+	}
+
+	/**
+	 * A* over the abstract graph, with the start and end nodes connected to
+	 * the entrances of their sectors.
+	 * 
+	 * @param startNode
+	 *            start grid node
+	 * @param endNode
+	 *            end grid node
+	 * @return the grid nodes of the abstract path, from start to end; null if
+	 *         there is no path
+	 */
+	private int[] searchAbstractGraph(final int startNode, final int endNode) {
+		int startSector = sectorOf(startNode);
+		int endSector = sectorOf(endNode);
+
+		SectorSearch search = sectorSearches.borrow();
+		search.run(startNode, startSector);
+		float[] startCosts = new float[sectorsStart[startSector + 1] - sectorsStart[startSector]];
+		for (int indexNode = 0; indexNode < startCosts.length; indexNode++) {
+			startCosts[indexNode] = search
+					.getDistance(abstractNodes[sectorsAbstractNodes[sectorsStart[startSector] + indexNode]]);
+		}
+
+		search.run(endNode, endSector);
+		float[] endCosts = new float[abstractNodes.length];
+		Arrays.fill(endCosts, Float.MAX_VALUE);
+		for (int indexNode = sectorsStart[endSector]; indexNode < sectorsStart[endSector + 1]; indexNode++) {
+			endCosts[sectorsAbstractNodes[indexNode]] = search
+					.getDistance(abstractNodes[sectorsAbstractNodes[indexNode]]);
+		}
+		sectorSearches.giveBack(search);
+
+		int startIndex = abstractNodes.length;
+		int endIndex = abstractNodes.length + 1;
+		int numberOfNodes = abstractNodes.length + 2;
+
+		float[] gScores = new float[numberOfNodes];
+		int[] parents = new int[numberOfNodes];
+		boolean[] closed = new boolean[numberOfNodes];
+		Arrays.fill(gScores, Float.MAX_VALUE);
+		IndexedBinaryHeap openSet = new IndexedBinaryHeap(numberOfNodes);
+
+		int endColumn = grid.getNodesColumn()[endNode];
+		int endRow = grid.getNodesRow()[endNode];
+
+		gScores[startIndex] = 0;
+		parents[startIndex] = -1;
+		openSet.insertOrUpdate(startIndex, heuristic(startNode, endColumn, endRow));
+
+		while (!openSet.isEmpty()) {
+			int current = openSet.poll();
+
+			if (current == endIndex) {
+				LinkedList<Integer> gridNodes = new LinkedList<Integer>();
+				for (int node = current; node != -1; node = parents[node]) {
+					gridNodes.addFirst(gridNodeOf(node, startNode, endNode));
+				}
+
+				int[] abstractPath = new int[gridNodes.size()];
+				int indexNode = 0;
+				for (Integer gridNode : gridNodes) {
+					abstractPath[indexNode++] = gridNode;
+				}
+				return abstractPath;
+			}
+			closed[current] = true;
+
+			if (current == startIndex) {
+				for (int indexNode = 0; indexNode < startCosts.length; indexNode++) {
+					relax(sectorsAbstractNodes[sectorsStart[startSector] + indexNode], current, startCosts[indexNode],
+							gScores, parents, closed, openSet, endColumn, endRow);
+				}
+				continue;
+			}
+
+			if (endCosts[current] != Float.MAX_VALUE && !closed[endIndex]
+					&& gScores[current] + endCosts[current] < gScores[endIndex]) {
+				gScores[endIndex] = gScores[current] + endCosts[current];
+				parents[endIndex] = current;
+				openSet.insertOrUpdate(endIndex, gScores[endIndex]);
+			}
+
+			for (int edge = edgesStart[current]; edge < edgesStart[current + 1]; edge++) {
+				relax(edgesTarget[edge], current, edgesCost[edge], gScores, parents, closed, openSet, endColumn,
+						endRow);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Relax an edge of the abstract graph.
+	 * 
+	 * @param target
+	 *            abstract node reached by the edge
+	 * @param current
+	 *            abstract node the edge starts from
+	 * @param cost
+	 *            edge cost
+	 * @param gScores
+	 *            g-scores of the abstract nodes
+	 * @param parents
+	 *            parents of the abstract nodes
+	 * @param closed
+	 *            evaluated abstract nodes
+	 * @param openSet
+	 *            open set
+	 * @param endColumn
+	 *            grid column of the end node
+	 * @param endRow
+	 *            grid row of the end node
+	 */
+	private void relax(final int target, final int current, final float cost, final float[] gScores,
+			final int[] parents, final boolean[] closed, final IndexedBinaryHeap openSet, final int endColumn,
+			final int endRow) {
+		if (closed[target] || cost == Float.MAX_VALUE) {
+			return;
+		}
+
+		float tentativeGScore = gScores[current] + cost;
+
+		if (tentativeGScore < gScores[target]) {
+			gScores[target] = tentativeGScore;
+			parents[target] = current;
+			openSet.insertOrUpdate(target, tentativeGScore + heuristic(abstractNodes[target], endColumn, endRow));
+		}
+	}
+
+	/**
+	 * Lower bound of the cost from a grid node to the end node: the number of
+	 * grid steps times the lowest edge cost.
+	 * 
+	 * @param gridNode
+	 *            grid node
+	 * @param endColumn
+	 *            grid column of the end node
+	 * @param endRow
+	 *            grid row of the end node
+	 * @return heuristic cost
+	 */
+	private float heuristic(final int gridNode, final int endColumn, final int endRow) {
+		return (Math.abs(grid.getNodesColumn()[gridNode] - endColumn) + Math.abs(grid.getNodesRow()[gridNode] - endRow))
+				* minimumEdgeCost;
+	}
+
+	/**
+	 * Get the grid node of a node of the abstract search.
+	 * 
+	 * @param node
+	 *            abstract node, or one of the start and end indexes
+	 * @param startNode
+	 *            start grid node
+	 * @param endNode
+	 *            end grid node
+	 * @return grid node
+	 */
+	private int gridNodeOf(final int node, final int startNode, final int endNode) {
+		if (node == abstractNodes.length) {
+			return startNode;
+		}
+		if (node == abstractNodes.length + 1) {
+			return endNode;
+		}
+		return abstractNodes[node];
+	}
+
+	/**
+	 * Turn an abstract path into a grid path. Consecutive nodes in the same
+	 * sector are joined with an A* search bounded to the sector, consecutive
+	 * nodes in different sectors are neighbours on the two sides of an
+	 * entrance.
+	 * 
+	 * @param abstractPath
+	 *            grid nodes of the abstract path, from start to end
+	 * @return the path from the end back to the start, the start excluded;
+	 *         null if a leg cannot be refined
+	 */
+	private LinkedList<NodePath> refine(final int[] abstractPath) {
+		LinkedList<NodePath> path = new LinkedList<NodePath>();
+
+		for (int indexNode = 1; indexNode < abstractPath.length; indexNode++) {
+			int from = abstractPath[indexNode - 1];
+			int to = abstractPath[indexNode];
+
+			if (from == to) {
+				continue;
+			}
+
+			if (sectorOf(from) == sectorOf(to)) {
+				if (!searchWithinSector(from, to, path)) {
+					return null;
+				}
+			} else {
+				path.addFirst(grid.getNode(to));
+			}
+		}
+
+		return path;
+	}
+
+	/**
+	 * A* search between two grid nodes of the same sector, without leaving
+	 * the sector.
+	 * 
+	 * @param from
+	 *            start grid node
+	 * @param to
+	 *            end grid node
+	 * @param path
+	 *            the path from the end back to the start is added at the head
+	 *            of this list
+	 * @return true if a path was found
+	 */
+	private boolean searchWithinSector(final int from, final int to, final LinkedList<NodePath> path) {
+		int sector = sectorOf(from);
+		int minColumn = (sector % sectorColumns) * sectorSize;
+		int minRow = (sector / sectorColumns) * sectorSize;
+
+		return grid.searchWithinCells(from, to, minColumn, minRow, minColumn + sectorSize - 1,
+				minRow + sectorSize - 1, path);
+	}
+
+	/**
+	 * Dijkstra from a grid node to all the nodes of its sector, borrowed by a
+	 * single thread at a time.
+	 */
+	private final class SectorSearch {
+		/** Open set. */
+		private final IndexedBinaryHeap openSet;
+
+		/** Distance of every grid node, valid when its stamp is current. */
+		private final float[] distances;
+
+		/** Search stamp of every grid node. */
+		private final int[] stamps;
+
+		/** Current search stamp. */
+		private int stamp = 0;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param numberOfGridNodes
+		 *            number of grid nodes
+		 */
+		SectorSearch(final int numberOfGridNodes) {
+			openSet = new IndexedBinaryHeap(numberOfGridNodes);
+			distances = new float[numberOfGridNodes];
+			stamps = new int[numberOfGridNodes];
+		}
+
+		/**
+		 * Compute the distances from a grid node to the nodes of a sector.
+		 * 
+		 * @param source
+		 *            source grid node
+		 * @param sector
+		 *            the sector the search is bounded to
+		 */
+		private void run(final int source, final int sector) {
+			int[] neighboursStart = grid.getNeighboursStart();
+			int[] neighbours = grid.getNeighbours();
+			float[] neighboursCost = grid.getNeighboursCost();
+
+			openSet.clear();
+			stamp++;
+			if (stamp == Integer.MAX_VALUE) {
+				Arrays.fill(stamps, 0);
+				stamp = 1;
+			}
+
+			stamps[source] = stamp;
+			distances[source] = 0;
+			openSet.insertOrUpdate(source, 0);
+
+			while (!openSet.isEmpty()) {
+				int current = openSet.poll();
+
+				for (int edge = neighboursStart[current]; edge < neighboursStart[current + 1]; edge++) {
+					int neighbour = neighbours[edge];
+
+					if (sectorOf(neighbour) != sector) {
+						continue;
+					}
+
+					float distance = distances[current] + neighboursCost[edge];
+
+					if (stamps[neighbour] != stamp || distance < distances[neighbour]) {
+						stamps[neighbour] = stamp;
+						distances[neighbour] = distance;
+						openSet.insertOrUpdate(neighbour, distance);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Get the distance to a grid node computed by the last search.
+		 * 
+		 * @param gridNode
+		 *            grid node
+		 * @return distance, Float.MAX_VALUE if the node was not reached
+		 */
+		private float getDistance(final int gridNode) {
+			if (stamps[gridNode] != stamp) {
+				return Float.MAX_VALUE;
+			}
+			return distances[gridNode];
+		}
+	}
+}
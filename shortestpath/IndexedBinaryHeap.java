@@ -0,0 +1,212 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of graph node indexes with a priority per node. The heap
+ * knows the position of every queued node, so changing the priority of a
+ * queued node (decrease key) takes logarithmic time, and it is cleared in
+ * constant time between searches with a stamp, without touching the arrays.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class IndexedBinaryHeap {
+	/** Nodes in heap order. */
+	private final int[] heap;
+
+	/** Position of every node in the heap, valid while the node is queued. */
+	private final int[] positions;
+
+	/** Priority of every node, valid while the node is queued. */
+	private final float[] priorities;
+
+	/** Queue stamp of every node, the node is queued when equal to the current stamp. */
+	private final int[] queuedStamps;
+
+	/** Current queue stamp, incremented by clear(). */
+	private int stamp = 1;
+
+	/** Number of queued nodes. */
+	private int size = 0;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param numberOfNodes
+	 *            number of nodes of the graph, the nodes are indexed from 0
+	 */
+	public IndexedBinaryHeap(final int numberOfNodes) {
+		heap = new int[numberOfNodes];
+		positions = new int[numberOfNodes];
+		priorities = new float[numberOfNodes];
+		queuedStamps = new int[numberOfNodes];
+	}
+
+	/**
+	 * Remove all the nodes in constant time.
+	 */
+	public final void clear() {
+		size = 0;
+		stamp++;
+
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(queuedStamps, 0);
+			stamp = 1;
+		}
+	}
+
+	/**
+	 * Check if the heap is empty.
+	 * 
+	 * @return true if there are no queued nodes
+	 */
+	public final boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Check if a node is queued.
+	 * 
+	 * @param node
+	 *            node index
+	 * @return true if the node is in the heap
+	 */
+	public final boolean contains(final int node) {
+		return queuedStamps[node] == stamp;
+	}
+
+	/**
+	 * Queue a node, or change its priority if it is already queued.
+	 * 
+	 * @param node
+	 *            node index
+	 * @param priority
+	 *            the priority, lower values are polled first
+	 */
+	public final void insertOrUpdate(final int node, final float priority) {
+		if (contains(node)) {
+			float oldPriority = priorities[node];
+			priorities[node] = priority;
+
+			if (priority < oldPriority) {
+				siftUp(positions[node]);
+			} else {
+				siftDown(positions[node]);
+			}
+			return;
+		}
+
+		queuedStamps[node] = stamp;
+		priorities[node] = priority;
+		heap[size] = node;
+		positions[node] = size;
+		size++;
+		siftUp(size - 1);
+	}
+
+	/**
+	 * Remove the node with the lowest priority.
+	 * 
+	 * @return node index
+	 */
+	public final int poll() {
+		int first = heap[0];
+		queuedStamps[first] = 0;
+		size--;
+
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+
+		return first;
+	}
+
+	/**
+	 * Move a node up until its parent has a lower priority.
+	 * 
+	 * @param position
+	 *            heap position of the node
+	 */
+	private void siftUp(final int position) {
+		int node = heap[position];
+		float priority = priorities[node];
+		int current = position;
+
+		while (current > 0) {
+			int parent = (current - 1) >>> 1;
+
+			if (priorities[heap[parent]] <= priority) {
+				break;
+			}
+
+			heap[current] = heap[parent];
+			positions[heap[current]] = current;
+			current = parent;
+		}
+
+		heap[current] = node;
+		positions[node] = current;
+	}
+
+	/**
+	 * Move a node down until its children have higher priorities.
+	 * 
+	 * @param position
+	 *            heap position of the node
+	 */
+	private void siftDown(final int position) {
+		int node = heap[position];
+		float priority = priorities[node];
+		int current = position;
+
+		while (true) {
+			int child = 2 * current + 1;
+
+			if (child >= size) {
+				break;
+			}
+
+			if (child + 1 < size && priorities[heap[child + 1]] < priorities[heap[child]]) {
+				child++;
+			}
+
+			if (priorities[heap[child]] >= priority) {
+				break;
+			}
+
+			heap[current] = heap[child];
+			positions[heap[current]] = current;
+			current = child;
+		}
+
+		heap[current] = node;
+		positions[node] = current;
+	}
+}
@@ -0,0 +1,863 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.BoundingVolumeHierarchy;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimGeometry;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimObstacle;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.ShapeSection;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.Trigonometry;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi.DelaunayTriangulation;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi.Edge;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi.Vertex;
+import uk.org.catapult.ts.cav.utils.UtilityLogger;
+
+/**
+ * Navigation mesh over the walkable area of the geometry. The area is
+ * triangulated once, with the Delaunay triangulation of the voronoi package
+ * refined until the walls and obstacles sections are edges of the mesh, and
+ * the triangles inside the obstacles are dropped. A query searches a corridor
+ * of triangles and pulls the path tight inside it with the funnel algorithm,
+ * so its cost depends on the number of triangles rather than on the
+ * resolution of a grid.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class NavigationMesh implements PathFinder {
+	/** Default distance kept between the paths and the corners. */
+	public static final float DEFAULT_CLEARANCE = 0.3f;
+
+	/**
+	 * A wall or obstacle section missing from the triangulation is split in
+	 * halves, at most this number of times.
+	 */
+	private static final int MAXIMUM_SECTION_SPLITS = 10;
+
+	/** Tolerance of the point in triangle and point on section tests. */
+	private static final float EPSILON = 1e-4f;
+
+	/** Logger for the class. */
+	private static final Logger LOGGER = UtilityLogger.getLogger(NavigationMesh.class);
+
+	/** Distance kept between the paths and the corners. */
+	private final float clearance;
+
+	/** Vertices x coordinates, three per triangle, counterclockwise. */
+	private final float[] verticesX;
+
+	/** Vertices y coordinates, three per triangle, counterclockwise. */
+	private final float[] verticesY;
+
+	/**
+	 * Triangle across every edge, three per triangle, -1 when the edge is a
+	 * wall or obstacle section or the mesh border. Edge k of a triangle goes
+	 * from its vertex k to its vertex k + 1.
+	 */
+	private final int[] neighbours;
+
+	/** Centroids x coordinates. */
+	private final float[] centroidsX;
+
+	/** Centroids y coordinates. */
+	private final float[] centroidsY;
+
+	/** Hierarchy over the triangles boxes, to locate the points. */
+	private final BoundingVolumeHierarchy trianglesHierarchy;
+
+	/** Search states, borrowed by every search. */
+	private final SearchStatePool<SearchState> searchStates;
+
+	/**
+	 * Build the navigation mesh of a geometry: a Delaunay triangulation of the
+	 * walls and obstacles vertices, refined until it holds all their sections
+	 * as edges, without the triangles inside the obstacles. Its walls and
+	 * obstacles must have their sections built.
+	 * 
+	 * @param geometry
+	 *            the geometry
+	 * @param newClearance
+	 *            distance kept between the paths and the corners
+	 */
+	public NavigationMesh(final CatpedsimGeometry geometry, final float newClearance) {
+		clearance = newClearance;
+
+		List<ShapeSection> sections = new ArrayList<ShapeSection>();
+		for (CatpedsimObstacle wall : geometry.getWalls()) {
+			if (wall.getObstacleSections() != null) {
+				sections.addAll(Arrays.asList(wall.getObstacleSections()));
+			}
+		}
+		for (CatpedsimObstacle obstacle : geometry.getObstacles()) {
+			if (obstacle.getObstacleSections() != null) {
+				sections.addAll(Arrays.asList(obstacle.getObstacleSections()));
+			}
+		}
+
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+
+		for (ShapeSection section : sections) {
+			for (PVector point : new PVector[] { section.getVectorToStartPoint(), section.getVectorToEndPoint() }) {
+				minX = Math.min(minX, point.x);
+				minY = Math.min(minY, point.y);
+				maxX = Math.max(maxX, point.x);
+				maxY = Math.max(maxY, point.y);
+			}
+		}
+
+		if (sections.isEmpty()) {
+			minX = 0;
+			minY = 0;
+			maxX = 0;
+			maxY = 0;
+		}
+
+		DelaunayTriangulation triangulation = new DelaunayTriangulation(minX, minY, maxX, maxY);
+		List<Vertex> vertices = new ArrayList<Vertex>();
+		Map<Vertex, Integer> vertexIndexes = new IdentityHashMap<Vertex, Integer>();
+		List<int[]> sectionsVertices = new ArrayList<int[]>();
+
+		for (ShapeSection section : sections) {
+			int start = insertVertex(triangulation, section.getVectorToStartPoint().x,
+					section.getVectorToStartPoint().y, vertices, vertexIndexes);
+			int end = insertVertex(triangulation, section.getVectorToEndPoint().x, section.getVectorToEndPoint().y,
+					vertices, vertexIndexes);
+
+			if (start != end) {
+				sectionsVertices.add(new int[] { start, end });
+			}
+		}
+
+		insertIntersections(triangulation, sections, vertices, vertexIndexes);
+
+		List<int[]> constraints = new ArrayList<int[]>();
+		for (int[] sectionVertices : sectionsVertices) {
+			splitAtVertices(sectionVertices[0], sectionVertices[1], vertices, constraints);
+		}
+
+		Set<Long> edges = enforceSections(triangulation, vertices, vertexIndexes, constraints);
+
+		List<Edge> triangleEdges = new ArrayList<Edge>();
+		for (Edge edge : triangulation.getTriangles()) {
+			Vertex vertex0 = edge.getOriginVertex();
+			Vertex vertex1 = edge.leftNextEdge().getOriginVertex();
+			Vertex vertex2 = edge.leftNextEdge().leftNextEdge().getOriginVertex();
+
+			PVector centroid = new PVector(
+					(float) (vertex0.getxCoordinate() + vertex1.getxCoordinate() + vertex2.getxCoordinate()) / 3,
+					(float) (vertex0.getyCoordinate() + vertex1.getyCoordinate() + vertex2.getyCoordinate()) / 3);
+
+			if (!geometry.checkIfPointIsInsideObstacle(centroid)) {
+				triangleEdges.add(edge);
+			}
+		}
+
+		int numberOfTriangles = triangleEdges.size();
+		verticesX = new float[numberOfTriangles * 3];
+		verticesY = new float[numberOfTriangles * 3];
+		neighbours = new int[numberOfTriangles * 3];
+		centroidsX = new float[numberOfTriangles];
+		centroidsY = new float[numberOfTriangles];
+
+		Map<Edge, Integer> triangleOfEdge = new IdentityHashMap<Edge, Integer>();
+		float[] boxMinX = new float[numberOfTriangles];
+		float[] boxMinY = new float[numberOfTriangles];
+		float[] boxMaxX = new float[numberOfTriangles];
+		float[] boxMaxY = new float[numberOfTriangles];
+
+		for (int indexTriangle = 0; indexTriangle < numberOfTriangles; indexTriangle++) {
+			Edge edge = triangleEdges.get(indexTriangle);
+
+			for (int indexVertex = 0; indexVertex < 3; indexVertex++) {
+				triangleOfEdge.put(edge, indexTriangle);
+				verticesX[indexTriangle * 3 + indexVertex] = (float) edge.getOriginVertex().getxCoordinate();
+				verticesY[indexTriangle * 3 + indexVertex] = (float) edge.getOriginVertex().getyCoordinate();
+				edge = edge.leftNextEdge();
+			}
+
+			boxMinX[indexTriangle] = Float.MAX_VALUE;
+			boxMinY[indexTriangle] = Float.MAX_VALUE;
+			boxMaxX[indexTriangle] = -Float.MAX_VALUE;
+			boxMaxY[indexTriangle] = -Float.MAX_VALUE;
+
+			for (int indexVertex = indexTriangle * 3; indexVertex < indexTriangle * 3 + 3; indexVertex++) {
+				centroidsX[indexTriangle] += verticesX[indexVertex] / 3;
+				centroidsY[indexTriangle] += verticesY[indexVertex] / 3;
+				boxMinX[indexTriangle] = Math.min(boxMinX[indexTriangle], verticesX[indexVertex]);
+				boxMinY[indexTriangle] = Math.min(boxMinY[indexTriangle], verticesY[indexVertex]);
+				boxMaxX[indexTriangle] = Math.max(boxMaxX[indexTriangle], verticesX[indexVertex]);
+				boxMaxY[indexTriangle] = Math.max(boxMaxY[indexTriangle], verticesY[indexVertex]);
+			}
+		}
+
+		for (int indexTriangle = 0; indexTriangle < numberOfTriangles; indexTriangle++) {
+			Edge edge = triangleEdges.get(indexTriangle);
+
+			for (int indexEdge = 0; indexEdge < 3; indexEdge++) {
+				Integer neighbour = triangleOfEdge.get(edge.symmetricEdge());
+				Integer start = vertexIndexes.get(edge.getOriginVertex());
+				Integer end = vertexIndexes.get(edge.dataDestinationVertex());
+
+				if (neighbour == null || start != null && end != null && edges.contains(edgeKey(start, end))) {
+					neighbours[indexTriangle * 3 + indexEdge] = -1;
+				} else {
+					neighbours[indexTriangle * 3 + indexEdge] = neighbour;
+				}
+				edge = edge.leftNextEdge();
+			}
+		}
+
+		trianglesHierarchy = new BoundingVolumeHierarchy(boxMinX, boxMinY, boxMaxX, boxMaxY);
+		searchStates = new SearchStatePool<SearchState>(() -> new SearchState(numberOfTriangles));
+	}
+
+	/**
+	 * Insert a vertex in the triangulation, or find the vertex already at its
+	 * position.
+	 * 
+	 * @param triangulation
+	 *            the triangulation
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 * @param vertices
+	 *            the vertices of the sections, by index
+	 * @param vertexIndexes
+	 *            the index of every vertex
+	 * @return the index of the vertex
+	 */
+	private static int insertVertex(final DelaunayTriangulation triangulation, final double x, final double y,
+			final List<Vertex> vertices, final Map<Vertex, Integer> vertexIndexes) {
+		Vertex vertex = triangulation.insertSite(new Vertex(x, y));
+		Integer index = vertexIndexes.get(vertex);
+
+		if (index == null) {
+			index = vertices.size();
+			vertices.add(vertex);
+			vertexIndexes.put(vertex, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Insert the points where the sections cross each other, so the sections
+	 * can be split there.
+	 * 
+	 * @param triangulation
+	 *            the triangulation
+	 * @param sections
+	 *            the walls and obstacles sections
+	 * @param vertices
+	 *            the vertices of the sections, by index
+	 * @param vertexIndexes
+	 *            the index of every vertex
+	 */
+	private static void insertIntersections(final DelaunayTriangulation triangulation,
+			final List<ShapeSection> sections, final List<Vertex> vertices, final Map<Vertex, Integer> vertexIndexes) {
+		for (int indexSection = 0; indexSection < sections.size(); indexSection++) {
+			PVector start1 = sections.get(indexSection).getVectorToStartPoint();
+			PVector end1 = sections.get(indexSection).getVectorToEndPoint();
+
+			for (int indexOther = indexSection + 1; indexOther < sections.size(); indexOther++) {
+				PVector start2 = sections.get(indexOther).getVectorToStartPoint();
+				PVector end2 = sections.get(indexOther).getVectorToEndPoint();
+
+				if (Math.max(start1.x, end1.x) < Math.min(start2.x, end2.x)
+						|| Math.max(start2.x, end2.x) < Math.min(start1.x, end1.x)
+						|| Math.max(start1.y, end1.y) < Math.min(start2.y, end2.y)
+						|| Math.max(start2.y, end2.y) < Math.min(start1.y, end1.y)
+						|| !Trigonometry.checkIfLinesIntersect(start1, end1, start2, end2)) {
+					continue;
+				}
+
+				double dx1 = end1.x - start1.x;
+				double dy1 = end1.y - start1.y;
+				double dx2 = end2.x - start2.x;
+				double dy2 = end2.y - start2.y;
+				double denominator = dx1 * dy2 - dy1 * dx2;
+
+				if (denominator == 0) {
+					continue;
+				}
+
+				double position = ((start2.x - start1.x) * dy2 - (start2.y - start1.y) * dx2) / denominator;
+
+				if (position > 0 && position < 1) {
+					insertVertex(triangulation, start1.x + position * dx1, start1.y + position * dy1, vertices,
+							vertexIndexes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add a section to the constraints, split at the vertices lying on it, as
+	 * the triangulation cannot hold it as a single edge.
+	 * 
+	 * @param start
+	 *            index of the start vertex
+	 * @param end
+	 *            index of the end vertex
+	 * @param vertices
+	 *            the vertices of the sections, by index
+	 * @param constraints
+	 *            receives the constraints: start vertex, end vertex, number of
+	 *            splits
+	 */
+	private static void splitAtVertices(final int start, final int end, final List<Vertex> vertices,
+			final List<int[]> constraints) {
+		Vertex startVertex = vertices.get(start);
+		Vertex endVertex = vertices.get(end);
+		double dx = endVertex.getxCoordinate() - startVertex.getxCoordinate();
+		double dy = endVertex.getyCoordinate() - startVertex.getyCoordinate();
+		double lengthSquared = dx * dx + dy * dy;
+
+		int closestIndex = -1;
+		double closestPosition = 1;
+
+		for (int indexVertex = 0; indexVertex < vertices.size(); indexVertex++) {
+			Vertex vertex = vertices.get(indexVertex);
+			double vx = vertex.getxCoordinate() - startVertex.getxCoordinate();
+			double vy = vertex.getyCoordinate() - startVertex.getyCoordinate();
+			double position = (vx * dx + vy * dy) / lengthSquared;
+
+			if (position > 0 && position < closestPosition
+					&& Math.abs(vx * dy - vy * dx) <= EPSILON * Math.sqrt(lengthSquared)) {
+				closestIndex = indexVertex;
+				closestPosition = position;
+			}
+		}
+
+		if (closestIndex == -1) {
+			constraints.add(new int[] { start, end, 0 });
+		} else {
+			constraints.add(new int[] { start, closestIndex, 0 });
+			splitAtVertices(closestIndex, end, vertices, constraints);
+		}
+	}
+
+	/**
+	 * Split the sections missing from the triangulation in halves until they
+	 * are all edges of the triangulation (a conforming Delaunay
+	 * triangulation).
+	 * 
+	 * @param triangulation
+	 *            the triangulation
+	 * @param vertices
+	 *            the vertices of the sections, by index
+	 * @param vertexIndexes
+	 *            the index of every vertex
+	 * @param constraints
+	 *            the sections: start vertex, end vertex, number of splits
+	 * @return the keys of the edges which are sections
+	 */
+	private static Set<Long> enforceSections(final DelaunayTriangulation triangulation, final List<Vertex> vertices,
+			final Map<Vertex, Integer> vertexIndexes, final List<int[]> constraints) {
+		List<int[]> pending = constraints;
+		Set<Long> sectionEdges = new HashSet<Long>();
+		int missingSections = 0;
+
+		while (!pending.isEmpty()) {
+			Set<Long> edges = new HashSet<Long>();
+
+			for (Edge edge : triangulation.getEdges()) {
+				Integer start = vertexIndexes.get(edge.getOriginVertex());
+				Integer end = vertexIndexes.get(edge.dataDestinationVertex());
+
+				if (start != null && end != null) {
+					edges.add(edgeKey(start, end));
+				}
+			}
+
+			List<int[]> missing = new ArrayList<int[]>();
+
+			for (int[] constraint : pending) {
+				if (edges.contains(edgeKey(constraint[0], constraint[1]))) {
+					sectionEdges.add(edgeKey(constraint[0], constraint[1]));
+				} else if (constraint[2] >= MAXIMUM_SECTION_SPLITS) {
+					missingSections++;
+				} else {
+					Vertex start = vertices.get(constraint[0]);
+					Vertex end = vertices.get(constraint[1]);
+					int middle = insertVertex(triangulation, (start.getxCoordinate() + end.getxCoordinate()) / 2,
+							(start.getyCoordinate() + end.getyCoordinate()) / 2, vertices, vertexIndexes);
+
+					missing.add(new int[] { constraint[0], middle, constraint[2] + 1 });
+					missing.add(new int[] { middle, constraint[1], constraint[2] + 1 });
+				}
+			}
+
+			pending = missing;
+		}
+
+		if (missingSections > 0) {
+			LOGGER.warn(missingSections + " wall and obstacle sections are not edges of the navigation mesh.");
+		}
+
+		return sectionEdges;
+	}
+
+	/**
+	 * Get the key of an edge between two vertices, in any direction.
+	 * 
+	 * @param vertex1
+	 *            index of a vertex
+	 * @param vertex2
+	 *            index of the other vertex
+	 * @return edge key
+	 */
+	private static long edgeKey(final int vertex1, final int vertex2) {
+		return ((long) Math.min(vertex1, vertex2) << Integer.SIZE) | Math.max(vertex1, vertex2);
+	}
+
+	/**
+	 * Get the number of triangles.
+	 * 
+	 * @return number of triangles
+	 */
+	public final int getNumberOfTriangles() {
+		return centroidsX.length;
+	}
+
+	/**
+	 * Find the triangle holding a point.
+	 * 
+	 * @param point
+	 *            the point
+	 * @return triangle index, -1 if the point is not on the mesh
+	 */
+	public final int locateTriangle(final PVector point) {
+		int[] triangle = new int[] { -1 };
+
+		trianglesHierarchy.visitOverlapping(point.x, point.y, point.x, point.y, indexTriangle -> {
+			if (containsPoint(indexTriangle, point)) {
+				triangle[0] = indexTriangle;
+				return true;
+			}
+			return false;
+		});
+
+		return triangle[0];
+	}
+
+	/**
+	 * Check if a triangle holds a point.
+	 * 
+	 * @param triangle
+	 *            triangle index
+	 * @param point
+	 *            the point
+	 * @return true if the point is inside the triangle or on its border
+	 */
+	private boolean containsPoint(final int triangle, final PVector point) {
+		for (int indexEdge = 0; indexEdge < 3; indexEdge++) {
+			int from = triangle * 3 + indexEdge;
+			int to = triangle * 3 + (indexEdge + 1) % 3;
+
+			if (cross(verticesX[from], verticesY[from], verticesX[to], verticesY[to], point.x, point.y) < -EPSILON) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculate the shortest path between two points: an A* search over the
+	 * triangles finds a corridor, and the funnel algorithm pulls the path
+	 * tight inside it.
+	 * 
+	 * @param start
+	 *            vector to start position
+	 * @param end
+	 *            vector to end position
+	 * @return the corners of the path from the end back to the start, the end
+	 *         included and the start excluded; null if there is no path
+	 */
+	@Override
+	public final LinkedList<NodePath> calculatePath(final PVector start, final PVector end) {
+		int startTriangle = locateTriangle(start);
+		int endTriangle = locateTriangle(end);
+
+		if (startTriangle == -1 || endTriangle == -1) {
+			return null;
+		}
+
+		List<Integer> corridor = findCorridor(startTriangle, endTriangle, end);
+
+		if (corridor == null) {
+			return null;
+		}
+
+		List<PVector> portalsLeft = new ArrayList<PVector>();
+		List<PVector> portalsRight = new ArrayList<PVector>();
+		portalsLeft.add(start);
+		portalsRight.add(start);
+
+		for (int indexTriangle = 1; indexTriangle < corridor.size(); indexTriangle++) {
+			addPortal(corridor.get(indexTriangle - 1), corridor.get(indexTriangle), portalsLeft, portalsRight);
+		}
+
+		portalsLeft.add(end);
+		portalsRight.add(end);
+
+		LinkedList<NodePath> path = new LinkedList<NodePath>();
+		for (PVector corner : pullFunnel(portalsLeft, portalsRight)) {
+			path.addFirst(new NodePath(corner.x, corner.y));
+		}
+
+		return path;
+	}
+
+	/**
+	 * A* search over the triangles, moving between their centroids.
+	 * 
+	 * @param startTriangle
+	 *            triangle holding the start point
+	 * @param endTriangle
+	 *            triangle holding the end point
+	 * @param end
+	 *            vector to end position
+	 * @return the triangles from the start to the end, null if there is no path
+	 */
+	private List<Integer> findCorridor(final int startTriangle, final int endTriangle, final PVector end) {
+		SearchState state = searchStates.borrow();
+
+		try {
+			return findCorridor(state, startTriangle, endTriangle, end);
+		} finally {
+			searchStates.giveBack(state);
+		}
+	}
+
+	/**
+	 * A* search over the triangles with a borrowed search state.
+	 * 
+	 * @param state
+	 *            search state borrowed by the calling thread
+	 * @param startTriangle
+	 *            triangle holding the start point
+	 * @param endTriangle
+	 *            triangle holding the end point
+	 * @param end
+	 *            vector to end position
+	 * @return the triangles from the start to the end, null if there is no path
+	 */
+	private List<Integer> findCorridor(final SearchState state, final int startTriangle, final int endTriangle,
+			final PVector end) {
+		state.startSearch();
+
+		state.gScores[startTriangle] = 0;
+		state.parents[startTriangle] = -1;
+		state.visitedStamps[startTriangle] = state.searchStamp;
+		state.openSet.insertOrUpdate(startTriangle, 0);
+
+		while (!state.openSet.isEmpty()) {
+			int current = state.openSet.poll();
+
+			if (current == endTriangle) {
+				LinkedList<Integer> corridor = new LinkedList<Integer>();
+				for (int triangle = current; triangle != -1; triangle = state.parents[triangle]) {
+					corridor.addFirst(triangle);
+				}
+				return corridor;
+			}
+			state.closedStamps[current] = state.searchStamp;
+
+			for (int indexEdge = current * 3; indexEdge < current * 3 + 3; indexEdge++) {
+				int neighbour = neighbours[indexEdge];
+
+				if (neighbour == -1 || state.closedStamps[neighbour] == state.searchStamp) {
+					continue;
+				}
+
+				float tentativeGScore = state.gScores[current] + distance(centroidsX[current], centroidsY[current],
+						centroidsX[neighbour], centroidsY[neighbour]);
+
+				if (state.visitedStamps[neighbour] != state.searchStamp
+						|| tentativeGScore < state.gScores[neighbour]) {
+					state.visitedStamps[neighbour] = state.searchStamp;
+					state.gScores[neighbour] = tentativeGScore;
+					state.parents[neighbour] = current;
+					state.openSet.insertOrUpdate(neighbour, tentativeGScore
+							+ distance(centroidsX[neighbour], centroidsY[neighbour], end.x, end.y));
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Add the portal between two neighbouring triangles, narrowed by the
+	 * clearance at both ends.
+	 * 
+	 * @param from
+	 *            triangle left
+	 * @param to
+	 *            triangle entered
+	 * @param portalsLeft
+	 *            receives the left end of the portal
+	 * @param portalsRight
+	 *            receives the right end of the portal
+	 */
+	private void addPortal(final int from, final int to, final List<PVector> portalsLeft,
+			final List<PVector> portalsRight) {
+		int indexEdge = 0;
+		while (neighbours[from * 3 + indexEdge] != to) {
+			indexEdge++;
+		}
+
+		PVector right = new PVector(verticesX[from * 3 + indexEdge], verticesY[from * 3 + indexEdge]);
+		PVector left = new PVector(verticesX[from * 3 + (indexEdge + 1) % 3],
+				verticesY[from * 3 + (indexEdge + 1) % 3]);
+		float length = PVector.dist(left, right);
+
+		if (length > 2 * clearance) {
+			PVector offset = PVector.sub(left, right);
+			offset.mult(clearance / length);
+			right.add(offset);
+			left.sub(offset);
+		} else {
+			PVector middle = PVector.lerp(left, right, 0.5f);
+			left = middle;
+			right = middle.copy();
+		}
+
+		portalsLeft.add(left);
+		portalsRight.add(right);
+	}
+
+	/**
+	 * The funnel algorithm: walk the portals keeping the funnel of directions
+	 * from the last corner (the apex) through all the portals seen since. When
+	 * a side of the funnel would cross the other side, the other side becomes
+	 * a corner of the path and the new apex.
+	 * 
+	 * @param portalsLeft
+	 *            left ends of the portals, from the start point to the end point
+	 * @param portalsRight
+	 *            right ends of the portals, from the start point to the end
+	 *            point
+	 * @return the corners of the path from the start to the end, the start
+	 *         excluded and the end included
+	 */
+	private static List<PVector> pullFunnel(final List<PVector> portalsLeft, final List<PVector> portalsRight) {
+		List<PVector> corners = new ArrayList<PVector>();
+
+		PVector apex = portalsLeft.get(0);
+		PVector left = apex;
+		PVector right = apex;
+		int leftIndex = 0;
+		int rightIndex = 0;
+
+		for (int indexPortal = 1; indexPortal < portalsLeft.size(); indexPortal++) {
+			PVector portalLeft = portalsLeft.get(indexPortal);
+			PVector portalRight = portalsRight.get(indexPortal);
+
+			if (cross(apex, right, portalRight) >= 0) {
+				if (samePosition(apex, right) || cross(apex, left, portalRight) < 0) {
+					right = portalRight;
+					rightIndex = indexPortal;
+				} else {
+					apex = left;
+					addCorner(corners, apex);
+					right = apex;
+					rightIndex = leftIndex;
+					indexPortal = leftIndex;
+					continue;
+				}
+			}
+
+			if (cross(apex, left, portalLeft) <= 0) {
+				if (samePosition(apex, left) || cross(apex, right, portalLeft) > 0) {
+					left = portalLeft;
+					leftIndex = indexPortal;
+				} else {
+					apex = right;
+					addCorner(corners, apex);
+					left = apex;
+					leftIndex = rightIndex;
+					indexPortal = rightIndex;
+					continue;
+				}
+			}
+		}
+
+		addCorner(corners, portalsLeft.get(portalsLeft.size() - 1));
+
+		return corners;
+	}
+
+	/**
+	 * Add a corner to the path, unless it repeats the last one.
+	 * 
+	 * @param corners
+	 *            the corners of the path
+	 * @param corner
+	 *            the new corner
+	 */
+	private static void addCorner(final List<PVector> corners, final PVector corner) {
+		if (corners.isEmpty() || !samePosition(corners.get(corners.size() - 1), corner)) {
+			corners.add(corner);
+		}
+	}
+
+	/**
+	 * Twice the signed area of a triangle, positive when the third point is
+	 * on the left of the line from the first point to the second one.
+	 * 
+	 * @param origin
+	 *            first point
+	 * @param direction
+	 *            second point
+	 * @param point
+	 *            third point
+	 * @return signed doubled area
+	 */
+	private static float cross(final PVector origin, final PVector direction, final PVector point) {
+		return cross(origin.x, origin.y, direction.x, direction.y, point.x, point.y);
+	}
+
+	/**
+	 * Twice the signed area of a triangle, positive when the third point is
+	 * on the left of the line from the first point to the second one.
+	 * 
+	 * @param originX
+	 *            first point x
+	 * @param originY
+	 *            first point y
+	 * @param directionX
+	 *            second point x
+	 * @param directionY
+	 *            second point y
+	 * @param pointX
+	 *            third point x
+	 * @param pointY
+	 *            third point y
+	 * @return signed doubled area
+	 */
+	private static float cross(final float originX, final float originY, final float directionX,
+			final float directionY, final float pointX, final float pointY) {
+		return (directionX - originX) * (pointY - originY) - (directionY - originY) * (pointX - originX);
+	}
+
+	/**
+	 * Check if two points are at the same position.
+	 * 
+	 * @param point1
+	 *            first point
+	 * @param point2
+	 *            second point
+	 * @return true if the coordinates are equal
+	 */
+	private static boolean samePosition(final PVector point1, final PVector point2) {
+		return point1.x == point2.x && point1.y == point2.y;
+	}
+
+	/**
+	 * Euclidean distance between two points.
+	 * 
+	 * @param x1
+	 *            first point x
+	 * @param y1
+	 *            first point y
+	 * @param x2
+	 *            second point x
+	 * @param y2
+	 *            second point y
+	 * @return distance
+	 */
+	private static float distance(final float x1, final float y1, final float x2, final float y2) {
+		return (float) Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+	}
+
+	/**
+	 * Scratch state of the triangle searches, borrowed by a single thread at a
+	 * time.
+	 */
+	private static final class SearchState {
+		/** Open set. */
+		private final IndexedBinaryHeap openSet;
+
+		/** Cost from the start triangle. */
+		private final float[] gScores;
+
+		/** Previous triangle on the best path. */
+		private final int[] parents;
+
+		/** Search stamp of the closed triangles. */
+		private final int[] closedStamps;
+
+		/** Search stamp of the triangles with a g-score. */
+		private final int[] visitedStamps;
+
+		/** Current search stamp. */
+		private int searchStamp = 0;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param numberOfTriangles
+		 *            number of triangles
+		 */
+		SearchState(final int numberOfTriangles) {
+			openSet = new IndexedBinaryHeap(numberOfTriangles);
+			gScores = new float[numberOfTriangles];
+			parents = new int[numberOfTriangles];
+			closedStamps = new int[numberOfTriangles];
+			visitedStamps = new int[numberOfTriangles];
+		}
+
+		/**
+		 * Prepare a new search.
+		 */
+		private void startSearch() {
+			openSet.clear();
+			searchStamp++;
+
+			if (searchStamp == Integer.MAX_VALUE) {
+				Arrays.fill(closedStamps, 0);
+				Arrays.fill(visitedStamps, 0);
+				searchStamp = 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.LinkedList;
+
+import processing.core.PVector;
+
+/**
+ * A shortest path algorithm. The agents follow the paths from the last node
+ * to the first one, removing the nodes as they reach them.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public interface PathFinder {
+	/**
+	 * Calculate the shortest path between two points. Safe to call from
+	 * several threads at the same time.
+	 * 
+	 * @param start
+	 *            vector to start position
+	 * @param end
+	 *            vector to end position
+	 * @return the path as a list of nodes from the end back to the start, the
+	 *         start excluded, owned by the caller; null if there is no path
+	 */
+	LinkedList<NodePath> calculatePath(PVector start, PVector end);
+}
@@ -0,0 +1,205 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import processing.core.PVector;
+
+/**
+ * Bounded least recently used cache of the A* routes, keyed by the grid nodes
+ * of the start and end points. The agents departing from the same entrance
+ * towards the same exit share one search. Every caller gets its own copy of
+ * the route, because the agents consume their paths as they walk.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class RouteCache {
+	/** Default maximum number of cached routes. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** Maximum number of cached routes. */
+	private final int capacity;
+
+	/**
+	 * The routes in access order, keyed by the start and end grid nodes. A
+	 * route being computed is a future not yet completed, so the agents asking
+	 * for the same route at the same time wait for a single search.
+	 */
+	private final LinkedHashMap<Long, CompletableFuture<LinkedList<NodePath>>> routes;
+
+	/** Number of routes found in the cache. */
+	private final AtomicLong hits = new AtomicLong(0);
+
+	/** Number of routes computed. */
+	private final AtomicLong misses = new AtomicLong(0);
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param newCapacity
+	 *            maximum number of cached routes, the least recently used
+	 *            route is evicted when it is exceeded
+	 */
+	public RouteCache(final int newCapacity) {
+		capacity = Math.max(newCapacity, 1);
+		routes = new LinkedHashMap<Long, CompletableFuture<LinkedList<NodePath>>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					final Map.Entry<Long, CompletableFuture<LinkedList<NodePath>>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Get the shortest path between two points, from the cache when a path
+	 * between the same grid nodes was already computed. Routes that do not
+	 * exist are cached too. Safe to call from several threads at the same
+	 * time.
+	 * 
+	 * @param pathFinder
+	 *            path finder holding the grid
+	 * @param start
+	 *            vector to start position
+	 * @param end
+	 *            vector to end position
+	 * @return a copy of the path, owned by the caller, or null if there is no
+	 *         path
+	 */
+	public final LinkedList<NodePath> getPath(final AStarPathFinder pathFinder, final PVector start,
+			final PVector end) {
+		return getPath(pathFinder, pathFinder, start, end);
+	}
+
+	/**
+	 * Get the path computed by a path finder between two points of a grid,
+	 * from the cache when a path between the same grid nodes was already
+	 * computed. A cache should only be used with a single path finder, or be
+	 * cleared when the path finder changes.
+	 * 
+	 * @param grid
+	 *            path finder holding the grid, maps the points to the nodes
+	 * @param pathFinder
+	 *            path finder computing the missing routes
+	 * @param start
+	 *            vector to start position
+	 * @param end
+	 *            vector to end position
+	 * @return a copy of the path, owned by the caller, or null if there is no
+	 *         path
+	 */
+	public final LinkedList<NodePath> getPath(final AStarPathFinder grid, final PathFinder pathFinder,
+			final PVector start, final PVector end) {
+		int startNode = grid.getNodeIndex((int) start.x, (int) start.y);
+		int endNode = grid.getNodeIndex((int) end.x, (int) end.y);
+
+		if (startNode == -1 || endNode == -1) {
+			return pathFinder.calculatePath(start, end);
+		}
+
+		Long key = ((long) startNode << Integer.SIZE) | (endNode & 0xFFFFFFFFL);
+		CompletableFuture<LinkedList<NodePath>> route;
+		boolean computeRoute = false;
+
+		synchronized (routes) {
+			route = routes.get(key);
+
+			if (route == null) {
+				route = new CompletableFuture<LinkedList<NodePath>>();
+				routes.put(key, route);
+				computeRoute = true;
+			}
+		}
+
+		if (computeRoute) {
+			misses.incrementAndGet();
+
+			try {
+				route.complete(pathFinder.calculatePath(start, end));
+			} catch (RuntimeException ex) {
+				synchronized (routes) {
+					routes.remove(key, route);
+				}
+				route.completeExceptionally(ex);
+				throw ex;
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+
+		LinkedList<NodePath> path = route.join();
+
+		if (path == null) {
+			return null;
+		}
+		return new LinkedList<NodePath>(path);
+	}
+
+	/**
+	 * Remove all the routes, when the grid changes.
+	 */
+	public final void clear() {
+		synchronized (routes) {
+			routes.clear();
+		}
+	}
+
+	/**
+	 * Get the number of cached routes.
+	 * 
+	 * @return number of routes
+	 */
+	public final int size() {
+		synchronized (routes) {
+			return routes.size();
+		}
+	}
+
+	/**
+	 * Get the number of routes found in the cache.
+	 * 
+	 * @return number of hits
+	 */
+	public final long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of routes computed because they were not in the cache.
+	 * 
+	 * @return number of misses
+	 */
+	public final long getMisses() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,99 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool of the search states of a path finder. A search borrows a state and
+ * gives it back when it ends, so the path finder only creates as many states
+ * as searches run at the same time. A bounded number of them are kept idle,
+ * and they are released with the path finder, unlike thread local states.
+ * 
+ * @param <S>
+ *            type of the search state
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+final class SearchStatePool<S> {
+	/** Creates a new search state when none is idle. */
+	private final Supplier<S> factory;
+
+	/** The maximum number of idle search states kept by the pool. */
+	private final int maximumIdleStates;
+
+	/** The idle search states. */
+	private final ConcurrentLinkedQueue<S> idleStates = new ConcurrentLinkedQueue<S>();
+
+	/** The number of idle search states. */
+	private final AtomicInteger numberOfIdleStates = new AtomicInteger();
+
+	/**
+	 * Constructor. The pool keeps at most one idle search state per
+	 * available processor.
+	 * 
+	 * @param newFactory
+	 *            creates a new search state
+	 */
+	SearchStatePool(final Supplier<S> newFactory) {
+		factory = newFactory;
+		maximumIdleStates = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Borrow a search state, created if none is idle. It must be given back
+	 * with {@link #giveBack(Object)} once the search ended.
+	 * 
+	 * @return the search state, owned by the caller until it is given back
+	 */
+	S borrow() {
+		S state = idleStates.poll();
+
+		if (state == null) {
+			return factory.get();
+		}
+
+		numberOfIdleStates.decrementAndGet();
+		return state;
+	}
+
+	/**
+	 * Give back a borrowed search state. It is dropped when the pool already
+	 * keeps the maximum number of idle states.
+	 * 
+	 * @param state
+	 *            the search state
+	 */
+	void giveBack(final S state) {
+		if (numberOfIdleStates.incrementAndGet() <= maximumIdleStates) {
+			idleStates.offer(state);
+		} else {
+			numberOfIdleStates.decrementAndGet();
+		}
+	}
+}
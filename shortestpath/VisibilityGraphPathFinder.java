@@ -0,0 +1,391 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.shortestpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimGeometry;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimObstacle;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.ShapeSection;
+
+/**
+ * Path finder over the visibility graph of the walls and obstacles. Its nodes
+ * are waypoints placed at a clearance distance in front of the convex corners
+ * of the shapes, and its edges join the waypoints which see each other; the
+ * graph is computed once. The routes are short polylines of a few waypoints,
+ * instead of the one cell steps of the grid path finder.
+ * 
+ * @author Ecaterina McCormick, ecaterina.mccormick@ts.catapult.org.uk
+ * 
+ *         Copyright  <2016> TRANSPORT SYSTEMS CATAPULT
+ * 
+ *         Permission is hereby granted, free of charge, to any person obtaining
+ *         a copy of this software and associated documentation files (the
+ *         "Software"), to deal in the Software without restriction, including
+ *         without limitation the rights to use, copy, modify, merge, publish,
+ *         distribute, sublicense, and/or sell copies of the Software, and to
+ *         permit persons to whom the Software is furnished to do so, subject to
+ *         the following conditions:
+ * 
+ *         The above copyright notice and this permission notice shall be
+ *         included in all copies or substantial portions of the Software. Users
+ *         of the Software shall acknowledge Transport Systems Catapult as the
+ *         source of the Software in any publication that refers to it.
+ * 
+ *         THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *         EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ *         MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *         NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ *         BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ *         ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *         CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *         SOFTWARE.
+ *
+ */
+public class VisibilityGraphPathFinder implements PathFinder {
+	/** Default distance kept between the waypoints and the corners. */
+	public static final float DEFAULT_CLEARANCE = 0.6f;
+
+	/**
+	 * Corners whose sections are closer to a straight line than this (the
+	 * length of the sum of their unit directions) are not turning points.
+	 */
+	private static final float MINIMUM_CORNER_TURN = 0.01f;
+
+	/** The geometry the segments are checked against. */
+	private final CatpedsimGeometry geometry;
+
+	/** Waypoints x coordinates. */
+	private final float[] waypointsX;
+
+	/** Waypoints y coordinates. */
+	private final float[] waypointsY;
+
+	/**
+	 * For every waypoint, the index of its first edge; the edges of waypoint
+	 * i are in [edgesStart[i], edgesStart[i + 1]).
+	 */
+	private final int[] edgesStart;
+
+	/** Target waypoint of every edge. */
+	private final int[] edgesTarget;
+
+	/** Length of every edge. */
+	private final float[] edgesCost;
+
+	/**
+	 * Build the visibility graph of a geometry. Its walls and obstacles must
+	 * have their sections built.
+	 * 
+	 * @param newGeometry
+	 *            the geometry
+	 * @param clearance
+	 *            distance kept between the waypoints and the corners
+	 */
+	public VisibilityGraphPathFinder(final CatpedsimGeometry newGeometry, final float clearance) {
+		geometry = newGeometry;
+
+		List<PVector> waypoints = new ArrayList<PVector>();
+		for (CatpedsimObstacle wall : geometry.getWalls()) {
+			addCornerWaypoints(wall, clearance, waypoints);
+		}
+		for (CatpedsimObstacle obstacle : geometry.getObstacles()) {
+			addCornerWaypoints(obstacle, clearance, waypoints);
+		}
+
+		int numberOfWaypoints = waypoints.size();
+		waypointsX = new float[numberOfWaypoints];
+		waypointsY = new float[numberOfWaypoints];
+		for (int indexWaypoint = 0; indexWaypoint < numberOfWaypoints; indexWaypoint++) {
+			waypointsX[indexWaypoint] = waypoints.get(indexWaypoint).x;
+			waypointsY[indexWaypoint] = waypoints.get(indexWaypoint).y;
+		}
+
+		List<List<Integer>> targets = new ArrayList<List<Integer>>();
+		for (int indexWaypoint = 0; indexWaypoint < numberOfWaypoints; indexWaypoint++) {
+			targets.add(new ArrayList<Integer>());
+		}
+
+		for (int indexFrom = 0; indexFrom < numberOfWaypoints; indexFrom++) {
+			for (int indexTo = indexFrom + 1; indexTo < numberOfWaypoints; indexTo++) {
+				if (isVisible(waypoints.get(indexFrom), waypoints.get(indexTo))) {
+					targets.get(indexFrom).add(indexTo);
+					targets.get(indexTo).add(indexFrom);
+				}
+			}
+		}
+
+		edgesStart = new int[numberOfWaypoints + 1];
+		for (int indexWaypoint = 0; indexWaypoint < numberOfWaypoints; indexWaypoint++) {
+			edgesStart[indexWaypoint + 1] = edgesStart[indexWaypoint] + targets.get(indexWaypoint).size();
+		}
+		edgesTarget = new int[edgesStart[numberOfWaypoints]];
+		edgesCost = new float[edgesTarget.length];
+
+		for (int indexWaypoint = 0; indexWaypoint < numberOfWaypoints; indexWaypoint++) {
+			int edge = edgesStart[indexWaypoint];
+
+			for (Integer target : targets.get(indexWaypoint)) {
+				edgesTarget[edge] = target;
+				edgesCost[edge] = distance(indexWaypoint, target);
+				edge++;
+			}
+		}
+	}
+
+	/**
+	 * Add a waypoint in front of every convex corner of a shape. The waypoint
+	 * lies on the bisector of the corner, outside the shape, at the clearance
+	 * distance from the corner; the free ends of open shapes get a waypoint
+	 * past their end.
+	 * 
+	 * @param shape
+	 *            wall or obstacle
+	 * @param clearance
+	 *            distance between the corner and the waypoint
+	 * @param waypoints
+	 *            receives the waypoints
+	 */
+	private void addCornerWaypoints(final CatpedsimObstacle shape, final float clearance,
+			final List<PVector> waypoints) {
+		ShapeSection[] sections = shape.getObstacleSections();
+
+		if (sections == null) {
+			return;
+		}
+
+		List<PVector> corners = new ArrayList<PVector>();
+		List<List<PVector>> cornersDirections = new ArrayList<List<PVector>>();
+
+		for (ShapeSection section : sections) {
+			PVector start = section.getVectorToStartPoint();
+			PVector end = section.getVectorToEndPoint();
+			PVector direction = PVector.sub(end, start);
+
+			if (direction.mag() == 0) {
+				continue;
+			}
+			direction.normalize();
+
+			getCornerDirections(start, corners, cornersDirections).add(direction);
+			getCornerDirections(end, corners, cornersDirections).add(PVector.mult(direction, -1));
+		}
+
+		for (int indexCorner = 0; indexCorner < corners.size(); indexCorner++) {
+			List<PVector> directions = cornersDirections.get(indexCorner);
+			PVector away;
+
+			if (directions.size() == 1) {
+				away = PVector.mult(directions.get(0), -1);
+			} else if (directions.size() == 2) {
+				away = PVector.add(directions.get(0), directions.get(1));
+
+				if (away.mag() < MINIMUM_CORNER_TURN) {
+					continue;
+				}
+				away.mult(-1);
+			} else {
+				continue;
+			}
+
+			away.normalize();
+			PVector waypoint = PVector.add(corners.get(indexCorner), PVector.mult(away, clearance));
+
+			if (!geometry.checkIfPointIsInsideObstacle(waypoint)
+					&& !geometry.checkIfPointBelongsToWallOrObstacle(waypoint)) {
+				waypoints.add(waypoint);
+			}
+		}
+	}
+
+	/**
+	 * Get the directions of the sections leaving a corner, adding the corner
+	 * the first time it is seen.
+	 * 
+	 * @param corner
+	 *            corner position
+	 * @param corners
+	 *            the corners seen so far
+	 * @param cornersDirections
+	 *            the directions of the sections leaving every corner
+	 * @return the directions of the corner
+	 */
+	private static List<PVector> getCornerDirections(final PVector corner, final List<PVector> corners,
+			final List<List<PVector>> cornersDirections) {
+		for (int indexCorner = 0; indexCorner < corners.size(); indexCorner++) {
+			if (corners.get(indexCorner).x == corner.x && corners.get(indexCorner).y == corner.y) {
+				return cornersDirections.get(indexCorner);
+			}
+		}
+
+		corners.add(corner);
+		cornersDirections.add(new ArrayList<PVector>());
+		return cornersDirections.get(cornersDirections.size() - 1);
+	}
+
+	/**
+	 * Check if a segment is free of walls and obstacles.
+	 * 
+	 * @param start
+	 *            segment start point
+	 * @param end
+	 *            segment end point
+	 * @return true if the segment does not cross any wall or obstacle
+	 */
+	private boolean isVisible(final PVector start, final PVector end) {
+		return !geometry.checkIfSegmentCrossesWalls(start, end) && !geometry.checkIfSegmentCrossesObstacles(start, end);
+	}
+
+	/**
+	 * Get the distance between two waypoints.
+	 * 
+	 * @param from
+	 *            first waypoint
+	 * @param to
+	 *            second waypoint
+	 * @return distance
+	 */
+	private float distance(final int from, final int to) {
+		return PVector.dist(new PVector(waypointsX[from], waypointsY[from]),
+				new PVector(waypointsX[to], waypointsY[to]));
+	}
+
+	/**
+	 * Get the number of waypoints (corners of the walls and obstacles).
+	 * 
+	 * @return number of waypoints
+	 */
+	public final int getNumberOfWaypoints() {
+		return waypointsX.length;
+	}
+
+	/**
+	 * Get the number of edges between the waypoints, counted in both
+	 * directions.
+	 * 
+	 * @return number of edges
+	 */
+	public final int getNumberOfEdges() {
+		return edgesTarget.length;
+	}
+
+	/**
+	 * Calculate the shortest path between two points as a polyline through
+	 * the corners of the walls and obstacles. The start and end points are
+	 * linked to the waypoints they see and an A* search runs over the
+	 * visibility graph.
+	 * 
+	 * @param start
+	 *            vector to start position
+	 * @param end
+	 *            vector to end position
+	 * @return the waypoints from the end back to the start, the end included
+	 *         and the start excluded; null if there is no path
+	 */
+	@Override
+	public final LinkedList<NodePath> calculatePath(final PVector start, final PVector end) {
+		LinkedList<NodePath> path = new LinkedList<NodePath>();
+
+		if (isVisible(start, end)) {
+			path.add(new NodePath(end.x, end.y));
+			return path;
+		}
+
+		int numberOfWaypoints = waypointsX.length;
+		float[] endCosts = new float[numberOfWaypoints];
+
+		for (int indexWaypoint = 0; indexWaypoint < numberOfWaypoints; indexWaypoint++) {
+			PVector waypoint = new PVector(waypointsX[indexWaypoint], waypointsY[indexWaypoint]);
+			endCosts[indexWaypoint] = isVisible(waypoint, end) ? PVector.dist(waypoint, end) : Float.MAX_VALUE;
+		}
+
+		int startIndex = numberOfWaypoints;
+		int endIndex = numberOfWaypoints + 1;
+		float[] gScores = new float[numberOfWaypoints + 2];
+		int[] parents = new int[numberOfWaypoints + 2];
+		boolean[] closed = new boolean[numberOfWaypoints + 2];
+		IndexedBinaryHeap openSet = new IndexedBinaryHeap(numberOfWaypoints + 2);
+
+		Arrays.fill(gScores, Float.MAX_VALUE);
+		gScores[startIndex] = 0;
+		parents[startIndex] = -1;
+		openSet.insertOrUpdate(startIndex, PVector.dist(start, end));
+
+		while (!openSet.isEmpty()) {
+			int current = openSet.poll();
+
+			if (current == endIndex) {
+				path.add(new NodePath(end.x, end.y));
+
+				for (int node = parents[current]; node != startIndex; node = parents[node]) {
+					path.add(new NodePath(waypointsX[node], waypointsY[node]));
+				}
+				return path;
+			}
+			closed[current] = true;
+
+			if (current == startIndex) {
+				for (int indexWaypoint = 0; indexWaypoint < numberOfWaypoints; indexWaypoint++) {
+					PVector waypoint = new PVector(waypointsX[indexWaypoint], waypointsY[indexWaypoint]);
+
+					if (isVisible(start, waypoint)) {
+						relax(indexWaypoint, current, PVector.dist(start, waypoint), gScores, parents, closed, openSet,
+								end);
+					}
+				}
+				continue;
+			}
+
+			if (endCosts[current] != Float.MAX_VALUE && gScores[current] + endCosts[current] < gScores[endIndex]) {
+				gScores[endIndex] = gScores[current] + endCosts[current];
+				parents[endIndex] = current;
+				openSet.insertOrUpdate(endIndex, gScores[endIndex]);
+			}
+
+			for (int edge = edgesStart[current]; edge < edgesStart[current + 1]; edge++) {
+				relax(edgesTarget[edge], current, edgesCost[edge], gScores, parents, closed, openSet, end);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Relax an edge of the visibility graph.
+	 * 
+	 * @param target
+	 *            waypoint reached by the edge
+	 * @param current
+	 *            node the edge starts from
+	 * @param cost
+	 *            edge length
+	 * @param gScores
+	 *            g-scores of the nodes
+	 * @param parents
+	 *            parents of the nodes
+	 * @param closed
+	 *            evaluated nodes
+	 * @param openSet
+	 *            open set
+	 * @param end
+	 *            vector to end position
+	 */
+	private void relax(final int target, final int current, final float cost, final float[] gScores,
+			final int[] parents, final boolean[] closed, final IndexedBinaryHeap openSet, final PVector end) {
+		if (closed[target]) {
+			return;
+		}
+
+		float tentativeGScore = gScores[current] + cost;
+
+		if (tentativeGScore < gScores[target]) {
+			gScores[target] = tentativeGScore;
+			parents[target] = current;
+
+			float heuristic = PVector.dist(new PVector(waypointsX[target], waypointsY[target]), end);
+			openSet.insertOrUpdate(target, tentativeGScore + heuristic);
+		}
+	}
+}
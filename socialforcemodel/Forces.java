@@ -1,12 +1,18 @@
 package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.socialforcemodel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import processing.core.PVector;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentStateStore;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.BoundingVolumeHierarchy;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimGeometry;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.CatpedsimObstacle;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.ShapeSection;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.configuration.geometry.ShapeSectionsHierarchy;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.Trigonometry;
 
 /**
@@ -42,6 +48,13 @@ import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.utils.Trigonom
  */
 public final class Forces {
 
+	/**
+	 * Scratch buffers of the wall and obstacle repulsion, one for every thread
+	 * computing forces.
+	 */
+	private static final ThreadLocal<WallRepulsionBuffers> WALL_REPULSION_BUFFERS = ThreadLocal
+			.withInitial(WallRepulsionBuffers::new);
+
 	/**
 	 * Private constructor for the utility class.
 	 */
@@ -85,10 +98,16 @@ public final class Forces {
 	 * visual range will generate an elliptical force field that results in
 	 * repulsive effect to the subject agent.
 	 * 
+	 * The positions and velocities are the ones published at the end of the
+	 * last tick, so the result does not depend on the order the agents move
+	 * in.
+	 * 
 	 * @param agent
 	 *            the current agent
 	 * @param agents
-	 *            the list of all agents
+	 *            the agents to interact with, either the whole list of a type
+	 *            or the neighbour candidates found in the spatial grid. The
+	 *            current agent is skipped if present.
 	 * @param socialForceParameters
 	 *            the social force model acting on the agent to agent repulsion
 	 * @return the sepparation force between agents
@@ -97,13 +116,16 @@ public final class Forces {
 			final SocialForceParameters socialForceParameters) {
 		PVector sepparationForce = new PVector(0, 0, 0);
 
-		if (agents.size() <= 1 || socialForceParameters.getInteractionStrength() == 0
+		if (agents.isEmpty() || socialForceParameters.getInteractionStrength() == 0
 				|| socialForceParameters.getInteractionRange() == 0) {
 			return sepparationForce;
 		}
 
+		PVector agentPosition = agent.getSnapshotPositionVector();
+		PVector agentVelocity = agent.getSnapshotVelocity();
+
 		for (CatpedsimAgent anotherAgent : agents) {
-			float agentsDistance = PVector.dist(agent.getPositionVector(), anotherAgent.getPositionVector());
+			float agentsDistance = PVector.dist(agentPosition, anotherAgent.getSnapshotPositionVector());
 
 			if (agentsDistance == 0) {
 				continue;
@@ -113,12 +135,12 @@ public final class Forces {
 				PVector repulsiveForce = computeAgentToAgentRepulsiveForce(agent, anotherAgent, agentsDistance,
 						socialForceParameters);
 
-				if (agent.getVelocity().mag() > 0 && socialForceParameters.getAnisotropicConstant() < 1.0) {
-					PVector agentsRelativeVector = PVector.sub(anotherAgent.getPositionVector(),
-							agent.getPositionVector());
+				if (agentVelocity.mag() > 0 && socialForceParameters.getAnisotropicConstant() < 1.0) {
+					PVector agentsRelativeVector = PVector.sub(anotherAgent.getSnapshotPositionVector(),
+							agentPosition);
 
-					float cosine = agent.getVelocity().dot(agentsRelativeVector)
-							/ (agent.getVelocity().mag() * agentsRelativeVector.mag());
+					float cosine = agentVelocity.dot(agentsRelativeVector)
+							/ (agentVelocity.mag() * agentsRelativeVector.mag());
 
 					repulsiveForce.mult((socialForceParameters.getAnisotropicConstant()
 							+ (1 - socialForceParameters.getAnisotropicConstant()) * ((1 + cosine) / 2)));
@@ -131,6 +153,225 @@ public final class Forces {
 		return sepparationForce;
 	}
 
+	/**
+	 * Allocation free version of computeAgentToAgentsRepulsion. Accumulates
+	 * into the given force the repulsive forces of the other agents, working
+	 * on the raw coordinates. The agents out of range are rejected on the
+	 * squared distance, before any square root, and the speed of the current
+	 * agent is computed once for the whole list.
+	 * 
+	 * @param agent
+	 *            the current agent
+	 * @param agents
+	 *            the agents to interact with, either the whole list of a type
+	 *            or the neighbour candidates found in the spatial grid. The
+	 *            current agent is skipped if present.
+	 * @param socialForceParameters
+	 *            the social force model acting on the agent to agent repulsion
+	 * @param force
+	 *            the force the repulsion is added to
+	 */
+	public static void accumulateAgentToAgentsRepulsion(final CatpedsimAgent agent,
+			final List<CatpedsimAgent> agents, final SocialForceParameters socialForceParameters,
+			final PVector force) {
+
+		final float strength = socialForceParameters.getInteractionStrength();
+		final float range = socialForceParameters.getInteractionRange();
+		final float lambda = socialForceParameters.getAnisotropicConstant();
+		final float maxDistance = socialForceParameters.getMaxDistanceForSocialForcesInfluence();
+
+		if (agents.isEmpty() || strength == 0 || range == 0) {
+			return;
+		}
+
+		PVector agentPosition = agent.getSnapshotPositionVector();
+		PVector agentVelocity = agent.getSnapshotVelocity();
+
+		final float agentX = agentPosition.x;
+		final float agentY = agentPosition.y;
+		final float agentRadius = agent.getRadius();
+		final float agentVx = agentVelocity.x;
+		final float agentVy = agentVelocity.y;
+		final float agentSpeed = (float) Math.sqrt(agentVx * agentVx + agentVy * agentVy);
+		final boolean anisotropic = agentSpeed > 0 && lambda < 1.0;
+		final float maxDistanceSquared = maxDistance * maxDistance;
+
+		float forceX = 0;
+		float forceY = 0;
+
+		for (int indexAgent = 0; indexAgent < agents.size(); indexAgent++) {
+			CatpedsimAgent anotherAgent = agents.get(indexAgent);
+			PVector anotherPosition = anotherAgent.getSnapshotPositionVector();
+
+			float dx = agentX - anotherPosition.x;
+			float dy = agentY - anotherPosition.y;
+			float distanceSquared = dx * dx + dy * dy;
+
+			if (distanceSquared == 0 || distanceSquared > maxDistanceSquared) {
+				continue;
+			}
+
+			float distance = (float) Math.sqrt(distanceSquared);
+			float magnitude = (float) (strength
+					* Math.exp((agentRadius + anotherAgent.getRadius() - distance) / range)) / distance;
+
+			if (anisotropic) {
+				float cosine = -(agentVx * dx + agentVy * dy) / (agentSpeed * distance);
+				magnitude *= lambda + (1 - lambda) * ((1 + cosine) / 2);
+			}
+
+			forceX += dx * magnitude;
+			forceY += dy * magnitude;
+		}
+
+		force.x += forceX;
+		force.y += forceY;
+	}
+
+	/**
+	 * Symmetric version of the repulsion between two agents of the same type.
+	 * The isotropic part of the force only depends on the distance and on the
+	 * radii, so it is computed once and applied to both agents with opposite
+	 * signs. Only the anisotropic weighting is evaluated from the point of view
+	 * of each agent.
+	 * 
+	 * @param first
+	 *            first agent of the pair
+	 * @param second
+	 *            second agent of the pair
+	 * @param socialForceParameters
+	 *            the social force model acting between agents of the type
+	 */
+	public static void accumulateSymmetricAgentsRepulsion(final CatpedsimAgent first, final CatpedsimAgent second,
+			final SocialForceParameters socialForceParameters) {
+
+		final float strength = socialForceParameters.getInteractionStrength();
+		final float range = socialForceParameters.getInteractionRange();
+		final float lambda = socialForceParameters.getAnisotropicConstant();
+		final float maxDistance = socialForceParameters.getMaxDistanceForSocialForcesInfluence();
+
+		if (strength == 0 || range == 0) {
+			return;
+		}
+
+		PVector firstPosition = first.getSnapshotPositionVector();
+		PVector secondPosition = second.getSnapshotPositionVector();
+
+		float dx = firstPosition.x - secondPosition.x;
+		float dy = firstPosition.y - secondPosition.y;
+		float distanceSquared = dx * dx + dy * dy;
+
+		if (distanceSquared == 0 || distanceSquared > maxDistance * maxDistance) {
+			return;
+		}
+
+		float distance = (float) Math.sqrt(distanceSquared);
+		float magnitude = (float) (strength
+				* Math.exp((first.getRadius() + second.getRadius() - distance) / range)) / distance;
+
+		float firstMagnitude = magnitude;
+		float secondMagnitude = magnitude;
+
+		if (lambda < 1.0) {
+			PVector firstVelocity = first.getSnapshotVelocity();
+			PVector secondVelocity = second.getSnapshotVelocity();
+
+			float firstSpeed = (float) Math
+					.sqrt(firstVelocity.x * firstVelocity.x + firstVelocity.y * firstVelocity.y);
+			float secondSpeed = (float) Math
+					.sqrt(secondVelocity.x * secondVelocity.x + secondVelocity.y * secondVelocity.y);
+
+			if (firstSpeed > 0) {
+				float cosine = -(firstVelocity.x * dx + firstVelocity.y * dy) / (firstSpeed * distance);
+				firstMagnitude *= lambda + (1 - lambda) * ((1 + cosine) / 2);
+			}
+
+			if (secondSpeed > 0) {
+				float cosine = (secondVelocity.x * dx + secondVelocity.y * dy) / (secondSpeed * distance);
+				secondMagnitude *= lambda + (1 - lambda) * ((1 + cosine) / 2);
+			}
+		}
+
+		PVector firstForce = first.getSymmetricPairsForce();
+		PVector secondForce = second.getSymmetricPairsForce();
+
+		firstForce.x += dx * firstMagnitude;
+		firstForce.y += dy * firstMagnitude;
+		secondForce.x -= dx * secondMagnitude;
+		secondForce.y -= dy * secondMagnitude;
+	}
+
+	/**
+	 * Structure of arrays version of the repulsion between agents. Accumulates
+	 * into the acceleration columns of the agent's slot the repulsive forces of
+	 * the agents in a range of consecutive slots. The loop only reads primitive
+	 * columns and allocates nothing.
+	 * 
+	 * @param store
+	 *            the structure of arrays agent store
+	 * @param agentSlot
+	 *            the slot of the current agent
+	 * @param fromSlot
+	 *            first slot of the range, inclusive
+	 * @param toSlot
+	 *            last slot of the range, exclusive
+	 * @param socialForceParameters
+	 *            the social force model acting on the agent to agent repulsion
+	 */
+	public static void accumulateAgentToAgentsRepulsion(final AgentStateStore store, final int agentSlot,
+			final int fromSlot, final int toSlot, final SocialForceParameters socialForceParameters) {
+
+		final float strength = socialForceParameters.getInteractionStrength();
+		final float range = socialForceParameters.getInteractionRange();
+		final float lambda = socialForceParameters.getAnisotropicConstant();
+		final float maxDistance = socialForceParameters.getMaxDistanceForSocialForcesInfluence();
+
+		if (strength == 0 || range == 0) {
+			return;
+		}
+
+		final float[] x = store.getX();
+		final float[] y = store.getY();
+		final float[] radius = store.getRadius();
+
+		final float agentX = x[agentSlot];
+		final float agentY = y[agentSlot];
+		final float agentRadius = radius[agentSlot];
+		final float agentVx = store.getVx()[agentSlot];
+		final float agentVy = store.getVy()[agentSlot];
+		final float agentSpeed = (float) Math.sqrt(agentVx * agentVx + agentVy * agentVy);
+		final boolean anisotropic = agentSpeed > 0 && lambda < 1.0;
+		final float maxDistanceSquared = maxDistance * maxDistance;
+
+		float forceX = 0;
+		float forceY = 0;
+
+		for (int slot = fromSlot; slot < toSlot; slot++) {
+			float dx = agentX - x[slot];
+			float dy = agentY - y[slot];
+			float distanceSquared = dx * dx + dy * dy;
+
+			if (distanceSquared == 0 || distanceSquared > maxDistanceSquared) {
+				continue;
+			}
+
+			float distance = (float) Math.sqrt(distanceSquared);
+			float magnitude = (float) (strength * Math.exp((agentRadius + radius[slot] - distance) / range))
+					/ distance;
+
+			if (anisotropic) {
+				float cosine = -(agentVx * dx + agentVy * dy) / (agentSpeed * distance);
+				magnitude *= lambda + (1 - lambda) * ((1 + cosine) / 2);
+			}
+
+			forceX += dx * magnitude;
+			forceY += dy * magnitude;
+		}
+
+		store.getAx()[agentSlot] += forceX;
+		store.getAy()[agentSlot] += forceY;
+	}
+
 	/**
 	 * Compute agent to agent repulsive force.
 	 * 
@@ -151,7 +392,8 @@ public final class Forces {
 
 		float radius = agent.getRadius() + anotherAgent.getRadius();
 
-		PVector agentsRelativeVector = PVector.sub(agent.getPositionVector(), anotherAgent.getPositionVector());
+		PVector agentsRelativeVector = PVector.sub(agent.getSnapshotPositionVector(),
+				anotherAgent.getSnapshotPositionVector());
 		agentsRelativeVector.normalize();
 		agentsRelativeVector.mult((float) (socialForceParameters.getInteractionStrength()
 				* Math.exp((radius - distanceBetweenAgents) / socialForceParameters.getInteractionRange())));
@@ -173,10 +415,59 @@ public final class Forces {
 	 */
 	public static PVector computeWallsAndObstaclesRepulsion(final CatpedsimAgent agent,
 			final List<CatpedsimObstacle> walls, final List<CatpedsimObstacle> obstacles) {
+		return computeSectionsRepulsion(agent, collectSections(walls), collectSections(obstacles));
+	}
+
+	/**
+	 * Compute the repulsive force between the current agent and the walls and
+	 * obstacles of the geometry. Only the sections closer than the wall
+	 * repulsion range are considered; they are found with the bounding volume
+	 * hierarchies of the geometry.
+	 * 
+	 * @param agent
+	 *            current agent
+	 * @param geometry
+	 *            the geometry
+	 * @return the repulsive force between the current agent and the walls
+	 */
+	public static PVector computeWallsAndObstaclesRepulsion(final CatpedsimAgent agent,
+			final CatpedsimGeometry geometry) {
+		ShapeSectionsHierarchy wallsHierarchy = geometry.getWallsHierarchy();
+		ShapeSectionsHierarchy obstaclesHierarchy = geometry.getObstaclesHierarchy();
+
+		if (wallsHierarchy == null || obstaclesHierarchy == null) {
+			return computeWallsAndObstaclesRepulsion(agent, geometry.getWalls(), geometry.getObstacles());
+		}
+
+		float range = Math.max(SocialForceDefaultValues.WALL_REPULSION_RANGE_FACTOR * agent.getWallRepulsionRadius(),
+				agent.getRadius());
+
+		List<ShapeSection> wallSections = new ArrayList<ShapeSection>();
+		List<ShapeSection> obstacleSections = new ArrayList<ShapeSection>();
+		wallsHierarchy.collectSectionsWithinDistance(agent.getPositionVector(), range, wallSections);
+		obstaclesHierarchy.collectSectionsWithinDistance(agent.getPositionVector(), range, obstacleSections);
+
+		return computeSectionsRepulsion(agent, wallSections, obstacleSections);
+	}
+
+	/**
+	 * Compute the repulsive force between the current agent and the sections
+	 * of the walls and obstacles.
+	 * 
+	 * @param agent
+	 *            current agent
+	 * @param wallSections
+	 *            sections of the walls
+	 * @param obstacleSections
+	 *            sections of the obstacles
+	 * @return the repulsive force between the current agent and the walls
+	 */
+	private static PVector computeSectionsRepulsion(final CatpedsimAgent agent, final List<ShapeSection> wallSections,
+			final List<ShapeSection> obstacleSections) {
 		PVector totalWallRepulsiveForce = new PVector(0, 0, 0);
 
-		List<PVector> wallRepulsionVectorToPoints = findWallsRepulsionVectorToPoints(agent, walls);
-		List<PVector> obstaclesRepulsionVectorToPoints = findObstaclesRepulsionVectorToPoints(agent, obstacles);
+		List<PVector> wallRepulsionVectorToPoints = findRepulsionVectorToPoints(agent, wallSections);
+		List<PVector> obstaclesRepulsionVectorToPoints = findRepulsionVectorToPoints(agent, obstacleSections);
 
 		List<PVector> totalRepulsionVectors = new LinkedList<PVector>(wallRepulsionVectorToPoints);
 		totalRepulsionVectors.addAll(obstaclesRepulsionVectorToPoints);
@@ -190,6 +481,374 @@ public final class Forces {
 		return totalWallRepulsiveForce;
 	}
 
+	/**
+	 * Accumulate the repulsive force between the current agent and the walls
+	 * and obstacles of the geometry into a vector, without allocating. The
+	 * force is the same, to the last bit, as the one computed by
+	 * {@link #computeWallsAndObstaclesRepulsion(CatpedsimAgent, CatpedsimGeometry)}:
+	 * the sections and the repulsion points are visited in the same order and
+	 * the same float operations are applied, on the scratch buffers of the
+	 * calling thread instead of lists of vectors.
+	 * 
+	 * @param agent
+	 *            current agent
+	 * @param geometry
+	 *            the geometry
+	 * @param force
+	 *            receives the repulsive force, added to its current value
+	 */
+	public static void accumulateWallsAndObstaclesRepulsion(final CatpedsimAgent agent,
+			final CatpedsimGeometry geometry, final PVector force) {
+		WallRepulsionBuffers buffers = WALL_REPULSION_BUFFERS.get();
+		ShapeSectionsHierarchy wallsHierarchy = geometry.getWallsHierarchy();
+		ShapeSectionsHierarchy obstaclesHierarchy = geometry.getObstaclesHierarchy();
+
+		if (wallsHierarchy == null || obstaclesHierarchy == null) {
+			buffers.collectSections(geometry.getWalls());
+			accumulateSectionsRepulsion(agent, buffers, force);
+			buffers.collectSections(geometry.getObstacles());
+			accumulateSectionsRepulsion(agent, buffers, force);
+			return;
+		}
+
+		float range = Math.max(SocialForceDefaultValues.WALL_REPULSION_RANGE_FACTOR * agent.getWallRepulsionRadius(),
+				agent.getRadius());
+
+		buffers.collectSections(wallsHierarchy, agent.getPositionVector(), range);
+		accumulateSectionsRepulsion(agent, buffers, force);
+		buffers.collectSections(obstaclesHierarchy, agent.getPositionVector(), range);
+		accumulateSectionsRepulsion(agent, buffers, force);
+	}
+
+	/**
+	 * Accumulate the repulsion of the sections collected in the buffers: first
+	 * the points projected on the sections, then the shared or close end
+	 * points, as {@link #findRepulsionVectorToPoints(CatpedsimAgent, List)}
+	 * orders them.
+	 * 
+	 * @param agent
+	 *            current agent
+	 * @param buffers
+	 *            the scratch buffers holding the sections
+	 * @param force
+	 *            receives the repulsive force, added to its current value
+	 */
+	private static void accumulateSectionsRepulsion(final CatpedsimAgent agent, final WallRepulsionBuffers buffers,
+			final PVector force) {
+		PVector positionVector = agent.getPositionVector();
+
+		buffers.numberOfPossiblePoints = 0;
+		buffers.numberOfUsedPoints = 0;
+
+		for (int indexSection = 0; indexSection < buffers.numberOfSections; indexSection++) {
+			ShapeSection section = buffers.sections[indexSection];
+			PVector start = section.getVectorToStartPoint();
+			PVector end = section.getVectorToEndPoint();
+
+			float abX = end.x - start.x;
+			float abY = end.y - start.y;
+			float abZ = end.z - start.z;
+			float projectionLength = ((positionVector.x - start.x) * abX + (positionVector.y - start.y) * abY
+					+ (positionVector.z - start.z) * abZ) / (float) Math.sqrt(abX * abX + abY * abY + abZ * abZ);
+
+			if (projectionLength < 0) {
+				buffers.addPossiblePoint(start);
+			} else if (projectionLength > section.getLength()) {
+				buffers.addPossiblePoint(end);
+			} else {
+				float factor = projectionLength / section.getLength();
+
+				accumulateWallRepulsionForce(agent, start.x + abX * factor, start.y + abY * factor,
+						start.z + abZ * factor, force);
+				buffers.addUsedPoint(start);
+				buffers.addUsedPoint(end);
+			}
+		}
+
+		for (int indexPossible = 0; indexPossible < buffers.numberOfPossiblePoints; indexPossible++) {
+			PVector possible = buffers.possiblePoints[indexPossible];
+
+			if (buffers.isUsedPoint(possible)) {
+				boolean free = false;
+
+				for (int indexOther = 0; indexOther < buffers.numberOfPossiblePoints; indexOther++) {
+					PVector otherPossible = buffers.possiblePoints[indexOther];
+
+					if (possible != otherPossible && samePoint(otherPossible, possible)) {
+						free = true;
+						break;
+					}
+				}
+
+				if (!free || distance(positionVector, possible) < agent.getRadius()) {
+					accumulateWallRepulsionForce(agent, possible.x, possible.y, possible.z, force);
+				}
+			}
+		}
+
+		buffers.release();
+	}
+
+	/**
+	 * Accumulate the repulsion force from a point of a wall, with the float
+	 * operations of {@link #computeWallRepulsionForce(CatpedsimAgent, PVector)}.
+	 * 
+	 * @param agent
+	 *            current agent
+	 * @param pointX
+	 *            x coordinate of the repulsion point
+	 * @param pointY
+	 *            y coordinate of the repulsion point
+	 * @param pointZ
+	 *            z coordinate of the repulsion point
+	 * @param force
+	 *            receives the repulsion force, added to its current value
+	 */
+	private static void accumulateWallRepulsionForce(final CatpedsimAgent agent, final float pointX,
+			final float pointY, final float pointZ, final PVector force) {
+		PVector positionVector = agent.getPositionVector();
+
+		float repulsionX = positionVector.x - pointX;
+		float repulsionY = positionVector.y - pointY;
+		float repulsionZ = positionVector.z - pointZ;
+		float repulsionLength = (float) Math
+				.sqrt(repulsionX * repulsionX + repulsionY * repulsionY + repulsionZ * repulsionZ);
+
+		if (repulsionLength != 0 && repulsionLength != 1) {
+			repulsionX /= repulsionLength;
+			repulsionY /= repulsionLength;
+			repulsionZ /= repulsionLength;
+		}
+
+		float agentWallRepulsionRadius = agent.getWallRepulsionRadius();
+		float repulsionStrength = (float) ((1 / agentWallRepulsionRadius) * agent.getWallRepulsionMagnitude()
+				* Math.exp(-repulsionLength / agentWallRepulsionRadius));
+
+		force.x += repulsionX * repulsionStrength;
+		force.y += repulsionY * repulsionStrength;
+		force.z += repulsionZ * repulsionStrength;
+	}
+
+	/**
+	 * Check if two points have the same coordinates, as PVector.equals.
+	 * 
+	 * @param point
+	 *            first point
+	 * @param otherPoint
+	 *            second point
+	 * @return true if the coordinates are equal
+	 */
+	private static boolean samePoint(final PVector point, final PVector otherPoint) {
+		return point.x == otherPoint.x && point.y == otherPoint.y && point.z == otherPoint.z;
+	}
+
+	/**
+	 * Distance between two points, as PVector.sub(a, b).mag().
+	 * 
+	 * @param point
+	 *            first point
+	 * @param otherPoint
+	 *            second point
+	 * @return the distance
+	 */
+	private static float distance(final PVector point, final PVector otherPoint) {
+		float dx = point.x - otherPoint.x;
+		float dy = point.y - otherPoint.y;
+		float dz = point.z - otherPoint.z;
+
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * Scratch buffers of the wall and obstacle repulsion. Every thread
+	 * computing forces has its own buffers, which grow to the largest number
+	 * of sections seen and are reused afterwards.
+	 */
+	private static final class WallRepulsionBuffers implements BoundingVolumeHierarchy.ItemVisitor {
+		/** Initial capacity of the buffers. */
+		private static final int INITIAL_CAPACITY = 32;
+
+		/** The sections of the current query, in order. */
+		private ShapeSection[] sections = new ShapeSection[INITIAL_CAPACITY];
+
+		/** Number of sections. */
+		private int numberOfSections = 0;
+
+		/** Indexes of the sections found in a hierarchy. */
+		private int[] sectionIndexes = new int[INITIAL_CAPACITY];
+
+		/** Number of section indexes. */
+		private int numberOfSectionIndexes = 0;
+
+		/** End points which may repulse the agent. */
+		private PVector[] possiblePoints = new PVector[INITIAL_CAPACITY];
+
+		/** Number of possible points. */
+		private int numberOfPossiblePoints = 0;
+
+		/** End points of the sections the agent is projected on. */
+		private PVector[] usedPoints = new PVector[INITIAL_CAPACITY];
+
+		/** Number of used points. */
+		private int numberOfUsedPoints = 0;
+
+		/** The hierarchy of the current query. */
+		private ShapeSectionsHierarchy queryHierarchy = null;
+
+		/** The point of the current query. */
+		private PVector queryPoint = null;
+
+		/** The distance of the current query. */
+		private float queryDistance = 0;
+
+		/**
+		 * Collect the sections of all the shapes, in order.
+		 * 
+		 * @param shapes
+		 *            walls or obstacles
+		 */
+		void collectSections(final List<CatpedsimObstacle> shapes) {
+			numberOfSections = 0;
+
+			for (int indexShape = 0; indexShape < shapes.size(); indexShape++) {
+				for (ShapeSection section : shapes.get(indexShape).getObstacleSections()) {
+					addSection(section);
+				}
+			}
+		}
+
+		/**
+		 * Collect the sections of a hierarchy closer to a point than a
+		 * distance, in the order of the shapes, as
+		 * ShapeSectionsHierarchy.collectSectionsWithinDistance.
+		 * 
+		 * @param hierarchy
+		 *            the hierarchy
+		 * @param point
+		 *            the point
+		 * @param distance
+		 *            maximum distance from the point
+		 */
+		void collectSections(final ShapeSectionsHierarchy hierarchy, final PVector point, final float distance) {
+			numberOfSections = 0;
+			numberOfSectionIndexes = 0;
+			queryHierarchy = hierarchy;
+			queryPoint = point;
+			queryDistance = distance;
+
+			hierarchy.visitSectionsOverlapping(point.x - distance, point.y - distance, point.x + distance,
+					point.y + distance, this);
+
+			Arrays.sort(sectionIndexes, 0, numberOfSectionIndexes);
+
+			for (int indexSection = 0; indexSection < numberOfSectionIndexes; indexSection++) {
+				addSection(hierarchy.getSection(sectionIndexes[indexSection]));
+			}
+
+			queryHierarchy = null;
+			queryPoint = null;
+		}
+
+		@Override
+		public boolean visit(final int item) {
+			ShapeSection section = queryHierarchy.getSection(item);
+
+			if (Trigonometry.distanceFromPointToSegment(queryPoint, section.getVectorToStartPoint(),
+					section.getVectorToEndPoint()) <= queryDistance) {
+				if (numberOfSectionIndexes == sectionIndexes.length) {
+					sectionIndexes = Arrays.copyOf(sectionIndexes, 2 * sectionIndexes.length);
+				}
+				sectionIndexes[numberOfSectionIndexes++] = item;
+			}
+			return false;
+		}
+
+		/**
+		 * Append a section.
+		 * 
+		 * @param section
+		 *            the section
+		 */
+		private void addSection(final ShapeSection section) {
+			if (numberOfSections == sections.length) {
+				sections = Arrays.copyOf(sections, 2 * sections.length);
+			}
+			sections[numberOfSections++] = section;
+		}
+
+		/**
+		 * Append a possible point.
+		 * 
+		 * @param point
+		 *            the point
+		 */
+		void addPossiblePoint(final PVector point) {
+			if (numberOfPossiblePoints == possiblePoints.length) {
+				possiblePoints = Arrays.copyOf(possiblePoints, 2 * possiblePoints.length);
+			}
+			possiblePoints[numberOfPossiblePoints++] = point;
+		}
+
+		/**
+		 * Append a used point.
+		 * 
+		 * @param point
+		 *            the point
+		 */
+		void addUsedPoint(final PVector point) {
+			if (numberOfUsedPoints == usedPoints.length) {
+				usedPoints = Arrays.copyOf(usedPoints, 2 * usedPoints.length);
+			}
+			usedPoints[numberOfUsedPoints++] = point;
+		}
+
+		/**
+		 * Check if a point has the coordinates of a used point.
+		 * 
+		 * @param point
+		 *            the point
+		 * @return true if the point is used
+		 */
+		boolean isUsedPoint(final PVector point) {
+			for (int indexUsed = 0; indexUsed < numberOfUsedPoints; indexUsed++) {
+				if (samePoint(point, usedPoints[indexUsed])) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Drop the references to the sections and the points, so the buffers
+		 * do not keep the geometry alive.
+		 */
+		void release() {
+			Arrays.fill(sections, 0, numberOfSections, null);
+			Arrays.fill(possiblePoints, 0, numberOfPossiblePoints, null);
+			Arrays.fill(usedPoints, 0, numberOfUsedPoints, null);
+			numberOfSections = 0;
+			numberOfPossiblePoints = 0;
+			numberOfUsedPoints = 0;
+		}
+	}
+
+	/**
+	 * Collect the sections of all the shapes, in order.
+	 * 
+	 * @param shapes
+	 *            walls or obstacles
+	 * @return the sections
+	 */
+	private static List<ShapeSection> collectSections(final List<CatpedsimObstacle> shapes) {
+		List<ShapeSection> sections = new ArrayList<ShapeSection>();
+
+		for (int indexShape = 0; indexShape < shapes.size(); indexShape++) {
+			sections.addAll(Arrays.asList(shapes.get(indexShape).getObstacleSections()));
+		}
+
+		return sections;
+	}
+
 	/**
 	 * Compute the repulsion force from the walls. The repulsive force from the
 	 * walls is the force that measures the agent's desire to avoid the wall,
@@ -219,8 +878,8 @@ public final class Forces {
 	}
 
 	/**
-	 * Compute a set of vectors to points from which repulsion to walls should
-	 * be calculated.
+	 * Compute a set of vectors to points from which repulsion to walls or
+	 * obstacles should be calculated.
 	 * 
 	 * For each wall, calculate the projection of the vector pointing from the
 	 * walls starting point to the agent, unto the vector pointing from the
@@ -244,110 +903,37 @@ public final class Forces {
 	 * 
 	 * @param agent
 	 *            current agent
-	 * @param walls
-	 *            list of walls
-	 * @return vectors to points from which repulsion to walls and obstacles
-	 *         should be calculated
-	 */
-	private static List<PVector> findWallsRepulsionVectorToPoints(final CatpedsimAgent agent,
-			final List<CatpedsimObstacle> walls) {
-
-		List<PVector> repulsionVectorToPoints = new LinkedList<PVector>();
-		List<PVector> possibleVectorToPoints = new LinkedList<PVector>();
-		List<PVector> usedVectorToPoints = new LinkedList<PVector>();
-
-		for (int indexWall = 0; indexWall < walls.size(); indexWall++) {
-			CatpedsimObstacle wall = walls.get(indexWall);
-
-			for (int indexSection = 0; indexSection < wall.getObstacleSections().length; indexSection++) {
-				ShapeSection obstacleSection = wall.getObstacleSections()[indexSection];
-				PVector positionVector = agent.getPositionVector();
-
-				float projectionLength = Trigonometry.vectorProjectionLength(obstacleSection.getVectorToStartPoint(),
-						obstacleSection.getVectorToEndPoint(), positionVector);
-
-				if (projectionLength < 0) {
-					possibleVectorToPoints.add(obstacleSection.getVectorToStartPoint());
-				} else if (projectionLength > obstacleSection.getLength()) {
-					possibleVectorToPoints.add(obstacleSection.getVectorToEndPoint());
-				} else {
-					repulsionVectorToPoints.add(PVector.add(obstacleSection.getVectorToStartPoint(),
-							PVector.mult(
-									PVector.sub(obstacleSection.getVectorToEndPoint(),
-											obstacleSection.getVectorToStartPoint()),
-									projectionLength / obstacleSection.getLength())));
-					usedVectorToPoints.add(obstacleSection.getVectorToStartPoint());
-					usedVectorToPoints.add(obstacleSection.getVectorToEndPoint());
-				}
-			}
-		}
-
-		for (PVector possible : possibleVectorToPoints) {
-
-			if (usedVectorToPoints.contains(possible)) {
-				boolean free = false;
-
-				for (PVector otherPossible : possibleVectorToPoints) {
-					if (possible != otherPossible && otherPossible.equals(possible)) {
-						free = true;
-						break;
-					}
-				}
-
-				if (!free || PVector.sub(agent.getPositionVector(), possible).mag() < agent.getRadius()) {
-					repulsionVectorToPoints.add(possible);
-					usedVectorToPoints.add(possible);
-				}
-			}
-		}
-
-		possibleVectorToPoints.clear();
-		usedVectorToPoints.clear();
-
-		return repulsionVectorToPoints;
-	}
-
-	/**
-	 * Compute a set of vectors to points from which repulsion to obstacles
-	 * should be calculated.
-	 * 
-	 * @param agent
-	 *            current agent
-	 * @param obstacles
-	 *            list of obstacles
+	 * @param sections
+	 *            sections of the walls or of the obstacles
 	 * @return vectors to points from which repulsion to walls and obstacles
 	 *         should be calculated
 	 */
-	private static List<PVector> findObstaclesRepulsionVectorToPoints(final CatpedsimAgent agent,
-			final List<CatpedsimObstacle> obstacles) {
+	private static List<PVector> findRepulsionVectorToPoints(final CatpedsimAgent agent,
+			final List<ShapeSection> sections) {
 
 		List<PVector> repulsionVectorToPoints = new LinkedList<PVector>();
 		List<PVector> possibleVectorToPoints = new LinkedList<PVector>();
 		List<PVector> usedVectorToPoints = new LinkedList<PVector>();
 
-		for (int indexWall = 0; indexWall < obstacles.size(); indexWall++) {
-			CatpedsimObstacle obstacle = obstacles.get(indexWall);
-
-			for (int indexSection = 0; indexSection < obstacle.getObstacleSections().length; indexSection++) {
-				ShapeSection obstacleSection = obstacle.getObstacleSections()[indexSection];
-				PVector positionVector = agent.getPositionVector();
-
-				float projectionLength = Trigonometry.vectorProjectionLength(obstacleSection.getVectorToStartPoint(),
-						obstacleSection.getVectorToEndPoint(), positionVector);
-
-				if (projectionLength < 0) {
-					possibleVectorToPoints.add(obstacleSection.getVectorToStartPoint());
-				} else if (projectionLength > obstacleSection.getLength()) {
-					possibleVectorToPoints.add(obstacleSection.getVectorToEndPoint());
-				} else {
-					repulsionVectorToPoints.add(PVector.add(obstacleSection.getVectorToStartPoint(),
-							PVector.mult(
-									PVector.sub(obstacleSection.getVectorToEndPoint(),
-											obstacleSection.getVectorToStartPoint()),
-									projectionLength / obstacleSection.getLength())));
-					usedVectorToPoints.add(obstacleSection.getVectorToStartPoint());
-					usedVectorToPoints.add(obstacleSection.getVectorToEndPoint());
-				}
+		for (int indexSection = 0; indexSection < sections.size(); indexSection++) {
+			ShapeSection obstacleSection = sections.get(indexSection);
+			PVector positionVector = agent.getPositionVector();
+
+			float projectionLength = Trigonometry.vectorProjectionLength(obstacleSection.getVectorToStartPoint(),
+					obstacleSection.getVectorToEndPoint(), positionVector);
+
+			if (projectionLength < 0) {
+				possibleVectorToPoints.add(obstacleSection.getVectorToStartPoint());
+			} else if (projectionLength > obstacleSection.getLength()) {
+				possibleVectorToPoints.add(obstacleSection.getVectorToEndPoint());
+			} else {
+				repulsionVectorToPoints.add(PVector.add(obstacleSection.getVectorToStartPoint(),
+						PVector.mult(
+								PVector.sub(obstacleSection.getVectorToEndPoint(),
+										obstacleSection.getVectorToStartPoint()),
+								projectionLength / obstacleSection.getLength())));
+				usedVectorToPoints.add(obstacleSection.getVectorToStartPoint());
+				usedVectorToPoints.add(obstacleSection.getVectorToEndPoint());
 			}
 		}
 
@@ -104,6 +104,13 @@ public final class SocialForceDefaultValues {
 	 */
 	public static final float DEFAULT_MAX_RANGE_SFM = 20;
 
+	/**
+	 * The walls and obstacles further than this number of wall repulsion radii
+	 * are ignored by the wall repulsion, their contribution being smaller than
+	 * exp(-20).
+	 */
+	public static final float WALL_REPULSION_RANGE_FACTOR = 20;
+
 	/**
 	 * Constructor.
 	 */
@@ -174,12 +174,47 @@ public final class Utils {
 			return 0;
 		}
 
-		Random internalRandom = new Random();
+		return random(new Random(), high);
+	}
+
+	/**
+	 * Float range random drawn from the given generator.
+	 * 
+	 * @param generator
+	 *            the random generator, owned by the caller
+	 * @param low
+	 *            low float range
+	 * @param high
+	 *            high float range
+	 * @return the random value in the provided interval
+	 */
+	public static float random(final Random generator, final float low, final float high) {
+		if (low >= high) {
+			return low;
+		}
+		return random(generator, high - low) + low;
+	}
+
+	/**
+	 * Random float (0,high) drawn from the given generator.
+	 * 
+	 * @param generator
+	 *            the random generator, owned by the caller
+	 * @param high
+	 *            the maximum boundary
+	 * @return random float between 0, high
+	 */
+	public static float random(final Random generator, final float high) {
+		// avoid an infinite loop when 0 or NaN are passed in
+		if (high == 0 || high != high) {
+			return 0;
+		}
+
 		final float floatingPointAccuracy = 0.0000001f;
 
 		float value = 0;
 		do {
-			value = internalRandom.nextFloat() * high;
+			value = generator.nextFloat() * high;
 		} while (Math.abs(value - high) < floatingPointAccuracy);
 		return value;
 	}
@@ -21,6 +21,7 @@ import processing.core.PVector;
 import uk.org.catapult.ts.cav.configuration.microsimulator.pedestrian.CatpedsimConfiguration;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentBehaviour;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentState;
+import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AgentStateSnapshot;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.AutonomousVehicleConstraints;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.BicycleConstraints;
 import uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.agents.CatpedsimAgent;
@@ -136,6 +137,12 @@ public class CatpedsimApplet extends PApplet {
 	 */
 	private boolean toggleDetailedInfo = false;
 
+	/**
+	 * Holder of the published state of the agent being drawn, filled again for
+	 * every agent.
+	 */
+	private final AgentStateSnapshot publishedState = new AgentStateSnapshot();
+
 	/**
 	 * End simulation.
 	 */
@@ -527,7 +534,8 @@ public class CatpedsimApplet extends PApplet {
 		textSize(VisualConstants.TEXT_SIZE_10 / zoomManager.getScale());
 		noStroke();
 		rectMode(CORNER);
-		PVector screen = convertCoordinatesToScreenPositions(agent.getPositionVector().x, agent.getPositionVector().y);
+		agent.readPublishedState(publishedState);
+		PVector screen = convertCoordinatesToScreenPositions(publishedState.getX(), publishedState.getY());
 		String agentIndex = CatpedsimAgent.extractSimpleName(agent.getName()).replaceAll("[^\\d]", "");
 		String informationToDisplay = "";
 
@@ -624,12 +632,12 @@ public class CatpedsimApplet extends PApplet {
 		fill(0);
 
 		try {
-			PVector screenPosition = convertCoordinatesToScreenPositions(catpedsimAgent.getPositionVector().x,
-					catpedsimAgent.getPositionVector().y);
+			catpedsimAgent.readPublishedState(publishedState);
+			PVector screenPosition = convertCoordinatesToScreenPositions(publishedState.getX(), publishedState.getY());
 			float x = screenPosition.x;
 			float y = screenPosition.y;
 
-			pedestrianAsEllipse(catpedsimAgent, x, y);
+			pedestrianAsEllipse(catpedsimAgent, publishedState, x, y);
 		} catch (Exception ex) {
 			LOGGER.warn("Error representing the pedestrians.", ex);
 		}
@@ -648,13 +656,12 @@ public class CatpedsimApplet extends PApplet {
 		strokeWeight(VisualConstants.STROKE_WEIGHT_AGENTS / zoomManager.getScale());
 
 		try {
-			PVector screenPosition = convertCoordinatesToScreenPositions(catpedsimAgent.getPositionVector().x,
-					catpedsimAgent.getPositionVector().y);
+			catpedsimAgent.readPublishedState(publishedState);
+			PVector screenPosition = convertCoordinatesToScreenPositions(publishedState.getX(), publishedState.getY());
 			float x = screenPosition.x;
 			float y = screenPosition.y;
 
-			PVector heading = catpedsimAgent.getVelocity().copy();
-			heading.set(heading.x, -heading.y, heading.z);
+			PVector heading = new PVector(publishedState.getVelocityX(), -publishedState.getVelocityY(), 0);
 
 			float bicycleLength = convertYDimensionFromMetersToPixels(BicycleConstraints.LENGTH);
 
@@ -688,13 +695,12 @@ public class CatpedsimApplet extends PApplet {
 		strokeWeight(VisualConstants.STROKE_WEIGHT_AGENTS / zoomManager.getScale());
 
 		try {
-			PVector screenPosition = convertCoordinatesToScreenPositions(newCatpedsimAgent.getPositionVector().x,
-					newCatpedsimAgent.getPositionVector().y);
+			newCatpedsimAgent.readPublishedState(publishedState);
+			PVector screenPosition = convertCoordinatesToScreenPositions(publishedState.getX(), publishedState.getY());
 			float x = screenPosition.x;
 			float y = screenPosition.y;
 
-			PVector heading = newCatpedsimAgent.getVelocity().copy();
-			heading.set(heading.x, -heading.y, heading.z);
+			PVector heading = new PVector(publishedState.getVelocityX(), -publishedState.getVelocityY(), 0);
 
 			float theta = heading.heading() + PI / 2;
 			float rectWidth = convertXDimensionFromMetersToPixels(AutonomousVehicleConstraints.WIDTH);
@@ -730,13 +736,12 @@ public class CatpedsimApplet extends PApplet {
 		strokeWeight(VisualConstants.STROKE_WEIGHT_AGENTS / zoomManager.getScale());
 
 		try {
-			PVector screenPosition = convertCoordinatesToScreenPositions(catpedsimAgent.getPositionVector().x,
-					catpedsimAgent.getPositionVector().y);
+			catpedsimAgent.readPublishedState(publishedState);
+			PVector screenPosition = convertCoordinatesToScreenPositions(publishedState.getX(), publishedState.getY());
 			float x = screenPosition.x;
 			float y = screenPosition.y;
 
-			PVector heading = catpedsimAgent.getVelocity().copy();
-			heading.set(heading.x, -heading.y, heading.z);
+			PVector heading = new PVector(publishedState.getVelocityX(), -publishedState.getVelocityY(), 0);
 
 			float theta = heading.heading() + PI / 2;
 			float rectWidth = convertXDimensionFromMetersToPixels(AutonomousVehicleConstraints.WIDTH);
@@ -829,14 +834,16 @@ public class CatpedsimApplet extends PApplet {
 	 * 
 	 * @param catpedsimAgent
 	 *            agent
+	 * @param state
+	 *            the state of the agent published at the end of the last tick
 	 * @param x
 	 *            x coordinate
 	 * @param y
 	 *            y coordinate
 	 */
-	private void pedestrianAsEllipse(final CatpedsimAgent catpedsimAgent, final float x, final float y) {
-		PVector heading = catpedsimAgent.getVelocity().copy();
-		heading.set(heading.x, -heading.y, heading.z);
+	private void pedestrianAsEllipse(final CatpedsimAgent catpedsimAgent, final AgentStateSnapshot state,
+			final float x, final float y) {
+		PVector heading = new PVector(state.getVelocityX(), -state.getVelocityY(), 0);
 
 		float theta = heading.heading() + PI / 2;
 		float radius = convertXDimensionFromMetersToPixels(PedestrianConstraints.SHOULDER_WIDTH);
@@ -889,8 +896,9 @@ public class CatpedsimApplet extends PApplet {
 				List<CatpedsimAgent> listOfAgents = entry.getValue();
 
 				for (CatpedsimAgent agent : listOfAgents) {
-					PVector agentScreenVector = convertCoordinatesToScreenPositions(agent.getPositionVector().x,
-							agent.getPositionVector().y);
+					agent.readPublishedState(publishedState);
+					PVector agentScreenVector = convertCoordinatesToScreenPositions(publishedState.getX(),
+							publishedState.getY());
 
 					if (agent.isTransported()) {
 						continue;
@@ -0,0 +1,256 @@
+package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An incremental Delaunay triangulation over the quad-edge structure. The
+ * sites are inserted one by one inside a bounding triangle, located by
+ * walking the triangulation, and the Delaunay property is restored by
+ * swapping the edges around the new site.
+ *
+ * Reference: http://www.math.colostate.edu/
+ */
+public class DelaunayTriangulation {
+
+	/** Size of the bounding triangle relative to the bounding box. */
+	private static final double BOUNDING_TRIANGLE_SCALE = 10;
+
+	/** The vertices of the bounding triangle. */
+	private final Vertex[] boundingVertices;
+
+	/** The edge the point location walks start from. */
+	private Edge startingEdge;
+
+	/** The number of sites inserted. */
+	private int numberOfSites = 0;
+
+	/**
+	 * Constructs an empty triangulation, able to hold the sites inside a
+	 * bounding box.
+	 *
+	 * @param minimumX
+	 *            the minimum X coordinate of the sites
+	 * @param minimumY
+	 *            the minimum Y coordinate of the sites
+	 * @param maximumX
+	 *            the maximum X coordinate of the sites
+	 * @param maximumY
+	 *            the maximum Y coordinate of the sites
+	 */
+	public DelaunayTriangulation(final double minimumX, final double minimumY, final double maximumX,
+			final double maximumY) {
+		double centreX = (minimumX + maximumX) / 2;
+		double centreY = (minimumY + maximumY) / 2;
+		double size = Math.max(Math.max(maximumX - minimumX, maximumY - minimumY), 1) * BOUNDING_TRIANGLE_SCALE;
+
+		boundingVertices = new Vertex[] { new Vertex(centreX - size, centreY - size, true),
+				new Vertex(centreX + size, centreY - size, true), new Vertex(centreX, centreY + size, true) };
+
+		Edge edgeA = new QuadEdge().getEdge();
+		edgeA.setEndPoints(boundingVertices[0], boundingVertices[1]);
+		Edge edgeB = new QuadEdge().getEdge();
+		Edge.splice(edgeA.symmetricEdge(), edgeB);
+		edgeB.setEndPoints(boundingVertices[1], boundingVertices[2]);
+		Edge edgeC = new QuadEdge().getEdge();
+		Edge.splice(edgeB.symmetricEdge(), edgeC);
+		edgeC.setEndPoints(boundingVertices[2], boundingVertices[0]);
+		Edge.splice(edgeC.symmetricEdge(), edgeA);
+
+		startingEdge = edgeA;
+	}
+
+	/**
+	 * Inserts a site. A site at the position of an existing vertex is not
+	 * inserted again.
+	 *
+	 * @param site
+	 *            the site, inside the bounding box
+	 * @return the vertex of the triangulation at the position of the site
+	 */
+	public final Vertex insertSite(final Vertex site) {
+		Edge edge = locate(site);
+
+		if (samePosition(site, edge.getOriginVertex())) {
+			return edge.getOriginVertex();
+		} else if (samePosition(site, edge.dataDestinationVertex())) {
+			return edge.dataDestinationVertex();
+		} else if (site.isOnEdge(edge)) {
+			edge = edge.previousEdgeFromOrigin();
+			edge.nextEdgeFromOrigin().delete();
+		}
+
+		Edge base = new QuadEdge().getEdge();
+		base.setEndPoints(edge.getOriginVertex(), site);
+		Edge.splice(base, edge);
+		startingEdge = base;
+
+		do {
+			base = edge.connect(base.symmetricEdge());
+			edge = base.previousEdgeFromOrigin();
+		} while (edge.leftNextEdge() != startingEdge);
+
+		while (true) {
+			Edge previous = edge.previousEdgeFromOrigin();
+
+			if (previous.dataDestinationVertex().isRightOf(edge) && site.isInCircle(edge.getOriginVertex(),
+					previous.dataDestinationVertex(), edge.dataDestinationVertex())) {
+				edge.swap();
+				edge = edge.previousEdgeFromOrigin();
+			} else if (edge.nextEdgeFromOrigin() == startingEdge) {
+				break;
+			} else {
+				edge = edge.nextEdgeFromOrigin().leftPreviousEdge();
+			}
+		}
+
+		numberOfSites++;
+		return site;
+	}
+
+	/**
+	 * Finds an edge of the triangle holding a point: the point is on the edge
+	 * or on its left.
+	 *
+	 * @param point
+	 *            the point
+	 * @return the edge
+	 */
+	private Edge locate(final Vertex point) {
+		Edge edge = startingEdge;
+
+		while (true) {
+			if (samePosition(point, edge.getOriginVertex()) || samePosition(point, edge.dataDestinationVertex())) {
+				return edge;
+			} else if (point.isRightOf(edge)) {
+				edge = edge.symmetricEdge();
+			} else if (!point.isRightOf(edge.nextEdgeFromOrigin())) {
+				edge = edge.nextEdgeFromOrigin();
+			} else if (!point.isRightOf(edge.previousEdgeFromDestination())) {
+				edge = edge.previousEdgeFromDestination();
+			} else {
+				return edge;
+			}
+		}
+	}
+
+	/**
+	 * Returns all the edges, one of the two directions of every edge.
+	 *
+	 * @return the edges
+	 */
+	public final List<Edge> getEdges() {
+		List<Edge> directedEdges = getDirectedEdges();
+		List<Edge> edges = new ArrayList<Edge>(directedEdges.size() / 2);
+
+		for (int indexEdge = 0; indexEdge < directedEdges.size(); indexEdge += 2) {
+			edges.add(directedEdges.get(indexEdge));
+		}
+
+		return edges;
+	}
+
+	/**
+	 * Returns one edge of every triangle which does not touch the bounding
+	 * triangle. The triangle is on the left of the edge, and its other edges
+	 * follow with {@link Edge#leftNextEdge()}.
+	 *
+	 * @return the edges of the triangles
+	 */
+	public final List<Edge> getTriangles() {
+		List<Edge> triangles = new ArrayList<Edge>();
+		Set<Edge> visited = Collections.newSetFromMap(new IdentityHashMap<Edge, Boolean>());
+
+		for (Edge edge : getDirectedEdges()) {
+			if (visited.contains(edge)) {
+				continue;
+			}
+
+			Edge second = edge.leftNextEdge();
+			Edge third = second.leftNextEdge();
+			visited.add(edge);
+			visited.add(second);
+			visited.add(third);
+
+			if (third.leftNextEdge() == edge && !isBoundingVertex(edge.getOriginVertex())
+					&& !isBoundingVertex(second.getOriginVertex()) && !isBoundingVertex(third.getOriginVertex())
+					&& Vertex.isCounterClockwise(edge.getOriginVertex(), second.getOriginVertex(),
+							third.getOriginVertex())) {
+				triangles.add(edge);
+			}
+		}
+
+		return triangles;
+	}
+
+	/**
+	 * Returns all the directed edges, the two directions of every edge
+	 * following each other.
+	 *
+	 * @return the directed edges
+	 */
+	private List<Edge> getDirectedEdges() {
+		List<Edge> edges = new ArrayList<Edge>();
+		Set<Edge> visited = Collections.newSetFromMap(new IdentityHashMap<Edge, Boolean>());
+		Deque<Edge> toVisit = new ArrayDeque<Edge>();
+
+		toVisit.add(startingEdge);
+
+		while (!toVisit.isEmpty()) {
+			Edge edge = toVisit.poll();
+
+			if (visited.contains(edge)) {
+				continue;
+			}
+
+			visited.add(edge);
+			visited.add(edge.symmetricEdge());
+			edges.add(edge);
+			edges.add(edge.symmetricEdge());
+
+			toVisit.add(edge.nextEdgeFromOrigin());
+			toVisit.add(edge.symmetricEdge().nextEdgeFromOrigin());
+		}
+
+		return edges;
+	}
+
+	/**
+	 * Checks if a vertex belongs to the bounding triangle.
+	 *
+	 * @param vertex
+	 *            the vertex
+	 * @return true for a vertex of the bounding triangle
+	 */
+	public final boolean isBoundingVertex(final Vertex vertex) {
+		return vertex == boundingVertices[0] || vertex == boundingVertices[1] || vertex == boundingVertices[2];
+	}
+
+	/**
+	 * Returns the number of sites inserted.
+	 *
+	 * @return the number of sites
+	 */
+	public final int getNumberOfSites() {
+		return numberOfSites;
+	}
+
+	/**
+	 * Checks if two vertices are at the same position.
+	 *
+	 * @param vertex1
+	 *            the first vertex
+	 * @param vertex2
+	 *            the second vertex
+	 * @return true if the coordinates are equal
+	 */
+	private static boolean samePosition(final Vertex vertex1, final Vertex vertex2) {
+		return vertex1.getxCoordinate() == vertex2.getxCoordinate()
+				&& vertex1.getyCoordinate() == vertex2.getyCoordinate();
+	}
+}
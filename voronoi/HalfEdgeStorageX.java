@@ -11,13 +11,13 @@ public class HalfEdgeStorageX {
 	private static final int RIGHTEDGE = 1;
 
 	/** The minimum X coordinate of any site. */
-	private final double minimumX;
+	private double minimumX;
 
 	/** The width of the bounding box. */
-	private final double width;
+	private double width;
 
 	/** The length of the hash table. */
-	private final int hashsize;
+	private int hashsize;
 
 	/** The hash table. */
 	private Halfedge[] halfEdgesHashTable;
@@ -39,18 +39,40 @@ public class HalfEdgeStorageX {
 	 *            the total X width spanned by all sites
 	 */
 	public HalfEdgeStorageX(final int sqrtNsites, final double minimumXOfAnySite, final double totalXWidthOfAllSites) {
+		this.halfEdgesHashTable = new Halfedge[0];
+		this.leftEnd = new Halfedge(null, 0);
+		this.rightEnd = new Halfedge(null, 0);
+
+		reset(sqrtNsites, minimumXOfAnySite, totalXWidthOfAllSites);
+	}
+
+	/**
+	 * Empties the storage for another sweep. The hash table is only
+	 * reallocated when it is too small.
+	 *
+	 * @param sqrtNsites
+	 *            the square root of (the number of sites + 4)
+	 * @param minimumXOfAnySite
+	 *            the minimum X value of any site
+	 * @param totalXWidthOfAllSites
+	 *            the total X width spanned by all sites
+	 */
+	public final void reset(final int sqrtNsites, final double minimumXOfAnySite, final double totalXWidthOfAllSites) {
 		this.minimumX = minimumXOfAnySite;
 		this.width = totalXWidthOfAllSites;
 
 		this.hashsize = 2 * sqrtNsites;
-		this.halfEdgesHashTable = new Halfedge[this.hashsize];
+
+		if (this.halfEdgesHashTable.length < this.hashsize) {
+			this.halfEdgesHashTable = new Halfedge[this.hashsize];
+		}
 
 		for (int i = 0; i < this.hashsize; i += 1) {
 			this.halfEdgesHashTable[i] = null;
 		}
 
-		this.leftEnd = new Halfedge(null, 0);
-		this.rightEnd = new Halfedge(null, 0);
+		this.leftEnd.reset(null, 0);
+		this.rightEnd.reset(null, 0);
 
 		this.leftEnd.setHalfEdgeLeft(null);
 		this.leftEnd.setHalfEdgeRight(rightEnd);
@@ -7,10 +7,10 @@ package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi;
  */
 public class HalfEdgeStorageY {
 	/** The minimum Y coordinate of any site. */
-	private final double minimumYSiteCoordinate;
+	private double minimumYSiteCoordinate;
 
 	/** The height of the bounding box. */
-	private final double boundingBoxHeight;
+	private double boundingBoxHeight;
 
 	/** The number of half-edges in the hash table. */
 	private int numberOfHalfEdges;
@@ -19,10 +19,10 @@ public class HalfEdgeStorageY {
 	private int minimumHashBucket;
 
 	/** Hash size. */
-	private final int hashsize;
+	private int hashsize;
 
 	/** Hash table to store half-edges. */
-	private final Halfedge[] edgesHashTable;
+	private Halfedge[] edgesHashTable;
 
 	/**
 	 * Constructor.
@@ -36,6 +36,24 @@ public class HalfEdgeStorageY {
 	 */
 	public HalfEdgeStorageY(final int sqrtNumberOfSites, final double minimumYOfAnySite,
 			final double totalYHeightOfAllSites) {
+		this.edgesHashTable = new Halfedge[0];
+
+		reset(sqrtNumberOfSites, minimumYOfAnySite, totalYHeightOfAllSites);
+	}
+
+	/**
+	 * Empties the storage for another sweep. The hash table and the heads of
+	 * its buckets are reused when the table is large enough.
+	 *
+	 * @param sqrtNumberOfSites
+	 *            the square root of (the number of sites + 4)
+	 * @param minimumYOfAnySite
+	 *            the minimum Y value of any site
+	 * @param totalYHeightOfAllSites
+	 *            the total Y height spanned by all sites
+	 */
+	public final void reset(final int sqrtNumberOfSites, final double minimumYOfAnySite,
+			final double totalYHeightOfAllSites) {
 		this.minimumYSiteCoordinate = minimumYOfAnySite;
 		this.boundingBoxHeight = totalYHeightOfAllSites;
 
@@ -43,10 +61,17 @@ public class HalfEdgeStorageY {
 		this.minimumHashBucket = 0;
 		final int sqrtFactor = 4;
 		this.hashsize = sqrtFactor * sqrtNumberOfSites;
-		this.edgesHashTable = new Halfedge[hashsize];
+
+		if (edgesHashTable.length < hashsize) {
+			edgesHashTable = new Halfedge[hashsize];
+		}
 
 		for (int i = 0; i < hashsize; i += 1) {
-			edgesHashTable[i] = new Halfedge();
+			if (edgesHashTable[i] == null) {
+				edgesHashTable[i] = new Halfedge();
+			} else {
+				edgesHashTable[i].setNextHalfEdge(null);
+			}
 		}
 	}
 
@@ -155,17 +180,18 @@ public class HalfEdgeStorageY {
 	}
 
 	/**
-	 * Gets the vertex in the hashtable with the minimum y-star value.
+	 * Gets the half edge in the hashtable with the minimum y-star value,
+	 * without deleting it. The event point is at the X coordinate of its
+	 * vertex and at its y-star value.
 	 *
-	 * @return the vertex
+	 * @return the half-edge
 	 */
-	public final Vertex minimumVertex() {
+	public final Halfedge minimumHalfEdge() {
 		while (edgesHashTable[minimumHashBucket].getNextHalfEdge() == null) {
 			minimumHashBucket += 1;
 		}
 
-		return new Vertex(edgesHashTable[minimumHashBucket].getNextHalfEdge().getVertex().getxCoordinate(),
-				edgesHashTable[minimumHashBucket].getNextHalfEdge().getYstar());
+		return edgesHashTable[minimumHashBucket].getNextHalfEdge();
 	}
 
 	/**
@@ -54,6 +54,25 @@ public class Halfedge {
 		this.setVertex(null);
 	}
 
+	/**
+	 * Reuses the half edge as if it was just constructed.
+	 *
+	 * @param newEdge
+	 *            the edge that bisects
+	 * @param newEdgePosition
+	 *            edge position
+	 */
+	final void reset(final VoronoiEdge newEdge, final int newEdgePosition) {
+		this.halfEdgeLeft = null;
+		this.halfEdgeRight = null;
+		this.edge = newEdge;
+		this.deleted = false;
+		this.edgePosition = newEdgePosition;
+		this.vertex = null;
+		this.yStart = 0;
+		this.nextHalfEdge = null;
+	}
+
 	/**
 	 * Get the left half edge .
 	 * 
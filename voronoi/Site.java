@@ -26,6 +26,21 @@ public class Site extends Vertex implements Comparable<Site> {
 		siteIndex = newSiteIndex;
 	}
 
+	/**
+	 * Reuses the site for another position.
+	 *
+	 * @param xCoordinate
+	 *            the X coordinate
+	 * @param yCoordinate
+	 *            the Y coordinate
+	 * @param newSiteIndex
+	 *            the site number
+	 */
+	final void reset(final double xCoordinate, final double yCoordinate, final int newSiteIndex) {
+		setCoordinates(xCoordinate, yCoordinate);
+		siteIndex = newSiteIndex;
+	}
+
 	/**
 	 * Compares this object with the specified object for order. Returns a
 	 * negative integer, zero, or a positive integer as this object is less
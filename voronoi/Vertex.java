@@ -11,10 +11,10 @@ public class Vertex {
 	public static final double EPSILON = 1e-6;
 
 	/** The vertex X coordinate. */
-	private final double xCoordinate;
+	private double xCoordinate;
 
 	/** The vertex Y coordinate. */
-	private final double yCoordinate;
+	private double yCoordinate;
 
 	/**
 	 * Flag indicating the vertex is bogus. It is bogus when a point falls on
@@ -50,6 +50,19 @@ public class Vertex {
 		isBogus = bogus;
 	}
 
+	/**
+	 * Moves the vertex. Only used to reuse the sites of a Voronoi sweep.
+	 *
+	 * @param newXCoordinate
+	 *            the X coordinate
+	 * @param newYCoordinate
+	 *            the Y coordinate
+	 */
+	final void setCoordinates(final double newXCoordinate, final double newYCoordinate) {
+		xCoordinate = newXCoordinate;
+		yCoordinate = newYCoordinate;
+	}
+
 	/**
 	 * Returns the square of the distance of this vertex from the origin.
 	 *
@@ -2,6 +2,7 @@ package uk.org.catapult.ts.cav.microsimulator.pedestrian.catpedsim.voronoi;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -72,14 +73,58 @@ public class Voronoi {
 	/** Site located South. */
 	private Site bottomsite;
 
-	/** The set of all edges in the graph. */
-	private final List<GraphEdge> allGraphEdges;
+	/** Initial capacity of the pools and of the graph edges arrays. */
+	private static final int INITIAL_CAPACITY = 64;
 
 	/** Percentage value. */
 	private static final int SCALE = 100;
 
+	/** X coordinates of the points given as vertices. */
+	private double[] pointsXCoordinates;
+
+	/** Y coordinates of the points given as vertices. */
+	private double[] pointsYCoordinates;
+
+	/** Pool of the sites where the half-edges intersect. */
+	private Site[] intersectionsPool;
+
+	/** The number of intersection sites in use. */
+	private int numberOfIntersections;
+
+	/** Pool of the half-edges. */
+	private Halfedge[] halfEdgesPool;
+
+	/** The number of half-edges in use. */
+	private int numberOfHalfEdges;
+
+	/** Pool of the bisectors, indexed by edge number. */
+	private VoronoiEdge[] voronoiEdgesPool;
+
+	/** The number of edges in the graph. */
+	private int numberOfGraphEdges;
+
+	/** X coordinate of the first end point of the graph edges. */
+	private double[] graphEdgesX1;
+
+	/** Y coordinate of the first end point of the graph edges. */
+	private double[] graphEdgesY1;
+
+	/** X coordinate of the second end point of the graph edges. */
+	private double[] graphEdgesX2;
+
+	/** Y coordinate of the second end point of the graph edges. */
+	private double[] graphEdgesY2;
+
+	/** Index of the site on the left of the graph edges. */
+	private int[] graphEdgesLeftSites;
+
+	/** Index of the site on the right of the graph edges. */
+	private int[] graphEdgesRightSites;
+
 	/**
-	 * Constructs a new Voronoi.
+	 * Constructs a new Voronoi. The instance keeps its sites, half-edges and
+	 * output arrays between two diagrams, so it can be reused at every tick
+	 * without allocating once its pools are large enough.
 	 *
 	 * @param minSiteSpacing
 	 *            the minimum distance between sites - any sites closer than
@@ -87,14 +132,24 @@ public class Voronoi {
 	 */
 	public Voronoi(final double minSiteSpacing) {
 		this.currentSiteIndex = 0;
-		this.sites = null;
+		this.sites = new Site[INITIAL_CAPACITY];
 		this.minimumSiteDistance = minSiteSpacing;
 		this.epsilon = minSiteSpacing / SCALE;
 		this.numberOfVertices = 0;
 		this.numberOfEdges = 0;
 		this.numberOfSites = 0;
 		this.sqrtNumberOfSites = 0;
-		this.allGraphEdges = new LinkedList<GraphEdge>();
+		this.pointsXCoordinates = new double[INITIAL_CAPACITY];
+		this.pointsYCoordinates = new double[INITIAL_CAPACITY];
+		this.intersectionsPool = new Site[INITIAL_CAPACITY];
+		this.halfEdgesPool = new Halfedge[INITIAL_CAPACITY];
+		this.voronoiEdgesPool = new VoronoiEdge[INITIAL_CAPACITY];
+		this.graphEdgesX1 = new double[INITIAL_CAPACITY];
+		this.graphEdgesY1 = new double[INITIAL_CAPACITY];
+		this.graphEdgesX2 = new double[INITIAL_CAPACITY];
+		this.graphEdgesY2 = new double[INITIAL_CAPACITY];
+		this.graphEdgesLeftSites = new int[INITIAL_CAPACITY];
+		this.graphEdgesRightSites = new int[INITIAL_CAPACITY];
 	}
 
 	/**
@@ -105,61 +160,212 @@ public class Voronoi {
 	 * @return the list of graph edges in the Voronoi diagram
 	 */
 	public final List<GraphEdge> generateVoronoiDiagram(final Vertex[] points) {
-		GraphEdge edge;
+		return generateVoronoiDiagram(points, points.length);
+	}
+
+	/**
+	 * Generates the Voronoi diagram of the first points of an array using
+	 * Fortune's algorithm.
+	 *
+	 * @param points
+	 *            an array of coordinates for each site
+	 * @param numberOfPoints
+	 *            the number of points to use from the start of the array
+	 * @return the list of graph edges in the Voronoi diagram
+	 */
+	public final List<GraphEdge> generateVoronoiDiagram(final Vertex[] points, final int numberOfPoints) {
+		computeVoronoiDiagram(points, numberOfPoints);
+
+		List<GraphEdge> graphEdges = new ArrayList<GraphEdge>(numberOfGraphEdges);
+
+		for (int edgeIndex = 0; edgeIndex < numberOfGraphEdges; edgeIndex++) {
+			GraphEdge edge = new GraphEdge();
+
+			edge.setxCoordinate1(graphEdgesX1[edgeIndex]);
+			edge.setyCoordinate1(graphEdgesY1[edgeIndex]);
+			edge.setxCoordinate2(graphEdgesX2[edgeIndex]);
+			edge.setyCoordinate2(graphEdgesY2[edgeIndex]);
+			edge.setSiteIndexLeftOfEdge(graphEdgesLeftSites[edgeIndex]);
+			edge.setSiteIndexRightOfEdge(graphEdgesRightSites[edgeIndex]);
+
+			graphEdges.add(edge);
+		}
+
+		return graphEdges;
+	}
+
+	/**
+	 * Computes the Voronoi diagram of the first points of an array, leaving
+	 * the edges in the graph edges arrays of this instance.
+	 *
+	 * @param points
+	 *            an array of coordinates for each site
+	 * @param numberOfPoints
+	 *            the number of points to use from the start of the array
+	 * @return the number of graph edges
+	 */
+	public final int computeVoronoiDiagram(final Vertex[] points, final int numberOfPoints) {
+		if (pointsXCoordinates.length < numberOfPoints) {
+			pointsXCoordinates = new double[numberOfPoints];
+			pointsYCoordinates = new double[numberOfPoints];
+		}
+
+		for (int indexPoint = 0; indexPoint < numberOfPoints; indexPoint++) {
+			pointsXCoordinates[indexPoint] = points[indexPoint].getxCoordinate();
+			pointsYCoordinates[indexPoint] = points[indexPoint].getyCoordinate();
+		}
+
+		return computeVoronoiDiagram(pointsXCoordinates, pointsYCoordinates, numberOfPoints);
+	}
 
+	/**
+	 * Computes the Voronoi diagram of the first points of two coordinates
+	 * arrays using Fortune's algorithm. The edges are left in the graph edges
+	 * arrays of this instance, valid until the next call; the site indexes of
+	 * the edges are the indexes of the points. Once the pools of the instance
+	 * are large enough for the number of points, no object is allocated.
+	 *
+	 * @param xCoordinates
+	 *            the X coordinate of each site
+	 * @param yCoordinates
+	 *            the Y coordinate of each site
+	 * @param numberOfPoints
+	 *            the number of points to use from the start of the arrays
+	 * @return the number of graph edges
+	 */
+	public final int computeVoronoiDiagram(final double[] xCoordinates, final double[] yCoordinates,
+			final int numberOfPoints) {
 		// Remove any prior run's output
-		allGraphEdges.clear();
+		numberOfGraphEdges = 0;
+		numberOfVertices = 0;
+		numberOfEdges = 0;
+		numberOfIntersections = 0;
+		numberOfHalfEdges = 0;
+
+		if (numberOfPoints == 0) {
+			return 0;
+		}
 
 		// Compute bounding box (only used to clip edges in the future)
-		computeBoundingBox(points);
+		computeBoundingBox(xCoordinates, yCoordinates, numberOfPoints);
 
 		// Create a list of sites from the input list of points that is sorted
 		// by increasing Y coordinate (and increasing X for values of equal Y)
-		makeSortedSiteList(points);
+		makeSortedSiteList(xCoordinates, yCoordinates, numberOfPoints);
 
-		// Build the Voronoi diagram
+		// Build the Voronoi diagram, the edges whose end and start points are
+		// the same are not kept
 		voronoiDiagramBuild();
 
-		// Remove any edges whose end and start points are the same
-		for (int edgeIndex = allGraphEdges.size() - 1; edgeIndex >= 0; edgeIndex--) {
-			edge = allGraphEdges.get(edgeIndex);
+		return numberOfGraphEdges;
+	}
 
-			if (isSame(edge.getxCoordinate1(), edge.getyCoordinate1(), edge.getxCoordinate2(),
-					edge.getyCoordinate2())) {
-				allGraphEdges.remove(edgeIndex);
-			}
-		}
+	/**
+	 * Gets the number of edges of the last diagram computed.
+	 *
+	 * @return the number of graph edges
+	 */
+	public final int getNumberOfGraphEdges() {
+		return numberOfGraphEdges;
+	}
+
+	/**
+	 * Gets the X coordinates of the first end point of the graph edges. The
+	 * array is reused by the next diagram and may be longer than the number
+	 * of edges.
+	 *
+	 * @return the X coordinates
+	 */
+	public final double[] getGraphEdgesX1() {
+		return graphEdgesX1;
+	}
 
-		return allGraphEdges;
+	/**
+	 * Gets the Y coordinates of the first end point of the graph edges. The
+	 * array is reused by the next diagram and may be longer than the number
+	 * of edges.
+	 *
+	 * @return the Y coordinates
+	 */
+	public final double[] getGraphEdgesY1() {
+		return graphEdgesY1;
+	}
+
+	/**
+	 * Gets the X coordinates of the second end point of the graph edges. The
+	 * array is reused by the next diagram and may be longer than the number
+	 * of edges.
+	 *
+	 * @return the X coordinates
+	 */
+	public final double[] getGraphEdgesX2() {
+		return graphEdgesX2;
+	}
+
+	/**
+	 * Gets the Y coordinates of the second end point of the graph edges. The
+	 * array is reused by the next diagram and may be longer than the number
+	 * of edges.
+	 *
+	 * @return the Y coordinates
+	 */
+	public final double[] getGraphEdgesY2() {
+		return graphEdgesY2;
+	}
+
+	/**
+	 * Gets the index of the site on the left of the graph edges. The array is
+	 * reused by the next diagram and may be longer than the number of edges.
+	 *
+	 * @return the site indexes
+	 */
+	public final int[] getGraphEdgesLeftSites() {
+		return graphEdgesLeftSites;
+	}
+
+	/**
+	 * Gets the index of the site on the right of the graph edges. The array
+	 * is reused by the next diagram and may be longer than the number of
+	 * edges.
+	 *
+	 * @return the site indexes
+	 */
+	public final int[] getGraphEdgesRightSites() {
+		return graphEdgesRightSites;
 	}
 
 	/**
 	 * Computes the bounding box of a set of points.
 	 *
-	 * @param points
-	 *            the points
+	 * @param xCoordinates
+	 *            the X coordinate of each point
+	 * @param yCoordinates
+	 *            the Y coordinate of each point
+	 * @param numberOfPoints
+	 *            the number of points to use from the start of the arrays
 	 */
-	private void computeBoundingBox(final Vertex[] points) {
+	private void computeBoundingBox(final double[] xCoordinates, final double[] yCoordinates,
+			final int numberOfPoints) {
 		minimumXCoordinate = Double.MAX_VALUE;
 		minimumYCoordinate = Double.MAX_VALUE;
 		maximumXCoordinate = -Double.MAX_VALUE;
 		maximumYCoordinate = -Double.MAX_VALUE;
 
-		for (Vertex currentVertex : points) {
-			if (currentVertex.getxCoordinate() < minimumXCoordinate) {
-				minimumXCoordinate = currentVertex.getxCoordinate();
+		for (int indexPoint = 0; indexPoint < numberOfPoints; indexPoint++) {
+			if (xCoordinates[indexPoint] < minimumXCoordinate) {
+				minimumXCoordinate = xCoordinates[indexPoint];
 			}
 
-			if (currentVertex.getxCoordinate() > maximumXCoordinate) {
-				maximumXCoordinate = currentVertex.getxCoordinate();
+			if (xCoordinates[indexPoint] > maximumXCoordinate) {
+				maximumXCoordinate = xCoordinates[indexPoint];
 			}
 
-			if (currentVertex.getyCoordinate() < minimumYCoordinate) {
-				minimumYCoordinate = currentVertex.getyCoordinate();
+			if (yCoordinates[indexPoint] < minimumYCoordinate) {
+				minimumYCoordinate = yCoordinates[indexPoint];
 			}
 
-			if (currentVertex.getyCoordinate() > maximumYCoordinate) {
-				maximumYCoordinate = currentVertex.getyCoordinate();
+			if (yCoordinates[indexPoint] > maximumYCoordinate) {
+				maximumYCoordinate = yCoordinates[indexPoint];
 			}
 		}
 
@@ -168,27 +374,169 @@ public class Voronoi {
 	}
 
 	/**
-	 * Creates a list of Site objects whose coordinates are a given set of
-	 * points, and that is sorted in order of increasing Y (then increasing X if
-	 * Y coordinates are the same).
+	 * Fills the list of Site objects with a given set of points, and sorts it
+	 * in order of increasing Y (then increasing X if Y coordinates are the
+	 * same). The Site objects of the previous diagram are reused.
 	 *
-	 * @param points
-	 *            the list of points
+	 * @param xCoordinates
+	 *            the X coordinate of each point
+	 * @param yCoordinates
+	 *            the Y coordinate of each point
+	 * @param numberOfPoints
+	 *            the number of points to use from the start of the arrays
 	 */
-	private void makeSortedSiteList(final Vertex[] points) {
-		numberOfSites = points.length;
+	private void makeSortedSiteList(final double[] xCoordinates, final double[] yCoordinates,
+			final int numberOfPoints) {
+		numberOfSites = numberOfPoints;
 		final int quad = 4;
 		sqrtNumberOfSites = (int) Math.sqrt(numberOfSites + quad);
 
-		sites = new Site[numberOfSites];
+		if (sites.length < numberOfSites) {
+			sites = Arrays.copyOf(sites, Math.max(numberOfSites, sites.length * 2));
+		}
 		currentSiteIndex = 0;
 
 		for (int indexSite = 0; indexSite < numberOfSites; indexSite++) {
-			sites[indexSite] = new Site(points[indexSite].getxCoordinate(), points[indexSite].getyCoordinate(),
-					indexSite);
+			if (sites[indexSite] == null) {
+				sites[indexSite] = new Site(xCoordinates[indexSite], yCoordinates[indexSite], indexSite);
+			} else {
+				sites[indexSite].reset(xCoordinates[indexSite], yCoordinates[indexSite], indexSite);
+			}
 		}
 
-		Arrays.sort(sites);
+		sortSites(0, numberOfSites - 1);
+	}
+
+	/**
+	 * Sorts the sites in [fromIndex, toIndex] in place, by increasing Y then
+	 * increasing X, the sites at the same position by increasing index.
+	 * Unlike Arrays.sort it does not allocate a merge buffer.
+	 *
+	 * @param fromIndex
+	 *            first index, inclusive
+	 * @param toIndex
+	 *            last index, inclusive
+	 */
+	private void sortSites(final int fromIndex, final int toIndex) {
+		final int insertionSortSize = 16;
+		int left = fromIndex;
+		int right = toIndex;
+
+		while (right - left >= insertionSortSize) {
+			Site pivot = sites[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+
+			while (i <= j) {
+				while (compareSites(sites[i], pivot) < 0) {
+					i++;
+				}
+				while (compareSites(sites[j], pivot) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					Site swap = sites[i];
+					sites[i] = sites[j];
+					sites[j] = swap;
+					i++;
+					j--;
+				}
+			}
+
+			// recurse on the smaller part to bound the stack depth
+			if (j - left < right - i) {
+				sortSites(left, j);
+				left = i;
+			} else {
+				sortSites(i, right);
+				right = j;
+			}
+		}
+
+		for (int i = left + 1; i <= right; i++) {
+			Site site = sites[i];
+			int j = i - 1;
+
+			while (j >= left && compareSites(sites[j], site) > 0) {
+				sites[j + 1] = sites[j];
+				j--;
+			}
+			sites[j + 1] = site;
+		}
+	}
+
+	/**
+	 * Compares two sites in the order of the sweep.
+	 *
+	 * @param site1
+	 *            the first site
+	 * @param site2
+	 *            the second site
+	 * @return a negative integer, zero, or a positive integer as the first
+	 *         site comes before, is, or comes after the second site
+	 */
+	private static int compareSites(final Site site1, final Site site2) {
+		int result = site1.compareTo(site2);
+
+		if (result == 0) {
+			result = Integer.compare(site1.getSiteIndex(), site2.getSiteIndex());
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets a site from the pool of the intersections.
+	 *
+	 * @param xCoordinate
+	 *            the X coordinate
+	 * @param yCoordinate
+	 *            the Y coordinate
+	 * @return the site
+	 */
+	private Site newIntersection(final double xCoordinate, final double yCoordinate) {
+		if (numberOfIntersections == intersectionsPool.length) {
+			intersectionsPool = Arrays.copyOf(intersectionsPool, intersectionsPool.length * 2);
+		}
+
+		Site site = intersectionsPool[numberOfIntersections];
+
+		if (site == null) {
+			site = new Site(xCoordinate, yCoordinate, -1);
+			intersectionsPool[numberOfIntersections] = site;
+		} else {
+			site.reset(xCoordinate, yCoordinate, -1);
+		}
+
+		numberOfIntersections += 1;
+		return site;
+	}
+
+	/**
+	 * Gets a half-edge from the pool.
+	 *
+	 * @param edge
+	 *            the edge that bisects
+	 * @param edgePosition
+	 *            edge position
+	 * @return the half-edge
+	 */
+	private Halfedge newHalfEdge(final VoronoiEdge edge, final int edgePosition) {
+		if (numberOfHalfEdges == halfEdgesPool.length) {
+			halfEdgesPool = Arrays.copyOf(halfEdgesPool, halfEdgesPool.length * 2);
+		}
+
+		Halfedge halfEdge = halfEdgesPool[numberOfHalfEdges];
+
+		if (halfEdge == null) {
+			halfEdge = new Halfedge(edge, edgePosition);
+			halfEdgesPool[numberOfHalfEdges] = halfEdge;
+		} else {
+			halfEdge.reset(edge, edgePosition);
+		}
+
+		numberOfHalfEdges += 1;
+		return halfEdge;
 	}
 
 	/**
@@ -258,7 +606,16 @@ public class Voronoi {
 		double distanceBetweenSites;
 		VoronoiEdge newedge;
 
-		newedge = new VoronoiEdge();
+		if (numberOfEdges == voronoiEdgesPool.length) {
+			voronoiEdgesPool = Arrays.copyOf(voronoiEdgesPool, voronoiEdgesPool.length * 2);
+		}
+
+		newedge = voronoiEdgesPool[numberOfEdges];
+
+		if (newedge == null) {
+			newedge = new VoronoiEdge();
+			voronoiEdgesPool[numberOfEdges] = newedge;
+		}
 
 		newedge.getSiteBisecting()[0] = site1;
 		newedge.getSiteBisecting()[1] = site2;
@@ -322,7 +679,8 @@ public class Voronoi {
 	}
 
 	/**
-	 * Push Graph Edge to the cell.
+	 * Push Graph Edge to the cell, unless its end and start points are the
+	 * same.
 	 *
 	 * @param leftSite
 	 *            left side
@@ -339,18 +697,29 @@ public class Voronoi {
 	 */
 	private void pushGraphEdge(final Site leftSite, final Site rightSite, final double xCoordinate1,
 			final double yCoordinate1, final double xCoordinate2, final double yCoordinate2) {
-		GraphEdge newEdge;
+		if (isSame(xCoordinate1, yCoordinate1, xCoordinate2, yCoordinate2)) {
+			return;
+		}
 
-		newEdge = new GraphEdge();
-		allGraphEdges.add(newEdge);
+		if (numberOfGraphEdges == graphEdgesX1.length) {
+			int capacity = graphEdgesX1.length * 2;
 
-		newEdge.setxCoordinate1(xCoordinate1);
-		newEdge.setyCoordinate1(yCoordinate1);
-		newEdge.setxCoordinate2(xCoordinate2);
-		newEdge.setyCoordinate2(yCoordinate2);
+			graphEdgesX1 = Arrays.copyOf(graphEdgesX1, capacity);
+			graphEdgesY1 = Arrays.copyOf(graphEdgesY1, capacity);
+			graphEdgesX2 = Arrays.copyOf(graphEdgesX2, capacity);
+			graphEdgesY2 = Arrays.copyOf(graphEdgesY2, capacity);
+			graphEdgesLeftSites = Arrays.copyOf(graphEdgesLeftSites, capacity);
+			graphEdgesRightSites = Arrays.copyOf(graphEdgesRightSites, capacity);
+		}
+
+		graphEdgesX1[numberOfGraphEdges] = xCoordinate1;
+		graphEdgesY1[numberOfGraphEdges] = yCoordinate1;
+		graphEdgesX2[numberOfGraphEdges] = xCoordinate2;
+		graphEdgesY2[numberOfGraphEdges] = yCoordinate2;
+		graphEdgesLeftSites[numberOfGraphEdges] = leftSite.getSiteIndex();
+		graphEdgesRightSites[numberOfGraphEdges] = rightSite.getSiteIndex();
 
-		newEdge.setSiteIndexLeftOfEdge(leftSite.getSiteIndex());
-		newEdge.setSiteIndexRightOfEdge(rightSite.getSiteIndex());
+		numberOfGraphEdges += 1;
 	}
 
 	/**
@@ -618,7 +987,7 @@ public class Voronoi {
 			return null;
 		}
 
-		return new Site(xint, yint, -1);
+		return newIntersection(xint, yint);
 	}
 
 	/**
@@ -631,7 +1000,7 @@ public class Voronoi {
 		Site temporarySite;
 		Site p;
 		Site v;
-		Vertex newintstar = null;
+		Halfedge newintstar = null;
 		int pm;
 		Halfedge leftEnd;
 		Halfedge rbnd;
@@ -640,27 +1009,32 @@ public class Voronoi {
 		Halfedge bisector;
 		VoronoiEdge edge;
 
-		halfEdgeStorageY = new HalfEdgeStorageY(sqrtNumberOfSites, minimumYCoordinate, boundingBoxHeight);
-		halfEdgeStorageX = new HalfEdgeStorageX(sqrtNumberOfSites, minimumXCoordinate, boundingBoxWidth);
+		if (halfEdgeStorageY == null) {
+			halfEdgeStorageY = new HalfEdgeStorageY(sqrtNumberOfSites, minimumYCoordinate, boundingBoxHeight);
+			halfEdgeStorageX = new HalfEdgeStorageX(sqrtNumberOfSites, minimumXCoordinate, boundingBoxWidth);
+		} else {
+			halfEdgeStorageY.reset(sqrtNumberOfSites, minimumYCoordinate, boundingBoxHeight);
+			halfEdgeStorageX.reset(sqrtNumberOfSites, minimumXCoordinate, boundingBoxWidth);
+		}
 
 		bottomsite = nextSiteToProcess();
 		newsite = nextSiteToProcess();
 
 		while (true) {
 			if (!halfEdgeStorageY.hashTableIsEmpty()) {
-				newintstar = halfEdgeStorageY.minimumVertex();
+				newintstar = halfEdgeStorageY.minimumHalfEdge();
 			}
 
 			if ((newsite != null)
-					&& (halfEdgeStorageY.hashTableIsEmpty() || (newsite.getyCoordinate() < newintstar.getyCoordinate())
-							|| ((newsite.getyCoordinate() == newintstar.getyCoordinate())
-									&& (newsite.getxCoordinate() < newintstar.getxCoordinate())))) {
+					&& (halfEdgeStorageY.hashTableIsEmpty() || (newsite.getyCoordinate() < newintstar.getYstar())
+							|| ((newsite.getyCoordinate() == newintstar.getYstar())
+									&& (newsite.getxCoordinate() < newintstar.getVertex().getxCoordinate())))) {
 
 				leftEnd = halfEdgeStorageX.leftBoundary((newsite));
 				rbnd = leftEnd.getHalfEdgeRight();
 				bottomSite = rightRegion(leftEnd);
 				edge = bisectSites(bottomSite, newsite);
-				bisector = new Halfedge(edge, LEFTEDGE);
+				bisector = newHalfEdge(edge, LEFTEDGE);
 				halfEdgeStorageX.insert(leftEnd, bisector);
 				p = intersect(leftEnd, bisector);
 
@@ -670,7 +1044,7 @@ public class Voronoi {
 				}
 
 				leftEnd = bisector;
-				bisector = new Halfedge(edge, RIGHTEDGE);
+				bisector = newHalfEdge(edge, RIGHTEDGE);
 				halfEdgeStorageX.insert(leftEnd, bisector);
 				p = intersect(bisector, rbnd);
 
@@ -708,7 +1082,7 @@ public class Voronoi {
 				}
 
 				edge = bisectSites(bottomSite, topSite);
-				bisector = new Halfedge(edge, pm);
+				bisector = newHalfEdge(edge, pm);
 				this.halfEdgeStorageX.insert(llbnd, bisector);
 
 				endpoint(edge, RIGHTEDGE - pm, v);